@@ -29,6 +29,10 @@ export type AdvertDTO = {
 
   createdAt?: string | null;
   updatedAt?: string | null;
+
+  // rotasjon via /api/adverts/serve
+  weight?: number;
+  frequencyCap?: number | null;
 };
 
 export type AdvertUpsert = {
@@ -38,6 +42,8 @@ export type AdvertUpsert = {
   endAt?: string;   // ISO fra UI
   placement?: "SIDEBAR" | "HEADER" | string;
   active?: boolean;
+  weight?: number;
+  frequencyCap?: number | null; // maks visninger per besøkende per dag
 
   // disse er kun for UI
   imageFile?: File | null;
@@ -57,6 +63,9 @@ type UpsertAdvertReq = {
   // Vi sender derfor epoch seconds (number) for trygg deserialisering.
   startAt?: number | null; // epoch seconds
   endAt?: number | null;   // epoch seconds
+
+  weight?: number | null;
+  frequencyCap?: number | null;
 };
 
 const videoExt = /\.(mp4|webm|ogg|mkv|mov)$/i;
@@ -170,6 +179,9 @@ function normalizeAdvert(a: any): AdvertDTO {
     endAt: fromBackendTimeToIso(a?.endAt ?? a?.end_at ?? null),
     createdAt: fromBackendTimeToIso(a?.createdAt ?? a?.created_at ?? null),
     updatedAt: fromBackendTimeToIso(a?.updatedAt ?? a?.updated_at ?? null),
+
+    weight: typeof a?.weight === "number" ? a.weight : 1,
+    frequencyCap: a?.frequencyCap ?? a?.frequency_cap ?? null,
   };
 }
 
@@ -184,6 +196,8 @@ function buildModel(body: AdvertUpsert): UpsertAdvertReq {
     active: body.active ?? true,
     startAt: toEpochSecondsOrNull(body.startAt ?? null),
     endAt: toEpochSecondsOrNull(body.endAt ?? null),
+    weight: body.weight ?? null,
+    frequencyCap: body.frequencyCap ?? null,
   };
 }
 
@@ -137,6 +137,12 @@ export async function listAdminEvents(page = 0, size = 20): Promise<Page<EventDT
   return { content: rows.map(normalizeEvent), number: 0, size: rows.length, totalElements: rows.length, totalPages: 1 };
 }
 
+// Listen sender ikke description; hent hele eventet før redigering
+export async function getAdminEvent(id: number): Promise<EventDTO> {
+  const res = await http.get(`/api/admin/events/${id}`);
+  return normalizeEvent(res.data);
+}
+
 export async function createEvent(payload: EventUpsertRequest): Promise<EventDTO> {
   const res = await http.post("/api/admin/events", payload);
   return normalizeEvent(res.data);
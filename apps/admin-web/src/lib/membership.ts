@@ -41,6 +41,25 @@ export async function deleteMembership(id: number) {
   await http.delete(`/api/admin/membership/${id}`);
 }
 
+/** Laster ned medlemsregisteret som CSV eller Excel (strømmes fra serveren). */
+export async function exportMembers(
+  format: "csv" | "xlsx",
+  status?: "PENDING" | "ACCEPTED" | "REJECTED"
+) {
+  const res = await http.get<Blob>("/api/admin/membership/export", {
+    params: { format, status },
+    responseType: "blob",
+  });
+  const disposition = String(res.headers["content-disposition"] ?? "");
+  const filename = /filename="([^"]+)"/.exec(disposition)?.[1] ?? `members.${format}`;
+  const url = URL.createObjectURL(res.data);
+  const a = document.createElement("a");
+  a.href = url;
+  a.download = filename;
+  a.click();
+  URL.revokeObjectURL(url);
+}
+
 /* -------------------------- Membership Applications ------------------------- */
 
 export type MembershipApplicationDTO = {
@@ -60,6 +79,8 @@ export type MembershipApplicationDTO = {
   createdAt?: string | null;
   handledAt?: string | null;
   deleteAt?: string | null;
+  vippsCheck?: "MATCHED" | "MISMATCH" | "MISSING" | null;
+  vippsCheckedAt?: string | null;
 };
 
 export async function listMembershipApplications(
@@ -86,4 +107,75 @@ export async function rejectMembershipApplication(id: number, daysToKeep: number
 export async function setMembershipApplicationPending(id: number) {
   const res = await http.patch(`/api/admin/membership/applications/${id}/pending`);
   return res.data;
-}
\ No newline at end of file
+}
+
+export type BulkOutcome = {
+  id: number;
+  result: "ACCEPTED" | "REJECTED" | "NOT_FOUND" | "NOT_PENDING";
+  emailQueued: boolean;
+};
+
+export type BulkResult = { changed: number; emailsQueued: number; outcomes: BulkOutcome[] };
+
+/** Godkjenner eller avslår mange søknader i ett kall; e-postene sendes i bakgrunnen. */
+export async function bulkDecideApplications(
+  action: "accept" | "reject",
+  ids: number[],
+  daysToKeep?: number
+) {
+  const res = await http.post<BulkResult>("/api/admin/membership/applications/bulk", {
+    action,
+    ids,
+    daysToKeep,
+  });
+  return res.data;
+}
+
+export type VippsReconciliation = {
+  dryRun: boolean;
+  entries: number;
+  unknownEntries: number;
+  invalidEntries: number;
+  matched: number;
+  mismatched: number;
+  missing: number;
+  notCovered: number;
+  reportFrom?: string | null;
+  reportUntil?: string | null;
+};
+
+/** Avstemmer ventende søknader mot en oppgjørsrapport fra Vipps (CSV eller JSON). */
+export async function reconcileVippsReport(file: File, dryRun = false) {
+  const fd = new FormData();
+  fd.append("file", file);
+  const res = await http.post<VippsReconciliation>(
+    "/api/admin/membership/applications/vipps-reconciliation",
+    fd,
+    { params: { dryRun } }
+  );
+  return res.data;
+}
+
+export type MembershipStatistics = {
+  members: number;
+  byCity: { city: string | null; members: number }[];
+  byAge: { bracket: string; members: number }[];
+  months: {
+    month: string; // yyyy-MM
+    applications: number;
+    joined: number;
+    rejected: number;
+    decided: number;
+    averageTurnaroundHours: number | null;
+  }[];
+  decided: number;
+  averageTurnaroundHours: number | null;
+};
+
+/** Ferdig summert statistikk (membership_daily_stats) for de siste månedene. */
+export async function getMembershipStatistics(months = 12) {
+  const res = await http.get<MembershipStatistics>("/api/admin/membership/statistics", {
+    params: { months },
+  });
+  return res.data;
+}
@@ -322,6 +322,8 @@ function AdvertModal({
 }) {
   const [title, setTitle] = useState(initial?.title ?? "");
   const [targetUrl, setTargetUrl] = useState(initial?.targetUrl ?? "");
+  const [weight, setWeight] = useState(String(initial?.weight ?? 1));
+  const [frequencyCap, setFrequencyCap] = useState(initial?.frequencyCap ? String(initial.frequencyCap) : "");
 
   const startParts = partsFromIso(initial?.startAt);
   const endParts = partsFromIso(initial?.endAt);
@@ -391,6 +393,30 @@ function AdvertModal({
                 placeholder="https://example.com"
               />
             </label>
+
+            <label className="space-y-1.5">
+              <span className="text-sm text-white/70">Weight (1–1000, higher is shown more often)</span>
+              <input
+                type="number"
+                min={1}
+                max={1000}
+                value={weight}
+                onChange={(e) => setWeight(e.target.value)}
+                className={inputBase}
+              />
+            </label>
+
+            <label className="space-y-1.5">
+              <span className="text-sm text-white/70">Max views per visitor per day (optional)</span>
+              <input
+                type="number"
+                min={1}
+                value={frequencyCap}
+                onChange={(e) => setFrequencyCap(e.target.value)}
+                className={inputBase}
+                placeholder="No limit"
+              />
+            </label>
           </div>
 
           {/* Schedule Section */}
@@ -519,6 +545,8 @@ function AdvertModal({
                 targetUrl,
                 startAt: startAt || undefined,
                 endAt: endAt || undefined,
+                weight: Math.min(1000, Math.max(1, Math.round(Number(weight)) || 1)),
+                frequencyCap: frequencyCap.trim() && Number(frequencyCap) >= 1 ? Math.round(Number(frequencyCap)) : null,
                 imageFile: imageFile ?? null,
                 videoFile: videoFile ?? null,
               };
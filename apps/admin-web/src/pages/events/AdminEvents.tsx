@@ -2,6 +2,7 @@ import { useMemo, useState } from "react";
 import { useMutation, useQuery, useQueryClient } from "@tanstack/react-query";
 import {
   listAdminEvents,
+  getAdminEvent,
   createEvent as apiCreateEvent,
   updateEvent as apiUpdateEvent,
   deleteEvent as apiDeleteEvent,
@@ -175,8 +176,15 @@ export default function AdminEvents() {
     setOpen(true);
   };
 
-  const onEdit = (e: EventDTO) => {
+  const onEdit = async (row: EventDTO) => {
     setErr(null);
+    let e = row;
+    try {
+      e = await getAdminEvent(row.id);
+    } catch (ex: any) {
+      setErr(ex?.message || "Could not load event");
+      return;
+    }
     const sp = partsFromIso(e.startAt);
     const ep = partsFromIso(e.endAt);
 
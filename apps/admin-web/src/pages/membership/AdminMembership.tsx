@@ -9,10 +9,14 @@ import {
   acceptMembershipApplication,
   rejectMembershipApplication,
   setMembershipApplicationPending,
+  exportMembers,
+  bulkDecideApplications,
+  reconcileVippsReport,
+  getMembershipStatistics,
   type MemberDTO,
   type MembershipApplicationDTO,
 } from "../../lib/membership";
-import { Users, UserPlus, Eye, Pencil, Trash2, X, Check, XCircle, RotateCcw, Clock, Mail, Phone, MapPin, CreditCard } from "lucide-react";
+import { Users, UserPlus, Eye, Pencil, Trash2, X, Check, XCircle, RotateCcw, Clock, Download, Mail, Phone, MapPin, CreditCard } from "lucide-react";
 
 /* ---------- Style constants ---------- */
 const btnBase = "inline-flex items-center justify-center gap-2 rounded-xl font-medium transition-all duration-200 active:scale-[0.98]";
@@ -24,6 +28,13 @@ const btnSmall = "px-2.5 py-1.5 text-sm";
 const inputBase = "w-full rounded-xl border border-white/15 bg-white/5 px-4 py-2.5 outline-none transition focus:border-indigo-500/50 focus:ring-2 focus:ring-indigo-500/20 placeholder:text-white/40";
 const cardBase = "rounded-2xl border border-white/10 bg-[rgba(10,18,36,0.5)]";
 
+const VIPPS_CHECK_LABEL = { MATCHED: "Paid", MISMATCH: "Wrong amount", MISSING: "Not in Vipps report" } as const;
+const VIPPS_CHECK_STYLE = {
+  MATCHED: "bg-emerald-500/15 text-emerald-300",
+  MISMATCH: "bg-amber-500/15 text-amber-300",
+  MISSING: "bg-red-500/15 text-red-300",
+} as const;
+
 type AppTab = "PENDING" | "REJECTED" | "ACCEPTED";
 
 function toDate(input: string | number | null | undefined) {
@@ -53,6 +64,12 @@ export default function AdminMembership() {
   });
 
   const [tab, setTab] = useState<AppTab>("PENDING");
+  const [selected, setSelected] = useState<Set<number>>(new Set());
+  const qStats = useQuery({
+    queryKey: ["membershipStatistics"],
+    queryFn: () => getMembershipStatistics(12),
+  });
+
   const qApps = useQuery({
     queryKey: ["membershipApplications", tab],
     queryFn: () => listMembershipApplications(tab, 0, 50),
@@ -72,6 +89,21 @@ export default function AdminMembership() {
     onSuccess: () => qApps.refetch(),
   });
 
+  const mBulk = useMutation({
+    mutationFn: ({ action, ids, days }: { action: "accept" | "reject"; ids: number[]; days?: number }) =>
+      bulkDecideApplications(action, ids, days),
+    onSuccess: (_, { action }) => {
+      setSelected(new Set());
+      if (action === "accept") qMembers.refetch();
+      qApps.refetch();
+    },
+  });
+
+  const mVipps = useMutation({
+    mutationFn: (file: File) => reconcileVippsReport(file),
+    onSuccess: () => qApps.refetch(),
+  });
+
   const mBackToPending = useMutation({
     mutationFn: (id: number) => setMembershipApplicationPending(id),
     onSuccess: () => {
@@ -97,15 +129,31 @@ export default function AdminMembership() {
     onSuccess: () => qMembers.refetch(),
   });
 
+  const mExport = useMutation({
+    mutationFn: (format: "csv" | "xlsx") => exportMembers(format, "ACCEPTED"),
+  });
+
   const [editing, setEditing] = useState<MemberDTO | null>(null);
   const [viewing, setViewing] = useState<MemberDTO | null>(null);
 
-  const [rejecting, setRejecting] = useState<MembershipApplicationDTO | null>(null);
+  const [rejecting, setRejecting] = useState<MembershipApplicationDTO[] | null>(null);
   const [rejectDays, setRejectDays] = useState(7);
 
   const apps = useMemo(() => qApps.data?.content ?? [], [qApps.data]);
   const members = useMemo(() => qMembers.data?.content ?? [], [qMembers.data]);
 
+  const selectedApps = apps.filter((a) => a.status === "PENDING" && selected.has(a.id));
+  const allSelected = tab === "PENDING" && apps.length > 0 && selectedApps.length === apps.length;
+
+  function toggle(id: number) {
+    setSelected((prev) => {
+      const next = new Set(prev);
+      if (next.has(id)) next.delete(id);
+      else next.add(id);
+      return next;
+    });
+  }
+
   return (
     <div className="space-y-8">
       {/* Header */}
@@ -114,6 +162,51 @@ export default function AdminMembership() {
         <p className="text-white/60 text-sm mt-1">Manage applications and members</p>
       </div>
 
+      {/* Statistics */}
+      {qStats.data && (
+        <section className={`${cardBase} p-4 grid gap-4 sm:grid-cols-2 lg:grid-cols-4 text-sm`}>
+          <div>
+            <div className="text-white/50">Members</div>
+            <div className="text-2xl font-bold">{qStats.data.members}</div>
+            <div className="text-white/50 mt-2">Avg. handling time (12 months)</div>
+            <div className="font-semibold">
+              {qStats.data.averageTurnaroundHours != null
+                ? `${(qStats.data.averageTurnaroundHours / 24).toFixed(1)} days`
+                : "—"}
+            </div>
+          </div>
+          <div>
+            <div className="text-white/50 mb-1">By city</div>
+            {qStats.data.byCity.slice(0, 5).map((c) => (
+              <div key={c.city ?? ""} className="flex justify-between">
+                <span>{c.city ?? "Unknown"}</span>
+                <span className="text-white/70">{c.members}</span>
+              </div>
+            ))}
+          </div>
+          <div>
+            <div className="text-white/50 mb-1">By age</div>
+            {qStats.data.byAge.map((a) => (
+              <div key={a.bracket} className="flex justify-between">
+                <span>{a.bracket}</span>
+                <span className="text-white/70">{a.members}</span>
+              </div>
+            ))}
+          </div>
+          <div>
+            <div className="text-white/50 mb-1">Joined per month</div>
+            {qStats.data.months.slice(-6).map((m) => (
+              <div key={m.month} className="flex justify-between">
+                <span>{m.month}</span>
+                <span className="text-white/70">
+                  {m.joined} joined · {m.applications} applied
+                </span>
+              </div>
+            ))}
+          </div>
+        </section>
+      )}
+
       {/* Applications Section */}
       <section className={`${cardBase} overflow-hidden`}>
         <div className="flex flex-col sm:flex-row sm:items-center justify-between gap-4 p-4 border-b border-white/10">
@@ -126,7 +219,10 @@ export default function AdminMembership() {
             {(["PENDING", "REJECTED", "ACCEPTED"] as AppTab[]).map((t) => (
               <button
                 key={t}
-                onClick={() => setTab(t)}
+                onClick={() => {
+                  setTab(t);
+                  setSelected(new Set());
+                }}
                 className={`px-3 py-1.5 rounded-lg text-sm font-medium transition ${
                   tab === t
                     ? "bg-white/10 text-white"
@@ -152,6 +248,69 @@ export default function AdminMembership() {
             </div>
           ) : (
             <div className="space-y-3">
+              {tab === "PENDING" && (
+                <div className="flex flex-wrap items-center gap-3 px-1">
+                  <label className="flex items-center gap-2 text-sm text-white/70">
+                    <input
+                      type="checkbox"
+                      checked={allSelected}
+                      onChange={() =>
+                        setSelected(allSelected ? new Set() : new Set(apps.map((a) => a.id)))
+                      }
+                    />
+                    Select all
+                  </label>
+                  {selectedApps.length > 0 && (
+                    <>
+                      <span className="text-sm text-white/50">{selectedApps.length} selected</span>
+                      <button
+                        className={`${btnSuccess} ${btnSmall}`}
+                        onClick={() =>
+                          mBulk.mutate({ action: "accept", ids: selectedApps.map((a) => a.id) })
+                        }
+                        disabled={mBulk.isPending}
+                      >
+                        <Check size={14} />
+                        <span>Accept selected</span>
+                      </button>
+                      <button
+                        className={`${btnDanger} ${btnSmall}`}
+                        onClick={() => {
+                          setRejectDays(7);
+                          setRejecting(selectedApps);
+                        }}
+                        disabled={mBulk.isPending}
+                      >
+                        <XCircle size={14} />
+                        <span>Reject selected</span>
+                      </button>
+                    </>
+                  )}
+                  {mBulk.isError && <span className="text-sm text-red-400">Bulk update failed</span>}
+                  <label className={`${btnGhost} ${btnSmall} ml-auto cursor-pointer`}>
+                    <CreditCard size={14} />
+                    <span>{mVipps.isPending ? "Checking…" : "Check Vipps report"}</span>
+                    <input
+                      type="file"
+                      accept=".csv,.json,text/csv,application/json"
+                      className="hidden"
+                      disabled={mVipps.isPending}
+                      onChange={(e) => {
+                        const f = e.target.files?.[0];
+                        if (f) mVipps.mutate(f);
+                        e.target.value = "";
+                      }}
+                    />
+                  </label>
+                  {mVipps.data && (
+                    <span className="text-sm text-white/60">
+                      {mVipps.data.matched} matched, {mVipps.data.mismatched} wrong amount,{" "}
+                      {mVipps.data.missing} missing
+                    </span>
+                  )}
+                  {mVipps.isError && <span className="text-sm text-red-400">Could not read the Vipps report</span>}
+                </div>
+              )}
               {apps.map((a) => (
                 <div
                   key={a.id}
@@ -160,6 +319,13 @@ export default function AdminMembership() {
                   <div className="flex flex-col sm:flex-row sm:items-start justify-between gap-4">
                     <div className="min-w-0 flex-1">
                       <div className="flex items-center gap-2 flex-wrap">
+                        {a.status === "PENDING" && (
+                          <input
+                            type="checkbox"
+                            checked={selected.has(a.id)}
+                            onChange={() => toggle(a.id)}
+                          />
+                        )}
                         <span className="font-semibold">
                           {a.firstName} {a.lastName}
                         </span>
@@ -194,6 +360,14 @@ export default function AdminMembership() {
                         <span className="text-white/70">Vipps ref:</span>
                         <span className="font-semibold">{a.vippsReference ?? "—"}</span>
                         <span className="text-white/50">({a.vippsAmountNok ?? "—"} NOK)</span>
+                        {a.vippsCheck && (
+                          <span
+                            className={`px-2 py-0.5 rounded-full text-xs ${VIPPS_CHECK_STYLE[a.vippsCheck]}`}
+                            title={a.vippsCheckedAt ? `Checked ${fmtDate(a.vippsCheckedAt)}` : undefined}
+                          >
+                            {VIPPS_CHECK_LABEL[a.vippsCheck]}
+                          </span>
+                        )}
                       </div>
 
                       {a.status === "REJECTED" && a.deleteAt && (
@@ -218,7 +392,7 @@ export default function AdminMembership() {
                             className={`${btnDanger} ${btnSmall}`}
                             onClick={() => {
                               setRejectDays(7);
-                              setRejecting(a);
+                              setRejecting([a]);
                             }}
                             disabled={mReject.isPending}
                           >
@@ -264,10 +438,29 @@ export default function AdminMembership() {
             Members
             <span className="text-sm text-white/50 font-normal">({members.length})</span>
           </h2>
-          <button className={btnGhost} onClick={() => setEditing({})}>
-            <UserPlus size={16} />
-            <span>Add member</span>
-          </button>
+          <div className="flex flex-wrap items-center gap-2">
+            {mExport.isError && <span className="text-sm text-red-400">Export failed</span>}
+            <button
+              className={btnGhost}
+              onClick={() => mExport.mutate("csv")}
+              disabled={mExport.isPending}
+            >
+              <Download size={16} />
+              <span>CSV</span>
+            </button>
+            <button
+              className={btnGhost}
+              onClick={() => mExport.mutate("xlsx")}
+              disabled={mExport.isPending}
+            >
+              <Download size={16} />
+              <span>Excel</span>
+            </button>
+            <button className={btnGhost} onClick={() => setEditing({})}>
+              <UserPlus size={16} />
+              <span>Add member</span>
+            </button>
+          </div>
         </div>
 
         <div className="p-4">
@@ -385,12 +578,16 @@ export default function AdminMembership() {
 
       {rejecting && (
         <RejectModal
-          app={rejecting}
+          apps={rejecting}
           days={rejectDays}
           setDays={setRejectDays}
           onClose={() => setRejecting(null)}
           onConfirm={() => {
-            mReject.mutate({ id: rejecting.id, days: rejectDays });
+            if (rejecting.length === 1) {
+              mReject.mutate({ id: rejecting[0].id, days: rejectDays });
+            } else {
+              mBulk.mutate({ action: "reject", ids: rejecting.map((a) => a.id), days: rejectDays });
+            }
             setRejecting(null);
           }}
         />
@@ -461,13 +658,13 @@ function ViewField({ label, value }: { label: string; value?: string | number |
 
 /* ---------- Reject Modal ---------- */
 function RejectModal({
-  app,
+  apps,
   days,
   setDays,
   onClose,
   onConfirm,
 }: {
-  app: MembershipApplicationDTO;
+  apps: MembershipApplicationDTO[];
   days: number;
   setDays: (n: number) => void;
   onClose: () => void;
@@ -483,7 +680,9 @@ function RejectModal({
         onClick={(e) => e.stopPropagation()}
       >
         <div className="flex items-center justify-between p-5 border-b border-white/10">
-          <h3 className="text-xl font-bold">Reject Application</h3>
+          <h3 className="text-xl font-bold">
+            {apps.length === 1 ? "Reject Application" : `Reject ${apps.length} Applications`}
+          </h3>
           <button
             onClick={onClose}
             className="w-9 h-9 rounded-xl bg-white/5 hover:bg-white/10 border border-white/10 flex items-center justify-center transition"
@@ -493,17 +692,28 @@ function RejectModal({
         </div>
 
         <div className="p-5 space-y-4">
-          <div className="rounded-xl bg-white/5 border border-white/10 p-4">
-            <div className="font-semibold">
-              {app.firstName} {app.lastName}
+          {apps.length === 1 ? (
+            <div className="rounded-xl bg-white/5 border border-white/10 p-4">
+              <div className="font-semibold">
+                {apps[0].firstName} {apps[0].lastName}
+              </div>
+              <div className="text-sm text-white/70 mt-1">{apps[0].email}</div>
+              <div className="text-sm mt-2">
+                <span className="text-white/50">Vipps ref:</span>{" "}
+                <span className="font-semibold">{apps[0].vippsReference}</span>{" "}
+                <span className="text-white/50">({apps[0].vippsAmountNok} NOK)</span>
+              </div>
             </div>
-            <div className="text-sm text-white/70 mt-1">{app.email}</div>
-            <div className="text-sm mt-2">
-              <span className="text-white/50">Vipps ref:</span>{" "}
-              <span className="font-semibold">{app.vippsReference}</span>{" "}
-              <span className="text-white/50">({app.vippsAmountNok} NOK)</span>
+          ) : (
+            <div className="rounded-xl bg-white/5 border border-white/10 p-4 text-sm text-white/70 max-h-40 overflow-y-auto">
+              {apps.map((a) => (
+                <div key={a.id}>
+                  {a.firstName} {a.lastName}
+                  {a.email && <span className="text-white/50"> · {a.email}</span>}
+                </div>
+              ))}
             </div>
-          </div>
+          )}
 
           <label className="block space-y-1.5">
             <span className="text-sm text-white/70">Keep in rejected list for</span>
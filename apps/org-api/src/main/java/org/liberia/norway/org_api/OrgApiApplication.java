@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -13,6 +14,7 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 @SpringBootApplication
 @EntityScan(basePackages = "org.liberia.norway.org_api.model")
 @EnableJpaRepositories(basePackages = "org.liberia.norway.org_api.repository")
+@EnableScheduling
 public class OrgApiApplication {
     public static void main(String[] args) {
         SpringApplication.run(OrgApiApplication.class, args);
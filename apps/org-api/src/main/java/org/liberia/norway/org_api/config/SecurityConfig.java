@@ -56,7 +56,7 @@ SecurityFilterChain security(HttpSecurity http, @Lazy JwtAuthFilter jwt) throws
     // your public endpoints
     .requestMatchers("/uploads/**").permitAll()
     .requestMatchers("/api/auth/login").permitAll()
-    .requestMatchers(HttpMethod.GET, "/api/events/**").permitAll()
+    .requestMatchers(HttpMethod.GET, "/api/events/**", "/api/events.ics").permitAll()
     .requestMatchers(HttpMethod.POST, "/api/events").permitAll()
     .requestMatchers(HttpMethod.GET, "/api/suggestions/**").permitAll()
     .requestMatchers(HttpMethod.POST, "/api/suggestions").permitAll()
@@ -81,8 +81,9 @@ CorsConfigurationSource corsConfigurationSource() {
   var c = new CorsConfiguration();
   c.setAllowedOrigins(List.of("http://localhost:5173", "http://localhost:5175", "http://localhost:5174", "https://liberia-org-admin.vercel.app" , "https://liberia-org-public.vercel.app", "https://liberia-org.onrender.com/", "http://localhost:8080/", "https://www.ulancommunity.org"));
   c.setAllowedMethods(List.of("GET","POST","PUT","PATCH","DELETE","OPTIONS"));
-  c.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "Origin", "X-Requested-With"));
-  c.setExposedHeaders(List.of("Location", "Content-Disposition"));
+  c.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "Origin", "X-Requested-With", "If-None-Match", "Idempotency-Key"));
+  c.setExposedHeaders(List.of("Location", "Content-Disposition", "ETag", "Idempotent-Replayed", "Retry-After",
+        "RateLimit-Policy", "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset"));
   c.setAllowCredentials(false); // vi bruker Bearer-token, ikke cookies
   var s = new UrlBasedCorsConfigurationSource();
   s.registerCorsConfiguration("/**", c);
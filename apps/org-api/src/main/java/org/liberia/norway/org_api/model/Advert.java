@@ -6,21 +6,26 @@ import lombok.Setter;
 import lombok.ToString;
 
 import java.time.OffsetDateTime;
-import java.util.Locale;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
+import org.liberia.norway.org_api.util.SlugUtil;
 
 @Entity
 @Table(name = "adverts", indexes = {
         @Index(name = "idx_adverts_slug", columnList = "slug", unique = true),
         @Index(name = "idx_adverts_active", columnList = "active")
 })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "advert")
 @Getter @Setter @ToString
 public class Advert {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "adverts_seq")
+    @SequenceGenerator(name = "adverts_seq", sequenceName = "adverts_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 120, unique = true)
@@ -59,6 +64,14 @@ public class Advert {
     @Column(nullable = false)
     private boolean active = false;
 
+    // Relativ vekt i rotasjonen for plasseringen (1–1000)
+    @Column(nullable = false)
+    private int weight = 1;
+
+    // Maks visninger per besøkende per dag via /api/adverts/serve; null = ingen grense
+    @Column(name = "frequency_cap")
+    private Integer frequencyCap;
+
     private OffsetDateTime startAt; // valgfritt tidsvindu
     private OffsetDateTime endAt;
 
@@ -79,7 +92,7 @@ public class Advert {
         this.updatedAt = now;
 
         if (this.slug == null || this.slug.isBlank()) {
-            this.slug = slugify(this.title);
+            this.slug = SlugUtil.slugify(this.title);
         }
     }
 
@@ -87,15 +100,7 @@ public class Advert {
     void onUpdate() {
         this.updatedAt = OffsetDateTime.now();
         if (this.slug == null || this.slug.isBlank()) {
-            this.slug = slugify(this.title);
+            this.slug = SlugUtil.slugify(this.title);
         }
     }
-
-    private static String slugify(String input) {
-        if (input == null) return null;
-        String s = input.toLowerCase(Locale.ROOT)
-                .replaceAll("[^a-z0-9]+", "-")
-                .replaceAll("(^-|-$)", "");
-        return s.isBlank() ? null : s;
-    }
 }
@@ -8,12 +8,17 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.LazyGroup;
 import org.hibernate.type.SqlTypes;
 import org.liberia.norway.org_api.service.FileStorageService.StoredFile;
 
 @Entity
 @Table(name = "albums")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "album")
 @Getter @Setter
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,7 +28,8 @@ public class Album {
     public enum MediaType { IMAGE, VIDEO }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "albums_seq")
+    @SequenceGenerator(name = "albums_seq", sequenceName = "albums_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 128)
@@ -34,6 +40,7 @@ public class Album {
 
     
     @Basic(fetch = FetchType.LAZY)   // valgfritt, fint for store tekster
+    @LazyGroup("text")
     @Column(columnDefinition = "text")
     @JdbcTypeCode(SqlTypes.LONGVARCHAR)
     private String description;
@@ -50,7 +57,8 @@ public class Album {
 
     /** Mediaelementene som tilhører albumet. */
     @OneToMany(mappedBy = "album", cascade = CascadeType.ALL, orphanRemoval = true)
-    @OrderBy("createdAt ASC")
+    @OrderBy("sortKey ASC, createdAt ASC")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "album-items")
     private List<MediaItem> items = new ArrayList<>();
 
     @PrePersist
@@ -70,7 +78,7 @@ public class Album {
         items.add(it);
         it.setAlbum(this);
         // sørg for deterministisk rekkefølge
-        items.sort(Comparator.comparing(MediaItem::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())));
+        items.sort(Comparator.comparingLong(MediaItem::getSortKey));
     }
 
     public void removeItem(MediaItem it) {
@@ -82,6 +90,8 @@ public class Album {
 
     @Entity
     @Table(name = "album_items")
+    @Cacheable
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "album-item")
     @Getter @Setter
     @NoArgsConstructor
     @AllArgsConstructor
@@ -89,7 +99,8 @@ public class Album {
     public static class MediaItem {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "album_items_seq")
+        @SequenceGenerator(name = "album_items_seq", sequenceName = "album_items_seq", allocationSize = 50)
         private Long id;
 
         /** Tilbakepeker til albumet. */
@@ -129,7 +140,13 @@ public class Album {
 
         @Column(name = "created_at", updatable = false)
         private Instant createdAt;
-        
+
+        /** Glissen sorteringsnøkkel (steg på {@link #SORT_KEY_STEP}); lavest vises først. */
+        @Column(name = "sort_key", nullable = false)
+        private long sortKey;
+
+        public static final long SORT_KEY_STEP = 1024;
+
         @Enumerated(EnumType.STRING)
         @Column(name = "media_type", nullable = false)
         private MediaType mediaType;
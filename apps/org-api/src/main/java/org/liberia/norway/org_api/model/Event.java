@@ -11,9 +11,12 @@ import lombok.Setter;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.DynamicInsert;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.LazyGroup;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.type.SqlTypes;
 
@@ -21,13 +24,17 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
 @Table(name = "events")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "event")
 @Getter @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @DynamicInsert
 public class Event {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "events_seq")
+    @SequenceGenerator(name = "events_seq", sequenceName = "events_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable=false, length=200)
@@ -39,6 +46,9 @@ public class Event {
     @Column(length=500)
     private String summary;
 
+    // Lastes først ved behov (krever bytekode-forbedring); lister henter den ikke
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
     @Column(columnDefinition = "text")
     @JdbcTypeCode(SqlTypes.LONGVARCHAR)
     private String description;
@@ -12,12 +12,15 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "members")
 public class Member {
-  @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "members_seq")
+  @SequenceGenerator(name = "members_seq", sequenceName = "members_seq", allocationSize = 50)
   private Long id;
 
   @Column(length = 120) private String firstName;
@@ -42,6 +45,12 @@ public class Member {
   @Enumerated(EnumType.STRING)
   @Column(nullable = false, length = 16)
   private Status status = Status.PENDING;
+  // Resultat av siste avstemming mot Vipps-oppgjørsrapporten (VippsReconciliation); null = ikke avstemt
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16)
+  private VippsCheck vippsCheck;
+  private Long vippsReportedOre;
+  private Instant vippsCheckedAt;
   @PrePersist @PreUpdate void touch() { this.updatedAt = Instant.now(); }
 
   // vippsReference
@@ -113,6 +122,15 @@ public void setDeleteAt(java.time.Instant deleteAt) {
   this.deleteAt = deleteAt;
 }
   
+  public VippsCheck getVippsCheck() { return vippsCheck; }
+  public void setVippsCheck(VippsCheck vippsCheck) { this.vippsCheck = vippsCheck; }
+  public Long getVippsReportedOre() { return vippsReportedOre; }
+  public void setVippsReportedOre(Long vippsReportedOre) { this.vippsReportedOre = vippsReportedOre; }
+  public Instant getVippsCheckedAt() { return vippsCheckedAt; }
+  public void setVippsCheckedAt(Instant vippsCheckedAt) { this.vippsCheckedAt = vippsCheckedAt; }
+
+  public enum VippsCheck { MATCHED, MISMATCH, MISSING }
+
      public enum Status {
     PENDING,
     ACCEPTED,
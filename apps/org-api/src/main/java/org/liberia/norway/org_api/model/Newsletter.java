@@ -0,0 +1,54 @@
+package org.liberia.norway.org_api.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.OffsetDateTime;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+@Entity
+@Table(name = "newsletters")
+@Getter
+@Setter
+@ToString
+public class Newsletter {
+
+    public enum Status { DRAFT, QUEUING, QUEUED, CANCELLED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "newsletters_seq")
+    @SequenceGenerator(name = "newsletters_seq", sequenceName = "newsletters_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 300)
+    private String subject;
+
+    // Mal med plassholdere, se NewsletterService.VARIABLES
+    @ToString.Exclude
+    @Column(columnDefinition = "text", nullable = false)
+    @JdbcTypeCode(SqlTypes.LONGVARCHAR)
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.DRAFT;
+
+    // Høyeste medlems-id som er lagt i køen; utleggingen fortsetter herfra etter omstart
+    @Column(name = "last_member_id", nullable = false)
+    private long lastMemberId;
+
+    @Column(nullable = false)
+    private int recipients;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(nullable = false)
+    private OffsetDateTime updatedAt;
+
+    private OffsetDateTime queuedAt;
+}
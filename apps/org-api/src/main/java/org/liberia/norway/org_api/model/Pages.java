@@ -7,7 +7,10 @@ import lombok.ToString;
 
 import java.time.OffsetDateTime;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.LazyGroup;
 import org.hibernate.type.SqlTypes;
 
 @Entity
@@ -15,13 +18,16 @@ import org.hibernate.type.SqlTypes;
         @Index(name = "idx_pages_slug", columnList = "slug", unique = true),
         @Index(name = "idx_pages_published", columnList = "published")
 })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "page")
 @Getter
 @Setter
 @ToString
 public class Pages {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pages_seq")
+    @SequenceGenerator(name = "pages_seq", sequenceName = "pages_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 120, unique = true)
@@ -30,10 +36,26 @@ public class Pages {
     @Column(nullable = false, length = 200)
     private String title;
 
+    // Lastes først ved behov (krever bytekode-forbedring); lister henter den ikke
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
+    @ToString.Exclude
     @Column(columnDefinition = "text", nullable = false)
     @JdbcTypeCode(SqlTypes.LONGVARCHAR)
     private String body;
 
+    // HTML rendret fra body ved lagring; samme lazy-gruppe, så de hentes sammen
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("text")
+    @ToString.Exclude
+    @Column(name = "body_html", columnDefinition = "text")
+    @JdbcTypeCode(SqlTypes.LONGVARCHAR)
+    private String bodyHtml;
+
+    // SHA-256 av body som bodyHtml ble rendret fra
+    @Column(name = "body_hash", length = 64)
+    private String bodyHash;
+
     @Column(nullable = false)
     private boolean published = false;
 
@@ -12,7 +12,8 @@ import org.hibernate.type.SqlTypes;
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Suggestion {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // matches bigserial
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "suggestions_seq")
+    @SequenceGenerator(name = "suggestions_seq", sequenceName = "suggestions_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 200)
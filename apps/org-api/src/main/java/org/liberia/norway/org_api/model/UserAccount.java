@@ -7,7 +7,8 @@ import java.time.OffsetDateTime;
 @Entity @Table(name="users")
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 public class UserAccount {
-  @Id @GeneratedValue(strategy=GenerationType.IDENTITY)
+  @Id @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="users_seq")
+  @SequenceGenerator(name="users_seq", sequenceName="users_seq", allocationSize=50)
   private Long id;
 
   @Column(nullable=false, unique=true, length=100) private String username;
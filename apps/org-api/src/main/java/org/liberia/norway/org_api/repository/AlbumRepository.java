@@ -1,12 +1,18 @@
 package org.liberia.norway.org_api.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.QueryHint;
+
 import org.liberia.norway.org_api.model.Album;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface AlbumRepository extends JpaRepository<Album, Long> {
@@ -27,12 +33,66 @@ public interface AlbumRepository extends JpaRepository<Album, Long> {
     )
     Page<Album> findPublished(Pageable pageable);
 
-    // Ett publisert album på slug
-    @Query(value = "SELECT * FROM albums WHERE slug = :slug AND is_published = true LIMIT 1", nativeQuery = true)
+    // Ett publisert album på slug (JPQL, slik at query cache invalideres når albums endres)
+    @Query("select a from Album a where a.slug = :slug and a.published = true")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Album> findPublishedBySlug(@Param("slug") String slug);
     Optional<Album> findById(Long id);
     
     boolean existsBySlug(String slug);
 
+    // Fetch-planer per use case (open-in-view er av, så samlingen hentes eksplisitt)
+    @EntityGraph(attributePaths = {"items", "description"})
+    @Query("select a from Album a where a.slug = :slug and a.published = true")
+    Optional<Album> findPublishedWithItemsBySlug(@Param("slug") String slug);
+
+    @EntityGraph(attributePaths = "items")
+    @Query("select a from Album a where a.id = :id")
+    Optional<Album> findWithItemsById(@Param("id") Long id);
+
+    // Admin-kortene viser beskrivelsen; hent lazy-kolonnen i samme SELECT (ikke én per album)
+    @EntityGraph(attributePaths = "description")
+    @Query(value = "select a from Album a", countQuery = "select count(a) from Album a")
+    Page<Album> findAllWithDescription(Pageable pageable);
+
+    // Antall elementer per album uten å laste samlingene
+    @Query("""
+           select a.id as albumId, count(i) as itemsCount
+           from Album a join a.items i
+           where a.id in :ids
+           group by a.id
+           """)
+    List<AlbumItemCount> countItemsByAlbumIds(@Param("ids") Collection<Long> ids);
+
+    interface AlbumItemCount {
+        Long getAlbumId();
+        Long getItemsCount();
+    }
+
+    // Versjonsstempler for ETag (én aggregat-spørring, ingen entiteter lastes)
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(a), sum(a.id), max(a.updatedAt))
+           from Album a
+           where a.published = true
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion publishedVersion();
+
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(a), sum(a.id), max(a.updatedAt))
+           from Album a
+           where a.slug = :slug and a.published = true
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion publishedVersionBySlug(@Param("slug") String slug);
+
+    // Elementer endrer ikke albumets updated_at, så de stemples for seg
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(i), sum(i.id), max(i.createdAt))
+           from Album a join a.items i
+           where a.slug = :slug and a.published = true
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion publishedItemsVersionBySlug(@Param("slug") String slug);
 }
 
@@ -0,0 +1,19 @@
+package org.liberia.norway.org_api.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Feltene kalenderfeeden trenger, hentet med JPQL "select new" slik at description
+ * kommer med i samme SELECT (på entiteten er den lazy).
+ */
+public record CalendarEntry(
+        Long id,
+        String slug,
+        String title,
+        String summary,
+        String description,
+        String location,
+        OffsetDateTime startAt,
+        OffsetDateTime endAt,
+        OffsetDateTime updatedAt
+) {}
@@ -0,0 +1,39 @@
+package org.liberia.norway.org_api.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * Billig versjonsstempel for en samling rader: antall, sum av id-er og siste endring.
+ * Hentes med én aggregat-spørring, slik at If-None-Match kan besvares uten å laste entiteter.
+ */
+public record ContentVersion(Long count, Long idSum, Instant lastModified) {
+
+    public static final ContentVersion EMPTY = new ContentVersion(0L, 0L, (Instant) null);
+
+    public ContentVersion {
+        count = count == null ? 0L : count;
+        idSum = idSum == null ? 0L : idSum;
+    }
+
+    // Brukes av JPQL "select new" for entiteter med OffsetDateTime-kolonner
+    public ContentVersion(Long count, Long idSum, OffsetDateTime lastModified) {
+        this(count, idSum, lastModified == null ? null : lastModified.toInstant());
+    }
+
+    /** Slår sammen to stempler, f.eks. album + album-elementer. */
+    public ContentVersion and(ContentVersion other) {
+        if (other == null) return this;
+        Instant latest = lastModified;
+        if (latest == null || (other.lastModified != null && other.lastModified.isAfter(latest))) {
+            latest = other.lastModified;
+        }
+        return new ContentVersion(count + other.count, idSum + other.idSum, latest);
+    }
+
+    /** Sterk ETag-verdi (uten anførselstegn) med et prefiks per ressurs. */
+    public String etag(String prefix) {
+        long millis = lastModified == null ? 0L : lastModified.toEpochMilli();
+        return prefix + "-" + count + "-" + idSum + "-" + millis;
+    }
+}
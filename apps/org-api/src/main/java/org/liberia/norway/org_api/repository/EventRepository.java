@@ -1,25 +1,60 @@
 package org.liberia.norway.org_api.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.liberia.norway.org_api.model.Event;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 import java.time.OffsetDateTime;
-import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface EventRepository extends JpaRepository<Event, Long> {
 
-    List<Event> findByIsPublishedTrueOrderByStartAtAsc();
+    // Neste publiserte arrangement: LIMIT 1 over den sammensatte indeksen idx_events_published_start_id
+    Optional<Event> findFirstByIsPublishedTrueAndStartAtGreaterThanOrderByStartAtAsc(OffsetDateTime now);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Optional<Event> findBySlug(String slug);
+    boolean existsBySlug(String slug);
 
+    // Kalenderfeed: strømmes rad for rad (fetch size), listen bygges aldri opp i minnet
     @Query("""
-           select e from Event e
-           where e.isPublished = true and e.startAt >= :now
-           order by e.startAt asc
+           select new org.liberia.norway.org_api.repository.CalendarEntry(
+               e.id, e.slug, e.title, e.summary, e.description, e.location, e.startAt, e.endAt, e.updatedAt)
+           from Event e
+           where e.isPublished = true
+           order by e.startAt, e.id
            """)
-    List<Event> findUpcoming(OffsetDateTime now);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    Stream<CalendarEntry> streamCalendarEntries();
 
-    Optional<Event> findBySlug(String slug);
-    boolean existsBySlug(String slug);
-    
+    @Query("""
+           select new org.liberia.norway.org_api.repository.CalendarEntry(
+               e.id, e.slug, e.title, e.summary, e.description, e.location, e.startAt, e.endAt, e.updatedAt)
+           from Event e
+           where e.isPublished = true and e.slug = :slug
+           """)
+    Optional<CalendarEntry> findCalendarEntry(@Param("slug") String slug);
+
+    // Versjonsstempler for ETag (én aggregat-spørring, ingen entiteter lastes)
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(e), sum(e.id), max(e.updatedAt))
+           from Event e
+           where e.isPublished = true
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion publishedVersion();
+
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(e), sum(e.id), max(e.updatedAt))
+           from Event e
+           where e.slug = :slug
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion versionBySlug(@Param("slug") String slug);
 }
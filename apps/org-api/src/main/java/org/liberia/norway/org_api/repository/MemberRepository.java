@@ -1,10 +1,11 @@
 package org.liberia.norway.org_api.repository;
 
-import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import org.liberia.norway.org_api.model.Member;
 import org.liberia.norway.org_api.model.Member.Status;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -12,15 +13,27 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
-  boolean existsByEmailIgnoreCase(String email);
-  boolean existsByEmailIgnoreCaseAndStatus(String email, Status status);
+  // E-postoppslagene skrives som lower(email) = lower(:email) så de treffer funksjonsindeksen
+  // ix_members_lower_email; avledet IgnoreCase gir upper(...) og en sekvensiell skanning.
+  @Query("select count(m) > 0 from Member m where lower(m.email) = lower(:email)")
+  boolean existsByEmailIgnoreCase(@Param("email") String email);
+
+  @Query("select count(m) > 0 from Member m where lower(m.email) = lower(:email) and m.status = :status")
+  boolean existsByEmailIgnoreCaseAndStatus(@Param("email") String email, @Param("status") Status status);
+
+  /** Statusene til alle søknader/medlemskap med denne e-posten, med ett indeksoppslag. */
+  @Query("select distinct m.status from Member m where lower(m.email) = lower(:email)")
+  List<Status> findStatusesByEmailIgnoreCase(@Param("email") String email);
 
   Page<Member> findAllByOrderByCreatedAtDesc(Pageable pageable);
   Page<Member> findAllByStatusOrderByCreatedAtDesc(Status status, Pageable pageable);
 
-  long deleteByStatusAndDeleteAtBefore(Status status, Instant now);
-
- boolean existsByEmailIgnoreCaseAndStatusAndIdNot(String email, Member.Status status, Long id);
+  @Query("""
+    select count(m) > 0 from Member m
+    where lower(m.email) = lower(:email) and m.status = :status and m.id <> :id
+  """)
+  boolean existsByEmailIgnoreCaseAndStatusAndIdNot(@Param("email") String email, @Param("status") Member.Status status,
+                                                   @Param("id") Long id);
 
   @Query("""
     select m
@@ -28,10 +41,10 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     where m.status = :status
   """)
   Page<Member> findMembers(@Param("status") Status status, Pageable pageable);
- void deleteAllByStatusAndDeleteAtBefore(Member.Status status, Instant now);
 
 
-   Optional<Member> findByEmailIgnoreCase(String email);
+  @Query("select m from Member m where lower(m.email) = lower(:email)")
+  Optional<Member> findByEmailIgnoreCase(@Param("email") String email);
 
    Page<Member> findByStatus(Status status, Pageable pageable);
 
@@ -55,4 +68,23 @@ Page<Member> findAccepted(Pageable pageable);
   boolean existsByEmailAndStatus(String email, Status status);
 
   boolean existsByEmailAndStatusAndIdNot(String email, Status status, Long id);
+
+  // Samme regel som den unike indeksen ux_members_vipps_reference
+  @Query("""
+    select count(m) > 0 from Member m
+    where upper(trim(m.vippsReference)) = upper(trim(:ref))
+      and m.status <> org.liberia.norway.org_api.model.Member.Status.REJECTED
+  """)
+  boolean vippsReferenceInUse(@Param("ref") String ref);
+
+  // Mottakere av nyhetsbrev, side for side med id som markør (ingen OFFSET, bare feltene som trengs)
+  @Query("""
+    select new org.liberia.norway.org_api.repository.NewsletterRecipient(m.id, m.firstName, m.lastName, m.email)
+    from Member m
+    where m.status = org.liberia.norway.org_api.model.Member.Status.ACCEPTED
+      and m.email is not null
+      and m.id > :afterId
+    order by m.id
+  """)
+  List<NewsletterRecipient> findNewsletterRecipients(@Param("afterId") long afterId, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package org.liberia.norway.org_api.repository;
+
+/**
+ * Det et nyhetsbrev trenger om ett medlem, hentet med JPQL "select new" i stedet for hele entiteten.
+ */
+public record NewsletterRecipient(Long memberId, String firstName, String lastName, String email) {}
@@ -0,0 +1,27 @@
+package org.liberia.norway.org_api.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.liberia.norway.org_api.model.Newsletter;
+import org.liberia.norway.org_api.model.Newsletter.Status;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+
+public interface NewsletterRepository extends JpaRepository<Newsletter, Long> {
+
+    Page<Newsletter> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    List<Newsletter> findByStatus(Status status);
+
+    // Radlås under utlegging: to samtidige kjøringer for samme nyhetsbrev går etter tur
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Newsletter n where n.id = :id")
+    Optional<Newsletter> lockById(@Param("id") Long id);
+}
@@ -3,15 +3,45 @@ package org.liberia.norway.org_api.repository;
 import org.liberia.norway.org_api.model.Pages;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import jakarta.persistence.QueryHint;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface PageRepository extends JpaRepository<Pages, Long> {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Pages> findBySlug(String slug);
 
     boolean existsBySlug(String slug);
 
     Page<Pages> findByPublishedTrue(Pageable pageable);
+
+    // Admin-listen viser body; hent den lazy kolonnen i samme SELECT i stedet for én per side
+    @EntityGraph(attributePaths = "body")
+    @Query(value = "select p from Pages p", countQuery = "select count(p) from Pages p")
+    Page<Pages> findAllWithBody(Pageable pageable);
+
+    // Grunnlaget for PublishedPages: alle publiserte sider med tekst og HTML i én SELECT
+    @EntityGraph(attributePaths = {"body", "bodyHtml"})
+    @Query("select p from Pages p where p.published = true")
+    List<Pages> findPublishedWithHtml();
+
+    // Sider som ikke er rendret ennå (fra før body_html fantes)
+    @EntityGraph(attributePaths = "body")
+    List<Pages> findByBodyHashIsNull();
+
+    // Versjonsstempler for ETag (én aggregat-spørring, ingen entiteter lastes)
+    @Query("""
+           select new org.liberia.norway.org_api.repository.ContentVersion(count(p), sum(p.id), max(p.updatedAt))
+           from Pages p
+           where p.published = true
+           """)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    ContentVersion publishedVersion();
 }
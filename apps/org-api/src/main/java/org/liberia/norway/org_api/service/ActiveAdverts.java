@@ -0,0 +1,203 @@
+package org.liberia.norway.org_api.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Predicate;
+import java.util.random.RandomGenerator;
+
+import org.liberia.norway.org_api.model.Advert;
+import org.liberia.norway.org_api.model.Advert.Placement;
+import org.liberia.norway.org_api.repository.AdvertRepository;
+import org.liberia.norway.org_api.repository.ContentVersion;
+import org.liberia.norway.org_api.util.AliasSampler;
+import org.liberia.norway.org_api.web.dto.AdvertDto;
+import org.liberia.norway.org_api.web.dto.AdvertMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Uforanderlig øyeblikksbilde av annonsene som er synlige akkurat nå, gruppert på plassering.
+ * Lesing er et volatile-oppslag uten låser eller databasekall. Bildet bygges på nytt når admin
+ * endrer en annonse, og ellers nøyaktig ved neste startAt/endAt-grense. Feiler oppslaget,
+ * beholdes forrige bilde og det prøves igjen med økende pause.
+ */
+@Slf4j
+@Service
+public class ActiveAdverts {
+
+    /** Synlige annonser, nyeste først, med ferdig utregnet ETag-stempel og rotasjonstabell per plassering. */
+    public record Snapshot(List<AdvertDto> all,
+                           Map<Placement, List<AdvertDto>> byPlacement,
+                           Map<String, AdvertDto> bySlug,
+                           ContentVersion version,
+                           Map<Placement, ContentVersion> versionByPlacement,
+                           Map<Placement, Rotation> rotations) {
+
+        static final Snapshot EMPTY = new Snapshot(List.of(), Map.of(), Map.of(), ContentVersion.EMPTY, Map.of(), Map.of());
+
+        public Rotation rotation(Placement placement) {
+            return rotations.get(placement);
+        }
+
+        public List<AdvertDto> list(Placement placement) {
+            return placement == null ? all : byPlacement.getOrDefault(placement, List.of());
+        }
+
+        public ContentVersion version(Placement placement) {
+            return placement == null ? version : versionByPlacement.getOrDefault(placement, ContentVersion.EMPTY);
+        }
+    }
+
+    /** Vektet utvalg blant annonsene på én plassering; alias-tabellen bygges sammen med øyeblikksbildet. */
+    public record Rotation(List<AdvertDto> adverts, AliasSampler sampler) {
+
+        // Antall trekk før vi gir opp å treffe en annonse som ikke har nådd taket
+        private static final int MAX_REJECTIONS = 8;
+
+        static Rotation of(List<AdvertDto> adverts) {
+            int[] weights = new int[adverts.size()];
+            for (int i = 0; i < weights.length; i++) weights[i] = Math.max(1, adverts.get(i).weight());
+            return new Rotation(adverts, new AliasSampler(weights));
+        }
+
+        /** Trekker etter vekt blant annonsene {@code allowed} godtar; null hvis ingen er tillatt. */
+        public AdvertDto pick(RandomGenerator random, Predicate<AdvertDto> allowed) {
+            for (int i = 0; i < MAX_REJECTIONS; i++) {
+                var a = adverts.get(sampler.next(random));
+                if (allowed.test(a)) return a;
+            }
+            // de fleste er avvist (frekvenstak): vektet lineært valg blant resten
+            long total = 0;
+            for (var a : adverts) if (allowed.test(a)) total += Math.max(1, a.weight());
+            if (total == 0) return null;
+            long r = random.nextLong(total);
+            for (var a : adverts) {
+                if (!allowed.test(a)) continue;
+                r -= Math.max(1, a.weight());
+                if (r < 0) return a;
+            }
+            return null;
+        }
+    }
+
+    private final AdvertRepository adverts;
+    private final TaskScheduler scheduler;
+    private final TransactionTemplate readOnlyTx;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private ScheduledFuture<?> wakeUp; // beskyttet av synchronized refresh()
+    private int failures;              // likeså
+
+    public ActiveAdverts(AdvertRepository adverts, TaskScheduler scheduler, PlatformTransactionManager txManager) {
+        this.adverts = adverts;
+        this.scheduler = scheduler;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    public Snapshot get() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAdvertsChanged(AdvertsChanged e) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        var now = OffsetDateTime.now();
+        List<Advert> candidates;
+        try {
+            candidates = readOnlyTx.execute(s -> adverts.findActiveNotExpired(now));
+        } catch (RuntimeException e) {
+            Duration delay = retryDelay(failures++);
+            log.warn("Kunne ikke oppdatere annonsene, prøver igjen om {} s: {}", delay.toSeconds(), e.getMessage());
+            schedule(Instant.now().plus(delay));
+            return;
+        }
+        failures = 0;
+
+        var visible = new ArrayList<AdvertDto>();
+        Instant nextBoundary = null;
+        for (Advert a : candidates) {
+            boolean started = a.getStartAt() == null || !a.getStartAt().isAfter(now);
+            if (started) {
+                visible.add(AdvertMapper.toDto(a));
+                // endAt er inklusiv, så annonsen forsvinner første millisekund etter
+                if (a.getEndAt() != null) nextBoundary = earliest(nextBoundary, a.getEndAt().toInstant().plusMillis(1));
+            } else {
+                nextBoundary = earliest(nextBoundary, a.getStartAt().toInstant());
+            }
+        }
+        snapshot = build(visible);
+
+        schedule(nextBoundary);
+        log.debug("Annonser: {} synlige, neste grense {}", visible.size(), nextBoundary);
+    }
+
+    private void schedule(Instant at) {
+        if (wakeUp != null) wakeUp.cancel(false);
+        wakeUp = at == null ? null : scheduler.schedule(this::refresh, at);
+    }
+
+    // 1, 2, 4 ... sekunder, høyst fem minutter
+    private static Duration retryDelay(int failures) {
+        return Duration.ofSeconds(Math.min(300, 1L << Math.min(failures, 9)));
+    }
+
+    private static Snapshot build(List<AdvertDto> visible) {
+        var grouped = new EnumMap<Placement, List<AdvertDto>>(Placement.class);
+        var bySlug = new HashMap<String, AdvertDto>();
+        for (AdvertDto a : visible) {
+            grouped.computeIfAbsent(Placement.valueOf(a.placement()), p -> new ArrayList<>()).add(a);
+            bySlug.put(a.slug(), a);
+        }
+
+        var byPlacement = new EnumMap<Placement, List<AdvertDto>>(Placement.class);
+        var versions = new EnumMap<Placement, ContentVersion>(Placement.class);
+        var rotations = new EnumMap<Placement, Rotation>(Placement.class);
+        grouped.forEach((p, list) -> {
+            var copy = List.copyOf(list);
+            byPlacement.put(p, copy);
+            versions.put(p, versionOf(copy));
+            rotations.put(p, Rotation.of(copy));
+        });
+        return new Snapshot(List.copyOf(visible), Map.copyOf(byPlacement), Map.copyOf(bySlug),
+                versionOf(visible), Map.copyOf(versions), Map.copyOf(rotations));
+    }
+
+    private static ContentVersion versionOf(List<AdvertDto> list) {
+        long idSum = 0;
+        Instant latest = null;
+        for (AdvertDto a : list) {
+            idSum += a.id();
+            if (a.updatedAt() == null) continue;
+            var updated = a.updatedAt().toInstant();
+            if (latest == null || updated.isAfter(latest)) latest = updated;
+        }
+        return new ContentVersion((long) list.size(), idSum, latest);
+    }
+
+    private static Instant earliest(Instant a, Instant b) {
+        return a == null || b.isBefore(a) ? b : a;
+    }
+}
@@ -0,0 +1,194 @@
+package org.liberia.norway.org_api.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Teller visninger og klikk per annonse og time i minnet og skriver dem samlet til advert_stats.
+ * En visning er bare en {@link LongAdder#increment()}; databasen får én upsert per flush,
+ * uansett trafikk. Rapportene henger derfor etter med opptil ett flush-intervall.
+ */
+@Slf4j
+@Service
+public class AdvertStats {
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+
+    @Autowired
+    public AdvertStats(JdbcTemplate jdbc) {
+        this(jdbc, Clock.systemUTC());
+    }
+
+    AdvertStats(JdbcTemplate jdbc, Clock clock) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+    }
+
+    private record Key(long advertId, long hourEpochSecond) {}
+
+    /** Tellere for én (annonse, time). {@code flushed*} er det som allerede er skrevet til databasen. */
+    private static final class Counters {
+        final LongAdder impressions = new LongAdder();
+        final LongAdder clicks = new LongAdder();
+        long flushedImpressions; // kun lest/skrevet i synchronized flush()
+        long flushedClicks;
+    }
+
+    private record Delta(Key key, Counters counters, long impressions, long clicks) {}
+
+    public record AdvertTotals(long advertId, String slug, String title, long impressions, long clicks,
+                               double clickThroughRate) {
+        static AdvertTotals of(long advertId, String slug, String title, long impressions, long clicks) {
+            return new AdvertTotals(advertId, slug, title, impressions, clicks,
+                    impressions == 0 ? 0 : (double) clicks / impressions);
+        }
+    }
+
+    public record HourlyRow(@JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ssXXX") OffsetDateTime hour,
+                            long impressions, long clicks) {}
+
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+
+    public void recordImpression(long advertId) {
+        countersFor(advertId).impressions.increment();
+    }
+
+    public void recordClick(long advertId) {
+        countersFor(advertId).clicks.increment();
+    }
+
+    private Counters countersFor(long advertId) {
+        long hour = clock.instant().truncatedTo(ChronoUnit.HOURS).getEpochSecond();
+        return counters.computeIfAbsent(new Key(advertId, hour), k -> new Counters());
+    }
+
+    /**
+     * Skriver differansen siden forrige flush. Tellerne nullstilles aldri (det ville miste økninger
+     * som skjer samtidig); i stedet huskes hva som er skrevet, og gamle timer fjernes når de er ferdig skrevet.
+     */
+    @Scheduled(fixedDelayString = "${app.adverts.stats-flush-ms:60000}")
+    public synchronized void flush() {
+        var deltas = new ArrayList<Delta>();
+        counters.forEach((key, c) -> {
+            long impressions = c.impressions.sum() - c.flushedImpressions;
+            long clicks = c.clicks.sum() - c.flushedClicks;
+            if (impressions > 0 || clicks > 0) deltas.add(new Delta(key, c, impressions, clicks));
+        });
+
+        if (!deltas.isEmpty()) {
+            try {
+                upsert(deltas);
+            } catch (RuntimeException e) {
+                // ingenting er markert som skrevet, så neste flush prøver de samme tallene igjen
+                log.warn("Kunne ikke skrive annonsestatistikk ({} rader): {}", deltas.size(), e.getMessage());
+                return;
+            }
+            for (Delta d : deltas) {
+                d.counters().flushedImpressions += d.impressions();
+                d.counters().flushedClicks += d.clicks();
+            }
+        }
+
+        // en tråd som leste klokka rett før timeskiftet kan fortsatt telle på forrige time, så behold den
+        long cutoff = clock.instant().truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS).getEpochSecond();
+        counters.entrySet().removeIf(e -> e.getKey().hourEpochSecond() < cutoff
+                && e.getValue().impressions.sum() == e.getValue().flushedImpressions
+                && e.getValue().clicks.sum() == e.getValue().flushedClicks);
+    }
+
+    /** Antall (annonse, time) som holdes i minnet. */
+    int pending() {
+        return counters.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Én setning for hele flushen: arrays pakkes ut med unnest, slettede annonser filtreres bort av join
+    private void upsert(List<Delta> deltas) {
+        int n = deltas.size();
+        Long[] ids = new Long[n];
+        Timestamp[] hours = new Timestamp[n];
+        Long[] impressions = new Long[n];
+        Long[] clicks = new Long[n];
+        for (int i = 0; i < n; i++) {
+            var d = deltas.get(i);
+            ids[i] = d.key().advertId();
+            hours[i] = Timestamp.from(Instant.ofEpochSecond(d.key().hourEpochSecond()));
+            impressions[i] = d.impressions();
+            clicks[i] = d.clicks();
+        }
+
+        jdbc.execute((ConnectionCallback<Integer>) con -> {
+            try (var ps = con.prepareStatement("""
+                    insert into advert_stats (advert_id, hour, impressions, clicks)
+                    select s.advert_id, s.hour, s.impressions, s.clicks
+                    from unnest(?, ?, ?, ?) as s(advert_id, hour, impressions, clicks)
+                    join adverts a on a.id = s.advert_id
+                    on conflict (advert_id, hour) do update
+                      set impressions = advert_stats.impressions + excluded.impressions,
+                          clicks      = advert_stats.clicks + excluded.clicks
+                    """)) {
+                ps.setArray(1, con.createArrayOf("bigint", ids));
+                ps.setArray(2, con.createArrayOf("timestamptz", hours));
+                ps.setArray(3, con.createArrayOf("bigint", impressions));
+                ps.setArray(4, con.createArrayOf("bigint", clicks));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /* -------------------- Rapporter -------------------- */
+
+    /** Summer per annonse i [from, to), mest viste først. */
+    public List<AdvertTotals> totals(OffsetDateTime from, OffsetDateTime to) {
+        return jdbc.query("""
+                select a.id, a.slug, a.title,
+                       coalesce(sum(s.impressions), 0) as impressions,
+                       coalesce(sum(s.clicks), 0) as clicks
+                from adverts a
+                left join advert_stats s on s.advert_id = a.id and s.hour >= ? and s.hour < ?
+                group by a.id, a.slug, a.title
+                order by impressions desc, a.id
+                """,
+                (rs, i) -> AdvertTotals.of(rs.getLong("id"), rs.getString("slug"), rs.getString("title"),
+                        rs.getLong("impressions"), rs.getLong("clicks")),
+                from, to);
+    }
+
+    /** Timeserie for én annonse i [from, to). */
+    public List<HourlyRow> hourly(long advertId, OffsetDateTime from, OffsetDateTime to) {
+        return jdbc.query("""
+                select hour, impressions, clicks
+                from advert_stats
+                where advert_id = ? and hour >= ? and hour < ?
+                order by hour
+                """,
+                (rs, i) -> new HourlyRow(rs.getObject("hour", OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
+                        rs.getLong("impressions"), rs.getLong("clicks")),
+                advertId, from, to);
+    }
+}
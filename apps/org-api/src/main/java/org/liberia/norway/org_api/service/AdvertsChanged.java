@@ -0,0 +1,7 @@
+package org.liberia.norway.org_api.service;
+
+/**
+ * Publiseres av admin-endepunktene når en annonse opprettes, endres, (de)aktiveres eller slettes.
+ * {@link ActiveAdverts} bygger øyeblikksbildet på nytt.
+ */
+public record AdvertsChanged(Long advertId) { }
@@ -0,0 +1,324 @@
+package org.liberia.norway.org_api.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.hibernate.query.NativeQuery;
+import org.liberia.norway.org_api.model.Album;
+import org.liberia.norway.org_api.repository.AlbumRepository;
+import org.liberia.norway.org_api.web.dto.AdminAlbumDto;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkResult;
+import org.liberia.norway.org_api.web.dto.AlbumItemDto;
+import org.liberia.norway.org_api.web.dto.AlbumItemMapper;
+import org.liberia.norway.org_api.web.dto.PublicAlbumResponse;
+import org.liberia.norway.org_api.web.dto.PublicAlbumResponse.AlbumMetaDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lesing av album med eksplisitte fetch-planer. Open-session-in-view er av, så all
+ * mapping til DTO skjer her inne i transaksjonen, og tilkoblingen er tilbake i poolen
+ * før responsen serialiseres.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class AlbumService {
+
+    private static final int MAX_BULK_ITEMS = 2000;
+
+    private final AlbumRepository albumRepo;
+    private final EntityManager em;
+
+    @Value("${app.storage.public-path:/uploads}")
+    private String publicBasePath;
+
+    /* -------------------- ADMIN -------------------- */
+
+    public Page<AdminAlbumDto> listAdmin(Pageable pageable) {
+        Page<Album> page = albumRepo.findAllWithDescription(pageable);
+        Map<Long, Integer> counts = itemCounts(page.getContent().stream().map(Album::getId).toList());
+        return page.map(a -> AdminAlbumDto.from(a, counts.getOrDefault(a.getId(), 0)));
+    }
+
+    public AdminAlbumDto getAdmin(Long id) {
+        Album album = albumRepo.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Album not found"));
+        return toAdminDto(album);
+    }
+
+    public AdminAlbumDto toAdminDto(Album album) {
+        return AdminAlbumDto.from(album, itemCounts(List.of(album.getId())).getOrDefault(album.getId(), 0));
+    }
+
+    public List<AlbumItemDto> adminItems(Long id) {
+        Album album = albumRepo.findWithItemsById(id).orElseThrow();
+        return album.getItems().stream()
+                .sorted(Comparator.comparingLong(Album.MediaItem::getSortKey))
+                .map(it -> {
+                    AlbumItemDto dto = AlbumItemMapper.toDto(it);
+                    if ((dto.getUrl() == null || dto.getUrl().isBlank()) && it.getFileName() != null) {
+                        dto.setUrl(publicBase() + "/media2/" + it.getFileName());
+                    }
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /* -------------------- BULK (ADMIN) -------------------- */
+
+    /**
+     * Sletting, flytting, bildetekster og omsortering for mange elementer i én transaksjon.
+     * Alt skrives med mengdebaserte spørringer ({@code UPDATE ... FROM (VALUES ...)}), og
+     * samlingen lastes aldri; bare (id, sort_key) for albumet leses.
+     */
+    @Transactional
+    public AlbumItemBulkResult applyBulk(Long albumId, AlbumItemBulkRequest req) {
+        if (!albumRepo.existsById(albumId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Album not found");
+        }
+        if (bulkSize(req) > MAX_BULK_ITEMS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many items (max " + MAX_BULK_ITEMS + ")");
+        }
+
+        // Gjeldende rekkefølge: id -> sort_key
+        Map<Long, Long> keys = new LinkedHashMap<>();
+        for (Object row : em.createNativeQuery(
+                        "select id, sort_key from album_items where album_id = :album order by sort_key, created_at, id")
+                .setParameter("album", albumId)
+                .getResultList()) {
+            Object[] r = (Object[]) row;
+            keys.put(((Number) r[0]).longValue(), ((Number) r[1]).longValue());
+        }
+
+        List<Long> touchedAlbums = new ArrayList<>(List.of(albumId));
+        int deleted = 0, moved = 0, captioned = 0, reordered = 0;
+
+        if (req.delete() != null && !req.delete().isEmpty()) {
+            requireInAlbum(keys, req.delete());
+            deleted = execute("delete from album_items where album_id = :album and id in (:ids)",
+                    Map.of("album", albumId, "ids", req.delete()));
+            req.delete().forEach(keys::remove);
+        }
+
+        if (req.move() != null && req.move().itemIds() != null && !req.move().itemIds().isEmpty()) {
+            Long target = req.move().targetAlbumId();
+            if (target == null || target.equals(albumId) || !albumRepo.existsById(target)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid target album");
+            }
+            List<Long> ids = req.move().itemIds();
+            requireInAlbum(keys, ids);
+
+            // Legg elementene sist i målalbumet, i rekkefølgen de ble sendt
+            long base = ((Number) em.createNativeQuery(
+                            "select coalesce(max(sort_key), 0) from album_items where album_id = :album")
+                    .setParameter("album", target)
+                    .getSingleResult()).longValue();
+            Map<Long, Object> newKeys = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                newKeys.put(ids.get(i), base + (i + 1) * Album.MediaItem.SORT_KEY_STEP);
+            }
+            Map<String, Object> params = new HashMap<>(Map.of("album", albumId, "target", target));
+            moved = execute("""
+                    update album_items i set album_id = :target, sort_key = v.val
+                    from %s v(id, val)
+                    where i.id = v.id and i.album_id = :album
+                    """.formatted(values(newKeys, "bigint", params)), params);
+            ids.forEach(keys::remove);
+            touchedAlbums.add(target);
+        }
+
+        if (req.captions() != null && !req.captions().isEmpty()) {
+            Map<Long, Object> titles = new LinkedHashMap<>();
+            for (AlbumItemBulkRequest.Caption c : req.captions()) {
+                if (c.title() != null && c.title().length() > 255) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title too long for item " + c.itemId());
+                }
+                titles.put(c.itemId(), c.title());
+            }
+            requireInAlbum(keys, titles.keySet());
+            Map<String, Object> params = new HashMap<>(Map.of("album", albumId));
+            captioned = execute("""
+                    update album_items i set title = v.val
+                    from %s v(id, val)
+                    where i.id = v.id and i.album_id = :album
+                    """.formatted(values(titles, "varchar", params)), params);
+        }
+
+        if (req.reorder() != null && !req.reorder().isEmpty()) {
+            Map<Long, Object> changed = new LinkedHashMap<>(reorder(keys, req.reorder()));
+            if (!changed.isEmpty()) {
+                Map<String, Object> params = new HashMap<>(Map.of("album", albumId));
+                reordered = execute("""
+                        update album_items i set sort_key = v.val
+                        from %s v(id, val)
+                        where i.id = v.id and i.album_id = :album
+                        """.formatted(values(changed, "bigint", params)), params);
+            }
+        }
+
+        // Ny updated_at gir nye ETag-er for de berørte albumene
+        execute("update albums set updated_at = now() where id in (:ids)", Map.of("ids", touchedAlbums));
+
+        return new AlbumItemBulkResult(deleted, moved, captioned, reordered);
+    }
+
+    /**
+     * Utfører omsorteringene i rekkefølge og returnerer bare nøklene som endret seg.
+     * Et flyttet element får midtpunktet mellom naboene; først når det ikke finnes et ledig
+     * heltall mellom dem, nummereres hele albumet på nytt.
+     */
+    static Map<Long, Long> reorder(Map<Long, Long> keys, List<AlbumItemBulkRequest.Reorder> ops) {
+        final long step = Album.MediaItem.SORT_KEY_STEP;
+        List<Long> ids = new ArrayList<>(keys.keySet());
+        Map<Long, Long> current = new HashMap<>(keys);
+        Map<Long, Long> changed = new LinkedHashMap<>();
+
+        for (AlbumItemBulkRequest.Reorder op : ops) {
+            Long id = op.itemId();
+            Long after = op.afterItemId();
+            if (id == null || !current.containsKey(id) || (after != null && !current.containsKey(after)) || id.equals(after)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid reorder for item " + id);
+            }
+
+            ids.remove(id);
+            int pos = after == null ? 0 : ids.indexOf(after) + 1;
+            ids.add(pos, id);
+
+            Long prev = pos > 0 ? current.get(ids.get(pos - 1)) : null;
+            Long next = pos < ids.size() - 1 ? current.get(ids.get(pos + 1)) : null;
+
+            if (prev != null && next != null && next - prev < 2) {
+                for (int i = 0; i < ids.size(); i++) {
+                    long k = (i + 1) * step;
+                    if (current.put(ids.get(i), k) != k) changed.put(ids.get(i), k);
+                }
+                continue;
+            }
+
+            long k;
+            if (prev == null && next == null) k = step;
+            else if (prev == null) k = next - step;
+            else if (next == null) k = prev + step;
+            else k = prev + (next - prev) / 2;
+
+            current.put(id, k);
+            changed.put(id, k);
+        }
+        // Fjern nøkler som havnet tilbake på opprinnelig verdi
+        changed.entrySet().removeIf(e -> e.getValue().equals(keys.get(e.getKey())));
+        return changed;
+    }
+
+    /* -------------------- PUBLIC -------------------- */
+
+    public PublicAlbumResponse getPublished(String slug) {
+        Album album = findPublishedWithItems(slug);
+        AlbumMetaDto meta = new AlbumMetaDto(
+                album.getId(),
+                album.getSlug(),
+                safe(album.getTitle()),
+                null, // Album har ingen eventTitle ennå
+                safe(album.getDescription())
+        );
+        return new PublicAlbumResponse(meta, publicItems(album));
+    }
+
+    public List<AlbumItemDto> publishedItems(String slug) {
+        return publicItems(findPublishedWithItems(slug));
+    }
+
+    /* -------------------- Hjelpere -------------------- */
+
+    private Album findPublishedWithItems(String slug) {
+        return albumRepo.findPublishedWithItemsBySlug(slug)
+                .orElseThrow(() -> new IllegalArgumentException("Album ikke funnet eller ikke publisert"));
+    }
+
+    private List<AlbumItemDto> publicItems(Album album) {
+        return album.getItems().stream()
+                .sorted(Comparator.comparingLong(Album.MediaItem::getSortKey))
+                .map(this::toDtoWithUrlFallback)
+                .collect(Collectors.toList());
+    }
+
+    private AlbumItemDto toDtoWithUrlFallback(Album.MediaItem it) {
+        AlbumItemDto dto = AlbumItemMapper.toDto(it);
+        if ((dto.getUrl() == null || dto.getUrl().isBlank()) && it.getFileName() != null) {
+            dto.setUrl(publicBase() + "/media2/" + it.getFileName());
+        }
+        if ((dto.getThumbUrl() == null || dto.getThumbUrl().isBlank()) && it.getFileName() != null) {
+            dto.setThumbUrl(publicBase() + "/media2/thumbs/" + it.getFileName());
+        }
+        return dto;
+    }
+
+    private static void requireInAlbum(Map<Long, Long> keys, Collection<Long> ids) {
+        for (Long id : ids) {
+            if (id == null || !keys.containsKey(id)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Item " + id + " is not in this album");
+            }
+        }
+    }
+
+    private static int bulkSize(AlbumItemBulkRequest req) {
+        return (req.delete() == null ? 0 : req.delete().size())
+                + (req.move() == null || req.move().itemIds() == null ? 0 : req.move().itemIds().size())
+                + (req.captions() == null ? 0 : req.captions().size())
+                + (req.reorder() == null ? 0 : req.reorder().size());
+    }
+
+    // (values (cast(:k0 as bigint), cast(:v0 as <type>)), ...) – typene må castes, ellers gjetter Postgres feil for null
+    private static String values(Map<Long, Object> rows, String valueType, Map<String, Object> params) {
+        StringBuilder sb = new StringBuilder("(values ");
+        int i = 0;
+        for (var e : rows.entrySet()) {
+            if (i > 0) sb.append(", ");
+            sb.append("(cast(:k").append(i).append(" as bigint), cast(:v").append(i).append(" as ").append(valueType).append("))");
+            params.put("k" + i, e.getKey());
+            params.put("v" + i, e.getValue());
+            i++;
+        }
+        return sb.append(")").toString();
+    }
+
+    // Native skriving via Hibernate, slik at andrenivå- og spørringscachen for album/elementer invalideres
+    private int execute(String sql, Map<String, Object> params) {
+        NativeQuery<?> q = em.createNativeQuery(sql).unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Album.class)
+                .addSynchronizedEntityClass(Album.MediaItem.class);
+        params.forEach(q::setParameter);
+        return q.executeUpdate();
+    }
+
+    // Én GROUP BY-spørring i stedet for å laste hver samling
+    private Map<Long, Integer> itemCounts(List<Long> albumIds) {
+        if (albumIds.isEmpty()) return Map.of();
+        return albumRepo.countItemsByAlbumIds(albumIds).stream()
+                .collect(Collectors.toMap(
+                        AlbumRepository.AlbumItemCount::getAlbumId,
+                        c -> c.getItemsCount().intValue()));
+    }
+
+    private String publicBase() {
+        String base = (publicBasePath == null || publicBasePath.isBlank()) ? "/uploads" : publicBasePath;
+        return base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+    }
+
+    private static String safe(String s) { return s == null ? "" : s; }
+}
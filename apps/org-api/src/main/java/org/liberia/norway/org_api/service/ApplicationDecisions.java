@@ -0,0 +1,185 @@
+package org.liberia.norway.org_api.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.liberia.norway.org_api.model.Member.Status;
+import org.liberia.norway.org_api.service.EmailOutbox.Outgoing;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Godkjenner eller avslår mange søknader på én gang. Statusendringen er én UPDATE ... RETURNING
+ * (bare rader som fortsatt er PENDING), og e-postene legges i email_outbox med én INSERT i samme
+ * transaksjon; sendingen skjer i bakgrunnen. Behandler to administratorer de samme søknadene
+ * samtidig, vinner den første, og den andre får NOT_PENDING for dem.
+ */
+@Slf4j
+@Service
+public class ApplicationDecisions {
+
+    public enum Decision { ACCEPT, REJECT }
+
+    public enum Result { ACCEPTED, REJECTED, NOT_FOUND, NOT_PENDING }
+
+    public record Outcome(long id, Result result, boolean emailQueued) {}
+
+    public record BulkResult(int changed, int emailsQueued, List<Outcome> outcomes) {}
+
+    /** Utvalg av søknader når id-ene ikke er listet opp: alle PENDING, eventuelt innenfor et tidsrom. */
+    public record Filter(Instant createdAfter, Instant createdBefore) {}
+
+    private record Changed(long id, String firstName, String lastName, String email, String city,
+                           LocalDate dateOfBirth, Instant createdAt, Instant handledAt) {}
+
+    private final JdbcTemplate jdbc;
+    private final EmailOutbox outbox;
+    private final MembershipStats stats;
+    private final TransactionTemplate tx;
+
+    public ApplicationDecisions(JdbcTemplate jdbc, EmailOutbox outbox, MembershipStats stats,
+                                PlatformTransactionManager txManager) {
+        this.jdbc = jdbc;
+        this.outbox = outbox;
+        this.stats = stats;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    /**
+     * Behandler søknadene med disse id-ene. Hver id får et utfall, i samme rekkefølge.
+     * @param daysToKeep bare for REJECT: hvor lenge søknaden beholdes før den slettes
+     */
+    public BulkResult decide(Decision decision, List<Long> ids, int daysToKeep, String reason) {
+        var unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        return tx.execute(s -> {
+            var changed = update(decision, daysToKeep, "m.id = any(?)", List.of((Object) unique.toArray(Long[]::new)));
+            var byId = new LinkedHashMap<Long, Changed>();
+            for (Changed c : changed) byId.put(c.id(), c);
+
+            // id-er som ikke ble endret: finnes ikke, eller er ikke lenger PENDING
+            var missing = unique.stream().filter(id -> !byId.containsKey(id)).toArray(Long[]::new);
+            var existing = new HashSet<Long>();
+            if (missing.length > 0) {
+                existing.addAll(jdbc.execute((ConnectionCallback<List<Long>>) con -> {
+                    try (var ps = con.prepareStatement("select id from members where id = any(?)")) {
+                        ps.setArray(1, con.createArrayOf("bigint", missing));
+                        var found = new ArrayList<Long>();
+                        try (var rs = ps.executeQuery()) {
+                            while (rs.next()) found.add(rs.getLong(1));
+                        }
+                        return found;
+                    }
+                }));
+            }
+
+            int queued = enqueueMails(decision, changed, reason);
+            var outcomes = new ArrayList<Outcome>(unique.size());
+            for (Long id : unique) {
+                Changed c = byId.get(id);
+                if (c != null) outcomes.add(new Outcome(id, done(decision), hasEmail(c)));
+                else outcomes.add(new Outcome(id, existing.contains(id) ? Result.NOT_PENDING : Result.NOT_FOUND, false));
+            }
+            log.info("Massebehandling {}: {} av {} søknader endret, {} e-poster i kø", decision, changed.size(), unique.size(), queued);
+            return new BulkResult(changed.size(), queued, outcomes);
+        });
+    }
+
+    /** Behandler alle søknader som er PENDING og passer filteret. */
+    public BulkResult decide(Decision decision, Filter filter, int daysToKeep, String reason) {
+        var where = new StringBuilder("true");
+        var args = new ArrayList<Object>();
+        if (filter.createdAfter() != null) {
+            where.append(" and m.created_at >= ?");
+            args.add(Timestamp.from(filter.createdAfter()));
+        }
+        if (filter.createdBefore() != null) {
+            where.append(" and m.created_at < ?");
+            args.add(Timestamp.from(filter.createdBefore()));
+        }
+        return tx.execute(s -> {
+            var changed = update(decision, daysToKeep, where.toString(), args);
+            int queued = enqueueMails(decision, changed, reason);
+            var outcomes = changed.stream().map(c -> new Outcome(c.id(), done(decision), hasEmail(c))).toList();
+            log.info("Massebehandling {} (filter): {} søknader endret, {} e-poster i kø", decision, changed.size(), queued);
+            return new BulkResult(changed.size(), queued, outcomes);
+        });
+    }
+
+    // Én UPDATE for hele utvalget; status = 'PENDING' i WHERE gjør at bare ubehandlede søknader endres
+    private List<Changed> update(Decision decision, int daysToKeep, String where, List<?> whereArgs) {
+        boolean accept = decision == Decision.ACCEPT;
+        Timestamp deleteAt = accept ? null : Timestamp.from(Instant.now().plus(daysToKeep, ChronoUnit.DAYS));
+        String sql = """
+                update members m
+                   set status = ?, handled_at = now(), updated_at = now(), delete_at = ?
+                 where m.status = 'PENDING' and %s
+                returning m.id, m.first_name, m.last_name, m.email, m.city, m.date_of_birth, m.created_at, m.handled_at
+                """.formatted(where);
+        var changed = jdbc.execute((ConnectionCallback<List<Changed>>) con -> {
+            try (var ps = con.prepareStatement(sql)) {
+                ps.setString(1, accept ? "ACCEPTED" : "REJECTED");
+                ps.setTimestamp(2, deleteAt);
+                for (int i = 0; i < whereArgs.size(); i++) {
+                    Object a = whereArgs.get(i);
+                    if (a instanceof Long[] array) ps.setArray(3 + i, con.createArrayOf("bigint", array));
+                    else ps.setObject(3 + i, a);
+                }
+                var rows = new ArrayList<Changed>();
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        var dob = rs.getDate(6);
+                        rows.add(new Changed(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                                rs.getString(5), dob != null ? dob.toLocalDate() : null,
+                                rs.getTimestamp(7).toInstant(), rs.getTimestamp(8).toInstant()));
+                    }
+                }
+                return rows;
+            }
+        });
+
+        // alle var PENDING før, uten handled_at
+        var before = new ArrayList<Snapshot>(changed.size());
+        var after = new ArrayList<Snapshot>(changed.size());
+        Status status = accept ? Status.ACCEPTED : Status.REJECTED;
+        for (Changed c : changed) {
+            before.add(new Snapshot(Status.PENDING, c.city(), c.dateOfBirth(), c.createdAt(), null));
+            after.add(new Snapshot(status, c.city(), c.dateOfBirth(), c.createdAt(), c.handledAt()));
+        }
+        stats.changed(before, after);
+        return changed;
+    }
+
+    // Mange meldinger på én gang: lav prioritet, så enkeltsøknader og kvoten for dem ikke blir stående bak
+    private int enqueueMails(Decision decision, List<Changed> changed, String reason) {
+        var messages = new ArrayList<Outgoing>(changed.size());
+        for (Changed c : changed) {
+            if (!hasEmail(c)) continue;
+            var mail = decision == Decision.ACCEPT
+                    ? MembershipEmails.accepted(c.firstName(), c.lastName())
+                    : MembershipEmails.rejected(c.firstName(), c.lastName(), reason);
+            messages.add(new Outgoing(c.id(), c.email().trim(), mail.subject(), mail.body()));
+        }
+        return outbox.enqueueAll(messages, EmailOutbox.PRIORITY_BULK);
+    }
+
+    private static Result done(Decision decision) {
+        return decision == Decision.ACCEPT ? Result.ACCEPTED : Result.REJECTED;
+    }
+
+    private static boolean hasEmail(Changed c) {
+        return c.email() != null && !c.email().isBlank();
+    }
+}
@@ -0,0 +1,132 @@
+package org.liberia.norway.org_api.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.liberia.norway.org_api.repository.CalendarEntry;
+import org.liberia.norway.org_api.repository.EventRepository;
+import org.liberia.norway.org_api.util.IcsWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * iCalendar-feed for publiserte arrangementer. Hele feeden serialiseres én gang (rad for rad fra
+ * databasen) og holdes i minnet til et arrangement endres via admin; kalenderklienter som poller
+ * får dermed enten de cachede bytene eller 304.
+ */
+@Slf4j
+@Service
+public class CalendarFeed {
+
+    private static final String PROD_ID = "-//Liberian Association Norway//Events//EN";
+
+    /** Ferdig serialisert kalender med validatorer for betingede GET. */
+    public record Ics(byte[] body, String etag, Instant lastModified) {
+        public long lastModifiedMillis() {
+            return lastModified == null ? -1 : lastModified.toEpochMilli();
+        }
+    }
+
+    private final EventRepository events;
+    private final TransactionTemplate readOnlyTx;
+
+    // generation økes ved hver endring, slik at en bygging som startet før endringen ikke lagres
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Ics cached;
+    // sletting senker max(updated_at), så Last-Modified tar også med tidspunktet for siste endring
+    private volatile Instant lastChange;
+
+    @Value("${app.public-site-url:https://liberia-org-public.vercel.app}")
+    private String publicSiteUrl;
+
+    @Value("${app.calendar.uid-domain:liberia-org}")
+    private String uidDomain;
+
+    public CalendarFeed(EventRepository events, PlatformTransactionManager txManager) {
+        this.events = events;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    public Ics feed() {
+        Ics current = cached;
+        if (current != null) return current;
+        synchronized (this) {
+            if (cached != null) return cached;
+            long gen = generation.get();
+            Instant changed = lastChange;
+            Ics built = readOnlyTx.execute(s -> {
+                try (Stream<CalendarEntry> rows = events.streamCalendarEntries()) {
+                    return write("Liberian Association Norway – Events", rows);
+                }
+            });
+            if (changed != null && (built.lastModified() == null || changed.isAfter(built.lastModified()))) {
+                built = new Ics(built.body(), built.etag(), changed);
+            }
+            if (generation.get() == gen) cached = built;
+            log.debug("Kalenderfeed bygget ({} bytes)", built.body().length);
+            return built;
+        }
+    }
+
+    /** Ett enkelt arrangement som egen kalender; tom hvis det ikke finnes eller ikke er publisert. */
+    public Optional<Ics> single(String slug) {
+        return events.findCalendarEntry(slug).map(e -> write(null, Stream.of(e)));
+    }
+
+    // Etter commit, slik at neste bygging ser den nye tilstanden
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChanged e) {
+        lastChange = Instant.now();
+        generation.incrementAndGet();
+        cached = null;
+    }
+
+    private Ics write(String calendarName, Stream<CalendarEntry> rows) {
+        var buffer = new ByteArrayOutputStream(16 * 1024);
+        var ics = new IcsWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+        ics.beginCalendar(PROD_ID, calendarName);
+
+        OffsetDateTime[] latest = {null};
+        rows.forEach(e -> {
+            // DTSTAMP = updatedAt gjør utdata deterministisk, så ETag bare endres når innholdet gjør det
+            ics.beginEvent("event-" + e.id() + "@" + uidDomain, e.updatedAt())
+               .time("DTSTART", e.startAt())
+               .time("DTEND", e.endAt())
+               .time("LAST-MODIFIED", e.updatedAt())
+               .text("SUMMARY", e.title())
+               .text("LOCATION", e.location())
+               .text("DESCRIPTION", e.description() != null && !e.description().isBlank() ? e.description() : e.summary())
+               .raw("URL", publicSiteUrl + "/events/" + e.slug())
+               .endEvent();
+            if (latest[0] == null || e.updatedAt().isAfter(latest[0])) latest[0] = e.updatedAt();
+        });
+
+        ics.endCalendar().flush();
+        byte[] body = buffer.toByteArray();
+        return new Ics(body, "ics-" + sha256(body), latest[0] == null ? null : latest[0].toInstant());
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.liberia.norway.org_api.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.liberia.norway.org_api.service.EmailOutbox.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sender e-post fra email_outbox i bakgrunnen. Hver runde henter en bunke (begrenset av kvotene
+ * per minutt og per døgn), deler den på noen få virtuelle tråder med én SMTP-tilkobling hver, og
+ * markerer hver rad som sendt, utsatt med eksponentiell ventetid, eller gitt opp.
+ * Rundene kjøres på en egen tråd, så verken forespørslene eller den delte scheduler-tråden
+ * (grenseoppdateringer, statistikk, sletting) venter på SMTP.
+ */
+@Slf4j
+@Service
+public class EmailDispatcher {
+
+    // Leien må vare lenger enn SMTP-tidsavbruddene, ellers kan en treg sending bli tatt av en annen instans
+    static final Duration LEASE = Duration.ofMinutes(2);
+    static final Duration BASE_BACKOFF = Duration.ofSeconds(30);
+    static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    private final EmailOutbox outbox;
+    private final JavaMailSender mailSender;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxPerMinute;
+    private final int maxPerDay;
+    private final int reservedPerDay;
+    private final int maxAttempts;
+
+    // Én runde om gangen; queued er satt mens en runde venter i køen, så flere kall gir bare én ny runde
+    private final ExecutorService worker =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("email-dispatch").factory());
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    public EmailDispatcher(EmailOutbox outbox, JavaMailSender mailSender,
+                           @Value("${app.mail.outbox.batch-size:20}") int batchSize,
+                           @Value("${app.mail.outbox.concurrency:4}") int concurrency,
+                           @Value("${app.mail.outbox.max-per-minute:20}") int maxPerMinute,
+                           @Value("${app.mail.outbox.max-per-day:450}") int maxPerDay,
+                           @Value("${app.mail.outbox.reserved-per-day:50}") int reservedPerDay,
+                           @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts) {
+        this.outbox = outbox;
+        this.mailSender = mailSender;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxPerMinute = maxPerMinute;
+        this.maxPerDay = maxPerDay;
+        this.reservedPerDay = reservedPerDay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Etter commit: raden er synlig, og forespørselen som la den inn er allerede besvart
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmailQueued(EmailQueued e) {
+        trigger();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:15000}", initialDelayString = "${app.mail.outbox.poll-ms:15000}")
+    public void poll() {
+        trigger();
+    }
+
+    /** Legger en runde i køen til utsendelsestråden og returnerer med en gang. */
+    void trigger() {
+        if (!queued.compareAndSet(false, true)) return; // en runde venter allerede og tar med det nye
+        try {
+            worker.execute(() -> {
+                queued.set(false);
+                dispatch();
+            });
+        } catch (RejectedExecutionException e) {
+            // under nedstenging; raden ligger i køen til neste oppstart
+            queued.set(false);
+        }
+    }
+
+    /**
+     * Sender alt som er klart, innenfor kvotene. Stopper etter en bunke der ingenting ble sendt
+     * (SMTP nede e.l.): radene er da satt til et nytt forsøk senere, og å hente neste bunke ville
+     * bare vente ut de samme tidsavbruddene.
+     */
+    void dispatch() {
+        try {
+            while (dispatchBatch() > 0) { /* neste bunke */ }
+        } catch (RuntimeException e) {
+            // databasen er nede e.l.; neste poll prøver igjen
+            log.warn("Utsendelse av e-post feilet: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        // meldinger som er hentet men ikke sendt, hentes igjen når leien går ut
+        worker.shutdown();
+    }
+
+    /** Én bunke; returnerer antall sendte meldinger (0 når køen er tom, kvoten brukt opp eller alt feilet). */
+    int dispatchBatch() {
+        var usage = outbox.usage();
+        long allowed = Math.min(batchSize, Math.min(maxPerMinute - usage.lastMinute(), maxPerDay - usage.lastDay()));
+        if (allowed <= 0) return 0;
+        // de siste av døgnkvoten holdes av til søknader/godkjenninger, så et nyhetsbrev ikke stenger dem ute
+        boolean includeBulk = usage.lastDay() < maxPerDay - reservedPerDay;
+
+        List<Message> claimed = outbox.claim((int) allowed, LEASE, includeBulk);
+        if (claimed.isEmpty()) return 0;
+
+        // én SMTP-tilkobling per del: JavaMailSender sender alle meldingene i ett kall over samme Transport
+        int chunks = Math.min(concurrency, claimed.size());
+        var sent = new AtomicInteger();
+        try (var workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < chunks; c++) {
+                var chunk = new ArrayList<Message>();
+                for (int i = c; i < claimed.size(); i += chunks) chunk.add(claimed.get(i));
+                workers.submit(() -> {
+                    try {
+                        sent.addAndGet(deliver(chunk));
+                    } catch (RuntimeException e) {
+                        // status kunne ikke lagres; radene hentes igjen når leien går ut
+                        log.warn("Kunne ikke oppdatere {} e-poster: {}", chunk.size(), e.getMessage());
+                    }
+                });
+            }
+        } // close() venter til alle er ferdige
+        if (sent.get() == 0) log.warn("Ingen av {} e-poster ble sendt; venter til neste runde", claimed.size());
+        return sent.get();
+    }
+
+    /** Sender én del over én tilkobling; returnerer antall sendte. */
+    private int deliver(List<Message> chunk) {
+        var messages = new SimpleMailMessage[chunk.size()];
+        for (int i = 0; i < messages.length; i++) messages[i] = toMail(chunk.get(i));
+
+        Map<Object, Exception> failed;
+        try {
+            mailSender.send(messages);
+            failed = Map.of();
+        } catch (MailParseException | MailPreparationException e) {
+            // én ugyldig melding stopper hele kallet; send hver for seg så bare den ene feiler
+            if (chunk.size() > 1) {
+                int sent = 0;
+                for (Message m : chunk) sent += deliver(List.of(m));
+                return sent;
+            }
+            outbox.markFailed(chunk.get(0).id(), e.getMessage());
+            log.error("E-post {} til {} kan ikke sendes: {}", chunk.get(0).id(), chunk.get(0).to(), e.getMessage());
+            return 0;
+        } catch (MailSendException e) {
+            failed = e.getFailedMessages();
+            if (failed.isEmpty()) failed = allFailed(messages, e);
+        } catch (RuntimeException e) {
+            // f.eks. innlogging avvist: ingenting ble sendt
+            failed = allFailed(messages, e);
+        }
+
+        var sent = new ArrayList<Long>();
+        for (int i = 0; i < messages.length; i++) {
+            Exception error = failed.get(messages[i]);
+            if (error == null) sent.add(chunk.get(i).id());
+            else retryOrGiveUp(chunk.get(i), error);
+        }
+        outbox.markSent(sent);
+        if (!sent.isEmpty()) log.info("{} e-poster sendt over én tilkobling", sent.size());
+        return sent.size();
+    }
+
+    private void retryOrGiveUp(Message m, Exception e) {
+        if (m.attempt() >= maxAttempts) {
+            outbox.markFailed(m.id(), e.getMessage());
+            log.error("E-post {} til {} gitt opp etter {} forsøk: {}", m.id(), m.to(), m.attempt(), e.getMessage());
+        } else {
+            var delay = backoff(m.attempt());
+            outbox.markRetry(m.id(), delay, e.getMessage());
+            log.warn("E-post {} til {} feilet (forsøk {}), prøver igjen om {}: {}",
+                    m.id(), m.to(), m.attempt(), delay, e.getMessage());
+        }
+    }
+
+    private static SimpleMailMessage toMail(Message m) {
+        var msg = new SimpleMailMessage();
+        msg.setTo(m.to());
+        msg.setSubject(m.subject());
+        msg.setText(m.body());
+        return msg;
+    }
+
+    private static Map<Object, Exception> allFailed(SimpleMailMessage[] messages, Exception e) {
+        var failed = new IdentityHashMap<Object, Exception>();
+        for (var msg : messages) failed.put(msg, e);
+        return failed;
+    }
+
+    /** 30 s, 1 min, 2 min, 4 min … opp til 6 timer. */
+    static Duration backoff(int attempt) {
+        int doublings = Math.min(Math.max(attempt - 1, 0), 20);
+        var delay = BASE_BACKOFF.multipliedBy(1L << doublings);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+}
@@ -0,0 +1,206 @@
+package org.liberia.norway.org_api.service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Køen i email_outbox. {@link #enqueue} kalles inne i forretningstransaksjonen, så e-posten finnes
+ * hvis og bare hvis endringen ble lagret. Resten brukes av {@link EmailDispatcher}.
+ */
+@Service
+@RequiredArgsConstructor
+public class EmailOutbox {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    /** Enkeltmeldinger går foran masseutsendelser i køen. */
+    public static final int PRIORITY_SINGLE = 0;
+    public static final int PRIORITY_BULK = 1;
+
+    /** En melding som er hentet for sending; {@code attempt} er 1 for første forsøk. */
+    public record Message(long id, String to, String subject, String body, int attempt) {}
+
+    /** Hvor mange som er sendt (eller er under sending) siste minutt og siste døgn. */
+    public record Usage(long lastMinute, long lastDay) {}
+
+    /** Ferdig utfylt melding til én mottaker (nyhetsbrev eller massebehandling av søknader). */
+    public record Outgoing(Long memberId, String to, String subject, String body) {}
+
+    /** Leveringsstatus for én mottaker av et nyhetsbrev. */
+    public record RecipientStatus(Long memberId, String to, String status, int attempts, String lastError,
+                                  @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ssXXX") OffsetDateTime sentAt) {}
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher publisher;
+
+    public void enqueue(String to, String subject, String body) {
+        jdbc.update("insert into email_outbox (to_address, subject, body) values (?, ?, ?)", to, subject, body);
+        // vekker dispatcheren etter commit i stedet for å vente på neste poll
+        publisher.publishEvent(new EmailQueued());
+    }
+
+    /**
+     * Legger en side med nyhetsbrev-mottakere i køen med én INSERT. Adresser som allerede har fått
+     * dette nyhetsbrevet hoppes over (unik indeks), så en gjentatt side gir ikke duplikater.
+     * @return antall nye rader
+     */
+    public int enqueueNewsletter(long newsletterId, List<Outgoing> messages) {
+        return insertAll(newsletterId, messages, PRIORITY_BULK);
+    }
+
+    /**
+     * Legger mange enkeltmeldinger (f.eks. fra massegodkjenning av søknader) i køen med én INSERT,
+     * i samme transaksjon som endringen.
+     * @return antall nye rader
+     */
+    public int enqueueAll(List<Outgoing> messages, int priority) {
+        return insertAll(null, messages, priority);
+    }
+
+    private int insertAll(Long newsletterId, List<Outgoing> messages, int priority) {
+        if (messages.isEmpty()) return 0;
+        int n = messages.size();
+        Long[] memberIds = new Long[n];
+        String[] to = new String[n];
+        String[] subjects = new String[n];
+        String[] bodies = new String[n];
+        for (int i = 0; i < n; i++) {
+            var m = messages.get(i);
+            memberIds[i] = m.memberId();
+            to[i] = m.to();
+            subjects[i] = m.subject();
+            bodies[i] = m.body();
+        }
+        Integer inserted = jdbc.execute((ConnectionCallback<Integer>) con -> {
+            try (var ps = con.prepareStatement("""
+                    insert into email_outbox (newsletter_id, member_id, to_address, subject, body, priority)
+                    select ?, s.member_id, s.to_address, s.subject, s.body, ?
+                    from unnest(?, ?, ?, ?) as s(member_id, to_address, subject, body)
+                    on conflict do nothing
+                    """)) {
+                ps.setObject(1, newsletterId, Types.BIGINT);
+                ps.setInt(2, priority);
+                ps.setArray(3, con.createArrayOf("bigint", memberIds));
+                ps.setArray(4, con.createArrayOf("varchar", to));
+                ps.setArray(5, con.createArrayOf("varchar", subjects));
+                ps.setArray(6, con.createArrayOf("text", bodies));
+                return ps.executeUpdate();
+            }
+        });
+        if (inserted != null && inserted > 0) publisher.publishEvent(new EmailQueued());
+        return inserted == null ? 0 : inserted;
+    }
+
+    /**
+     * Henter inntil {@code limit} meldinger som skal sendes nå og leier dem ut i {@code lease}.
+     * SKIP LOCKED gjør at flere instanser kan hente samtidig uten å få de samme radene; en rad
+     * som blir stående i SENDING etter at leien er ute (instansen døde), hentes på nytt.
+     */
+    public List<Message> claim(int limit, Duration lease, boolean includeBulk) {
+        return jdbc.query("""
+                update email_outbox o
+                   set status = 'SENDING',
+                       attempts = o.attempts + 1,
+                       next_attempt_at = now() + make_interval(secs => ?)
+                  from (select id from email_outbox
+                         where status in ('PENDING', 'SENDING') and next_attempt_at <= now()
+                           and priority <= ?
+                         order by priority, next_attempt_at, id
+                         limit ?
+                         for update skip locked) due
+                 where o.id = due.id
+                returning o.id, o.to_address, o.subject, o.body, o.attempts
+                """,
+                (rs, i) -> new Message(rs.getLong("id"), rs.getString("to_address"), rs.getString("subject"),
+                        rs.getString("body"), rs.getInt("attempts")),
+                (double) lease.toSeconds(), includeBulk ? PRIORITY_BULK : PRIORITY_SINGLE, limit);
+    }
+
+    public Usage usage() {
+        return jdbc.queryForObject("""
+                select count(*) filter (where sent_at > now() - interval '1 minute' or status = 'SENDING') as last_minute,
+                       count(*) as last_day
+                from email_outbox
+                where sent_at > now() - interval '1 day'
+                   or (status = 'SENDING' and next_attempt_at > now())
+                """,
+                (rs, i) -> new Usage(rs.getLong("last_minute"), rs.getLong("last_day")));
+    }
+
+    public void markSent(List<Long> ids) {
+        if (ids.isEmpty()) return;
+        jdbc.execute((ConnectionCallback<Integer>) con -> {
+            try (var ps = con.prepareStatement(
+                    "update email_outbox set status = 'SENT', sent_at = now(), last_error = null where id = any(?)")) {
+                ps.setArray(1, con.createArrayOf("bigint", ids.toArray(Long[]::new)));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    public void markRetry(long id, Duration delay, String error) {
+        jdbc.update("""
+                update email_outbox
+                   set status = 'PENDING', next_attempt_at = now() + make_interval(secs => ?), last_error = ?
+                 where id = ?
+                """, (double) delay.toSeconds(), truncate(error), id);
+    }
+
+    public void markFailed(long id, String error) {
+        jdbc.update("update email_outbox set status = 'FAILED', last_error = ? where id = ?", truncate(error), id);
+    }
+
+    /* -------------------- Nyhetsbrev -------------------- */
+
+    /** Stopper mottakere som ikke er hentet ennå; meldinger under sending fullføres. */
+    public int cancelNewsletter(long newsletterId) {
+        return jdbc.update("update email_outbox set status = 'CANCELLED' where newsletter_id = ? and status = 'PENDING'",
+                newsletterId);
+    }
+
+    /** Antall mottakere per status (PENDING, SENDING, SENT, FAILED, CANCELLED). */
+    public Map<String, Long> newsletterProgress(long newsletterId) {
+        var counts = new LinkedHashMap<String, Long>();
+        for (String s : List.of("PENDING", "SENDING", "SENT", "FAILED", "CANCELLED")) counts.put(s, 0L);
+        jdbc.query("select status, count(*) as n from email_outbox where newsletter_id = ? group by status",
+                rs -> { counts.put(rs.getString("status"), rs.getLong("n")); }, newsletterId);
+        return counts;
+    }
+
+    /** Mottakere med status, valgfritt filtrert, i adresse-rekkefølge. */
+    public List<RecipientStatus> newsletterRecipients(long newsletterId, String status, int offset, int limit) {
+        return jdbc.query("""
+                select member_id, to_address, status, attempts, last_error, sent_at
+                from email_outbox
+                where newsletter_id = ? and (cast(? as varchar) is null or status = ?)
+                order by lower(to_address)
+                offset ? limit ?
+                """,
+                (rs, i) -> {
+                    Timestamp sent = rs.getTimestamp("sent_at");
+                    return new RecipientStatus(rs.getObject("member_id", Long.class), rs.getString("to_address"),
+                            rs.getString("status"), rs.getInt("attempts"), rs.getString("last_error"),
+                            sent == null ? null : sent.toInstant().atOffset(ZoneOffset.UTC));
+                },
+                newsletterId, status, status, offset, limit);
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= MAX_ERROR_LENGTH ? s : s.substring(0, MAX_ERROR_LENGTH);
+    }
+}
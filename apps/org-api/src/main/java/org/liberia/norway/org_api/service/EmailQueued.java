@@ -0,0 +1,6 @@
+package org.liberia.norway.org_api.service;
+
+/**
+ * Publiseres av {@link EmailOutbox#enqueue}; {@link EmailDispatcher} starter en utsendelse etter commit.
+ */
+public record EmailQueued() { }
@@ -0,0 +1,142 @@
+package org.liberia.norway.org_api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.liberia.norway.org_api.web.dto.EventListItem;
+import org.liberia.norway.org_api.web.dto.EventMonthCount;
+import org.liberia.norway.org_api.web.dto.EventSlice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Offentlig arrangementsliste med dato-filter og keyset-paginering på (start_at, id).
+ * Alle varianter treffer indeksen idx_events_published_start_id, og bare listefeltene hentes.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class EventListService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 100;
+
+    private final EntityManager em;
+
+    @Value("${app.events.time-zone:Europe/Oslo}")
+    private String timeZone;
+
+    public record Filter(OffsetDateTime from, OffsetDateTime to, boolean upcoming, boolean past,
+                         String q, String cursor, Integer limit) {}
+
+    public EventSlice list(Filter f) {
+        if (f.upcoming() && f.past()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "upcoming and past are mutually exclusive");
+        }
+        int limit = f.limit() == null ? DEFAULT_LIMIT : Math.clamp(f.limit(), 1, MAX_LIMIT);
+        // tidligere arrangementer vises nyeste først, alt annet kronologisk
+        boolean desc = f.past();
+        var now = OffsetDateTime.now(ZoneOffset.UTC);
+
+        var where = new ArrayList<String>();
+        var params = new HashMap<String, Object>();
+        where.add("e.isPublished = true");
+        if (f.from() != null) { where.add("e.startAt >= :from"); params.put("from", f.from()); }
+        if (f.to() != null) { where.add("e.startAt < :to"); params.put("to", f.to()); }
+        if (f.upcoming()) { where.add("e.startAt >= :now"); params.put("now", now); }
+        if (f.past()) { where.add("e.startAt < :now"); params.put("now", now); }
+        if (f.q() != null && !f.q().isBlank()) {
+            where.add("lower(e.title) like :q escape '\\'");
+            params.put("q", "%" + escapeLike(f.q().trim().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (f.cursor() != null && !f.cursor().isBlank()) {
+            var c = Cursor.decode(f.cursor());
+            where.add(desc ? "(e.startAt, e.id) < (:cStart, :cId)" : "(e.startAt, e.id) > (:cStart, :cId)");
+            params.put("cStart", c.startAt());
+            params.put("cId", c.id());
+        }
+
+        String dir = desc ? "desc" : "asc";
+        var query = em.createQuery("""
+                select new org.liberia.norway.org_api.web.dto.EventListItem(
+                    e.id, e.slug, e.title, e.summary, e.location, e.coverImageUrl, e.rsvpUrl,
+                    e.startAt, e.endAt, e.galleryAlbumId)
+                from Event e
+                where %s
+                order by e.startAt %s, e.id %s
+                """.formatted(String.join(" and ", where), dir, dir), EventListItem.class);
+        params.forEach(query::setParameter);
+        // én ekstra rad avgjør om det finnes en neste side
+        List<EventListItem> rows = query.setMaxResults(limit + 1).getResultList();
+
+        if (rows.size() <= limit) return new EventSlice(rows, null);
+        var page = rows.subList(0, limit);
+        var last = page.getLast();
+        return new EventSlice(List.copyOf(page), new Cursor(last.startAt(), last.id()).encode());
+    }
+
+    /** Antall publiserte arrangementer per måned (lokal tid), valgfritt avgrenset med [from, to). */
+    public List<EventMonthCount> monthCounts(OffsetDateTime from, OffsetDateTime to) {
+        var sql = new StringBuilder("""
+                select to_char(date_trunc('month', start_at at time zone :zone), 'YYYY-MM') as month, count(*) as n
+                from events
+                where is_published
+                """);
+        Map<String, Object> params = new HashMap<>();
+        params.put("zone", timeZone);
+        if (from != null) { sql.append(" and start_at >= :from"); params.put("from", from); }
+        if (to != null) { sql.append(" and start_at < :to"); params.put("to", to); }
+        sql.append(" group by 1 order by 1");
+
+        var query = em.createNativeQuery(sql.toString(), Object[].class);
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        return rows.stream()
+                .map(r -> new EventMonthCount((String) r[0], ((Number) r[1]).longValue()))
+                .toList();
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Ugjennomsiktig cursor: base64url av "epochMicros:id" for siste rad på forrige side.
+     * Mikrosekunder, som timestamptz lagrer; med millisekunder ville raden selv havne etter
+     * cursoren og komme igjen på neste side.
+     */
+    record Cursor(OffsetDateTime startAt, long id) {
+
+        String encode() {
+            var raw = ChronoUnit.MICROS.between(Instant.EPOCH, startAt.toInstant()) + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String s) {
+            try {
+                var raw = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8);
+                int sep = raw.indexOf(':');
+                var start = Instant.EPOCH.plus(Long.parseLong(raw.substring(0, sep)), ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+                return new Cursor(start, Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package org.liberia.norway.org_api.service;
+
+/**
+ * Publiseres av admin-endepunktene når et arrangement opprettes, endres eller slettes.
+ * Lyttere som bygger cacher over arrangementer (neste arrangement, kalenderfeed) bygger på nytt.
+ */
+public record EventsChanged(Long eventId) { }
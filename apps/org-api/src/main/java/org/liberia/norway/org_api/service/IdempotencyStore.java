@@ -0,0 +1,234 @@
+package org.liberia.norway.org_api.service;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lager svarene på forespørsler med Idempotency-Key, så en gjentatt forespørsel får det samme
+ * svaret uten at handleren kjøres på nytt (se IdempotencyFilter).
+ * <p>
+ * Tabellen idempotency_keys er fasiten og gjelder på tvers av instanser og omstarter. I minnet
+ * ligger bare det som gjør vanlige tilfeller raske: en future per nøkkel som behandles nå, så en
+ * samtidig duplikat i samme instans venter på den i stedet for å polle databasen, og en liten
+ * cache av ferdige svar. Nøkkel og body lagres bare som sha-256.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+    /** Svaret som spilles av igjen: status, Content-Type og body. */
+    public record Stored(int status, String contentType, byte[] body) {}
+
+    public enum Kind {
+        /** Første gang: kjør handleren, og kall så {@link #complete} eller {@link #release}. */
+        EXECUTE,
+        /** Allerede behandlet; {@code response} er svaret. */
+        REPLAY,
+        /** Nøkkelen er brukt for en annen body. */
+        MISMATCH,
+        /** Den første forespørselen ble ikke ferdig innen ventetiden. */
+        IN_PROGRESS
+    }
+
+    public record Claim(Kind kind, Stored response) {
+        static final Claim EXECUTE = new Claim(Kind.EXECUTE, null);
+        static final Claim MISMATCH = new Claim(Kind.MISMATCH, null);
+        static final Claim IN_PROGRESS = new Claim(Kind.IN_PROGRESS, null);
+
+        static Claim replay(Stored s) {
+            return new Claim(Kind.REPLAY, s);
+        }
+    }
+
+    /** En nøkkel som behandles i denne instansen; fullføres med svaret, eller null hvis den ble gitt opp. */
+    private record Inflight(String requestHash, CompletableFuture<Stored> done) {}
+
+    private record Cached(String requestHash, Stored response, Instant expiresAt) {}
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbc;
+    private final Duration ttl;
+    private final Duration lock;
+    private final long waitNanos;
+    private final long pollMs;
+    private final int memoryEntries;
+
+    private final Map<String, Inflight> inflight = new ConcurrentHashMap<>();
+    private final Map<String, Cached> completed = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(JdbcTemplate jdbc,
+                            @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                            @Value("${app.idempotency.lock-seconds:60}") long lockSeconds,
+                            @Value("${app.idempotency.wait-ms:10000}") long waitMs,
+                            @Value("${app.idempotency.poll-ms:100}") long pollMs,
+                            @Value("${app.idempotency.memory-entries:2000}") int memoryEntries) {
+        this.jdbc = jdbc;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lock = Duration.ofSeconds(lockSeconds);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMs);
+        this.pollMs = pollMs;
+        this.memoryEntries = memoryEntries;
+    }
+
+    /**
+     * Tar nøkkelen, eller venter (høyst {@code app.idempotency.wait-ms}) på den som har den.
+     * @param key sha-256 (hex) av metode, sti og Idempotency-Key
+     * @param requestHash sha-256 (hex) av body
+     */
+    public Claim claim(String key, String requestHash) {
+        long deadline = System.nanoTime() + waitNanos;
+        while (true) {
+            var cached = completed.get(key);
+            if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+                return cached.requestHash().equals(requestHash) ? Claim.replay(cached.response()) : Claim.MISMATCH;
+            }
+
+            var mine = new Inflight(requestHash, new CompletableFuture<>());
+            var other = inflight.putIfAbsent(key, mine);
+            if (other != null) {
+                if (!other.requestHash().equals(requestHash)) return Claim.MISMATCH;
+                try {
+                    Stored s = other.done().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (s != null) return Claim.replay(s);
+                    continue; // den første ga opp; prøv selv
+                } catch (TimeoutException e) {
+                    return Claim.IN_PROGRESS;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Claim.IN_PROGRESS;
+                } catch (ExecutionException e) {
+                    continue; // fullføres aldri med feil, men for sikkerhets skyld
+                }
+            }
+
+            // først i denne instansen; databasen avgjør om en annen instans har den
+            Claim c;
+            try {
+                c = claimInDb(key, requestHash, deadline);
+            } catch (RuntimeException e) {
+                finish(key, null);
+                throw e;
+            }
+            if (c.kind() != Kind.EXECUTE) finish(key, c.response());
+            return c;
+        }
+    }
+
+    /** Lagrer svaret etter at handleren er ferdig, og slipper løs de som venter. */
+    public void complete(String key, Stored response) {
+        var mine = inflight.get(key);
+        try {
+            jdbc.update("""
+                    update idempotency_keys
+                       set status_code = ?, content_type = ?, body = ?, locked_until = null
+                     where key_hash = ?
+                    """, response.status(), response.contentType(), response.body(), HEX.parseHex(key));
+            if (mine != null) remember(key, mine.requestHash(), response);
+        } finally {
+            // de som venter i denne instansen får svaret uansett
+            finish(key, response);
+        }
+    }
+
+    /** Gir opp nøkkelen (handleren feilet eller svarte med en feil), så et nytt forsøk kjører på nytt. */
+    public void release(String key) {
+        try {
+            jdbc.update("delete from idempotency_keys where key_hash = ? and status_code is null", HEX.parseHex(key));
+        } finally {
+            finish(key, null);
+        }
+    }
+
+    /** Sletter utløpte nøkler. */
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}",
+               initialDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    public int purge() {
+        var now = Instant.now();
+        completed.values().removeIf(c -> !c.expiresAt().isAfter(now));
+        int n = jdbc.update("delete from idempotency_keys where expires_at < now()");
+        if (n > 0) log.info("Slettet {} utløpte idempotensnøkler", n);
+        return n;
+    }
+
+    private Claim claimInDb(String key, String requestHash, long deadline) {
+        byte[] k = HEX.parseHex(key);
+        byte[] r = HEX.parseHex(requestHash);
+        while (true) {
+            // ny nøkkel, utløpt nøkkel, eller en som ble forlatt midt i behandlingen (samme body)
+            Boolean won = jdbc.query("""
+                    insert into idempotency_keys (key_hash, request_hash, locked_until, expires_at)
+                    values (?, ?, now() + make_interval(secs => ?), now() + make_interval(secs => ?))
+                    on conflict (key_hash) do update
+                       set request_hash = excluded.request_hash, status_code = null, content_type = null,
+                           body = null, locked_until = excluded.locked_until, expires_at = excluded.expires_at,
+                           created_at = now()
+                     where idempotency_keys.expires_at < now()
+                        or (idempotency_keys.status_code is null and idempotency_keys.locked_until < now()
+                            and idempotency_keys.request_hash = excluded.request_hash)
+                    returning true
+                    """, (ResultSetExtractor<Boolean>) ResultSet::next, k, r, lock.toSeconds(), ttl.toSeconds());
+            if (Boolean.TRUE.equals(won)) return Claim.EXECUTE;
+
+            var row = jdbc.query("""
+                    select request_hash, status_code, content_type, body, expires_at
+                    from idempotency_keys where key_hash = ?
+                    """, rs -> rs.next()
+                    ? new Object[] {rs.getBytes(1), rs.getObject(2, Integer.class), rs.getString(3), rs.getBytes(4),
+                                    rs.getTimestamp(5).toInstant()}
+                    : null, k);
+            if (row == null) continue; // slettet i mellomtiden
+            if (!Arrays.equals((byte[]) row[0], r)) return Claim.MISMATCH;
+            if (row[1] != null) {
+                var stored = new Stored((Integer) row[1], (String) row[2], (byte[]) row[3]);
+                remember(key, requestHash, stored, (Instant) row[4]);
+                return Claim.replay(stored);
+            }
+
+            // en annen instans behandler den nå
+            if (System.nanoTime() - deadline >= 0) return Claim.IN_PROGRESS;
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Claim.IN_PROGRESS;
+            }
+        }
+    }
+
+    private void remember(String key, String requestHash, Stored response) {
+        remember(key, requestHash, response, Instant.now().plus(ttl));
+    }
+
+    // Cachen er bare en snarvei forbi databasen; er den full, hoppes den over
+    private void remember(String key, String requestHash, Stored response, Instant expiresAt) {
+        if (completed.size() >= memoryEntries) {
+            var now = Instant.now();
+            completed.values().removeIf(c -> !c.expiresAt().isAfter(now));
+            if (completed.size() >= memoryEntries) return;
+        }
+        completed.put(key, new Cached(requestHash, response, expiresAt));
+    }
+
+    private void finish(String key, Stored response) {
+        var mine = inflight.remove(key);
+        if (mine != null) mine.done().complete(response);
+    }
+}
@@ -0,0 +1,119 @@
+package org.liberia.norway.org_api.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.liberia.norway.org_api.model.Member.Status;
+import org.liberia.norway.org_api.util.RowWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Medlemsregisteret som CSV/XLSX. Radene leses med en forover-markør (fetch size) og skrives
+ * til {@link RowWriter} etter hvert som de kommer, så minnebruken er den samme for 10 og
+ * 100 000 medlemmer.
+ */
+@Slf4j
+@Service
+public class MemberExport {
+
+    private static final String[] HEADER = {
+            "ID", "First name", "Last name", "Date of birth", "Address", "Post code", "City", "Phone", "Email",
+            "Occupation", "Vipps reference", "Vipps amount (NOK)", "Status", "Created at", "Handled at"
+    };
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final int fetchSize;
+
+    public MemberExport(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                        @Value("${app.membership.export-fetch-size:500}") int fetchSize) {
+        this.jdbc = jdbc;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Skriver overskrift og alle medlemmer (valgfritt bare én status), sortert på navn.
+     * @return antall rader
+     */
+    public long write(Status status, RowWriter out) throws IOException {
+        out.writeHeader((Object[]) HEADER);
+
+        long[] count = {0};
+        RowCallbackHandler row = rs -> {
+            try {
+                out.writeRow(cells(rs));
+            } catch (IOException e) {
+                // klienten har lukket tilkoblingen; avbryter markøren
+                throw new UncheckedIOException(e);
+            }
+            count[0]++;
+        };
+
+        var sql = new StringBuilder("""
+                select id, first_name, last_name, date_of_birth, address, post_code, city, phone, email,
+                       occupation, vipps_reference, vipps_amount_nok, status, created_at, handled_at
+                from members
+                """);
+        List<Object> args = new ArrayList<>();
+        if (status != null) {
+            sql.append("where status = ?\n");
+            args.add(status.name());
+        }
+        sql.append("order by lower(last_name), lower(first_name), id");
+
+        // PostgreSQL bruker bare markør (fetch size) når autocommit er av, dvs. inne i en transaksjon
+        try {
+            readOnlyTx.executeWithoutResult(s -> jdbc.query(con -> {
+                var ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+                return ps;
+            }, row));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Medlemseksport: {} rader (status {})", count[0], status == null ? "alle" : status);
+        return count[0];
+    }
+
+    private static Object[] cells(ResultSet rs) throws SQLException {
+        var dob = rs.getObject("date_of_birth", LocalDate.class);
+        return new Object[] {
+                rs.getLong("id"),
+                rs.getString("first_name"),
+                rs.getString("last_name"),
+                dob != null ? dob.toString() : null,
+                rs.getString("address"),
+                rs.getString("post_code"),
+                rs.getString("city"),
+                rs.getString("phone"),
+                rs.getString("email"),
+                rs.getString("occupation"),
+                rs.getString("vipps_reference"),
+                rs.getObject("vipps_amount_nok", Integer.class),
+                rs.getString("status"),
+                instant(rs.getTimestamp("created_at")),
+                instant(rs.getTimestamp("handled_at"))
+        };
+    }
+
+    // Samme format som JSON-API-et (Instant.toString, UTC)
+    private static String instant(Timestamp ts) {
+        return ts == null ? null : ts.toInstant().toString();
+    }
+}
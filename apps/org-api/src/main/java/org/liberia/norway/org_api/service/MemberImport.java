@@ -0,0 +1,403 @@
+package org.liberia.norway.org_api.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.liberia.norway.org_api.model.Member.Status;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
+import org.liberia.norway.org_api.util.CsvReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Masseimport av medlemmer fra CSV (f.eks. gamle regneark eller en fil fra {@link MemberExport}).
+ * Filen leses rad for rad. For hver batch sjekkes e-postadressene og Vipps-referansene mot
+ * eksisterende medlemmer med én spørring hver, og gyldige rader skrives til member_import_rows
+ * med JDBC-batch. Til slutt flettes alt inn i members med én INSERT ... SELECT. Alt skjer i én transaksjon: enten kommer hele filen
+ * inn, eller ingenting. Med {@code dryRun} kjøres samme kontroller uten å skrive noe.
+ */
+@Slf4j
+@Service
+public class MemberImport {
+
+    /** Så mange feil/konflikter tas med i rapporten; tellerne viser alltid totalen. */
+    private static final int MAX_REPORTED = 1000;
+
+    private static final Pattern EMAIL = Pattern.compile("^[^\\s@]+@[^\\s@]+\\.[^\\s@]+$");
+    private static final DateTimeFormatter NORWEGIAN_DATE = DateTimeFormatter.ofPattern("d.M.uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final ZoneId OSLO = ZoneId.of("Europe/Oslo");
+
+    /** Kolonnene som kan importeres, med lengdegrensene fra members og kjente overskrifter. */
+    enum Column {
+        FIRST_NAME(120, "firstname", "fornavn"),
+        LAST_NAME(120, "lastname", "etternavn"),
+        DATE_OF_BIRTH(0, "dateofbirth", "birthdate", "fødselsdato"),
+        ADDRESS(256, "address", "adresse"),
+        POST_CODE(32, "postcode", "postnummer", "postnr"),
+        CITY(120, "city", "poststed", "sted"),
+        PHONE(64, "phone", "telefon", "mobil"),
+        EMAIL(320, "email", "epost"),
+        OCCUPATION(160, "occupation", "yrke"),
+        VIPPS_REFERENCE(128, "vippsreference"),
+        VIPPS_AMOUNT_NOK(0, "vippsamountnok", "vippsamount"),
+        CREATED_AT(0, "createdat", "membersince", "innmeldt");
+
+        final int maxLength;
+        final String[] names;
+
+        Column(int maxLength, String... names) {
+            this.maxLength = maxLength;
+            this.names = names;
+        }
+
+        static Column byHeader(String header) {
+            String key = normalizeHeader(header);
+            for (Column c : values()) {
+                for (String n : c.names) if (n.equals(key)) return c;
+            }
+            return null;
+        }
+    }
+
+    public record RowError(int line, String message) {}
+
+    /** Feltet som kolliderte i en {@link Conflict}. */
+    public enum ConflictField { EMAIL, VIPPS_REFERENCE }
+
+    /**
+     * En rad som ikke importeres fordi e-posten eller Vipps-referansen ({@code field}, {@code value})
+     * finnes fra før: hos et medlem ({@code existingMemberId}) eller tidligere i samme fil
+     * ({@code duplicateOfLine}).
+     */
+    public record Conflict(int line, ConflictField field, String value, Long existingMemberId, Integer duplicateOfLine) {}
+
+    public record Report(boolean dryRun, int rows, int imported, int conflictCount, int errorCount,
+                         List<String> ignoredColumns, List<Conflict> conflicts, List<RowError> errors) {}
+
+    record Row(int line, String firstName, String lastName, LocalDate dateOfBirth, String address, String postCode,
+               String city, String phone, String email, String emailNorm, String occupation, String vippsReference,
+               Integer vippsAmountNok, Instant createdAt) {
+
+        /** Vipps-referansen slik ux_members_vipps_reference sammenligner den. */
+        String vippsKey() {
+            return vippsReference != null ? VippsReconciliation.key(vippsReference) : null;
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final MembershipStats stats;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnlyTx;
+    private final int batchSize;
+
+    public MemberImport(JdbcTemplate jdbc, MembershipStats stats, PlatformTransactionManager txManager,
+                        @Value("${app.membership.import-batch-size:500}") int batchSize) {
+        this.jdbc = jdbc;
+        this.stats = stats;
+        this.tx = new TransactionTemplate(txManager);
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Importerer filen som godkjente medlemmer. Første linje er overskrifter; ukjente kolonner
+     * ignoreres. Rader med feil eller kjent e-post hoppes over og står i rapporten.
+     * @throws IllegalArgumentException hvis filen ikke kan leses som CSV eller mangler kjente kolonner
+     */
+    public Report run(Reader csv, boolean dryRun) throws IOException {
+        try {
+            return (dryRun ? readOnlyTx : tx).execute(s -> {
+                try {
+                    return importRows(new CsvReader(csv), dryRun);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Tilstanden for én import. */
+    private static final class Run {
+        final UUID id = UUID.randomUUID();
+        final boolean dryRun;
+        // normalisert e-post / Vipps-referanse -> første linje den stod på
+        final Map<String, Integer> seenEmails = new HashMap<>();
+        final Map<String, Integer> seenReferences = new HashMap<>();
+        final List<Conflict> conflicts = new ArrayList<>();
+        final List<RowError> errors = new ArrayList<>();
+        int rows, valid, conflictCount, errorCount;
+
+        Run(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        void conflict(Conflict c) {
+            conflictCount++;
+            if (conflicts.size() < MAX_REPORTED) conflicts.add(c);
+        }
+
+        void error(int line, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED) errors.add(new RowError(line, message));
+        }
+    }
+
+    private Report importRows(CsvReader reader, boolean dryRun) throws IOException {
+        var header = reader.next();
+        if (header == null) throw new IllegalArgumentException("The file is empty.");
+
+        var columns = new Column[header.size()];
+        var ignored = new ArrayList<String>();
+        var found = new EnumMap<Column, Integer>(Column.class);
+        for (int i = 0; i < header.size(); i++) {
+            Column c = Column.byHeader(header.get(i));
+            if (c != null && found.putIfAbsent(c, i) == null) columns[i] = c;
+            else if (!header.get(i).isBlank()) ignored.add(header.get(i).trim());
+        }
+        if (!found.containsKey(Column.FIRST_NAME) && !found.containsKey(Column.LAST_NAME)) {
+            throw new IllegalArgumentException("The header must have a First name and/or Last name column.");
+        }
+
+        var run = new Run(dryRun);
+        var batch = new ArrayList<Row>(batchSize);
+        List<String> cells;
+        while ((cells = reader.next()) != null) {
+            run.rows++;
+            int line = reader.line();
+            Row row;
+            try {
+                row = parse(line, cells, columns);
+            } catch (IllegalArgumentException e) {
+                run.error(line, e.getMessage());
+                continue;
+            }
+            Integer first = row.emailNorm() != null ? run.seenEmails.get(row.emailNorm()) : null;
+            if (first != null) {
+                run.conflict(new Conflict(line, ConflictField.EMAIL, row.email(), null, first));
+                continue;
+            }
+            first = row.vippsKey() != null ? run.seenReferences.get(row.vippsKey()) : null;
+            if (first != null) {
+                run.conflict(new Conflict(line, ConflictField.VIPPS_REFERENCE, row.vippsReference(), null, first));
+                continue;
+            }
+            if (row.emailNorm() != null) run.seenEmails.put(row.emailNorm(), line);
+            if (row.vippsKey() != null) run.seenReferences.put(row.vippsKey(), line);
+            batch.add(row);
+            if (batch.size() >= batchSize) flush(run, batch);
+        }
+        flush(run, batch);
+
+        int imported = dryRun ? run.valid : merge(run.id, run.valid);
+        log.info("Medlemsimport{}: {} rader, {} importert, {} konflikter, {} feil",
+                dryRun ? " (prøvekjøring)" : "", run.rows, imported, run.conflictCount, run.errorCount);
+        return new Report(dryRun, run.rows, imported, run.conflictCount, run.errorCount, ignored, run.conflicts, run.errors);
+    }
+
+    // Én spørring per felt og batch mot eksisterende medlemmer, deretter batch-insert til mellomlageret
+    private void flush(Run run, List<Row> batch) {
+        if (batch.isEmpty()) return;
+
+        var existingEmails = existing(batch.stream().map(Row::emailNorm), """
+                select lower(email), min(id) from members
+                where status = 'ACCEPTED' and lower(email) = any(?)
+                group by lower(email)
+                """);
+        // samme regel som ux_members_vipps_reference, så merge ikke møter indeksen
+        var existingReferences = existing(batch.stream().map(Row::vippsKey), """
+                select upper(btrim(vipps_reference)), min(id) from members
+                where status <> 'REJECTED' and btrim(vipps_reference) <> ''
+                  and upper(btrim(vipps_reference)) = any(?)
+                group by 1
+                """);
+
+        var accepted = new ArrayList<Row>(batch.size());
+        for (Row r : batch) {
+            Long id = r.emailNorm() != null ? existingEmails.get(r.emailNorm()) : null;
+            if (id != null) {
+                run.conflict(new Conflict(r.line(), ConflictField.EMAIL, r.email(), id, null));
+                continue;
+            }
+            id = r.vippsKey() != null ? existingReferences.get(r.vippsKey()) : null;
+            if (id != null) {
+                run.conflict(new Conflict(r.line(), ConflictField.VIPPS_REFERENCE, r.vippsReference(), id, null));
+                continue;
+            }
+            accepted.add(r);
+        }
+        run.valid += accepted.size();
+
+        if (!run.dryRun && !accepted.isEmpty()) {
+            jdbc.batchUpdate("""
+                    insert into member_import_rows (import_id, line_no, first_name, last_name, date_of_birth, address,
+                        post_code, city, phone, email, email_norm, occupation, vipps_reference, vipps_amount_nok, created_at)
+                    values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    """, accepted, accepted.size(), (ps, r) -> {
+                ps.setObject(1, run.id);
+                ps.setInt(2, r.line());
+                ps.setString(3, r.firstName());
+                ps.setString(4, r.lastName());
+                ps.setObject(5, r.dateOfBirth());
+                ps.setString(6, r.address());
+                ps.setString(7, r.postCode());
+                ps.setString(8, r.city());
+                ps.setString(9, r.phone());
+                ps.setString(10, r.email());
+                ps.setString(11, r.emailNorm());
+                ps.setString(12, r.occupation());
+                ps.setString(13, r.vippsReference());
+                ps.setObject(14, r.vippsAmountNok());
+                ps.setTimestamp(15, r.createdAt() != null ? Timestamp.from(r.createdAt()) : null);
+            });
+        }
+        batch.clear();
+    }
+
+    // nøkkel -> laveste medlems-id, for nøklene som finnes; sql tar nøklene som en array
+    private Map<String, Long> existing(Stream<String> keys, String sql) {
+        String[] values = keys.filter(k -> k != null).toArray(String[]::new);
+        var found = new HashMap<String, Long>();
+        if (values.length == 0) return found;
+        jdbc.query(con -> {
+            var ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("varchar", values));
+            return ps;
+        }, rs -> {
+            found.put(rs.getString(1), rs.getLong(2));
+        });
+        return found;
+    }
+
+    /**
+     * Fletter mellomlageret inn i members. Kollisjoner er allerede rapportert av batch-sjekken;
+     * ON CONFLICT fanger bare en søknad med samme Vipps-referanse som kom inn i mellomtiden
+     * (ux_members_vipps_reference), og det logges. Id-ene kommer fra members_seq via kolonnens DEFAULT.
+     * Importerte medlemmer er ikke søknader, så handled_at settes lik created_at (se MembershipStats).
+     */
+    private int merge(UUID importId, int expected) {
+        var inserted = jdbc.query("""
+                insert into members (first_name, last_name, date_of_birth, address, post_code, city, phone, email,
+                                     occupation, vipps_reference, vipps_amount_nok, status, created_at, updated_at, handled_at)
+                select s.first_name, s.last_name, s.date_of_birth, s.address, s.post_code, s.city, s.phone, s.email,
+                       s.occupation, s.vipps_reference, s.vipps_amount_nok, 'ACCEPTED', coalesce(s.created_at, now()), now(),
+                       coalesce(s.created_at, now())
+                from member_import_rows s
+                where s.import_id = ?
+                  and (s.email_norm is null or not exists (
+                        select 1 from members m where m.status = 'ACCEPTED' and lower(m.email) = s.email_norm))
+                order by s.line_no
+                on conflict do nothing
+                returning city, date_of_birth, created_at, handled_at
+                """, (rs, i) -> {
+            var dob = rs.getDate("date_of_birth");
+            return new Snapshot(Status.ACCEPTED, rs.getString("city"), dob != null ? dob.toLocalDate() : null,
+                    rs.getTimestamp("created_at").toInstant(), rs.getTimestamp("handled_at").toInstant());
+        }, importId);
+        if (inserted.size() < expected) {
+            log.warn("Medlemsimport: {} rader hoppet over ved fletting (lagt til samtidig)", expected - inserted.size());
+        }
+        stats.changed(List.of(), inserted);
+        jdbc.update("delete from member_import_rows where import_id = ?", importId);
+        return inserted.size();
+    }
+
+    /** @throws IllegalArgumentException med en melding som vises i rapporten */
+    static Row parse(int line, List<String> cells, Column[] columns) {
+        var v = new EnumMap<Column, String>(Column.class);
+        for (int i = 0; i < columns.length && i < cells.size(); i++) {
+            Column c = columns[i];
+            if (c == null) continue;
+            String s = cells.get(i).trim();
+            if (s.isEmpty()) continue;
+            // CsvWriter setter ' foran tekst som ligner en formel; fjernes så eksporten kan importeres igjen
+            if (s.length() > 1 && s.charAt(0) == '\'' && "=+-@".indexOf(s.charAt(1)) >= 0) s = s.substring(1);
+            if (c.maxLength > 0 && s.length() > c.maxLength) {
+                throw new IllegalArgumentException(label(c) + " is longer than " + c.maxLength + " characters.");
+            }
+            v.put(c, s);
+        }
+        if (v.get(Column.FIRST_NAME) == null && v.get(Column.LAST_NAME) == null) {
+            throw new IllegalArgumentException("First name or last name is required.");
+        }
+
+        String email = v.get(Column.EMAIL);
+        if (email != null && !EMAIL.matcher(email).matches()) {
+            throw new IllegalArgumentException("Invalid email: " + email);
+        }
+
+        Integer amount = null;
+        if (v.get(Column.VIPPS_AMOUNT_NOK) != null) {
+            try {
+                amount = Integer.valueOf(v.get(Column.VIPPS_AMOUNT_NOK).replace(" ", ""));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid Vipps amount: " + v.get(Column.VIPPS_AMOUNT_NOK));
+            }
+        }
+
+        Instant createdAt = null;
+        String created = v.get(Column.CREATED_AT);
+        if (created != null) {
+            try {
+                createdAt = Instant.parse(created);
+            } catch (DateTimeParseException e) {
+                createdAt = date(Column.CREATED_AT, created).atStartOfDay(OSLO).toInstant();
+            }
+        }
+
+        return new Row(line, v.get(Column.FIRST_NAME), v.get(Column.LAST_NAME),
+                v.get(Column.DATE_OF_BIRTH) != null ? date(Column.DATE_OF_BIRTH, v.get(Column.DATE_OF_BIRTH)) : null,
+                v.get(Column.ADDRESS), v.get(Column.POST_CODE), v.get(Column.CITY), v.get(Column.PHONE),
+                email, email != null ? email.toLowerCase(Locale.ROOT) : null, v.get(Column.OCCUPATION),
+                v.get(Column.VIPPS_REFERENCE), amount, createdAt);
+    }
+
+    // ISO (2024-03-01) eller norsk (1.3.2024)
+    private static LocalDate date(Column c, String s) {
+        try {
+            return s.contains(".") ? LocalDate.parse(s, NORWEGIAN_DATE) : LocalDate.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + label(c).toLowerCase(Locale.ROOT) + ": " + s);
+        }
+    }
+
+    private static String label(Column c) {
+        String s = c.name().replace('_', ' ').toLowerCase(Locale.ROOT);
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    // "First name", "first_name" og "firstName" blir alle "firstname"
+    private static String normalizeHeader(String h) {
+        var sb = new StringBuilder(h.length());
+        for (int i = 0; i < h.length(); i++) {
+            char ch = h.charAt(i);
+            if (Character.isLetterOrDigit(ch)) sb.append(Character.toLowerCase(ch));
+        }
+        return sb.toString();
+    }
+}
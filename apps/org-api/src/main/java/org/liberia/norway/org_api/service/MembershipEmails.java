@@ -0,0 +1,61 @@
+package org.liberia.norway.org_api.service;
+
+/**
+ * Teksten i e-postene som sendes når en søknad godkjennes eller avslås. Samme tekst brukes
+ * enten én søknad behandles av gangen eller mange samtidig.
+ */
+public final class MembershipEmails {
+
+    public record Mail(String subject, String body) {}
+
+    private MembershipEmails() {}
+
+    public static Mail accepted(String firstName, String lastName) {
+        String body = """
+            Dear %s %s,
+
+            Congratulations! We are pleased to inform you that your membership application to the Union of Liberians Association in Norway (ULAN) has been approved.
+
+            You are now an official member of ULAN!
+
+            We look forward to seeing you at our upcoming events and activities.
+
+            If you have any questions, please don't hesitate to contact us.
+
+            Welcome to the ULAN family!
+
+            Kind regards,
+            ULAN Administration
+            Union of Liberians Association in Norway
+            """.formatted(nz(firstName), nz(lastName));
+        return new Mail("Welcome to ULAN - Membership Approved!", body);
+    }
+
+    public static Mail rejected(String firstName, String lastName, String reason) {
+        String reasonText = (reason != null && !reason.isBlank())
+            ? "\n\nReason: " + reason + "\n"
+            : "";
+
+        String body = """
+            Dear %s %s,
+
+            Thank you for your interest in becoming a member of the Union of Liberians Association in Norway (ULAN).
+
+            After reviewing your application, we regret to inform you that we are unable to approve your membership at this time.%s
+            If you believe this decision was made in error or if you have additional information that may support your application, please feel free to contact our administration team.
+
+            You are welcome to reapply in the future.
+
+            Thank you for your understanding.
+
+            Kind regards,
+            ULAN Administration
+            Union of Liberians Association in Norway
+            """.formatted(nz(firstName), nz(lastName), reasonText);
+        return new Mail("ULAN Membership Application Status", body);
+    }
+
+    private static String nz(String s) {
+        return s == null ? "" : s;
+    }
+}
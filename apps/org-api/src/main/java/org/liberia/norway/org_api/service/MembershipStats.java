@@ -0,0 +1,315 @@
+package org.liberia.norway.org_api.service;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.liberia.norway.org_api.model.Member;
+import org.liberia.norway.org_api.model.Member.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Medlemsstatistikk for styret, ferdig summert i membership_daily_stats per dag, by og fødselsår.
+ * Hver endring i members meldes hit med tilstanden før og etter ({@link #changed}), og differansen
+ * legges til med én upsert i samme transaksjon; statistikk-endepunktet leser bare tabellen og
+ * skanner aldri members. En nattlig jobb regner alt på nytt fra members og retter avvik (f.eks.
+ * endringer gjort direkte i databasen).
+ * <p>
+ * Tallene gjelder radene som finnes: avslåtte søknader som slettes etter oppbevaringstiden,
+ * forsvinner også fra statistikken.
+ */
+@Slf4j
+@Service
+public class MembershipStats {
+
+    private static final ZoneId OSLO = ZoneId.of("Europe/Oslo");
+
+    // Samme regler som add() nedenfor og migreringen V20261033
+    private static final String ROLLUP = """
+            with m as (
+              select coalesce(lower(trim(city)), '') as city,
+                     coalesce(extract(year from date_of_birth)::int, 0) as birth_year,
+                     status, created_at, handled_at
+              from members
+            )
+            select day, city, birth_year, sum(applications)::int as applications, sum(members)::int as members,
+                   sum(rejected)::int as rejected, sum(decided)::int as decided,
+                   sum(turnaround_seconds)::bigint as turnaround_seconds
+            from (
+              select (created_at at time zone 'Europe/Oslo')::date as day, city, birth_year,
+                     1 as applications, 0 as members, 0 as rejected, 0 as decided, 0::bigint as turnaround_seconds
+              from m where handled_at is null or handled_at <> created_at
+              union all
+              select (coalesce(handled_at, created_at) at time zone 'Europe/Oslo')::date, city, birth_year, 0, 1, 0, 0, 0
+              from m where status = 'ACCEPTED'
+              union all
+              select (handled_at at time zone 'Europe/Oslo')::date, city, birth_year, 0, 0, 1, 0, 0
+              from m where status = 'REJECTED' and handled_at is not null
+              union all
+              select (handled_at at time zone 'Europe/Oslo')::date, city, birth_year, 0, 0, 0, 1,
+                     floor(extract(epoch from handled_at - created_at))::bigint
+              from m where status <> 'PENDING' and handled_at > created_at
+            ) x
+            group by day, city, birth_year
+            """;
+
+    /** Det statistikken trenger fra én rad i members. */
+    public record Snapshot(Status status, String city, LocalDate dateOfBirth, Instant createdAt, Instant handledAt) {
+        public Snapshot {
+            // databasen lagrer mikrosekunder; sammenligningene må gi samme svar her som der
+            createdAt = createdAt != null ? createdAt.truncatedTo(ChronoUnit.MICROS) : null;
+            handledAt = handledAt != null ? handledAt.truncatedTo(ChronoUnit.MICROS) : null;
+        }
+
+        public static Snapshot of(Member m) {
+            return new Snapshot(m.getStatus(), m.getCity(), m.getDateOfBirth(), m.getCreatedAt(), m.getHandledAt());
+        }
+    }
+
+    private record Key(LocalDate day, String city, int birthYear) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::day)
+                .thenComparing(Key::city).thenComparingInt(Key::birthYear);
+
+        @Override
+        public int compareTo(Key o) {
+            return ORDER.compare(this, o);
+        }
+    }
+
+    public record CityCount(String city, int members) {}
+
+    public record AgeBracket(String bracket, int members) {}
+
+    public record MonthRow(@JsonFormat(pattern = "yyyy-MM") YearMonth month, int applications, int joined, int rejected, int decided,
+                           Double averageTurnaroundHours) {}
+
+    /**
+     * @param members medlemmer i dag
+     * @param byAge aldersgrupper regnet ut fra fødselsåret (alder ved årets slutt)
+     * @param months de siste månedene, eldst først; joined er netto (utmeldte trekkes fra)
+     */
+    public record Statistics(int members, List<CityCount> byCity, List<AgeBracket> byAge, List<MonthRow> months,
+                             int decided, Double averageTurnaroundHours) {}
+
+    private static final int[] AGE_LIMITS = {25, 35, 45, 55, 65};
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final Counter corrected;
+
+    public MembershipStats(JdbcTemplate jdbc, PlatformTransactionManager txManager, MeterRegistry meters) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.corrected = Counter.builder("membership.stats.corrected")
+                .description("Rader i membership_daily_stats rettet av den nattlige kontrollen")
+                .register(meters);
+    }
+
+    /** Én rad er lagt til, endret eller slettet ({@code before}/{@code after} er null ved ny/slettet). */
+    public void changed(Snapshot before, Snapshot after) {
+        changed(before == null ? List.of() : List.of(before), after == null ? List.of() : List.of(after));
+    }
+
+    /**
+     * Legger differansen mellom {@code after} og {@code before} til i membership_daily_stats.
+     * Må kalles i samme transaksjon som endringen i members.
+     */
+    public void changed(Collection<Snapshot> before, Collection<Snapshot> after) {
+        // sortert, så samtidige transaksjoner låser radene i samme rekkefølge
+        var deltas = new TreeMap<Key, long[]>();
+        for (Snapshot s : after) add(deltas, s, 1);
+        for (Snapshot s : before) add(deltas, s, -1);
+        deltas.values().removeIf(d -> d[0] == 0 && d[1] == 0 && d[2] == 0 && d[3] == 0 && d[4] == 0);
+        if (deltas.isEmpty()) return;
+
+        var rows = new ArrayList<Object[]>(deltas.size());
+        deltas.forEach((k, d) -> rows.add(new Object[] {
+                Date.valueOf(k.day()), k.city(), k.birthYear(), (int) d[0], (int) d[1], (int) d[2], (int) d[3], d[4]}));
+        jdbc.batchUpdate("""
+                insert into membership_daily_stats as s
+                       (day, city, birth_year, applications, members, rejected, decided, turnaround_seconds)
+                values (?, ?, ?, ?, ?, ?, ?, ?)
+                on conflict (day, city, birth_year) do update
+                   set applications = s.applications + excluded.applications,
+                       members = s.members + excluded.members,
+                       rejected = s.rejected + excluded.rejected,
+                       decided = s.decided + excluded.decided,
+                       turnaround_seconds = s.turnaround_seconds + excluded.turnaround_seconds
+                """, rows);
+    }
+
+    // Bidraget til én rad, med fortegn; speiler ROLLUP
+    private static void add(Map<Key, long[]> deltas, Snapshot s, int sign) {
+        String city = s.city() == null ? "" : s.city().trim().toLowerCase(Locale.ROOT);
+        int birthYear = s.dateOfBirth() == null ? 0 : s.dateOfBirth().getYear();
+        Instant created = s.createdAt(), handled = s.handledAt();
+
+        if (handled == null || !handled.equals(created)) {
+            bump(deltas, new Key(day(created), city, birthYear), 0, sign);
+        }
+        if (s.status() == Status.ACCEPTED) {
+            bump(deltas, new Key(day(handled != null ? handled : created), city, birthYear), 1, sign);
+        }
+        if (s.status() == Status.REJECTED && handled != null) {
+            bump(deltas, new Key(day(handled), city, birthYear), 2, sign);
+        }
+        if (s.status() != Status.PENDING && handled != null && handled.isAfter(created)) {
+            var key = new Key(day(handled), city, birthYear);
+            bump(deltas, key, 3, sign);
+            bump(deltas, key, 4, sign * Duration.between(created, handled).getSeconds());
+        }
+    }
+
+    private static void bump(Map<Key, long[]> deltas, Key key, int column, long amount) {
+        deltas.computeIfAbsent(key, k -> new long[5])[column] += amount;
+    }
+
+    private static LocalDate day(Instant t) {
+        return t.atZone(OSLO).toLocalDate();
+    }
+
+    /**
+     * Nattlig kontroll: regner statistikken på nytt fra members og retter radene som avviker.
+     * Tabellen låses mot skriving mens det pågår, så ingen endring kan komme mellom opptellingen og
+     * rettingen (lesing av statistikken går som vanlig).
+     * @return antall rader som ble rettet
+     */
+    @Scheduled(cron = "${app.membership.stats.verify-cron:0 30 3 * * *}", zone = "Europe/Oslo")
+    public int verify() {
+        Integer fixed = tx.execute(s -> {
+            jdbc.execute("lock table membership_daily_stats in exclusive mode");
+            // én setning: rader som avviker skrives over, rader uten noe bak seg slettes (de som er
+            // telt ned til 0 er bare opprydding og telles ikke som avvik)
+            return jdbc.queryForObject("""
+                    with fresh as (%s),
+                    fixed as (
+                      insert into membership_daily_stats as s
+                             (day, city, birth_year, applications, members, rejected, decided, turnaround_seconds)
+                      select day, city, birth_year, applications, members, rejected, decided, turnaround_seconds
+                      from fresh
+                      on conflict (day, city, birth_year) do update
+                         set applications = excluded.applications, members = excluded.members,
+                             rejected = excluded.rejected, decided = excluded.decided,
+                             turnaround_seconds = excluded.turnaround_seconds
+                       where (s.applications, s.members, s.rejected, s.decided, s.turnaround_seconds)
+                             is distinct from (excluded.applications, excluded.members, excluded.rejected,
+                                               excluded.decided, excluded.turnaround_seconds)
+                      returning 1
+                    ),
+                    removed as (
+                      delete from membership_daily_stats s
+                      where not exists (select 1 from fresh f
+                                        where f.day = s.day and f.city = s.city and f.birth_year = s.birth_year)
+                      returning (s.applications, s.members, s.rejected, s.decided, s.turnaround_seconds)
+                                <> (0, 0, 0, 0, 0::bigint) as drift
+                    )
+                    select (select count(*) from fixed) + (select count(*) from removed where drift)
+                    """.formatted(ROLLUP), Integer.class);
+        });
+        int n = fixed == null ? 0 : fixed;
+        corrected.increment(n);
+        if (n > 0) log.warn("Medlemsstatistikken hadde {} rader som avvek fra members; rettet", n);
+        return n;
+    }
+
+    /** Statistikken for dashbordet, lest fra membership_daily_stats. */
+    public Statistics statistics(int months) {
+        var byCity = jdbc.query("""
+                select city, sum(members)::int as members from membership_daily_stats
+                group by city having sum(members) > 0
+                order by members desc, city
+                """, (rs, i) -> new CityCount(cityName(rs.getString("city")), rs.getInt("members")));
+        int total = byCity.stream().mapToInt(CityCount::members).sum();
+
+        var byAge = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i <= AGE_LIMITS.length; i++) byAge.put(bracket(i), 0);
+        byAge.put("Unknown", 0);
+        int thisYear = LocalDate.now(OSLO).getYear();
+        jdbc.query("""
+                select birth_year, sum(members)::int as members from membership_daily_stats
+                group by birth_year having sum(members) > 0
+                """, rs -> {
+            int year = rs.getInt("birth_year");
+            byAge.merge(year == 0 ? "Unknown" : bracketFor(thisYear - year), rs.getInt("members"), Integer::sum);
+        });
+
+        YearMonth last = YearMonth.now(OSLO);
+        YearMonth first = last.minusMonths(months - 1L);
+        var byMonth = new TreeMap<YearMonth, MonthRow>();
+        for (YearMonth m = first; !m.isAfter(last); m = m.plusMonths(1)) {
+            byMonth.put(m, new MonthRow(m, 0, 0, 0, 0, null));
+        }
+        long[] turnaround = new long[2]; // behandlede, sekunder
+        jdbc.query("""
+                select date_trunc('month', day)::date as month, sum(applications)::int as applications,
+                       sum(members)::int as joined, sum(rejected)::int as rejected, sum(decided)::int as decided,
+                       sum(turnaround_seconds)::bigint as turnaround_seconds
+                from membership_daily_stats
+                where day >= ?
+                group by 1
+                """, rs -> {
+            var month = YearMonth.from(rs.getDate("month").toLocalDate());
+            int decided = rs.getInt("decided");
+            long seconds = rs.getLong("turnaround_seconds");
+            turnaround[0] += decided;
+            turnaround[1] += seconds;
+            byMonth.put(month, new MonthRow(month, rs.getInt("applications"), rs.getInt("joined"),
+                    rs.getInt("rejected"), decided, hours(decided, seconds)));
+        }, Date.valueOf(first.atDay(1)));
+
+        var ages = byAge.entrySet().stream().map(e -> new AgeBracket(e.getKey(), e.getValue())).toList();
+        return new Statistics(total, byCity, ages, List.copyOf(byMonth.values()),
+                (int) turnaround[0], hours(turnaround[0], turnaround[1]));
+    }
+
+    private static Double hours(long decided, long seconds) {
+        return decided == 0 ? null : Math.round(seconds / 36.0 / decided) / 100.0;
+    }
+
+    private static String bracketFor(int age) {
+        for (int i = 0; i < AGE_LIMITS.length; i++) {
+            if (age < AGE_LIMITS[i]) return bracket(i);
+        }
+        return bracket(AGE_LIMITS.length);
+    }
+
+    private static String bracket(int i) {
+        if (i == 0) return "Under " + AGE_LIMITS[0];
+        if (i == AGE_LIMITS.length) return AGE_LIMITS[i - 1] + "+";
+        return AGE_LIMITS[i - 1] + "-" + (AGE_LIMITS[i] - 1);
+    }
+
+    // "bergen" -> "Bergen", "nedre eiker" -> "Nedre Eiker"; tom by -> null
+    private static String cityName(String city) {
+        if (city.isEmpty()) return null;
+        var sb = new StringBuilder(city.length());
+        boolean start = true;
+        for (char ch : city.toCharArray()) {
+            sb.append(start ? Character.toUpperCase(ch) : ch);
+            start = ch == ' ' || ch == '-';
+        }
+        return sb.toString();
+    }
+}
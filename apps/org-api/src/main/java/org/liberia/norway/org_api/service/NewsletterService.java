@@ -0,0 +1,170 @@
+package org.liberia.norway.org_api.service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+
+import org.liberia.norway.org_api.model.Newsletter;
+import org.liberia.norway.org_api.model.Newsletter.Status;
+import org.liberia.norway.org_api.repository.MemberRepository;
+import org.liberia.norway.org_api.repository.NewsletterRecipient;
+import org.liberia.norway.org_api.repository.NewsletterRepository;
+import org.liberia.norway.org_api.service.EmailOutbox.Outgoing;
+import org.liberia.norway.org_api.util.MailTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Legger et nyhetsbrev ut i email_outbox, én rad per godkjent medlem. Medlemmene hentes side for
+ * side med id som markør, og hver side (utfylte meldinger + ny markør) lagres i én transaksjon.
+ * Stopper prosessen midt i, fortsetter neste oppstart fra markøren. Selve sendingen, med kvoter
+ * og nye forsøk, gjør {@link EmailDispatcher}.
+ */
+@Slf4j
+@Service
+public class NewsletterService {
+
+    /** Plassholderne malene kan bruke. */
+    public static final Set<String> VARIABLES = Set.of("firstName", "lastName", "fullName", "email");
+
+    // email_outbox.subject
+    private static final int MAX_SUBJECT = 300;
+
+    private final NewsletterRepository newsletters;
+    private final MemberRepository members;
+    private final EmailOutbox outbox;
+    private final TaskScheduler scheduler;
+    private final TransactionTemplate tx;
+    private final int pageSize;
+
+    public NewsletterService(NewsletterRepository newsletters, MemberRepository members, EmailOutbox outbox,
+                             TaskScheduler scheduler, PlatformTransactionManager txManager,
+                             @Value("${app.newsletter.page-size:500}") int pageSize) {
+        this.newsletters = newsletters;
+        this.members = members;
+        this.outbox = outbox;
+        this.scheduler = scheduler;
+        this.tx = new TransactionTemplate(txManager);
+        this.pageSize = pageSize;
+    }
+
+    /** Kompilerte maler for én utsendelse; kompileres én gang per kjøring, ikke per mottaker. */
+    private record Templates(MailTemplate subject, MailTemplate body) {
+        static Templates of(Newsletter n) {
+            return new Templates(MailTemplate.compile(n.getSubject(), VARIABLES), MailTemplate.compile(n.getBody(), VARIABLES));
+        }
+    }
+
+    /** Kaster IllegalArgumentException hvis emne eller tekst bruker en ukjent plassholder. */
+    public static void validate(String subject, String body) {
+        MailTemplate.compile(subject, VARIABLES);
+        MailTemplate.compile(body, VARIABLES);
+    }
+
+    /** Setter nyhetsbrevet i kø og starter utleggingen i bakgrunnen. Kun fra DRAFT. */
+    public Newsletter start(long id) {
+        var started = tx.execute(s -> {
+            var n = newsletters.lockById(id).orElseThrow();
+            if (n.getStatus() != Status.DRAFT) throw new IllegalStateException("Newsletter is " + n.getStatus());
+            n.setStatus(Status.QUEUING);
+            n.setUpdatedAt(OffsetDateTime.now());
+            return n;
+        });
+        scheduler.schedule(() -> fanOut(id), Instant.now());
+        return started;
+    }
+
+    /** Stopper utleggingen og mottakere som ikke er hentet av dispatcheren ennå. */
+    public Newsletter cancel(long id) {
+        return tx.execute(s -> {
+            var n = newsletters.lockById(id).orElseThrow();
+            if (n.getStatus() == Status.DRAFT || n.getStatus() == Status.CANCELLED) {
+                throw new IllegalStateException("Newsletter is " + n.getStatus());
+            }
+            int stopped = outbox.cancelNewsletter(id);
+            n.setStatus(Status.CANCELLED);
+            n.setUpdatedAt(OffsetDateTime.now());
+            log.info("Nyhetsbrev {} avbrutt, {} mottakere stoppet", id, stopped);
+            return n;
+        });
+    }
+
+    // Utlegging som ble avbrutt av en omstart, fortsetter fra markøren
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        for (var n : newsletters.findByStatus(Status.QUEUING)) {
+            log.info("Fortsetter utlegging av nyhetsbrev {} etter medlem {}", n.getId(), n.getLastMemberId());
+            scheduler.schedule(() -> fanOut(n.getId()), Instant.now());
+        }
+    }
+
+    void fanOut(long id) {
+        try {
+            Templates templates = null;
+            while (true) {
+                Templates compiled = templates;
+                var page = tx.execute(s -> queueNextPage(id, compiled));
+                if (page == null) return;
+                templates = page;
+            }
+        } catch (RuntimeException e) {
+            // markøren står der siste vellykkede side sluttet; neste oppstart fortsetter
+            log.error("Utlegging av nyhetsbrev {} stoppet: {}", id, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Én side under radlås på nyhetsbrevet, så to samtidige kjøringer ikke leser samme markør.
+     * @return malene (for gjenbruk på neste side), eller null når utleggingen er ferdig eller stoppet
+     */
+    private Templates queueNextPage(long id, Templates cached) {
+        var n = newsletters.lockById(id).orElse(null);
+        if (n == null || n.getStatus() != Status.QUEUING) return null;
+
+        var recipients = members.findNewsletterRecipients(n.getLastMemberId(), Limit.of(pageSize));
+        if (recipients.isEmpty()) {
+            n.setStatus(Status.QUEUED);
+            n.setQueuedAt(OffsetDateTime.now());
+            n.setUpdatedAt(OffsetDateTime.now());
+            log.info("Nyhetsbrev {} lagt i kø for {} mottakere", id, n.getRecipients());
+            return null;
+        }
+
+        var templates = cached != null ? cached : Templates.of(n);
+        var messages = new ArrayList<Outgoing>(recipients.size());
+        var values = new HashMap<String, String>();
+        for (NewsletterRecipient r : recipients) {
+            String email = r.email().trim();
+            if (email.isEmpty()) continue;
+            values.put("firstName", nz(r.firstName()));
+            values.put("lastName", nz(r.lastName()));
+            values.put("fullName", (nz(r.firstName()) + " " + nz(r.lastName())).trim());
+            values.put("email", email);
+            messages.add(new Outgoing(r.memberId(), email, clip(templates.subject().render(values), MAX_SUBJECT),
+                    templates.body().render(values)));
+        }
+
+        n.setRecipients(n.getRecipients() + outbox.enqueueNewsletter(id, messages));
+        n.setLastMemberId(recipients.get(recipients.size() - 1).memberId());
+        n.setUpdatedAt(OffsetDateTime.now());
+        return templates;
+    }
+
+    private static String clip(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+
+    private static String nz(String s) {
+        return s == null ? "" : s.trim();
+    }
+}
@@ -0,0 +1,91 @@
+package org.liberia.norway.org_api.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.concurrent.ScheduledFuture;
+
+import org.liberia.norway.org_api.repository.EventRepository;
+import org.liberia.norway.org_api.web.dto.EventResponse;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holder neste kommende publiserte arrangement i minnet. Lesing er bare et volatile-oppslag;
+ * verdien regnes ut på nytt når et arrangement endres via admin, og ellers nøyaktig når
+ * det holdte arrangementet starter. Feiler oppslaget, beholdes forrige verdi og det prøves
+ * igjen med økende pause, så en databasefeil ved grensen ikke blir stående til neste admin-endring.
+ */
+@Slf4j
+@Service
+public class NextEventHolder {
+
+    private final EventRepository events;
+    private final TaskScheduler scheduler;
+    private final TransactionTemplate readOnlyTx;
+
+    private volatile EventResponse next;
+    private ScheduledFuture<?> wakeUp; // beskyttet av synchronized refresh()
+    private int failures;              // likeså
+
+    public NextEventHolder(EventRepository events, TaskScheduler scheduler, PlatformTransactionManager txManager) {
+        this.events = events;
+        this.scheduler = scheduler;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** Neste arrangement, eller null hvis ingen er planlagt. */
+    public EventResponse get() {
+        return next;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    // Etter commit, slik at vi leser den nye tilstanden (eller straks hvis det ikke var noen transaksjon)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsChanged(EventsChanged e) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        EventResponse found;
+        try {
+            // description er lazy, så DTO-en bygges inne i transaksjonen
+            found = readOnlyTx.execute(s -> events
+                    .findFirstByIsPublishedTrueAndStartAtGreaterThanOrderByStartAtAsc(OffsetDateTime.now())
+                    .map(EventResponse::from)
+                    .orElse(null));
+        } catch (RuntimeException e) {
+            Duration delay = retryDelay(failures++);
+            log.warn("Kunne ikke oppdatere neste arrangement, prøver igjen om {} s: {}", delay.toSeconds(), e.getMessage());
+            schedule(Instant.now().plus(delay));
+            return;
+        }
+        failures = 0;
+        next = found;
+
+        schedule(found == null ? null : found.startAt().toInstant());
+        log.debug("Neste arrangement: {}", found == null ? "ingen" : found.slug());
+    }
+
+    private void schedule(Instant at) {
+        if (wakeUp != null) wakeUp.cancel(false);
+        wakeUp = at == null ? null : scheduler.schedule(this::refresh, at);
+    }
+
+    // 1, 2, 4 ... sekunder, høyst fem minutter
+    private static Duration retryDelay(int failures) {
+        return Duration.ofSeconds(Math.min(300, 1L << Math.min(failures, 9)));
+    }
+}
@@ -0,0 +1,7 @@
+package org.liberia.norway.org_api.service;
+
+/**
+ * Publiseres av admin-endepunktene når en side opprettes, endres, (av)publiseres eller slettes.
+ * {@link PublishedPages} bygger slug-tabellen på nytt.
+ */
+public record PagesChanged(Long pageId) { }
@@ -0,0 +1,125 @@
+package org.liberia.norway.org_api.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import org.liberia.norway.org_api.model.Pages;
+import org.liberia.norway.org_api.repository.ContentVersion;
+import org.liberia.norway.org_api.repository.PageRepository;
+import org.liberia.norway.org_api.util.MarkdownRenderer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publiserte sider med ferdig rendret HTML, slått opp på slug. Tabellen er uforanderlig og byttes
+ * ut i én volatile-skriving når admin endrer en side, så lesing er uten parsing, låser og databasekall.
+ * Feiler oppslaget, beholdes forrige tabell og det prøves igjen med økende pause.
+ */
+@Slf4j
+@Service
+public class PublishedPages {
+
+    /** Alt den offentlige siden trenger, inkludert ferdig utregnet ETag. */
+    public record RenderedPage(Long id, String slug, String title, String body, String html,
+                               String publishedAt, String etag) {}
+
+    private final PageRepository pages;
+    private final TaskScheduler scheduler;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnlyTx;
+
+    private volatile Map<String, RenderedPage> bySlug = Map.of();
+    private ScheduledFuture<?> retry; // beskyttet av synchronized refresh()
+    private int failures;             // likeså
+
+    public PublishedPages(PageRepository pages, TaskScheduler scheduler, PlatformTransactionManager txManager) {
+        this.pages = pages;
+        this.scheduler = scheduler;
+        this.tx = new TransactionTemplate(txManager);
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    public RenderedPage get(String slug) {
+        return bySlug.get(slug);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        renderMissing();
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPagesChanged(PagesChanged e) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        Map<String, RenderedPage> built;
+        try {
+            built = readOnlyTx.execute(s -> {
+                var map = new HashMap<String, RenderedPage>();
+                for (Pages p : pages.findPublishedWithHtml()) map.put(p.getSlug(), toRendered(p));
+                return Map.copyOf(map);
+            });
+        } catch (RuntimeException e) {
+            Duration delay = retryDelay(failures++);
+            log.warn("Kunne ikke oppdatere publiserte sider, prøver igjen om {} s: {}", delay.toSeconds(), e.getMessage());
+            scheduleRetry(Instant.now().plus(delay));
+            return;
+        }
+        failures = 0;
+        scheduleRetry(null);
+        bySlug = built;
+        log.debug("Publiserte sider: {}", built.size());
+    }
+
+    private void scheduleRetry(Instant at) {
+        if (retry != null) retry.cancel(false);
+        retry = at == null ? null : scheduler.schedule(this::refresh, at);
+    }
+
+    // 1, 2, 4 ... sekunder, høyst fem minutter
+    private static Duration retryDelay(int failures) {
+        return Duration.ofSeconds(Math.min(300, 1L << Math.min(failures, 9)));
+    }
+
+    /** Rendrer sider som mangler HTML (lagret før kolonnen fantes). */
+    void renderMissing() {
+        Integer rendered = tx.execute(s -> {
+            List<Pages> missing = pages.findByBodyHashIsNull();
+            for (Pages p : missing) render(p);
+            return missing.size();
+        });
+        if (rendered != null && rendered > 0) log.info("Rendret HTML for {} eksisterende sider", rendered);
+    }
+
+    /** Rendrer body til HTML hvis teksten er endret siden sist; ellers beholdes lagret HTML. */
+    public static void render(Pages p) {
+        String hash = MarkdownRenderer.hash(p.getBody());
+        if (hash.equals(p.getBodyHash()) && p.getBodyHtml() != null) return;
+        var r = MarkdownRenderer.render(p.getBody());
+        p.setBodyHtml(r.html());
+        p.setBodyHash(r.sourceHash());
+    }
+
+    private static RenderedPage toRendered(Pages p) {
+        // samme ETag-format som før, så klienter med gammel validator ikke får unødvendig 200
+        String etag = new ContentVersion(1L, p.getId(), p.getUpdatedAt()).etag("page-" + p.getSlug());
+        String html = p.getBodyHtml() != null ? p.getBodyHtml() : MarkdownRenderer.render(p.getBody()).html();
+        return new RenderedPage(p.getId(), p.getSlug(), p.getTitle(), p.getBody(), html,
+                p.getPublishedAt() != null ? p.getPublishedAt().toString() : null, etag);
+    }
+}
@@ -0,0 +1,102 @@
+package org.liberia.norway.org_api.service;
+
+import java.util.List;
+
+import org.liberia.norway.org_api.model.Member.Status;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sletter avslåtte søknader når delete_at er passert (satt ved avslag), så personopplysningene
+ * ikke blir liggende. Slettes med ren SQL i biter på {@code batchSize} rader, hver i sin egen
+ * korte transaksjon, så store mengder aldri låser tabellen lenge. SKIP LOCKED gjør at flere
+ * instanser kan kjøre samtidig uten å vente på hverandre eller slette samme rad.
+ */
+@Slf4j
+@Service
+public class RejectedMemberPurge {
+
+    private final JdbcTemplate jdbc;
+    private final MembershipStats stats;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter deleted;
+    private final Timer duration;
+
+    public RejectedMemberPurge(JdbcTemplate jdbc, MembershipStats stats, PlatformTransactionManager txManager,
+                               MeterRegistry meters,
+                               @Value("${app.membership.purge.batch-size:500}") int batchSize,
+                               @Value("${app.membership.purge.max-batches:200}") int maxBatches) {
+        this.jdbc = jdbc;
+        this.stats = stats;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.deleted = Counter.builder("membership.purge.deleted")
+                .description("Avslåtte søknader slettet etter utløpt oppbevaringstid")
+                .register(meters);
+        this.duration = Timer.builder("membership.purge.duration")
+                .description("Tid per kjøring av slettejobben")
+                .register(meters);
+    }
+
+    /**
+     * Én kjøring: bit for bit til det ikke er flere utløpte rader, eller til {@code maxBatches}
+     * (resten tas neste gang).
+     * @return antall slettede rader
+     */
+    @Scheduled(fixedDelayString = "${app.membership.purge.interval-ms:3600000}",
+               initialDelayString = "${app.membership.purge.initial-delay-ms:300000}")
+    public long purge() {
+        long total = 0;
+        var sample = Timer.start();
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                int n = deleteBatch();
+                total += n;
+                deleted.increment(n);
+                if (n < batchSize) break;
+            }
+        } catch (RuntimeException e) {
+            // bitene som er slettet er committet; neste kjøring fortsetter
+            log.warn("Sletting av utløpte søknader stoppet etter {} rader: {}", total, e.getMessage());
+        } finally {
+            sample.stop(duration);
+        }
+        if (total > 0) log.info("Slettet {} avslåtte søknader med utløpt oppbevaringstid", total);
+        return total;
+    }
+
+    int deleteBatch() {
+        Integer n = tx.execute(s -> {
+            var removed = jdbc.query("""
+                    delete from members
+                    where id in (select id from members
+                                 where status = 'REJECTED' and delete_at < now()
+                                 order by delete_at
+                                 limit ?
+                                 for update skip locked)
+                    returning city, date_of_birth, created_at, handled_at
+                    """, (rs, i) -> {
+                var dob = rs.getDate("date_of_birth");
+                var handled = rs.getTimestamp("handled_at");
+                return new Snapshot(Status.REJECTED, rs.getString("city"), dob != null ? dob.toLocalDate() : null,
+                        rs.getTimestamp("created_at").toInstant(), handled != null ? handled.toInstant() : null);
+            }, batchSize);
+            stats.changed(removed, List.of());
+            return removed.size();
+        });
+        return n == null ? 0 : n;
+    }
+}
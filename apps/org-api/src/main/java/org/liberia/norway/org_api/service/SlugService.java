@@ -0,0 +1,102 @@
+package org.liberia.norway.org_api.service;
+
+import java.util.function.Supplier;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.liberia.norway.org_api.util.SlugUtil;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Unike slugs for album, sider, arrangementer og annonser.
+ * Ledig suffiks finnes med én indeksert {@code slug LIKE 'base%'}-spørring, uansett hvor mange
+ * kollisjoner som finnes; samtidige lagringer fanges av unik-constrainten og prøves på nytt.
+ */
+@Slf4j
+@Service
+public class SlugService {
+
+    public enum Scope {
+        ALBUM("albums", "album"),
+        PAGE("pages", "page"),
+        EVENT("events", "event"),
+        ADVERT("adverts", "advert");
+
+        final String table;
+        final String fallback;
+
+        Scope(String table, String fallback) {
+            this.table = table;
+            this.fallback = fallback;
+        }
+    }
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate requiresNew;
+
+    public SlugService(JdbcTemplate jdbc, PlatformTransactionManager txManager) {
+        this.jdbc = jdbc;
+        this.requiresNew = new TransactionTemplate(txManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public String slugify(Scope scope, String input) {
+        return SlugUtil.slugify(input, scope.fallback);
+    }
+
+    /**
+     * Første ledige variant av {@code input}: base, base-2, base-3 ...
+     * {@code currentId} er raden som lagres (null ved opprettelse), slik at den beholder sin egen slug.
+     */
+    public String uniqueSlug(Scope scope, String input, Long currentId) {
+        String base = slugify(scope, input);
+        // base inneholder bare [a-z0-9-], så den kan brukes rett i LIKE og regex
+        var row = jdbc.queryForMap("""
+                select bool_or(slug = ?) as base_taken,
+                       max(case when slug = ? then 1 else cast(substring(slug from ?) as integer) end) as max_suffix
+                from %s
+                where slug like ?
+                  and (slug = ? or slug ~ ?)
+                  and id is distinct from ?
+                """.formatted(scope.table),
+                base, base, base.length() + 2, base + "%", base, "^" + base + "-[0-9]{1,9}$", currentId);
+
+        if (!Boolean.TRUE.equals(row.get("base_taken"))) return base;
+        int next = Math.max(2, ((Number) row.get("max_suffix")).intValue() + 1);
+        return base + "-" + next;
+    }
+
+    /**
+     * Kjører {@code work} i egen transaksjon og prøver på nytt hvis en samtidig lagring tok
+     * samme slug. {@code work} må slå opp slug på nytt (via {@link #uniqueSlug}) og flushe selv.
+     */
+    public <T> T withUniqueSlug(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return requiresNew.execute(status -> work.get());
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_ATTEMPTS || !isSlugConflict(e)) throw e;
+                log.info("Slug-kollisjon ved lagring (forsøk {}), prøver igjen", attempt);
+            }
+        }
+    }
+
+    private static boolean isSlugConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException cve
+                    && cve.getConstraintName() != null
+                    && cve.getConstraintName().contains("slug")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
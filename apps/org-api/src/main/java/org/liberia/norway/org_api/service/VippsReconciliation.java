@@ -0,0 +1,325 @@
+package org.liberia.norway.org_api.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.liberia.norway.org_api.model.Member.VippsCheck;
+import org.liberia.norway.org_api.util.CsvReader;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Avstemmer søknader mot oppgjørsrapporten fra Vipps (CSV fra portalen eller JSON fra rapport-API-et).
+ * Søknadene som er PENDING er få, så de legges i en hashtabell på Vipps-referansen; rapporten,
+ * som kan dekke flere år, strømmes forbi én linje om gangen og slås opp i tabellen. Minnebruken
+ * avhenger dermed bare av antall søknader, ikke av rapporten. Resultatet lagres på søknadene med
+ * én UPDATE.
+ * <p>
+ * Beløp: CSV har kroner ("245,00"), JSON har øre slik Vipps-API-et leverer dem (24500 eller
+ * {"value": 24500, "currency": "NOK"}). Flere linjer med samme referanse (f.eks. en refusjon)
+ * summeres. Søknader som allerede er MATCHED og ikke står i denne rapporten, røres ikke, så
+ * rapporter for ulike perioder kan lastes opp etter hverandre.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VippsReconciliation {
+
+    private static final ZoneId OSLO = ZoneId.of("Europe/Oslo");
+    private static final DateTimeFormatter NORWEGIAN_DATE = DateTimeFormatter.ofPattern("d.M.uuuu");
+
+    // Overskrifter/felt (normalisert: små bokstaver, bare bokstaver og tall) som kan inneholde referansen
+    private static final List<String> REFERENCE_NAMES = List.of(
+            "reference", "vippsreference", "transactionid", "transaksjonsid", "orderid", "ordreid",
+            "ordrenummer", "pspreference", "referanse");
+    private static final List<String> AMOUNT_NAMES = List.of("amount", "grossamount", "belop", "beløp", "bruttobeløp");
+    private static final List<String> DATE_NAMES = List.of("date", "dato", "salesdate", "transactiondate", "ledgerdate", "time");
+
+    public enum Result { MATCHED, MISMATCH, MISSING, NOT_COVERED }
+
+    public record Item(long memberId, String name, String reference, int expectedNok, BigDecimal reportedNok,
+                       Result result) {}
+
+    /**
+     * @param entries linjer i rapporten
+     * @param unknownEntries linjer uten en ventende søknad (vanlige betalinger, allerede godkjente osv.)
+     * @param invalidEntries linjer uten lesbar referanse eller beløp
+     * @param reportFrom første dato i rapporten; eldre søknader blir NOT_COVERED i stedet for MISSING
+     * @param reportUntil siste dato i rapporten; nyere søknader blir NOT_COVERED i stedet for MISSING
+     */
+    public record Report(boolean dryRun, long entries, long unknownEntries, long invalidEntries,
+                         int matched, int mismatched, int missing, int notCovered, LocalDate reportFrom,
+                         LocalDate reportUntil, List<Item> items) {}
+
+    /** En ventende søknad, med summen av det rapporten har for referansen. */
+    private static final class Pending {
+        final long id;
+        final String name;
+        final String reference;
+        final int expectedNok;
+        final LocalDate applied;
+        final boolean matchedBefore;
+        long reportedOre;
+        int hits;
+
+        Pending(long id, String name, String reference, int expectedNok, LocalDate applied, boolean matchedBefore) {
+            this.id = id;
+            this.name = name;
+            this.reference = reference;
+            this.expectedNok = expectedNok;
+            this.applied = applied;
+            this.matchedBefore = matchedBefore;
+        }
+    }
+
+    /** Én linje fra rapporten. */
+    private interface Sink {
+        void entry(List<String> references, Long ore, LocalDate date);
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+
+    /**
+     * Leser rapporten og merker søknadene MATCHED, MISMATCH eller MISSING (ikke med dryRun).
+     * @throws IllegalArgumentException hvis filen ikke kan tolkes som en oppgjørsrapport
+     */
+    public Report reconcile(InputStream upload, boolean dryRun) throws IOException {
+        var pending = loadPending();
+
+        long[] counts = new long[3]; // linjer, ukjente, ugyldige
+        LocalDate[] from = {null};
+        LocalDate[] until = {null};
+        Sink sink = (references, ore, date) -> {
+            counts[0]++;
+            if (ore == null || references.isEmpty()) {
+                counts[2]++;
+                return;
+            }
+            if (date != null && (from[0] == null || date.isBefore(from[0]))) from[0] = date;
+            if (date != null && (until[0] == null || date.isAfter(until[0]))) until[0] = date;
+            for (String ref : references) {
+                Pending p = pending.get(key(ref));
+                if (p != null) {
+                    p.reportedOre += ore;
+                    p.hits++;
+                    return;
+                }
+            }
+            counts[1]++;
+        };
+
+        var in = new BufferedInputStream(upload, 64 * 1024);
+        if (isJson(in)) readJson(in, sink);
+        else readCsv(in, sink);
+
+        var items = new ArrayList<Item>(pending.size());
+        for (Pending p : pending.values()) {
+            Result r;
+            if (p.hits > 0) r = p.reportedOre == p.expectedNok * 100L ? Result.MATCHED : Result.MISMATCH;
+            else if (p.matchedBefore) continue; // betalingen sto i en tidligere rapport
+            // utenfor perioden rapporten dekker: betalingen kan stå i en annen rapport
+            else if (until[0] != null && (p.applied.isBefore(from[0]) || p.applied.isAfter(until[0]))) r = Result.NOT_COVERED;
+            else r = Result.MISSING;
+            items.add(new Item(p.id, p.name, p.reference, p.expectedNok,
+                    p.hits > 0 ? BigDecimal.valueOf(p.reportedOre, 2) : null, r));
+        }
+        items.sort(Comparator.comparing(Item::result).reversed().thenComparing(Item::memberId));
+
+        if (!dryRun) mark(items);
+
+        int[] byResult = new int[Result.values().length];
+        for (Item i : items) byResult[i.result().ordinal()]++;
+        log.info("Vipps-avstemming{}: {} linjer, {} søknader ({} stemmer, {} feil beløp, {} mangler)",
+                dryRun ? " (prøvekjøring)" : "", counts[0], items.size(), byResult[0], byResult[1], byResult[2]);
+        return new Report(dryRun, counts[0], counts[1], counts[2], byResult[Result.MATCHED.ordinal()],
+                byResult[Result.MISMATCH.ordinal()], byResult[Result.MISSING.ordinal()],
+                byResult[Result.NOT_COVERED.ordinal()], from[0], until[0], items);
+    }
+
+    private Map<String, Pending> loadPending() {
+        var pending = new HashMap<String, Pending>();
+        jdbc.query("""
+                select id, first_name, last_name, vipps_reference, vipps_amount_nok, created_at, vipps_check
+                from members
+                where status = 'PENDING' and btrim(vipps_reference) <> ''
+                """, rs -> {
+            String name = ((rs.getString("first_name") == null ? "" : rs.getString("first_name")) + " "
+                    + (rs.getString("last_name") == null ? "" : rs.getString("last_name"))).trim();
+            var p = new Pending(rs.getLong("id"), name, rs.getString("vipps_reference"), rs.getInt("vipps_amount_nok"),
+                    rs.getTimestamp("created_at").toInstant().atZone(OSLO).toLocalDate(),
+                    VippsCheck.MATCHED.name().equals(rs.getString("vipps_check")));
+            // ux_members_vipps_reference er unik på samme nøkkel, så ingen søknad skygger for en annen
+            pending.put(key(p.reference), p);
+        });
+        return pending;
+    }
+
+    // Én UPDATE for alle; NOT_COVERED lar forrige resultat stå
+    private void mark(List<Item> items) {
+        var marked = items.stream().filter(i -> i.result() != Result.NOT_COVERED).toList();
+        if (marked.isEmpty()) return;
+        Long[] ids = new Long[marked.size()];
+        String[] checks = new String[marked.size()];
+        Long[] ore = new Long[marked.size()];
+        for (int i = 0; i < ids.length; i++) {
+            var item = marked.get(i);
+            ids[i] = item.memberId();
+            checks[i] = VippsCheck.valueOf(item.result().name()).name();
+            ore[i] = item.reportedNok() != null ? item.reportedNok().movePointRight(2).longValueExact() : null;
+        }
+        jdbc.execute((ConnectionCallback<Integer>) con -> {
+            try (var ps = con.prepareStatement("""
+                    update members m
+                       set vipps_check = u.vipps_check, vipps_reported_ore = u.ore, vipps_checked_at = now()
+                      from unnest(?, ?, ?) as u(id, vipps_check, ore)
+                     where m.id = u.id and m.status = 'PENDING'
+                    """)) {
+                ps.setArray(1, con.createArrayOf("bigint", ids));
+                ps.setArray(2, con.createArrayOf("varchar", checks));
+                ps.setArray(3, con.createArrayOf("bigint", ore));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    // Første tegn som ikke er BOM eller mellomrom avgjør formatet
+    static boolean isJson(BufferedInputStream in) throws IOException {
+        in.mark(1024);
+        try {
+            for (int i = 0, c; i < 1024 && (c = in.read()) != -1; i++) {
+                if (c == 0xEF || c == 0xBB || c == 0xBF || Character.isWhitespace(c)) continue;
+                return c == '[' || c == '{';
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static void readCsv(InputStream in, Sink sink) throws IOException {
+        var csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        var header = csv.next();
+        if (header == null) throw new IllegalArgumentException("The report is empty.");
+
+        var referenceColumns = new ArrayList<Integer>();
+        int amountColumn = -1, dateColumn = -1;
+        for (int i = 0; i < header.size(); i++) {
+            String h = normalize(header.get(i));
+            if (REFERENCE_NAMES.contains(h)) referenceColumns.add(i);
+            else if (amountColumn < 0 && AMOUNT_NAMES.contains(h)) amountColumn = i;
+            else if (dateColumn < 0 && DATE_NAMES.contains(h)) dateColumn = i;
+        }
+        if (referenceColumns.isEmpty() || amountColumn < 0) {
+            throw new IllegalArgumentException("The report needs a reference/transaction id column and an amount column.");
+        }
+
+        List<String> row;
+        var references = new ArrayList<String>(referenceColumns.size());
+        while ((row = csv.next()) != null) {
+            references.clear();
+            for (int c : referenceColumns) {
+                if (c < row.size() && !row.get(c).isBlank()) references.add(row.get(c).trim());
+            }
+            Long ore = amountColumn < row.size() ? kronerToOre(row.get(amountColumn)) : null;
+            LocalDate date = dateColumn >= 0 && dateColumn < row.size() ? date(row.get(dateColumn)) : null;
+            sink.entry(references, ore, date);
+        }
+    }
+
+    // Hvert objekt i en liste er én linje, enten rapporten er [...] eller {"items": [...]}
+    private void readJson(InputStream in, Sink sink) throws IOException {
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            JsonToken t;
+            while ((t = p.nextToken()) != null) {
+                if (t != JsonToken.START_OBJECT || !p.getParsingContext().getParent().inArray()) continue;
+                JsonNode entry = p.readValueAsTree();
+                var references = new ArrayList<String>();
+                var names = entry.fieldNames();
+                Long ore = null;
+                LocalDate date = null;
+                while (names.hasNext()) {
+                    String field = names.next();
+                    String f = normalize(field);
+                    JsonNode v = entry.get(field);
+                    if (REFERENCE_NAMES.contains(f) && v.isValueNode() && !v.asText().isBlank()) {
+                        references.add(v.asText().trim());
+                    } else if (ore == null && AMOUNT_NAMES.contains(f)) {
+                        JsonNode value = v.isObject() ? v.get("value") : v;
+                        if (value != null && value.isIntegralNumber()) ore = value.asLong();
+                    } else if (date == null && DATE_NAMES.contains(f) && v.isTextual()) {
+                        date = date(v.asText());
+                    }
+                }
+                sink.entry(references, ore, date);
+            }
+        }
+    }
+
+    // "245", "245,00", "1 245,50", "1.245,50"; tusenskillet kan også være (smalt) hardt mellomrom
+    static Long kronerToOre(String s) {
+        String v = s.replace("kr", "").replace("NOK", "")
+                .replace(" ", "").replace("\u00A0", "").replace("\u202F", "").trim();
+        if (v.isEmpty()) return null;
+        int comma = v.lastIndexOf(','), dot = v.lastIndexOf('.');
+        if (comma >= 0 && dot >= 0) {
+            v = comma > dot ? v.replace(".", "").replace(',', '.') : v.replace(",", "");
+        } else if (comma >= 0) {
+            v = v.replace(',', '.');
+        }
+        try {
+            return new BigDecimal(v).movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // ISO-dato eller -tidspunkt, eller norsk dato (1.3.2024), eventuelt med klokkeslett etter
+    private static LocalDate date(String s) {
+        String v = s.trim();
+        try {
+            if (v.length() >= 10 && v.charAt(4) == '-') return LocalDate.parse(v.substring(0, 10));
+            int space = v.indexOf(' ');
+            return LocalDate.parse(space > 0 ? v.substring(0, space) : v, NORWEGIAN_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Samme nøkkel som ux_members_vipps_reference: upper(btrim(vipps_reference))
+    static String key(String reference) {
+        return reference.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String normalize(String h) {
+        var sb = new StringBuilder(h.length());
+        for (int i = 0; i < h.length(); i++) {
+            char ch = h.charAt(i);
+            if (Character.isLetterOrDigit(ch)) sb.append(Character.toLowerCase(ch));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package org.liberia.norway.org_api.util;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Vektet trekning med alias-metoden (Vose). Tabellen bygges én gang i O(n); hver trekning er
+ * ett tilfeldig heltall og ett tilfeldig desimaltall, O(1) og uten allokering.
+ * Uforanderlig etter bygging, så den kan deles mellom tråder.
+ */
+public final class AliasSampler {
+
+  private final double[] prob;
+  private final int[] alias;
+
+  /** @param weights positive vekter; indeksen i arrayen er det som trekkes */
+  public AliasSampler(int[] weights) {
+    int n = weights.length;
+    if (n == 0) throw new IllegalArgumentException("weights must not be empty");
+
+    long total = 0;
+    for (int w : weights) {
+      if (w <= 0) throw new IllegalArgumentException("weights must be positive");
+      total += w;
+    }
+
+    prob = new double[n];
+    alias = new int[n];
+
+    // skalert slik at gjennomsnittet er 1; < 1 er "små" kolonner som fylles opp av "store"
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = (double) weights[i] * n / total;
+      if (scaled[i] < 1.0) small[smallCount++] = i;
+      else large[largeCount++] = i;
+    }
+
+    while (smallCount > 0 && largeCount > 0) {
+      int s = small[--smallCount];
+      int l = large[--largeCount];
+      prob[s] = scaled[s];
+      alias[s] = l;
+      scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+      if (scaled[l] < 1.0) small[smallCount++] = l;
+      else large[largeCount++] = l;
+    }
+    // resten er 1 (opp til avrundingsfeil)
+    while (largeCount > 0) {
+      int l = large[--largeCount];
+      prob[l] = 1.0;
+      alias[l] = l;
+    }
+    while (smallCount > 0) {
+      int s = small[--smallCount];
+      prob[s] = 1.0;
+      alias[s] = s;
+    }
+  }
+
+  public int size() {
+    return prob.length;
+  }
+
+  /** Trekker en indeks med sannsynlighet proporsjonal med vekten. */
+  public int next(RandomGenerator random) {
+    int column = random.nextInt(prob.length);
+    return random.nextDouble() < prob[column] ? column : alias[column];
+  }
+}
@@ -0,0 +1,116 @@
+package org.liberia.norway.org_api.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV-leser (RFC 4180) som gir én rad om gangen, så store filer aldri ligger i minnet. Tåler
+ * UTF-8 BOM, CRLF/LF, linjeskift i anførselstegn og semikolon som skilletegn (norsk Excel);
+ * skilletegnet velges ut fra første linje.
+ */
+public final class CsvReader implements Closeable {
+
+  private static final int SNIFF_LIMIT = 64 * 1024;
+
+  private final BufferedReader in;
+  private final char delimiter;
+  private final StringBuilder field = new StringBuilder();
+  private int line = 1;
+  private int recordLine;
+
+  public CsvReader(Reader reader) throws IOException {
+    this.in = reader instanceof BufferedReader b ? b : new BufferedReader(reader, 16 * 1024);
+    in.mark(SNIFF_LIMIT);
+    if (in.read() != '\uFEFF') in.reset(); // BOM
+    in.mark(SNIFF_LIMIT);
+    this.delimiter = sniff();
+    in.reset();
+  }
+
+  // Flest av ; eller , utenfor anførselstegn på første linje
+  private char sniff() throws IOException {
+    int commas = 0, semicolons = 0, n = 0, c;
+    boolean quoted = false;
+    while ((c = in.read()) != -1 && ++n < SNIFF_LIMIT) {
+      if (c == '"') quoted = !quoted;
+      else if (!quoted && (c == '\n' || c == '\r')) break;
+      else if (!quoted && c == ',') commas++;
+      else if (!quoted && c == ';') semicolons++;
+    }
+    return semicolons > commas ? ';' : ',';
+  }
+
+  public char delimiter() {
+    return delimiter;
+  }
+
+  /** Linjenummeret (1-basert) der raden fra siste {@link #next()} startet. */
+  public int line() {
+    return recordLine;
+  }
+
+  /**
+   * Neste rad, eller null ved slutten av filen. Tomme linjer hoppes over.
+   * @throws IllegalArgumentException ved anførselstegn som aldri lukkes
+   */
+  public List<String> next() throws IOException {
+    while (true) {
+      recordLine = line;
+      List<String> row = readRecord();
+      if (row == null) return null;
+      if (row.size() > 1 || !row.get(0).isEmpty()) return row;
+    }
+  }
+
+  private List<String> readRecord() throws IOException {
+    int c = in.read();
+    if (c == -1) return null;
+
+    var row = new ArrayList<String>();
+    field.setLength(0);
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (c == -1) throw new IllegalArgumentException("Unterminated quoted field starting on line " + recordLine);
+        if (c == '"') {
+          in.mark(1);
+          int next = in.read();
+          if (next == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            in.reset();
+          }
+        } else {
+          if (c == '\n') line++;
+          field.append((char) c);
+        }
+      } else if (c == '"' && field.isEmpty()) {
+        quoted = true;
+      } else if (c == delimiter) {
+        row.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\r' || c == '\n' || c == -1) {
+        if (c == '\r') {
+          in.mark(1);
+          if (in.read() != '\n') in.reset();
+        }
+        if (c != -1) line++;
+        row.add(field.toString());
+        return row;
+      } else {
+        field.append((char) c);
+      }
+      c = in.read();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,56 @@
+package org.liberia.norway.org_api.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV etter RFC 4180 (komma, CRLF, anførselstegn ved behov) i UTF-8 med BOM, slik at Excel
+ * viser æøå riktig. Tekst som starter med =, +, - eller @ får en apostrof foran, så et
+ * medlemsnavn aldri tolkes som formel når filen åpnes i et regneark.
+ */
+public final class CsvWriter implements RowWriter {
+
+  private final Writer out;
+
+  public CsvWriter(OutputStream out) throws IOException {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+    this.out.write('\uFEFF'); // BOM
+  }
+
+  @Override
+  public void writeRow(Object... cells) throws IOException {
+    for (int i = 0; i < cells.length; i++) {
+      if (i > 0) out.write(',');
+      Object c = cells[i];
+      if (c == null) continue;
+      if (c instanceof Number) out.write(c.toString());
+      else text(c.toString());
+    }
+    out.write("\r\n");
+  }
+
+  private void text(String s) throws IOException {
+    if (!s.isEmpty() && "=+-@".indexOf(s.charAt(0)) >= 0) s = "'" + s;
+    boolean quote = false;
+    for (int i = 0; i < s.length() && !quote; i++) {
+      char ch = s.charAt(i);
+      quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+    }
+    if (!quote) {
+      out.write(s);
+      return;
+    }
+    out.write('"');
+    out.write(s.replace("\"", "\"\""));
+    out.write('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.flush();
+  }
+}
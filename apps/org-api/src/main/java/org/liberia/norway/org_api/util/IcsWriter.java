@@ -0,0 +1,111 @@
+package org.liberia.norway.org_api.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Minimal iCalendar-skriver (RFC 5545): CRLF-linjer, escaping av tekst og folding ved 75 oktetter.
+ * Skriver rett til en {@link Writer}, så hendelser kan strømmes uten å samles i en liste først.
+ */
+public final class IcsWriter {
+
+  private static final DateTimeFormatter UTC_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+  private static final int MAX_LINE_OCTETS = 75;
+
+  private final Writer out;
+
+  public IcsWriter(Writer out) {
+    this.out = out;
+  }
+
+  public IcsWriter beginCalendar(String prodId, String name) {
+    line("BEGIN:VCALENDAR");
+    line("VERSION:2.0");
+    line("PRODID:" + prodId);
+    line("CALSCALE:GREGORIAN");
+    line("METHOD:PUBLISH");
+    if (name != null) line("X-WR-CALNAME:" + text(name));
+    return this;
+  }
+
+  public IcsWriter endCalendar() {
+    line("END:VCALENDAR");
+    return this;
+  }
+
+  public IcsWriter beginEvent(String uid, OffsetDateTime stamp) {
+    line("BEGIN:VEVENT");
+    line("UID:" + uid);
+    line("DTSTAMP:" + utc(stamp));
+    return this;
+  }
+
+  public IcsWriter endEvent() {
+    line("END:VEVENT");
+    return this;
+  }
+
+  /** Tidspunkt i UTC; null hoppes over. */
+  public IcsWriter time(String name, OffsetDateTime value) {
+    if (value != null) line(name + ":" + utc(value));
+    return this;
+  }
+
+  /** Tekstfelt med escaping; null/blank hoppes over. */
+  public IcsWriter text(String name, String value) {
+    if (value != null && !value.isBlank()) line(name + ":" + text(value));
+    return this;
+  }
+
+  /** Verdi uten escaping (URI o.l.). */
+  public IcsWriter raw(String name, String value) {
+    if (value != null && !value.isBlank()) line(name + ":" + value);
+    return this;
+  }
+
+  public void flush() {
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String utc(OffsetDateTime t) {
+    return t.withOffsetSameInstant(ZoneOffset.UTC).format(UTC_STAMP);
+  }
+
+  static String text(String s) {
+    return s.replace("\\", "\\\\")
+        .replace(";", "\\;")
+        .replace(",", "\\,")
+        .replace("\r\n", "\\n")
+        .replace("\n", "\\n")
+        .replace("\r", "\\n");
+  }
+
+  // Folder lange linjer: CRLF + mellomrom, uten å dele et UTF-8-tegn
+  private void line(String content) {
+    try {
+      int octets = 0;
+      for (int i = 0; i < content.length(); ) {
+        int cp = content.codePointAt(i);
+        int len = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+        if (octets + len > MAX_LINE_OCTETS) {
+          out.write("\r\n ");
+          octets = 1;
+        }
+        out.write(Character.toChars(cp));
+        octets += len;
+        i += Character.charCount(cp);
+      }
+      out.write("\r\n");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.liberia.norway.org_api.util;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enkel e-postmal med plassholdere som {@code {{firstName}}}. Teksten deles opp én gang i faste
+ * biter og variabler; hver utfylling er da bare sammensetting, uten regex eller søk.
+ * Uforanderlig etter kompilering, så den kan deles mellom tråder.
+ */
+public final class MailTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([A-Za-z]+)\\s*}}");
+
+    // Annenhver bit er tekst og variabelnavn: parts[0] tekst, parts[1] navn, parts[2] tekst ...
+    private final String[] parts;
+    private final int literalLength;
+
+    private MailTemplate(String[] parts, int literalLength) {
+        this.parts = parts;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * @param allowed variabelnavnene malen kan bruke
+     * @throws IllegalArgumentException ved ukjent plassholder
+     */
+    public static MailTemplate compile(String template, Set<String> allowed) {
+        String source = template == null ? "" : template;
+        var parts = new ArrayList<String>();
+        int literalLength = 0;
+        int last = 0;
+        Matcher m = PLACEHOLDER.matcher(source);
+        while (m.find()) {
+            String name = m.group(1);
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown placeholder {{" + name + "}}, allowed: " + allowed);
+            }
+            String literal = source.substring(last, m.start());
+            parts.add(literal);
+            parts.add(name);
+            literalLength += literal.length();
+            last = m.end();
+        }
+        String tail = source.substring(last);
+        parts.add(tail);
+        literalLength += tail.length();
+        return new MailTemplate(parts.toArray(String[]::new), literalLength);
+    }
+
+    /** Fyller inn verdiene; manglende verdier blir tom tekst. */
+    public String render(Map<String, String> values) {
+        var sb = new StringBuilder(literalLength + 16 * (parts.length / 2));
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                sb.append(parts[i]);
+            } else {
+                String v = values.get(parts[i]);
+                if (v != null) sb.append(v);
+            }
+        }
+        return sb.toString();
+    }
+}
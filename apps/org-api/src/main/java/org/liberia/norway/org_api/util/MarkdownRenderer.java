@@ -0,0 +1,61 @@
+package org.liberia.norway.org_api.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.owasp.html.HtmlPolicyBuilder;
+import org.owasp.html.PolicyFactory;
+import org.owasp.html.Sanitizers;
+
+/**
+ * Markdown til renset HTML for CMS-sider. Rå HTML i kilden slippes gjennom CommonMark, men alt
+ * går deretter gjennom en hviteliste (formatering, blokker, lenker, bilder, tabeller), så
+ * resultatet kan settes rett inn i DOM. Parser, renderer og policy er trådsikre.
+ */
+public final class MarkdownRenderer {
+
+    /** Rendret HTML og SHA-256 (hex) av Markdown-kilden den kom fra. */
+    public record Rendered(String html, String sourceHash) {}
+
+    private static final Parser PARSER = Parser.builder()
+            .extensions(List.of(TablesExtension.create()))
+            .build();
+
+    private static final HtmlRenderer RENDERER = HtmlRenderer.builder()
+            .extensions(List.of(TablesExtension.create()))
+            .build();
+
+    private static final PolicyFactory POLICY = Sanitizers.FORMATTING
+            .and(Sanitizers.BLOCKS)
+            .and(Sanitizers.LINKS)
+            .and(Sanitizers.IMAGES)
+            .and(Sanitizers.TABLES)
+            .and(new HtmlPolicyBuilder()
+                    .allowElements("pre", "code", "hr")
+                    .allowAttributes("class").matching(false, "^language-[a-z0-9+#-]+$").onElements("code")
+                    .toFactory());
+
+    private MarkdownRenderer() {}
+
+    public static Rendered render(String markdown) {
+        String source = markdown == null ? "" : markdown;
+        String html = POLICY.sanitize(RENDERER.render(PARSER.parse(source)));
+        return new Rendered(html, hash(source));
+    }
+
+    public static String hash(String markdown) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((markdown == null ? "" : markdown).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.liberia.norway.org_api.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Skriver en tabell rad for rad rett til en strøm, uten å holde radene i minnet.
+ * {@link #close()} avslutter dokumentet og flusher, men lukker ikke den underliggende strømmen.
+ * Kall den bare når alle radene er skrevet; et dokument som avbrytes, skal ikke avsluttes.
+ */
+public interface RowWriter extends Closeable {
+
+  /** Én rad; celler kan være {@code null}, {@link Number} eller noe annet (skrives som tekst). */
+  void writeRow(Object... cells) throws IOException;
+
+  /** Overskriftsrad; formatene kan utheve den. */
+  default void writeHeader(Object... cells) throws IOException {
+    writeRow(cells);
+  }
+}
@@ -1,13 +1,35 @@
 package org.liberia.norway.org_api.util;
 
+import java.text.Normalizer;
+import java.util.Locale;
+
 public final class SlugUtil {
   private SlugUtil() {}
+
+  // slug-kolonnene er varchar(120); la det være plass til "-<n>"-suffiks
+  public static final int MAX_BASE_LENGTH = 100;
+
+  /**
+   * Felles slug-regel for alle innholdstyper: NFKD + fjerning av diakritiske tegn,
+   * nordiske/tyske bokstaver som ikke brytes ned (æ, ø, ß ...) skrives om, alt annet blir "-".
+   */
   public static String slugify(String s) {
     if (s == null) return null;
-    var slug = s.trim().toLowerCase()
-      .replaceAll("[^a-z0-9\\s-]", "")
-      .replaceAll("\\s+", "-")
-      .replaceAll("-{2,}", "-");
+    var slug = Normalizer.normalize(s.trim(), Normalizer.Form.NFKD)
+      .replaceAll("\\p{M}+", "")
+      .toLowerCase(Locale.ROOT)
+      .replace("æ", "ae").replace("ø", "o").replace("œ", "oe")
+      .replace("ß", "ss").replace("đ", "d").replace("ł", "l").replace("þ", "th")
+      .replaceAll("[^a-z0-9]+", "-")
+      .replaceAll("(^-|-$)", "");
+    if (slug.length() > MAX_BASE_LENGTH) {
+      slug = slug.substring(0, MAX_BASE_LENGTH).replaceAll("-$", "");
+    }
     return slug.isBlank() ? null : slug;
   }
+
+  public static String slugify(String s, String fallback) {
+    var slug = slugify(s);
+    return slug == null ? fallback : slug;
+  }
 }
@@ -0,0 +1,97 @@
+package org.liberia.norway.org_api.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per nøkkel (typisk klientens IP) uten låser: hver bøtte er én AtomicLong med
+ * tidspunktet den er full igjen (GCRA), så et uttak er én compare-and-set. En bøtte som er full
+ * igjen er lik en ny, og fjernes derfor uten at noe går tapt. Nøklene er fordelt på stripes, så
+ * opprydningen bare går gjennom én liten stripe om gangen og aldri hele tabellen.
+ */
+public final class TokenBuckets {
+
+    /** Resultat av ett uttak; tider i nanosekunder. */
+    public record Decision(boolean allowed, int remaining, long resetNanos, long retryAfterNanos) {}
+
+    private static final int STRIPES = 16;
+    // hvor ofte en stripe ryddes, uansett størrelse (potens av 2)
+    private static final int SWEEP_EVERY = 4096;
+
+    private final int capacity;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxPerStripe;
+    private final LongSupplier clock;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private static final class Stripe {
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicInteger ops = new AtomicInteger();
+    }
+
+    /**
+     * @param capacity antall forespørsler i en full bøtte
+     * @param period tiden det tar å fylle en tom bøtte igjen
+     * @param maxEntries antall bøtter før opprydning også skjer ved nye nøkler
+     */
+    public TokenBuckets(int capacity, Duration period, int maxEntries) {
+        this(capacity, period, maxEntries, System::nanoTime);
+    }
+
+    public TokenBuckets(int capacity, Duration period, int maxEntries, LongSupplier clock) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        if (period.isNegative() || period.isZero()) throw new IllegalArgumentException("period must be positive");
+        this.capacity = capacity;
+        this.intervalNanos = Math.max(1, period.toNanos() / capacity);
+        this.burstNanos = intervalNanos * capacity;
+        this.maxPerStripe = Math.max(1, maxEntries / STRIPES);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Tar ett token fra bøtta til {@code key}. */
+    public Decision tryAcquire(String key) {
+        long now = clock.getAsLong();
+        int h = key.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            if (stripe.buckets.size() >= maxPerStripe) sweep(stripe, now);
+            bucket = stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        if ((stripe.ops.incrementAndGet() & (SWEEP_EVERY - 1)) == 0) sweep(stripe, now);
+
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + intervalNanos;
+            long reset = next - now;
+            if (reset > burstNanos) {
+                return new Decision(false, 0, full - now, reset - burstNanos);
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return new Decision(true, (int) ((burstNanos - reset) / intervalNanos), reset, 0);
+            }
+        }
+    }
+
+    /** Antall bøtter som ikke er fulle ennå (eller ikke ryddet bort). */
+    public int size() {
+        int n = 0;
+        for (Stripe s : stripes) n += s.buckets.size();
+        return n;
+    }
+
+    // En tråd som akkurat har hentet en bøtte som fjernes her, kan få ett ekstra token; det godtar vi
+    private static void sweep(Stripe stripe, long now) {
+        stripe.buckets.values().removeIf(b -> b.get() - now <= 0);
+    }
+}
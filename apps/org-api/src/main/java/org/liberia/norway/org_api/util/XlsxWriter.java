@@ -0,0 +1,140 @@
+package org.liberia.norway.org_api.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Strømmende XLSX med ett regneark. Samme idé som POIs SXSSF, men uten mellomlagring: de faste
+ * delene av pakken skrives først, og arket skrives rad for rad rett inn i zip-strømmen.
+ * Tekst lagres som inline-strenger (ingen delt strengtabell som må holdes i minnet) og
+ * evalueres aldri som formler. Første rad kan gjøres fet med {@link #writeHeader}.
+ */
+public final class XlsxWriter implements RowWriter {
+
+  private static final String CONTENT_TYPES = """
+      <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+      <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+      <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+      <Default Extension="xml" ContentType="application/xml"/>\
+      <Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+      <Override PartName="/xl/worksheets/sheet1.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+      <Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>\
+      </Types>""";
+
+  private static final String ROOT_RELS = """
+      <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+      <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+      <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>\
+      </Relationships>""";
+
+  private static final String WORKBOOK_RELS = """
+      <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+      <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+      <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>\
+      <Relationship Id="rId2" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" Target="styles.xml"/>\
+      </Relationships>""";
+
+  // Stil 0 = vanlig, stil 1 = fet (overskriftsraden)
+  private static final String STYLES = """
+      <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+      <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+      <fonts count="2"><font><sz val="11"/><name val="Calibri"/></font><font><b/><sz val="11"/><name val="Calibri"/></font></fonts>\
+      <fills count="2"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill></fills>\
+      <borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>\
+      <cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>\
+      <cellXfs count="2"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>\
+      <xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/></cellXfs>\
+      </styleSheet>""";
+
+  private final ZipOutputStream zip;
+  private final Writer out;
+
+  public XlsxWriter(OutputStream target, String sheetName) throws IOException {
+    zip = new ZipOutputStream(target, StandardCharsets.UTF_8);
+    out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 16 * 1024);
+
+    part("[Content_Types].xml", CONTENT_TYPES);
+    part("_rels/.rels", ROOT_RELS);
+    part("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+    part("xl/styles.xml", STYLES);
+    part("xl/workbook.xml", """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+        xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">\
+        <sheets><sheet name="%s" sheetId="1" r:id="rId1"/></sheets></workbook>""".formatted(escape(sheetName)));
+
+    zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+        + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+        + "<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>"
+        + "<sheetData>");
+  }
+
+  /** Overskriftsrad i fet skrift (og frosset øverst i arket). */
+  @Override
+  public void writeHeader(Object... cells) throws IOException {
+    row(1, cells);
+  }
+
+  @Override
+  public void writeRow(Object... cells) throws IOException {
+    row(0, cells);
+  }
+
+  private void row(int style, Object[] cells) throws IOException {
+    String s = style == 0 ? "" : " s=\"" + style + "\"";
+    out.write("<row>");
+    for (Object c : cells) {
+      if (c == null) {
+        out.write("<c/>");
+      } else if (c instanceof Number n) {
+        out.write("<c" + s + "><v>" + n + "</v></c>");
+      } else {
+        out.write("<c" + s + " t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        out.write(escape(c.toString()));
+        out.write("</t></is></c>");
+      }
+    }
+    out.write("</row>");
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.write("</sheetData></worksheet>");
+    out.flush();
+    zip.closeEntry();
+    zip.finish();
+    zip.flush();
+  }
+
+  private void part(String name, String xml) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    out.write(xml);
+    out.flush();
+    zip.closeEntry();
+  }
+
+  // XML-escaping; kontrolltegn som ikke er lov i XML 1.0 fjernes
+  private static String escape(String s) {
+    var sb = new StringBuilder(s.length() + 16);
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      switch (ch) {
+        case '&' -> sb.append("&amp;");
+        case '<' -> sb.append("&lt;");
+        case '>' -> sb.append("&gt;");
+        case '"' -> sb.append("&quot;");
+        default -> {
+          if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') sb.append(ch);
+        }
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -1,14 +1,23 @@
 package org.liberia.norway.org_api.web;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 
 import org.liberia.norway.org_api.model.Advert;
 import org.liberia.norway.org_api.repository.AdvertRepository;
+import org.liberia.norway.org_api.service.AdvertStats;
+import org.liberia.norway.org_api.service.AdvertsChanged;
 import org.liberia.norway.org_api.service.FileStorageService;
+import org.liberia.norway.org_api.service.FileStorageService.StoredFile;
+import org.liberia.norway.org_api.service.SlugService;
+import org.liberia.norway.org_api.service.SlugService.Scope;
 import org.liberia.norway.org_api.web.dto.AdvertDto;
 import org.liberia.norway.org_api.web.dto.AdvertMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
@@ -38,12 +47,33 @@ public class AdvertAdminController {
 
     private final AdvertRepository repo;
     private final FileStorageService storage;
+    private final SlugService slugs;
+    private final ApplicationEventPublisher publisher;
+    private final AdvertStats stats;
 
     @GetMapping
     public Page<AdvertDto> list(Pageable pageable) {
         return repo.findAll(pageable).map(AdvertMapper::toDto);
     }
 
+    // Visninger/klikk per annonse; standard er siste 30 dager. Tallene henger opptil ett flush-intervall etter.
+    @GetMapping("/stats")
+    public List<AdvertStats.AdvertTotals> stats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        var end = to != null ? to : OffsetDateTime.now();
+        return stats.totals(from != null ? from : end.minusDays(30), end);
+    }
+
+    @GetMapping("/{id}/stats")
+    public List<AdvertStats.HourlyRow> advertStats(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        var end = to != null ? to : OffsetDateTime.now();
+        return stats.hourly(id, from != null ? from : end.minusDays(7), end);
+    }
+
     @GetMapping("/{id}")
     public AdvertDto get(@PathVariable Long id) {
         Advert a = repo.findById(id)
@@ -54,70 +84,30 @@ public class AdvertAdminController {
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(CREATED)
     public AdvertDto create(@RequestBody UpsertAdvertReq req) {
-        Advert a = apply(new Advert(), req);
-        a = repo.save(a);
-        return AdvertMapper.toDto(a);
+        return save(null, req, null);
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @ResponseStatus(CREATED)
-    @Transactional
     public AdvertDto createMultipart(
             @RequestPart("model") UpsertAdvertReq req,
             @RequestPart(value = "file", required = false) MultipartFile file
     ) {
-        Advert a = apply(new Advert(), req);
-
-        if (file != null && !file.isEmpty()) {
-            var stored = storage.store(file, "media"); // <-- IKKE "adverts" (adblock kan blokkere)
-            a.setOriginalName(stored.originalName());
-            a.setFileName(stored.fileName());
-            a.setContentType(stored.contentType());
-            a.setSizeBytes(stored.size());
-
-            if (!StringUtils.hasText(a.getImageUrl())) {
-                a.setImageUrl(stored.url());
-            }
-        }
-
-        a = repo.save(a);
-        return AdvertMapper.toDto(a);
+        return save(null, req, storeIfPresent(file));
     }
 
     @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
     public AdvertDto update(@PathVariable Long id, @RequestBody UpsertAdvertReq req) {
-        Advert a = repo.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Advert not found"));
-        a = apply(a, req);
-        a = repo.save(a);
-        return AdvertMapper.toDto(a);
+        return save(id, req, null);
     }
 
     @PutMapping(path = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    @Transactional
     public AdvertDto updateMultipart(
             @PathVariable Long id,
             @RequestPart("model") UpsertAdvertReq req,
             @RequestPart(value = "file", required = false) MultipartFile file
     ) {
-        Advert a = repo.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Advert not found"));
-        a = apply(a, req);
-
-        if (file != null && !file.isEmpty()) {
-            var stored = storage.store(file, "media");
-            a.setOriginalName(stored.originalName());
-            a.setFileName(stored.fileName());
-            a.setContentType(stored.contentType());
-            a.setSizeBytes(stored.size());
-
-            if (!StringUtils.hasText(a.getImageUrl())) {
-                a.setImageUrl(stored.url());
-            }
-        }
-
-        a = repo.save(a);
-        return AdvertMapper.toDto(a);
+        return save(id, req, storeIfPresent(file));
     }
 
     @PostMapping("/{id}/active")
@@ -129,12 +119,49 @@ public class AdvertAdminController {
         advert.setActive(value);
         advert.setUpdatedAt(OffsetDateTime.now());
         repo.save(advert);
+        publisher.publishEvent(new AdvertsChanged(id));
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(NO_CONTENT)
     public void delete(@PathVariable Long id) {
         repo.deleteById(id);
+        publisher.publishEvent(new AdvertsChanged(id));
+    }
+
+    // Filen lagres før transaksjonen, så et nytt forsøk ved slug-kollisjon ikke lagrer den på nytt
+    private StoredFile storeIfPresent(MultipartFile file) {
+        if (file == null || file.isEmpty()) return null;
+        return storage.store(file, "media"); // <-- IKKE "adverts" (adblock kan blokkere)
+    }
+
+    private AdvertDto save(Long id, UpsertAdvertReq req, StoredFile stored) {
+        AdvertDto saved = slugs.withUniqueSlug(() -> {
+            Advert a = id == null ? new Advert() : repo.findById(id)
+                    .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Advert not found"));
+            a = apply(a, req);
+
+            if (StringUtils.hasText(req.slug)) {
+                a.setSlug(slugs.uniqueSlug(Scope.ADVERT, req.slug, id));
+            } else if (!StringUtils.hasText(a.getSlug())) {
+                a.setSlug(slugs.uniqueSlug(Scope.ADVERT, a.getTitle(), id));
+            }
+
+            if (stored != null) {
+                a.setOriginalName(stored.originalName());
+                a.setFileName(stored.fileName());
+                a.setContentType(stored.contentType());
+                a.setSizeBytes(stored.size());
+
+                if (!StringUtils.hasText(a.getImageUrl())) {
+                    a.setImageUrl(stored.url());
+                }
+            }
+
+            return AdvertMapper.toDto(repo.saveAndFlush(a));
+        });
+        publisher.publishEvent(new AdvertsChanged(saved.id()));
+        return saved;
     }
 
     private Advert apply(Advert a, UpsertAdvertReq req) {
@@ -143,12 +170,22 @@ public class AdvertAdminController {
         if (req.targetUrl != null) a.setTargetUrl(req.targetUrl);
         if (req.placement != null) a.setPlacement(Advert.Placement.valueOf(req.placement));
         if (req.imageUrl != null) a.setImageUrl(req.imageUrl);
-        if (req.slug != null && !req.slug.isBlank()) a.setSlug(req.slug);
 
         a.setActive(req.active != null ? req.active : a.isActive());
         a.setStartAt(req.startAt);
         a.setEndAt(req.endAt);
 
+        if (req.weight != null) {
+            if (req.weight < 1 || req.weight > 1000) {
+                throw new ResponseStatusException(BAD_REQUEST, "weight must be between 1 and 1000");
+            }
+            a.setWeight(req.weight);
+        }
+        if (req.frequencyCap != null && req.frequencyCap < 1) {
+            throw new ResponseStatusException(BAD_REQUEST, "frequencyCap must be positive");
+        }
+        a.setFrequencyCap(req.frequencyCap);
+
         a.setUpdatedAt(OffsetDateTime.now());
         return a;
     }
@@ -162,6 +199,8 @@ public class AdvertAdminController {
             String imageUrl,
             Boolean active,
             OffsetDateTime startAt,
-            OffsetDateTime endAt
+            OffsetDateTime endAt,
+            Integer weight,
+            Integer frequencyCap
     ) { }
 }
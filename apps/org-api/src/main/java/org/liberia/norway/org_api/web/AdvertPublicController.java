@@ -1,43 +1,111 @@
 package org.liberia.norway.org_api.web;
 
-import java.time.OffsetDateTime;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
-import org.liberia.norway.org_api.model.Advert;
-import org.liberia.norway.org_api.repository.AdvertRepository;
+import org.liberia.norway.org_api.model.Advert.Placement;
+import org.liberia.norway.org_api.service.ActiveAdverts;
+import org.liberia.norway.org_api.service.AdvertStats;
 import org.liberia.norway.org_api.web.dto.AdvertDto;
-import org.liberia.norway.org_api.web.dto.AdvertMapper;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import lombok.RequiredArgsConstructor;
 
+// Leser kun fra øyeblikksbildet i ActiveAdverts; ingen databasekall per visning
 @RestController
 @RequestMapping("/api/adverts")
 @RequiredArgsConstructor
 public class AdvertPublicController {
 
-    private final AdvertRepository repo;
+    private final ActiveAdverts activeAdverts;
+    private final AdvertStats stats;
 
-    // Liste kun aktive (innen tidsvindu)
+    // Liste kun aktive (innen tidsvindu), valgfritt for én plassering
     @GetMapping
-    public Page<AdvertDto> list(Pageable pageable) {
-        return repo.findAllPublic(OffsetDateTime.now(), pageable).map(AdvertMapper::toDto);
+    public Page<AdvertDto> list(@RequestParam(required = false) Placement placement,
+                                Pageable pageable, WebRequest request) {
+        var snapshot = activeAdverts.get();
+        String tag = placement == null ? "adverts" : "adverts-" + placement.name().toLowerCase();
+        if (request.checkNotModified(snapshot.version(placement).etag(tag))) return null;
+
+        List<AdvertDto> all = snapshot.list(placement);
+        if (pageable.isUnpaged()) return new PageImpl<>(all);
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    /**
+     * Velger én annonse for plasseringen etter vekt, og hopper over annonser den besøkende
+     * allerede har sett {@code frequencyCap} ganger i dag. 204 hvis ingen kan vises.
+     */
+    @GetMapping("/serve")
+    public ResponseEntity<AdvertDto> serve(@RequestParam Placement placement,
+                                           @RequestParam(required = false) String seen) {
+        var rotation = activeAdverts.get().rotation(placement);
+        var counts = SeenCounts.parse(seen);
+        var picked = rotation == null ? null : rotation.pick(ThreadLocalRandom.current(),
+                a -> a.frequencyCap() == null || counts.count(a.id()) < a.frequencyCap());
+        if (picked == null) return ResponseEntity.noContent().cacheControl(CacheControl.noStore()).build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(picked);
     }
 
     // Hent én annonse (kun om den er aktiv/gyldig akkurat nå)
     @GetMapping("/{slug}")
-    public AdvertDto get(@PathVariable String slug) {
-        var a = repo.findBySlug(slug)
-                .filter(Advert::isActive)
-                .filter(ad -> ad.getStartAt() == null || !ad.getStartAt().isAfter(OffsetDateTime.now()))
-                .filter(ad -> ad.getEndAt() == null || !ad.getEndAt().isBefore(OffsetDateTime.now()))
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Advert not found"));
-        return AdvertMapper.toDto(a);
+    public AdvertDto get(@PathVariable String slug, WebRequest request) {
+        var a = activeAdverts.get().bySlug().get(slug);
+        if (a == null) throw new ResponseStatusException(NOT_FOUND, "Advert not found");
+        long updated = a.updatedAt() == null ? 0L : a.updatedAt().toInstant().toEpochMilli();
+        if (request.checkNotModified("advert-" + slug + "-" + a.id() + "-" + updated)) return null;
+        return a;
+    }
+
+    // Klikk går via oss, så de kan telles; deretter 302 til annonsørens side
+    @GetMapping("/{slug}/click")
+    public ResponseEntity<Void> click(@PathVariable String slug) {
+        var a = activeAdverts.get().bySlug().get(slug);
+        URI target = a == null ? null : httpUri(a.targetUrl());
+        if (target == null) throw new ResponseStatusException(NOT_FOUND, "Advert not found");
+        stats.recordClick(a.id());
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(target)
+                .cacheControl(CacheControl.noStore())
+                .build();
+    }
+
+    // Visningsbeacon (navigator.sendBeacon); bare annonser som faktisk er synlige telles
+    @PostMapping("/{slug}/impression")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void impression(@PathVariable String slug) {
+        var a = activeAdverts.get().bySlug().get(slug);
+        if (a != null) stats.recordImpression(a.id());
+    }
+
+    // Samme trimmede verdi sjekkes og brukes i Location; null hvis den ikke er en http(s)-URL
+    static URI httpUri(String url) {
+        if (url == null || url.isBlank()) return null;
+        try {
+            var uri = URI.create(url.trim());
+            var scheme = uri.getScheme();
+            return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme) ? uri : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -1,11 +1,9 @@
 package org.liberia.norway.org_api.web;
 
 import java.net.URI;
-import java.text.Normalizer;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -13,10 +11,15 @@ import java.util.stream.Collectors;
 
 import org.liberia.norway.org_api.model.Album;
 import org.liberia.norway.org_api.repository.AlbumRepository;
+import org.liberia.norway.org_api.service.AlbumService;
 import org.liberia.norway.org_api.service.FileStorageService;
+import org.liberia.norway.org_api.service.SlugService;
+import org.liberia.norway.org_api.service.SlugService.Scope;
+import org.liberia.norway.org_api.web.dto.AdminAlbumDto;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkResult;
 import org.liberia.norway.org_api.web.dto.AlbumItemDto;
 import org.liberia.norway.org_api.web.dto.AlbumItemMapper;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -53,9 +56,6 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AlbumAdminController {
 
-    @Value("${app.storage.public-path:/uploads}")
-    private String publicBasePath;
-
     // Supported file types
     private static final Set<String> SUPPORTED_IMAGE_TYPES = new HashSet<>(Arrays.asList(
         "image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp", "image/heic", "image/heif"
@@ -77,38 +77,12 @@ public class AlbumAdminController {
         "jpg", "jpeg", "png", "gif", "webp", "heic", "heif"
     ));
 
-    private String publicBase() {
-        String base = (publicBasePath == null || publicBasePath.isBlank()) ? "/uploads" : publicBasePath;
-        return base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
-    }
-
     private final AlbumRepository albumRepo;
+    private final AlbumService albumService;
     private final FileStorageService fileStorageService;
+    private final SlugService slugs;
 
     // ---------- DTOs ----------
-    public record AdminAlbumDto(
-            Long id,
-            String slug,
-            String title,
-            String description,
-            boolean published,
-            Instant createdAt,
-            Instant updatedAt,
-            Integer itemsCount
-    ) {
-        public static AdminAlbumDto from(Album a) {
-            return new AdminAlbumDto(
-                    a.getId(),
-                    a.getSlug(),
-                    a.getTitle(),
-                    a.getDescription(),
-                    a.isPublished(),
-                    a.getCreatedAt(),
-                    a.getUpdatedAt(),
-                    a.getItems() != null ? a.getItems().size() : 0
-            );
-        }
-    }
 
     // Error response DTO
     public record ErrorResponse(
@@ -154,83 +128,66 @@ public class AlbumAdminController {
     // ---------- Hent alle (ADMIN) ----------
     @GetMapping
     public Page<AdminAlbumDto> listAdmin(@PageableDefault(size = 48) Pageable pageable) {
-        return albumRepo.findAll(pageable).map(AdminAlbumDto::from);
+        return albumService.listAdmin(pageable);
     }
 
     // ---------- Hent ett album (ADMIN) ----------
     @GetMapping("/{id}")
-    @Transactional
     public AdminAlbumDto getOne(@PathVariable Long id) {
-        var album = albumRepo.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Album not found"));
-        return AdminAlbumDto.from(album);
+        return albumService.getAdmin(id);
     }
 
     // ---------- Create (ADMIN) ----------
     @PostMapping
-    @Transactional
     public ResponseEntity<AdminAlbumDto> create(@RequestBody AlbumCreateRequest req,
                                                 UriComponentsBuilder ucb) {
         if (req.title == null || req.title.isBlank()) {
             return ResponseEntity.badRequest().build();
         }
 
-        String baseSlug = (req.slug != null && !req.slug.isBlank())
-                ? slugify(req.slug)
-                : slugify(req.title);
-
-        String uniqueSlug = ensureUniqueSlug(baseSlug);
+        String wanted = (req.slug != null && !req.slug.isBlank()) ? req.slug : req.title;
 
-        Album a = new Album();
-        a.setTitle(req.title.trim());
-        a.setDescription(req.description);
-        a.setPublished(Boolean.TRUE.equals(req.published));
-        a.setSlug(uniqueSlug);
+        AdminAlbumDto dto = slugs.withUniqueSlug(() -> {
+            Album a = new Album();
+            a.setTitle(req.title.trim());
+            a.setDescription(req.description);
+            a.setPublished(Boolean.TRUE.equals(req.published));
+            a.setSlug(slugs.uniqueSlug(Scope.ALBUM, wanted, null));
+            return AdminAlbumDto.from(albumRepo.saveAndFlush(a), 0);
+        });
 
-        a = albumRepo.save(a);
-
-        URI location = ucb.path("/api/admin/albums/{id}").buildAndExpand(a.getId()).toUri();
-        return ResponseEntity.created(location).body(AdminAlbumDto.from(a));
+        URI location = ucb.path("/api/admin/albums/{id}").buildAndExpand(dto.id()).toUri();
+        return ResponseEntity.created(location).body(dto);
     }
 
     // ---------- Update (ADMIN) ----------
     @PutMapping("/{id}")
-    @Transactional
     public AdminAlbumDto update(@PathVariable Long id, @RequestBody AlbumUpdateRequest req) {
-        Album a = albumRepo.findById(id).orElseThrow();
+        return slugs.withUniqueSlug(() -> {
+            Album a = albumRepo.findById(id).orElseThrow();
 
-        if (req.title != null) a.setTitle(req.title.trim());
-        if (req.description != null) a.setDescription(req.description);
-        if (req.published != null) a.setPublished(req.published);
+            if (req.title != null) a.setTitle(req.title.trim());
+            if (req.description != null) a.setDescription(req.description);
+            if (req.published != null) a.setPublished(req.published);
 
-        if (req.slug != null && !req.slug.isBlank()) {
-            String wanted = slugify(req.slug);
-            if (!wanted.equals(a.getSlug())) {
-                a.setSlug(ensureUniqueSlug(wanted));
+            if (req.slug != null && !req.slug.isBlank()) {
+                a.setSlug(slugs.uniqueSlug(Scope.ALBUM, req.slug, id));
             }
-        }
 
-        a = albumRepo.save(a);
-        return AdminAlbumDto.from(a);
+            return albumService.toAdminDto(albumRepo.saveAndFlush(a));
+        });
     }
 
     // --- hent alle items i album (admin) ---
     @GetMapping("/{id}/items")
-    @Transactional
     public List<AlbumItemDto> getItems(@PathVariable Long id) {
-        Album album = albumRepo.findById(id).orElseThrow();
-
-        return album.getItems().stream()
-                .sorted(Comparator.comparing(Album.MediaItem::getCreatedAt))
-                .map(it -> {
-                    AlbumItemDto dto = AlbumItemMapper.toDto(it);
-                    if ((dto.getUrl() == null || dto.getUrl().isBlank()) && it.getFileName() != null) {
-                        String base = publicBase();
-                        dto.setUrl(base + "/media2/" + it.getFileName());
-                    }
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        return albumService.adminItems(id);
+    }
+
+    // --- mange elementer i én forespørsel: slett, flytt, bildetekst, omsorter ---
+    @PostMapping("/{id}/items/bulk")
+    public AlbumItemBulkResult bulkItems(@PathVariable Long id, @RequestBody AlbumItemBulkRequest req) {
+        return albumService.applyBulk(id, req);
     }
 
     @DeleteMapping("/{albumId}/items/{itemId}")
@@ -289,6 +246,11 @@ public class AlbumAdminController {
         List<Album.MediaItem> saved = new ArrayList<>();
         List<String> errors = new ArrayList<>();
 
+        // Nye filer legges sist i albumet
+        long nextSortKey = album.getItems().stream()
+                .mapToLong(Album.MediaItem::getSortKey)
+                .max().orElse(0) + Album.MediaItem.SORT_KEY_STEP;
+
         for (MultipartFile mf : files) {
             if (mf == null || mf.isEmpty()) {
                 log.debug("Skipping empty file");
@@ -326,6 +288,8 @@ public class AlbumAdminController {
                 item.setUrl(stored.url());
                 item.setContentType(contentType);
                 item.setSizeBytes(fileSize);
+                item.setSortKey(nextSortKey);
+                nextSortKey += Album.MediaItem.SORT_KEY_STEP;
 
                 album.getItems().add(item);
                 saved.add(item);
@@ -424,24 +388,4 @@ public class AlbumAdminController {
         if (lastDot == -1 || lastDot == filename.length() - 1) return "";
         return filename.substring(lastDot + 1);
     }
-
-    private String ensureUniqueSlug(String base) {
-        String candidate = base;
-        int i = 2;
-
-        while (albumRepo.existsBySlug(candidate)) {
-            candidate = base + "-" + i++;
-        }
-
-        return candidate;
-    }
-
-    private static String slugify(String in) {
-        String s = Normalizer.normalize(in, Normalizer.Form.NFD)
-                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        s = s.toLowerCase()
-                .replaceAll("[^a-z0-9]+", "-")
-                .replaceAll("(^-|-$)", "");
-        return s.isBlank() ? "album" : s;
-    }
 }
\ No newline at end of file
@@ -1,14 +1,13 @@
 package org.liberia.norway.org_api.web;
 
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.liberia.norway.org_api.model.Album;
 import org.liberia.norway.org_api.repository.AlbumRepository;
+import org.liberia.norway.org_api.repository.ContentVersion;
+import org.liberia.norway.org_api.service.AlbumService;
 import org.liberia.norway.org_api.web.dto.AlbumItemDto;
-import org.liberia.norway.org_api.web.dto.AlbumItemMapper;
-import org.springframework.beans.factory.annotation.Value;
+import org.liberia.norway.org_api.web.dto.PublicAlbumResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -18,8 +17,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -28,15 +27,16 @@ import lombok.RequiredArgsConstructor;
 public class AlbumPublicController {
 
     private final AlbumRepository albumRepo;
-
-    @Value("${app.storage.public-path:/uploads/}")
-    private String publicBasePath; // samme default som FileStorageService
+    private final AlbumService albumService;
 
     /* -------------------- LISTE (publiserte) -------------------- */
     @GetMapping
     public Page<PublicAlbumListDto> listPublished(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "48") int size) {
+            @RequestParam(defaultValue = "48") int size,
+            WebRequest request) {
+
+        if (request.checkNotModified(albumRepo.publishedVersion().etag("albums"))) return null;
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "created_at"));
         Page<Album> src = albumRepo.findPublished(pageable);
@@ -52,57 +52,23 @@ public class AlbumPublicController {
 
     /* -------------------- DETALJ (meta + items) -------------------- */
     @GetMapping("/{slug}")
-    @Transactional
-    public PublicAlbumResponse getOne(@PathVariable String slug) {
-        Album album = albumRepo.findPublishedBySlug(slug)
-                .orElseThrow(() -> new IllegalArgumentException("Album ikke funnet eller ikke publisert"));
-
-        List<AlbumItemDto> items = album.getItems().stream()
-                .sorted(Comparator.comparing(Album.MediaItem::getCreatedAt))
-                .map(this::toDtoWithUrlFallback)
-                .collect(Collectors.toList());
-
-        AlbumMetaDto meta = new AlbumMetaDto(
-                album.getId(),
-                album.getSlug(),
-                safe(album.getTitle()),
-                tryGetEventTitle(album),
-                safe(album.getDescription())
-        );
-
-        return new PublicAlbumResponse(meta, items);
+    public PublicAlbumResponse getOne(@PathVariable String slug, WebRequest request) {
+        if (request.checkNotModified(albumVersion(slug).etag("album-" + slug))) return null;
+        return albumService.getPublished(slug);
     }
 
     /* -------------------- KUN ITEMS (valgfritt) -------------------- */
     @GetMapping("/{slug}/items")
-    @Transactional
-    public List<AlbumItemDto> listItems(@PathVariable String slug) {
-        Album album = albumRepo.findPublishedBySlug(slug)
-                .orElseThrow(() -> new IllegalArgumentException("Album ikke funnet eller ikke publisert"));
-
-        return album.getItems().stream()
-                .sorted(Comparator.comparing(Album.MediaItem::getCreatedAt))
-                .map(this::toDtoWithUrlFallback)
-                .collect(Collectors.toList());
+    public List<AlbumItemDto> listItems(@PathVariable String slug, WebRequest request) {
+        if (request.checkNotModified(albumVersion(slug).etag("album-items-" + slug))) return null;
+        return albumService.publishedItems(slug);
     }
 
     /* -------------------- Hjelpere -------------------- */
 
-    private AlbumItemDto toDtoWithUrlFallback(Album.MediaItem it) {
-        AlbumItemDto dto = AlbumItemMapper.toDto(it);
-        if ((dto.getUrl() == null || dto.getUrl().isBlank()) && it.getFileName() != null) {
-            String base = publicBasePath.endsWith("/")
-                    ? publicBasePath.substring(0, publicBasePath.length() - 1)
-                    : publicBasePath;
-            dto.setUrl(base + "/media2/" + it.getFileName());
-        }
-        if ((dto.getThumbUrl() == null || dto.getThumbUrl().isBlank()) && it.getFileName() != null) {
-            String base = publicBasePath.endsWith("/")
-                    ? publicBasePath.substring(0, publicBasePath.length() - 1)
-                    : publicBasePath;
-            dto.setThumbUrl(base + "/media2/thumbs/" + it.getFileName());
-        }
-        return dto;
+    // Album-meta og elementer stemples hver for seg (opplasting endrer ikke albumets updated_at)
+    private ContentVersion albumVersion(String slug) {
+        return albumRepo.publishedVersionBySlug(slug).and(albumRepo.publishedItemsVersionBySlug(slug));
     }
 
     private static String safe(String s) { return s == null ? "" : s; }
@@ -121,7 +87,4 @@ public class AlbumPublicController {
 
     public record PublicAlbumListDto(Long id, String slug, String title, String eventTitle) { }
 
-    public record AlbumMetaDto(Long id, String slug, String title, String eventTitle, String description) { }
-
-    public record PublicAlbumResponse(AlbumMetaDto album, List<AlbumItemDto> items) { }
 }
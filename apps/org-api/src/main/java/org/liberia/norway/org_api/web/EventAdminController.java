@@ -7,17 +7,22 @@ import org.liberia.norway.org_api.model.Album;
 import org.liberia.norway.org_api.model.Event;
 import org.liberia.norway.org_api.repository.AlbumRepository;
 import org.liberia.norway.org_api.repository.EventRepository;
+import org.liberia.norway.org_api.service.EventsChanged;
 import org.liberia.norway.org_api.service.FileStorageService;
+import org.liberia.norway.org_api.service.SlugService;
+import org.liberia.norway.org_api.service.SlugService.Scope;
 import org.liberia.norway.org_api.web.dto.EventDto;
 import org.liberia.norway.org_api.web.dto.EventMapper;
 import org.liberia.norway.org_api.web.dto.EventResponse;
 import org.liberia.norway.org_api.web.dto.EventUpsertRequest;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.transaction.annotation.Transactional;
+import static org.springframework.util.StringUtils.hasText;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -41,12 +46,17 @@ public class EventAdminController {
     private final AlbumRepository albumRepo;
     private final FileStorageService storage;
     private final EventMapper mapper;
+    private final SlugService slugs;
+    private final ApplicationEventPublisher publisher;
 
-    public EventAdminController(EventRepository eventRepo, AlbumRepository albumRepo, FileStorageService storage, EventMapper mapper) {
+    public EventAdminController(EventRepository eventRepo, AlbumRepository albumRepo, FileStorageService storage, EventMapper mapper,
+                                SlugService slugs, ApplicationEventPublisher publisher) {
         this.eventRepo = eventRepo;
         this.albumRepo = albumRepo;
         this.storage = storage;
         this.mapper = mapper;
+        this.slugs = slugs;
+        this.publisher = publisher;
     }
 
     @Value("${app.storage.public-path:/uploads}")
@@ -71,23 +81,40 @@ public Map<String, String> upload(@RequestPart("file") MultipartFile file,
     @GetMapping
     public Page<EventResponse> list(@RequestParam(defaultValue = "0") int page,
                                     @RequestParam(defaultValue = "20") int size) {
-        return eventRepo.findAll(PageRequest.of(page, size)).map(EventResponse::from);
+        return eventRepo.findAll(PageRequest.of(page, size)).map(EventResponse::listItem);
+    }
+
+    @GetMapping("/{id}")
+    @Transactional(readOnly = true)
+    public EventResponse get(@PathVariable long id) {
+        return eventRepo.findById(id)
+                .map(EventResponse::from)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public EventResponse create(@RequestBody EventUpsertRequest req) {
-        var e = new Event();
-        apply(e, req);
-        e.setCreatedAt(OffsetDateTime.now());
-        e.setUpdatedAt(OffsetDateTime.now());
-        e = eventRepo.save(e);
-        return EventResponse.from(e);
+        EventResponse created = slugs.withUniqueSlug(() -> {
+            var e = new Event();
+            apply(e, req);
+            e.setSlug(slugs.uniqueSlug(Scope.EVENT, hasText(req.slug()) ? req.slug() : req.title(), null));
+            e.setCreatedAt(OffsetDateTime.now());
+            e.setUpdatedAt(OffsetDateTime.now());
+            return EventResponse.from(eventRepo.saveAndFlush(e));
+        });
+        publisher.publishEvent(new EventsChanged(created.id()));
+        return created;
     }
 
     @PutMapping("/{id}")
-    @Transactional
     public EventResponse update(@PathVariable Long id, @RequestBody EventUpsertRequest body) {
+        EventResponse updated = slugs.withUniqueSlug(() -> updateInTx(id, body));
+        publisher.publishEvent(new EventsChanged(id));
+        return updated;
+    }
+
+    private EventResponse updateInTx(Long id, EventUpsertRequest body) {
         Event ev = eventRepo.findById(id).orElseThrow();
 
         // sett enkle felter (tilpass til dine felt/navn)
@@ -99,7 +126,7 @@ public Map<String, String> upload(@RequestPart("file") MultipartFile file,
         ev.setLocation(body.location());
         ev.setCoverImageUrl(body.coverImageUrl()); // evt. emptyToNull(...)
         ev.setRsvpUrl(body.rsvpUrl());
-        ev.setSlug(body.slug());
+        ev.setSlug(slugs.uniqueSlug(Scope.EVENT, hasText(body.slug()) ? body.slug() : body.title(), id));
         ev.setPublished(Boolean.TRUE.equals(body.isPublished()));
         ev.setUpdatedAt(OffsetDateTime.now());
 
@@ -115,8 +142,7 @@ public Map<String, String> upload(@RequestPart("file") MultipartFile file,
             ev.setGalleryAlbumId(album.getId());
         }
 
-        ev = eventRepo.save(ev);
-        return EventResponse.from(ev);
+        return EventResponse.from(eventRepo.saveAndFlush(ev));
     }
 
     @DeleteMapping("/{id}")
@@ -124,10 +150,12 @@ public Map<String, String> upload(@RequestPart("file") MultipartFile file,
     public void delete(@PathVariable long id) {
         if (!eventRepo.existsById(id)) throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         eventRepo.deleteById(id);
+        publisher.publishEvent(new EventsChanged(id));
     }
 
     // ✅ NEW/PATCH publish toggle
     @PatchMapping("/{id}/publish")
+    @Transactional
     public EventResponse setPublished(@PathVariable long id,
                                       @RequestParam(value = "value", required = false) Boolean value,
                                       @RequestBody(required = false) Map<String, Object> body) {
@@ -147,10 +175,12 @@ public Map<String, String> upload(@RequestPart("file") MultipartFile file,
         e.setPublished(value);
         e.setUpdatedAt(OffsetDateTime.now());
         e = eventRepo.save(e);
+        publisher.publishEvent(new EventsChanged(id));
         return EventResponse.from(e);
     }
 
     @PostMapping(value = "/{id}/cover", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Transactional
 public EventDto uploadCover(@PathVariable Long id, @RequestPart("file") MultipartFile file) {
     Event event = eventRepo.findById(id).orElseThrow();
 
@@ -158,6 +188,7 @@ public EventDto uploadCover(@PathVariable Long id, @RequestPart("file") Multipar
     event.setCoverImageUrl(stored.url());
 
     eventRepo.save(event);
+    publisher.publishEvent(new EventsChanged(id));
     return mapper.toDto(event);
 }
 
@@ -1,16 +1,32 @@
 package org.liberia.norway.org_api.web;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.liberia.norway.org_api.repository.EventRepository;
+import org.liberia.norway.org_api.service.CalendarFeed;
+import org.liberia.norway.org_api.service.EventListService;
+import org.liberia.norway.org_api.service.NextEventHolder;
+import org.liberia.norway.org_api.web.dto.EventMonthCount;
 import org.liberia.norway.org_api.web.dto.EventResponse;
+import org.liberia.norway.org_api.web.dto.EventSlice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import lombok.RequiredArgsConstructor;
@@ -20,26 +36,81 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class EventController {
     private final EventRepository eventRepository;
+    private final NextEventHolder nextEvent;
+    private final EventListService eventList;
+    private final CalendarFeed calendarFeed;
 
+    private static final MediaType TEXT_CALENDAR = new MediaType("text", "calendar", StandardCharsets.UTF_8);
+
+    /**
+     * Publiserte arrangementer, én side om gangen. {@code upcoming}/{@code past} er relativt til nå,
+     * {@code from}/{@code to} er et halvåpent intervall [from, to); neste side hentes med {@code cursor}.
+     */
     @GetMapping("/events")
-    public List<EventResponse> listPublished() {
-        return eventRepository.findByIsPublishedTrueOrderByStartAtAsc()
-                .stream()
-                .map(EventResponse::from)
-                .toList();
+    public EventSlice listPublished(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(defaultValue = "false") boolean upcoming,
+            @RequestParam(defaultValue = "false") boolean past,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        // upcoming/past endrer seg med klokka, så bare faste utsnitt kan besvares med 304
+        if (!upcoming && !past
+                && request.checkNotModified(eventRepository.publishedVersion().etag("events"))) return null;
+        return eventList.list(new EventListService.Filter(from, to, upcoming, past, q, cursor, limit));
+    }
+
+    @GetMapping("/events/months")
+    public List<EventMonthCount> months(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            WebRequest request) {
+        if (request.checkNotModified(eventRepository.publishedVersion().etag("event-months"))) return null;
+        return eventList.monthCounts(from, to);
+    }
+
+    /** Abonnerbar kalender med alle publiserte arrangementer (webcal). */
+    @GetMapping("/events.ics")
+    public ResponseEntity<byte[]> calendar(WebRequest request) {
+        var ics = calendarFeed.feed();
+        if (request.checkNotModified(ics.etag(), ics.lastModifiedMillis())) return null;
+        return calendarResponse(ics, "events.ics");
+    }
+
+    @GetMapping("/events/{slug}.ics")
+    public ResponseEntity<byte[]> eventCalendar(@PathVariable String slug, WebRequest request) {
+        var version = eventRepository.versionBySlug(slug);
+        long lastModified = version.lastModified() == null ? -1 : version.lastModified().toEpochMilli();
+        if (request.checkNotModified(version.etag("ics-" + slug), lastModified)) return null;
+        var ics = calendarFeed.single(slug)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
+        return calendarResponse(ics, slug + ".ics");
+    }
+
+    private static ResponseEntity<byte[]> calendarResponse(CalendarFeed.Ics ics, String filename) {
+        return ResponseEntity.ok()
+                .contentType(TEXT_CALENDAR)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
+                // klienter kan bruke kopien en stund, deretter revalidere med ETag
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(ics.body());
     }
 
     @GetMapping("/events/next")
     public Map<String, Object> next() {
-        var list = eventRepository.findUpcoming(OffsetDateTime.now());
-        var first = list.isEmpty() ? null : EventResponse.from(list.getFirst());
-        return Map.of(
-            "hasUpcoming", first != null,
-            "event", first
-        );
+        var first = nextEvent.get();
+        // Map.of tåler ikke null, og "event" er null når ingenting er planlagt
+        var body = new LinkedHashMap<String, Object>();
+        body.put("hasUpcoming", first != null);
+        body.put("event", first);
+        return body;
     }
     @GetMapping("/events/{slug}")
-    public EventResponse get(@PathVariable String slug) {
+    @Transactional(readOnly = true)
+    public EventResponse get(@PathVariable String slug, WebRequest request) {
+        if (request.checkNotModified(eventRepository.versionBySlug(slug).etag("event-" + slug))) return null;
         return eventRepository.findBySlug(slug)
                 .map(EventResponse::from)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
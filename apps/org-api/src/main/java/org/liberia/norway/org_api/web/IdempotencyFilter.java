@@ -0,0 +1,197 @@
+package org.liberia.norway.org_api.web;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+import org.liberia.norway.org_api.service.IdempotencyStore;
+import org.liberia.norway.org_api.service.IdempotencyStore.Stored;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Idempotency-Key på offentlige POST-endepunkter (app.idempotency.paths). Sender klienten samme
+ * nøkkel på nytt (dobbeltklikk, nytt forsøk etter brutt forbindelse), får den det lagrede svaret
+ * med "Idempotent-Replayed: true" uten at handleren kjøres igjen; kommer duplikatet mens den
+ * første fortsatt behandles, venter det på den. Bare vellykkede svar (2xx) lagres: ved feil
+ * slippes nøkkelen, så klienten kan rette opp og prøve igjen. Uten header går alt som før.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyStore store;
+    private final Set<String> paths;
+    private final int maxBodyBytes;
+
+    public IdempotencyFilter(IdempotencyStore store,
+                             @Value("${app.idempotency.paths:/api/membership/apply,/api/suggestions}") List<String> paths,
+                             @Value("${app.idempotency.max-body-bytes:65536}") int maxBodyBytes) {
+        this.store = store;
+        this.paths = Set.copyOf(paths);
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (!validKey(key)) {
+            plain(response, HttpServletResponse.SC_BAD_REQUEST, "Idempotency-Key must be 1-255 visible ASCII characters.");
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            plain(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body is too large.");
+            return;
+        }
+
+        String scope = sha256("POST " + request.getRequestURI() + "\n" + key);
+        var claim = store.claim(scope, sha256(body));
+        switch (claim.kind()) {
+            case REPLAY -> replay(response, claim.response());
+            case MISMATCH -> plain(response, 422, "This Idempotency-Key was already used for a different request.");
+            case IN_PROGRESS -> {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                plain(response, HttpServletResponse.SC_CONFLICT,
+                        "A request with this Idempotency-Key is still being processed. Try again shortly.");
+            }
+            case EXECUTE -> execute(scope, new CachedBodyRequest(request, body), response, chain);
+        }
+    }
+
+    private void execute(String scope, HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        var wrapped = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(request, wrapped);
+            int status = wrapped.getStatus();
+            if (status >= 200 && status < 300) {
+                try {
+                    store.complete(scope, new Stored(status, wrapped.getContentType(), wrapped.getContentAsByteArray()));
+                    stored = true;
+                } catch (RuntimeException e) {
+                    // svaret går likevel til klienten; et nytt forsøk kan da bli kjørt på nytt
+                    log.warn("Kunne ikke lagre svar for Idempotency-Key: {}", e.getMessage());
+                }
+            }
+        } finally {
+            if (!stored) store.release(scope);
+            wrapped.copyBodyToResponse();
+        }
+    }
+
+    private static void replay(HttpServletResponse response, Stored s) throws IOException {
+        response.setStatus(s.status());
+        if (s.contentType() != null) response.setContentType(s.contentType());
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(s.body().length);
+        response.getOutputStream().write(s.body());
+    }
+
+    private static void plain(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(message);
+    }
+
+    // Som i utkastet til IETF-standarden: en kort, synlig ASCII-streng (typisk en UUID)
+    private static boolean validKey(String key) {
+        if (key.isEmpty() || key.length() > 255) return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) return false;
+        }
+        return true;
+    }
+
+    private static String sha256(String s) {
+        return sha256(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Requesten med body allerede lest, så handleren kan lese den på vanlig måte. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override public void setReadListener(ReadListener listener) {
+                    // alt ligger allerede i minnet, så lytteren kan varsles med en gang
+                    try {
+                        if (in.available() > 0) listener.onDataAvailable();
+                        if (in.available() == 0) listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String enc = getCharacterEncoding();
+            Charset cs = enc != null ? Charset.forName(enc) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), cs));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package org.liberia.norway.org_api.web;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 import org.liberia.norway.org_api.model.Member;
 import org.liberia.norway.org_api.model.Member.Status;
 import org.liberia.norway.org_api.repository.MemberRepository;
+import org.liberia.norway.org_api.service.ApplicationDecisions;
+import org.liberia.norway.org_api.service.ApplicationDecisions.Decision;
+import org.liberia.norway.org_api.service.EmailOutbox;
+import org.liberia.norway.org_api.service.MemberExport;
+import org.liberia.norway.org_api.service.MemberImport;
+import org.liberia.norway.org_api.service.MembershipEmails;
+import org.liberia.norway.org_api.service.MembershipStats;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
+import org.liberia.norway.org_api.service.VippsReconciliation;
+import org.liberia.norway.org_api.util.CsvWriter;
+import org.liberia.norway.org_api.util.RowWriter;
+import org.liberia.norway.org_api.util.XlsxWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -24,21 +40,39 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 @RestController
 @RequestMapping("/api/admin/membership")
 public class MembershipAdminController {
 
   private static final Logger log = LoggerFactory.getLogger(MembershipAdminController.class);
 
-  private final MemberRepository memrepo;
-  private final JavaMailSender mailSender;
+  private static final int MAX_BULK_IDS = 1000;
 
-  public MembershipAdminController(MemberRepository memrepo, JavaMailSender mailSender) {
+  private final MemberRepository memrepo;
+  private final EmailOutbox outbox;
+  private final MemberExport export;
+  private final MemberImport importer;
+  private final ApplicationDecisions decisions;
+  private final VippsReconciliation vipps;
+  private final MembershipStats stats;
+
+  public MembershipAdminController(MemberRepository memrepo, EmailOutbox outbox, MemberExport export,
+                                   MemberImport importer, ApplicationDecisions decisions,
+                                   VippsReconciliation vipps, MembershipStats stats) {
     this.memrepo = memrepo;
-    this.mailSender = mailSender;
+    this.outbox = outbox;
+    this.export = export;
+    this.importer = importer;
+    this.decisions = decisions;
+    this.vipps = vipps;
+    this.stats = stats;
   }
 
   /* ----------------------------- MEMBERS ----------------------------- */
@@ -49,6 +83,73 @@ public class MembershipAdminController {
     return memrepo.findAllByStatusOrderByCreatedAtDesc(Status.ACCEPTED, pageable).map(MemberDTO::from);
   }
 
+  /**
+   * Hele registeret som fil: GET /api/admin/membership/export?format=csv|xlsx&status=ACCEPTED.
+   * Uten status kommer alle (også søknader). Strømmes rett til klienten.
+   */
+  @GetMapping("/export")
+  public void exportMembers(@RequestParam(defaultValue = "csv") String format,
+                            @RequestParam(required = false) String status,
+                            HttpServletResponse response) throws IOException {
+    Status st = null;
+    if (status != null && !status.isBlank()) {
+      try {
+        st = Status.valueOf(status.trim().toUpperCase());
+      } catch (Exception e) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid status: " + status);
+      }
+    }
+    boolean xlsx = switch (format.toLowerCase()) {
+      case "csv" -> false;
+      case "xlsx" -> true;
+      default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Format must be csv or xlsx.");
+    };
+
+    String name = "members-" + (st == null ? "all" : st.name().toLowerCase()) + "-" + LocalDate.now() + (xlsx ? ".xlsx" : ".csv");
+    response.setContentType(xlsx ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" : "text/csv;charset=UTF-8");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"");
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store"); // personopplysninger
+
+    var body = response.getOutputStream();
+    RowWriter out = xlsx ? new XlsxWriter(body, "Members") : new CsvWriter(body);
+    export.write(st, out);
+    // Avsluttes bare når alle radene er skrevet. Feiler eksporten underveis, går unntaket videre
+    // uten avslutningen (zip-katalogen i XLSX), og tilkoblingen brytes: styret får en nedlasting
+    // som feiler, ikke en fil som ser hel ut men mangler medlemmer.
+    out.close();
+  }
+
+  /**
+   * Masseimport fra CSV (UTF-8, komma eller semikolon, første linje er overskrifter). Importeres som
+   * ACCEPTED; e-poster som allerede er medlem eller står to ganger i filen hoppes over.
+   * Med dryRun=true kommer bare rapporten, uten at noe lagres.
+   */
+  @PostMapping("/import")
+  public MemberImport.Report importMembers(@RequestPart("file") MultipartFile file,
+                                           @RequestParam(defaultValue = "false") boolean dryRun) throws IOException {
+    if (file.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The file is empty.");
+    }
+    try (var in = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+      return importer.run(in, dryRun);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  /**
+   * Tall til styrets dashbord: medlemmer per by og aldersgruppe, og per måned de siste
+   * {@code months} månedene (søknader, nye medlemmer, avslag og behandlingstid). Leses fra
+   * membership_daily_stats, ikke fra members.
+   */
+  @GetMapping("/statistics")
+  public MembershipStats.Statistics statistics(@RequestParam(defaultValue = "12") int months) {
+    if (months < 1 || months > 120) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "months must be between 1 and 120.");
+    }
+    return stats.statistics(months);
+  }
+
   @GetMapping("/{id}")
   public MemberDTO getMember(@PathVariable Long id) {
     var m = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
@@ -59,6 +160,7 @@ public class MembershipAdminController {
   }
 
   @PostMapping
+  @Transactional
   public MemberDTO createMember(@RequestBody MemberDTO in) {
     if (in.email != null && memrepo.existsByEmailIgnoreCaseAndStatus(in.email, Status.ACCEPTED)) {
       throw new ResponseStatusException(HttpStatus.CONFLICT, "This email already exists as a member.");
@@ -66,13 +168,19 @@ public class MembershipAdminController {
 
     Member m = new Member();
     apply(m, in);
+    // lagt inn direkte, ikke en søknad: handledAt = createdAt (se MembershipStats)
+    Instant now = Instant.now();
     m.setStatus(Status.ACCEPTED);
-    m.setHandledAt(Instant.now());
+    m.setCreatedAt(now);
+    m.setHandledAt(now);
     m.setDeleteAt(null);
-    return MemberDTO.from(memrepo.save(m));
+    m = memrepo.save(m);
+    stats.changed(null, Snapshot.of(m));
+    return MemberDTO.from(m);
   }
 
   @PutMapping("/{id}")
+  @Transactional
   public MemberDTO updateMember(@PathVariable Long id, @RequestBody MemberDTO in) {
     Member m = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     if (m.getStatus() != Status.ACCEPTED) {
@@ -86,14 +194,19 @@ public class MembershipAdminController {
       }
     }
     
+    var before = Snapshot.of(m);
     apply(m, in);
-    return MemberDTO.from(memrepo.save(m));
+    m = memrepo.save(m);
+    stats.changed(before, Snapshot.of(m));
+    return MemberDTO.from(m);
   }
 
   @DeleteMapping("/{id}")
+  @Transactional
   public void deleteMember(@PathVariable Long id) {
     Member m = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     memrepo.delete(m);
+    stats.changed(Snapshot.of(m), null);
   }
 
   public record MemberDTO(
@@ -172,7 +285,9 @@ public class MembershipAdminController {
       String status,
       String createdAt,
       String handledAt,
-      String deleteAt
+      String deleteAt,
+      String vippsCheck,
+      String vippsCheckedAt
   ) {
     static ApplicationDTO from(Member a) {
       return new ApplicationDTO(
@@ -191,7 +306,9 @@ public class MembershipAdminController {
           a.getStatus() != null ? a.getStatus().name() : Status.PENDING.name(),
           a.getCreatedAt() != null ? a.getCreatedAt().toString() : null,
           a.getHandledAt() != null ? a.getHandledAt().toString() : null,
-          a.getDeleteAt() != null ? a.getDeleteAt().toString() : null
+          a.getDeleteAt() != null ? a.getDeleteAt().toString() : null,
+          a.getVippsCheck() != null ? a.getVippsCheck().name() : null,
+          a.getVippsCheckedAt() != null ? a.getVippsCheckedAt().toString() : null
       );
     }
   }
@@ -211,7 +328,9 @@ public class MembershipAdminController {
     return memrepo.findAllByStatusOrderByCreatedAtDesc(st, pageable).map(ApplicationDTO::from);
   }
 
+  // Statusendring og e-post i outbox lagres i samme transaksjon
   @PatchMapping("/applications/{id}/accept")
+  @Transactional
   public ResponseEntity<?> accept(@PathVariable Long id) {
     var a = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Application not found"));
 
@@ -219,11 +338,13 @@ public class MembershipAdminController {
       return ResponseEntity.status(409).body("Only PENDING applications can be accepted.");
     }
 
+    var before = Snapshot.of(a);
     a.setStatus(Status.ACCEPTED);
     a.setHandledAt(Instant.now());
     a.setDeleteAt(null);
 
     memrepo.save(a);
+    stats.changed(before, Snapshot.of(a));
     
     // Send acceptance email
     sendAcceptanceEmail(a);
@@ -234,6 +355,7 @@ public class MembershipAdminController {
   public record RejectRequest(Integer daysToKeep, String reason) {}
 
   @PatchMapping("/applications/{id}/reject")
+  @Transactional
   public ResponseEntity<?> reject(@PathVariable Long id, @RequestBody(required = false) RejectRequest req) {
     var a = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Application not found"));
 
@@ -244,11 +366,13 @@ public class MembershipAdminController {
     int days = (req != null && req.daysToKeep != null && req.daysToKeep > 0) ? req.daysToKeep : 365;
     String reason = (req != null && req.reason != null && !req.reason.isBlank()) ? req.reason.trim() : null;
 
+    var before = Snapshot.of(a);
     a.setStatus(Status.REJECTED);
     a.setHandledAt(Instant.now());
     a.setDeleteAt(Instant.now().plus(days, ChronoUnit.DAYS));
 
     memrepo.save(a);
+    stats.changed(before, Snapshot.of(a));
     
     // Send rejection email
     sendRejectionEmail(a, reason);
@@ -256,7 +380,69 @@ public class MembershipAdminController {
     return ResponseEntity.ok(ApplicationDTO.from(a));
   }
 
+  public record BulkDecisionRequest(String action, List<Long> ids, BulkFilter filter, Integer daysToKeep, String reason) {}
+
+  public record BulkFilter(String createdAfter, String createdBefore) {}
+
+  /**
+   * Avstemmer ventende søknader mot en oppgjørsrapport fra Vipps (CSV eller JSON).
+   * Søknadene merkes MATCHED, MISMATCH eller MISSING; med dryRun=true kommer bare rapporten.
+   */
+  @PostMapping("/applications/vipps-reconciliation")
+  public VippsReconciliation.Report reconcileVipps(@RequestPart("file") MultipartFile file,
+                                                   @RequestParam(defaultValue = "false") boolean dryRun) throws IOException {
+    if (file.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The file is empty.");
+    }
+    try (var in = file.getInputStream()) {
+      return vipps.reconcile(in, dryRun);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  /**
+   * Godkjenner eller avslår mange søknader på én gang: enten id-ene i {@code ids}, eller alle
+   * PENDING som passer {@code filter} (tomt filter = alle). Svarer med utfallet per id.
+   */
+  @PostMapping("/applications/bulk")
+  public ApplicationDecisions.BulkResult bulkDecide(@RequestBody BulkDecisionRequest req) {
+    Decision decision = switch (req.action() == null ? "" : req.action().trim().toLowerCase()) {
+      case "accept" -> Decision.ACCEPT;
+      case "reject" -> Decision.REJECT;
+      default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Action must be accept or reject.");
+    };
+    boolean byIds = req.ids() != null && !req.ids().isEmpty();
+    if (byIds == (req.filter() != null)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either ids or filter.");
+    }
+    int days = (req.daysToKeep() != null && req.daysToKeep() > 0) ? req.daysToKeep() : 365;
+    String reason = (req.reason() != null && !req.reason().isBlank()) ? req.reason().trim() : null;
+
+    if (byIds) {
+      if (req.ids().size() > MAX_BULK_IDS) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BULK_IDS + " ids per request.");
+      }
+      if (req.ids().contains(null)) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids cannot be null.");
+      }
+      return decisions.decide(decision, req.ids(), days, reason);
+    }
+    var filter = new ApplicationDecisions.Filter(parseInstant(req.filter().createdAfter()),
+        parseInstant(req.filter().createdBefore()));
+    return decisions.decide(decision, filter, days, reason);
+  }
+
+  private static Instant parseInstant(String s) {
+    try {
+      return (s == null || s.isBlank()) ? null : Instant.parse(s.trim());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid timestamp: " + s);
+    }
+  }
+
   @PatchMapping("/applications/{id}/pending")
+  @Transactional
   public ResponseEntity<?> backToPending(@PathVariable Long id) {
     var a = memrepo.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Application not found"));
 
@@ -264,11 +450,13 @@ public class MembershipAdminController {
       return ResponseEntity.status(409).body("Application is already PENDING.");
     }
 
+    var before = Snapshot.of(a);
     a.setStatus(Status.PENDING);
     a.setHandledAt(null);
     a.setDeleteAt(null);
 
     memrepo.save(a);
+    stats.changed(before, Snapshot.of(a));
     return ResponseEntity.ok(ApplicationDTO.from(a));
   }
 
@@ -280,41 +468,10 @@ public class MembershipAdminController {
       return;
     }
 
-    try {
-      String to = member.getEmail().trim();
-      String subject = "Welcome to ULAN - Membership Approved!";
-
-      String body = """
-          Dear %s %s,
-
-          Congratulations! We are pleased to inform you that your membership application to the Union of Liberians Association in Norway (ULAN) has been approved.
-
-          You are now an official member of ULAN!
-
-          We look forward to seeing you at our upcoming events and activities.
-
-          If you have any questions, please don't hesitate to contact us.
-
-          Welcome to the ULAN family!
-
-          Kind regards,
-          ULAN Administration
-          Union of Liberians Association in Norway
-          """.formatted(
-              member.getFirstName() == null ? "" : member.getFirstName(),
-              member.getLastName() == null ? "" : member.getLastName()
-          );
-
-      SimpleMailMessage msg = new SimpleMailMessage();
-      msg.setTo(to);
-      msg.setSubject(subject);
-      msg.setText(body);
-
-      mailSender.send(msg);
-      log.info("Acceptance email sent to: {}", to);
-    } catch (Exception e) {
-      log.error("Failed to send acceptance email to member id={}", member.getId(), e);
-    }
+    String to = member.getEmail().trim();
+    var mail = MembershipEmails.accepted(member.getFirstName(), member.getLastName());
+    outbox.enqueue(to, mail.subject(), mail.body());
+    log.info("Acceptance email queued for: {}", to);
   }
 
   private void sendRejectionEmail(Member member, String reason) {
@@ -323,44 +480,9 @@ public class MembershipAdminController {
       return;
     }
 
-    try {
-      String to = member.getEmail().trim();
-      String subject = "ULAN Membership Application Status";
-
-      String reasonText = (reason != null && !reason.isBlank()) 
-          ? "\n\nReason: " + reason + "\n"
-          : "";
-
-      String body = """
-          Dear %s %s,
-
-          Thank you for your interest in becoming a member of the Union of Liberians Association in Norway (ULAN).
-
-          After reviewing your application, we regret to inform you that we are unable to approve your membership at this time.%s
-          If you believe this decision was made in error or if you have additional information that may support your application, please feel free to contact our administration team.
-
-          You are welcome to reapply in the future.
-
-          Thank you for your understanding.
-
-          Kind regards,
-          ULAN Administration
-          Union of Liberians Association in Norway
-          """.formatted(
-              member.getFirstName() == null ? "" : member.getFirstName(),
-              member.getLastName() == null ? "" : member.getLastName(),
-              reasonText
-          );
-
-      SimpleMailMessage msg = new SimpleMailMessage();
-      msg.setTo(to);
-      msg.setSubject(subject);
-      msg.setText(body);
-
-      mailSender.send(msg);
-      log.info("Rejection email sent to: {}", to);
-    } catch (Exception e) {
-      log.error("Failed to send rejection email to member id={}", member.getId(), e);
-    }
+    String to = member.getEmail().trim();
+    var mail = MembershipEmails.rejected(member.getFirstName(), member.getLastName(), reason);
+    outbox.enqueue(to, mail.subject(), mail.body());
+    log.info("Rejection email queued for: {}", to);
   }
 }
\ No newline at end of file
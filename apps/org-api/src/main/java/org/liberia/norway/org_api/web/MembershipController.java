@@ -6,12 +6,14 @@ import java.time.LocalDate;
 import org.liberia.norway.org_api.model.Member;
 import org.liberia.norway.org_api.model.Member.Status;
 import org.liberia.norway.org_api.repository.MemberRepository;
+import org.liberia.norway.org_api.service.EmailOutbox;
+import org.liberia.norway.org_api.service.MembershipStats;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,7 +21,6 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.transaction.Transactional;
 
@@ -31,13 +32,16 @@ public class MembershipController {
   
   private static final int MEMBERSHIP_FEE_NOK = 245;
 
-private final org.springframework.mail.javamail.JavaMailSender mailSender;
+  private final EmailOutbox outbox;
 
   private final MemberRepository memrepo;
 
-  public MembershipController(MemberRepository memrepo, JavaMailSender mailSender) {
+  private final MembershipStats stats;
+
+  public MembershipController(MemberRepository memrepo, EmailOutbox outbox, MembershipStats stats) {
     this.memrepo = memrepo;
-    this.mailSender = mailSender;
+    this.outbox = outbox;
+    this.stats = stats;
   }
 
   @GetMapping("/exists")
@@ -57,18 +61,17 @@ public boolean exists(@RequestParam String email) {
 
       String email = req.email.trim();
 
-      if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.ACCEPTED)) {
-  throw new ResponseStatusException(HttpStatus.CONFLICT, "You are already a member.");
-}
-
-if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.PENDING)) {
-  throw new ResponseStatusException(HttpStatus.CONFLICT, "You already have a pending application.");
-}
-
-if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.REJECTED)) {
-  throw new ResponseStatusException(HttpStatus.CONFLICT, "Your application was rejected. Contact admin.");
-}
-
+      // Én spørring (indeksoppslag på lower(email)) i stedet for én per status
+      var existing = memrepo.findStatusesByEmailIgnoreCase(email);
+      if (existing.contains(Status.ACCEPTED)) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("You are already a member.");
+      }
+      if (existing.contains(Status.PENDING)) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("You already have a pending application.");
+      }
+      if (existing.contains(Status.REJECTED)) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Your application was rejected. Contact admin.");
+      }
 
       // Vipps validation
       if (req.vippsConfirmed == null || !req.vippsConfirmed) {
@@ -92,6 +95,10 @@ if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.REJECTED)) {
         return ResponseEntity.badRequest().body("Vipps amount must be 300 NOK.");
       }
 
+      if (memrepo.vippsReferenceInUse(req.vippsReference.trim())) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("This Vipps reference has already been used.");
+      }
+
       // Create application (PENDING)
       Member a = new Member();
       a.setFirstName(req.firstName.trim());
@@ -111,6 +118,8 @@ if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.REJECTED)) {
       a.setCreatedAt(Instant.now());
 
       a = memrepo.save(a);
+      stats.changed(null, Snapshot.of(a));
+      // legges i email_outbox i samme transaksjon; sendes i bakgrunnen
       sendApplicationReceivedEmail(a);
 
 
@@ -171,12 +180,7 @@ if (memrepo.existsByEmailIgnoreCaseAndStatus(req.email, Status.REJECTED)) {
           app.getLastName() == null ? "" : app.getLastName()
       );
 
-  org.springframework.mail.SimpleMailMessage msg = new org.springframework.mail.SimpleMailMessage();
-  msg.setTo(to);
-  msg.setSubject(subject);
-  msg.setText(body);
-
-  mailSender.send(msg);
+  outbox.enqueue(to, subject, body);
 }
 
 }
\ No newline at end of file
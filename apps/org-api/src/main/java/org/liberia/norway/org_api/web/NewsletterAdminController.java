@@ -0,0 +1,153 @@
+package org.liberia.norway.org_api.web;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import org.liberia.norway.org_api.model.Newsletter;
+import org.liberia.norway.org_api.model.Newsletter.Status;
+import org.liberia.norway.org_api.repository.NewsletterRepository;
+import org.liberia.norway.org_api.service.EmailOutbox;
+import org.liberia.norway.org_api.service.EmailOutbox.RecipientStatus;
+import org.liberia.norway.org_api.service.NewsletterService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Nyhetsbrev til alle godkjente medlemmer: lag utkast, send, følg fremdriften per mottaker.
+ * Emne og tekst kan bruke {{firstName}}, {{lastName}}, {{fullName}} og {{email}}.
+ */
+@RestController
+@RequestMapping("/api/admin/newsletters")
+@RequiredArgsConstructor
+public class NewsletterAdminController {
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final NewsletterRepository newsletters;
+    private final NewsletterService service;
+    private final EmailOutbox outbox;
+
+    public record NewsletterRequest(String subject, String body) {}
+
+    public record NewsletterResponse(Long id, String subject, String body, String status, int recipients,
+                                     String createdAt, String updatedAt, String queuedAt,
+                                     Map<String, Long> progress) {}
+
+    @GetMapping
+    public Page<NewsletterResponse> list(@RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size) {
+        var pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE));
+        return newsletters.findAllByOrderByCreatedAtDesc(pageable).map(n -> map(n, null));
+    }
+
+    @GetMapping("/{id}")
+    public NewsletterResponse get(@PathVariable Long id) {
+        var n = newsletters.findById(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Newsletter not found"));
+        return map(n, outbox.newsletterProgress(id));
+    }
+
+    @PostMapping
+    public NewsletterResponse create(@RequestBody NewsletterRequest req) {
+        validate(req.subject(), req.body());
+        var n = new Newsletter();
+        n.setSubject(req.subject().trim());
+        n.setBody(req.body());
+        var now = OffsetDateTime.now();
+        n.setCreatedAt(now);
+        n.setUpdatedAt(now);
+        return map(newsletters.save(n), null);
+    }
+
+    @PutMapping("/{id}")
+    @Transactional
+    public NewsletterResponse update(@PathVariable Long id, @RequestBody NewsletterRequest req) {
+        var n = draft(id);
+        String subject = StringUtils.hasText(req.subject()) ? req.subject().trim() : n.getSubject();
+        String body = req.body() != null ? req.body() : n.getBody();
+        validate(subject, body);
+        n.setSubject(subject);
+        n.setBody(body);
+        n.setUpdatedAt(OffsetDateTime.now());
+        return map(n, null);
+    }
+
+    @DeleteMapping("/{id}")
+    @Transactional
+    public void delete(@PathVariable Long id) {
+        newsletters.delete(draft(id));
+    }
+
+    /** Starter utsendelsen; mottakerne legges i kø i bakgrunnen. */
+    @PostMapping("/{id}/send")
+    public NewsletterResponse send(@PathVariable Long id) {
+        return map(transition(() -> service.start(id)), null);
+    }
+
+    @PostMapping("/{id}/cancel")
+    public NewsletterResponse cancel(@PathVariable Long id) {
+        return map(transition(() -> service.cancel(id)), outbox.newsletterProgress(id));
+    }
+
+    /** Leveringsstatus per mottaker, f.eks. {@code ?status=FAILED}. */
+    @GetMapping("/{id}/recipients")
+    public List<RecipientStatus> recipients(@PathVariable Long id,
+                                            @RequestParam(required = false) String status,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "50") int size) {
+        if (!newsletters.existsById(id)) throw new ResponseStatusException(NOT_FOUND, "Newsletter not found");
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String s = StringUtils.hasText(status) ? status.trim().toUpperCase() : null;
+        return outbox.newsletterRecipients(id, s, Math.max(page, 0) * limit, limit);
+    }
+
+    private Newsletter draft(Long id) {
+        var n = newsletters.findById(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Newsletter not found"));
+        if (n.getStatus() != Status.DRAFT) {
+            throw new ResponseStatusException(CONFLICT, "Only DRAFT newsletters can be changed.");
+        }
+        return n;
+    }
+
+    private static Newsletter transition(Supplier<Newsletter> action) {
+        try {
+            return action.get();
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(NOT_FOUND, "Newsletter not found");
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(CONFLICT, e.getMessage());
+        }
+    }
+
+    private static void validate(String subject, String body) {
+        if (!StringUtils.hasText(subject) || !StringUtils.hasText(body)) {
+            throw new ResponseStatusException(BAD_REQUEST, "Subject and body are required.");
+        }
+        if (subject.trim().length() > 300) throw new ResponseStatusException(BAD_REQUEST, "Subject is too long.");
+        try {
+            NewsletterService.validate(subject, body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static NewsletterResponse map(Newsletter n, Map<String, Long> progress) {
+        return new NewsletterResponse(n.getId(), n.getSubject(), n.getBody(), n.getStatus().name(), n.getRecipients(),
+                n.getCreatedAt() != null ? n.getCreatedAt().toString() : null,
+                n.getUpdatedAt() != null ? n.getUpdatedAt().toString() : null,
+                n.getQueuedAt() != null ? n.getQueuedAt().toString() : null,
+                progress);
+    }
+}
@@ -3,6 +3,11 @@ package org.liberia.norway.org_api.web;
 import lombok.RequiredArgsConstructor;
 import org.liberia.norway.org_api.model.Pages;
 import org.liberia.norway.org_api.repository.PageRepository;
+import org.liberia.norway.org_api.service.PagesChanged;
+import org.liberia.norway.org_api.service.PublishedPages;
+import org.liberia.norway.org_api.service.SlugService;
+import org.liberia.norway.org_api.service.SlugService.Scope;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -16,36 +21,47 @@ import java.time.OffsetDateTime;
 public class PageAdminController {
 
     private final PageRepository pages;
+    private final SlugService slugs;
+    private final ApplicationEventPublisher publisher;
 
     @PostMapping
-    @Transactional
     public PageResponse create(@RequestBody PageUpsertRequest req) {
-        var p = new Pages();
-        p.setTitle(req.title());
-        p.setSlug(uniqueSlug(StringUtils.hasText(req.slug()) ? req.slug() : slugify(req.title())));
-        p.setBody(req.body());
-        p.setPublished(Boolean.TRUE.equals(req.published()));
-        var now = OffsetDateTime.now();
-        p.setCreatedAt(now);
-        p.setUpdatedAt(now);
-        if (p.isPublished()) p.setPublishedAt(now);
-        pages.save(p);
-        return map(p);
+        var saved = slugs.withUniqueSlug(() -> {
+            var p = new Pages();
+            p.setTitle(req.title());
+            p.setSlug(slugs.uniqueSlug(Scope.PAGE, StringUtils.hasText(req.slug()) ? req.slug() : req.title(), null));
+            p.setBody(req.body());
+            PublishedPages.render(p);
+            p.setPublished(Boolean.TRUE.equals(req.published()));
+            var now = OffsetDateTime.now();
+            p.setCreatedAt(now);
+            p.setUpdatedAt(now);
+            if (p.isPublished()) p.setPublishedAt(now);
+            return map(pages.saveAndFlush(p));
+        });
+        publisher.publishEvent(new PagesChanged(saved.id()));
+        return saved;
     }
 
     @PutMapping("/{id}")
-    @Transactional
     public PageResponse update(@PathVariable Long id, @RequestBody PageUpsertRequest req) {
-        var p = pages.findById(id).orElseThrow();
-        if (StringUtils.hasText(req.title())) p.setTitle(req.title());
-        if (req.slug() != null) p.setSlug(uniqueSlug(req.slug(), id));
-        if (req.body() != null) p.setBody(req.body());
-        if (req.published() != null) {
-            p.setPublished(req.published());
-            p.setPublishedAt(req.published() ? OffsetDateTime.now() : null);
-        }
-        p.setUpdatedAt(OffsetDateTime.now());
-        return map(p);
+        var saved = slugs.withUniqueSlug(() -> {
+            var p = pages.findById(id).orElseThrow();
+            if (StringUtils.hasText(req.title())) p.setTitle(req.title());
+            if (req.slug() != null) p.setSlug(slugs.uniqueSlug(Scope.PAGE, req.slug(), id));
+            if (req.body() != null) {
+                p.setBody(req.body());
+                PublishedPages.render(p); // hopper over rendering når teksten er uendret
+            }
+            if (req.published() != null) {
+                p.setPublished(req.published());
+                p.setPublishedAt(req.published() ? OffsetDateTime.now() : null);
+            }
+            p.setUpdatedAt(OffsetDateTime.now());
+            return map(pages.saveAndFlush(p));
+        });
+        publisher.publishEvent(new PagesChanged(id));
+        return saved;
     }
 
     @PostMapping("/{id}/publish")
@@ -55,6 +71,7 @@ public class PageAdminController {
         p.setPublished(value);
         p.setPublishedAt(value ? OffsetDateTime.now() : null);
         p.setUpdatedAt(OffsetDateTime.now());
+        publisher.publishEvent(new PagesChanged(id));
         return map(p);
     }
 
@@ -62,13 +79,14 @@ public class PageAdminController {
     public org.springframework.data.domain.Page<PageResponse> list(@RequestParam(defaultValue = "0") int page,
                                                                    @RequestParam(defaultValue = "20") int size) {
         var pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        return pages.findAll(pageable).map(this::map);
+        return pages.findAllWithBody(pageable).map(this::map);
     }
 
     @DeleteMapping("/{id}")
     @Transactional
     public void delete(@PathVariable Long id) {
         pages.deleteById(id);
+        publisher.publishEvent(new PagesChanged(id));
     }
 
     // DTOs
@@ -84,29 +102,4 @@ public class PageAdminController {
                 p.getUpdatedAt() != null ? p.getUpdatedAt().toString() : null
         );
     }
-
-    // Helpers
-    private String uniqueSlug(String base) { return uniqueSlug(base, null); }
-
-    private String uniqueSlug(String base, Long currentId) {
-        String s = slugify(base);
-        var taken = pages.findBySlug(s)
-                .filter(pg -> currentId == null || !pg.getId().equals(currentId))
-                .isPresent();
-        if (!taken) return s;
-        for (int i = 2; i < 10_000; i++) {
-            String cand = s + "-" + i;
-            var exists = pages.findBySlug(cand)
-                    .filter(pg -> currentId == null || !pg.getId().equals(currentId))
-                    .isPresent();
-            if (!exists) return cand;
-        }
-        throw new IllegalStateException("Could not generate unique slug for page");
-    }
-
-    private static String slugify(String input) {
-        String s = (input == null ? "" : input).trim().toLowerCase();
-        s = s.replaceAll("[^a-z0-9]+", "-").replaceAll("^-+|-+$", "");
-        return s.isEmpty() ? "page" : s;
-    }
 }
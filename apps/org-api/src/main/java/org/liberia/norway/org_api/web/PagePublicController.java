@@ -1,10 +1,14 @@
 package org.liberia.norway.org_api.web;
 
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
 import lombok.RequiredArgsConstructor;
-import org.liberia.norway.org_api.model.Pages;
 import org.liberia.norway.org_api.repository.PageRepository;
+import org.liberia.norway.org_api.service.PublishedPages;
 import org.springframework.data.domain.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/pages")
@@ -12,22 +16,28 @@ import org.springframework.web.bind.annotation.*;
 public class PagePublicController {
 
     private final PageRepository pages;
+    private final PublishedPages published;
 
     @GetMapping
     public org.springframework.data.domain.Page<PageSummary> list(@RequestParam(defaultValue = "0") int page,
-                                                                 @RequestParam(defaultValue = "20") int size) {
+                                                                 @RequestParam(defaultValue = "20") int size,
+                                                                 WebRequest request) {
+        if (request.checkNotModified(pages.publishedVersion().etag("pages"))) return null;
         var pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         return pages.findByPublishedTrue(pageable)
                 .map(p -> new PageSummary(p.getId(), p.getSlug(), p.getTitle()));
     }
 
+    // Fra minnet: HTML er rendret ved lagring, så her er det verken parsing eller databasekall
     @GetMapping("/{slug}")
-    public PageDetail get(@PathVariable String slug) {
-        Pages p = pages.findBySlug(slug).filter(Pages::isPublished).orElseThrow();
-        return new PageDetail(p.getId(), p.getSlug(), p.getTitle(), p.getBody(), p.getPublishedAt() != null ? p.getPublishedAt().toString() : null);
+    public PageDetail get(@PathVariable String slug, WebRequest request) {
+        var p = published.get(slug);
+        if (p == null) throw new ResponseStatusException(NOT_FOUND, "Page not found");
+        if (request.checkNotModified(p.etag())) return null;
+        return new PageDetail(p.id(), p.slug(), p.title(), p.body(), p.html(), p.publishedAt());
     }
 
     public record PageSummary(Long id, String slug, String title) {}
-    public record PageDetail(Long id, String slug, String title, String body, String publishedAt) {}
+    public record PageDetail(Long id, String slug, String title, String body, String html, String publishedAt) {}
 }
 
@@ -0,0 +1,131 @@
+package org.liberia.norway.org_api.web;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.liberia.norway.org_api.util.TokenBuckets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Begrenser hvor ofte én klient (IP) kan bruke de åpne endepunktene som skriver til databasen,
+ * sender e-post eller avslører om en e-post er medlem. Hver rute har sin egen token bucket per IP,
+ * satt opp i app.ratelimit.policies som {@code METODE sti=antall/periode}, f.eks.
+ * {@code POST /api/suggestions=10/1h}: ti forespørsler på rad, så én ny hvert sjette minutt.
+ * <p>
+ * Svarene har RateLimit-Policy/-Limit/-Remaining/-Reset (IETF-utkastet, sekunder); avviste får
+ * 429 med Retry-After. Filteret ligger etter Spring Security, så CORS-headerne er satt og
+ * nettleseren kan lese 429-svaret, og før IdempotencyFilter, så gjentakelser også telles.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private record Route(String policy, TokenBuckets buckets) {}
+
+    // metode -> sti -> rute
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+    private final int proxyHops;
+    private final Counter rejected;
+
+    public RateLimitFilter(@Value("${app.ratelimit.policies:"
+                                   + "POST /api/membership/apply=5/1h,"
+                                   + "POST /api/suggestions=10/1h,"
+                                   + "GET /api/membership/exists=20/10m}") List<String> policies,
+                           @Value("${app.ratelimit.max-clients:100000}") int maxClients,
+                           @Value("${app.ratelimit.proxy-hops:0}") int proxyHops,
+                           MeterRegistry meters) {
+        for (String p : policies) {
+            if (p.isBlank()) continue;
+            int eq = p.lastIndexOf('=');
+            int sp = p.indexOf(' ');
+            int slash = p.indexOf('/', eq);
+            if (sp < 0 || eq < sp || slash < 0) {
+                throw new IllegalArgumentException("Invalid app.ratelimit.policies entry (METHOD path=limit/period): " + p);
+            }
+            String method = p.substring(0, sp).trim().toUpperCase();
+            String path = p.substring(sp + 1, eq).trim();
+            int limit = Integer.parseInt(p.substring(eq + 1, slash).trim());
+            Duration period = DurationStyle.detectAndParse(p.substring(slash + 1).trim());
+            String policy = limit + ";w=" + period.toSeconds();
+            routes.computeIfAbsent(method, m -> new HashMap<>())
+                    .put(path, new Route(policy, new TokenBuckets(limit, period, maxClients)));
+        }
+        this.proxyHops = proxyHops;
+        this.rejected = Counter.builder("ratelimit.rejected")
+                .description("Forespørsler avvist med 429")
+                .register(meters);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return route(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Route route = route(request);
+        var d = route.buckets().tryAcquire(clientIp(request));
+
+        response.setHeader("RateLimit-Policy", route.policy());
+        response.setHeader("RateLimit-Limit", Integer.toString(route.buckets().capacity()));
+        response.setHeader("RateLimit-Remaining", Integer.toString(d.remaining()));
+        response.setHeader("RateLimit-Reset", Long.toString(seconds(d.resetNanos())));
+        if (d.allowed()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        rejected.increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds(d.retryAfterNanos())));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too many requests. Please try again later.");
+    }
+
+    private Route route(HttpServletRequest request) {
+        var byPath = routes.get(request.getMethod());
+        return byPath != null ? byPath.get(request.getRequestURI()) : null;
+    }
+
+    /**
+     * Klientens IP. Bak en proxy (Render) er getRemoteAddr proxyen; da brukes adressen proxyen
+     * selv la til i X-Forwarded-For, talt bakfra, siden klienten kan fylle inn det som står foran.
+     */
+    private String clientIp(HttpServletRequest request) {
+        String xff = proxyHops > 0 ? request.getHeader("X-Forwarded-For") : null;
+        if (xff == null) return request.getRemoteAddr();
+        int end = xff.length();
+        for (int hop = 1; ; hop++) {
+            int comma = xff.lastIndexOf(',', end - 1);
+            if (hop == proxyHops) {
+                String ip = xff.substring(comma + 1, end).trim();
+                return ip.isEmpty() ? request.getRemoteAddr() : ip;
+            }
+            if (comma < 0) return request.getRemoteAddr();
+            end = comma;
+        }
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(0, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,42 @@
+package org.liberia.norway.org_api.web;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hvor mange ganger en besøkende har sett hver annonse i dag, sendt av klienten som
+ * {@code seen=12-3.15-1} (id-antall). API-et bruker ikke cookies, så klienten holder tellingen
+ * (localStorage, se serveAdvert i public-web) og nullstiller den selv ved ny dag.
+ */
+final class SeenCounts {
+
+    // holder parsing billig selv om klienten sender mye
+    private static final int MAX_ENTRIES = 50;
+
+    private final Map<Long, Integer> counts;
+
+    private SeenCounts(Map<Long, Integer> counts) {
+        this.counts = counts;
+    }
+
+    static SeenCounts parse(String value) {
+        var counts = new HashMap<Long, Integer>();
+        if (value == null || value.isBlank()) return new SeenCounts(counts);
+
+        for (String part : value.split("\\.", MAX_ENTRIES + 1)) {
+            if (counts.size() >= MAX_ENTRIES) break;
+            int dash = part.indexOf('-');
+            if (dash <= 0) continue;
+            try {
+                counts.put(Long.parseLong(part.substring(0, dash)), Integer.parseInt(part.substring(dash + 1)));
+            } catch (NumberFormatException e) {
+                // ugyldige par ignoreres
+            }
+        }
+        return new SeenCounts(counts);
+    }
+
+    int count(long advertId) {
+        return counts.getOrDefault(advertId, 0);
+    }
+}
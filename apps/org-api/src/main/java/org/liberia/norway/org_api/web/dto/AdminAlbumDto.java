@@ -0,0 +1,33 @@
+package org.liberia.norway.org_api.web.dto;
+
+import java.time.Instant;
+
+import org.liberia.norway.org_api.model.Album;
+
+/**
+ * Album slik admin-grensesnittet ser det. Antall elementer telles i databasen,
+ * så samlingen trenger ikke lastes for å bygge DTO-en.
+ */
+public record AdminAlbumDto(
+        Long id,
+        String slug,
+        String title,
+        String description,
+        boolean published,
+        Instant createdAt,
+        Instant updatedAt,
+        Integer itemsCount
+) {
+    public static AdminAlbumDto from(Album a, int itemsCount) {
+        return new AdminAlbumDto(
+                a.getId(),
+                a.getSlug(),
+                a.getTitle(),
+                a.getDescription(),
+                a.isPublished(),
+                a.getCreatedAt(),
+                a.getUpdatedAt(),
+                itemsCount
+        );
+    }
+}
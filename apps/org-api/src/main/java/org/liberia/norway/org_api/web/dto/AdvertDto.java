@@ -17,7 +17,9 @@ public record AdvertDto(
         OffsetDateTime startAt,
         OffsetDateTime endAt,
         OffsetDateTime createdAt,
-        OffsetDateTime updatedAt
+        OffsetDateTime updatedAt,
+        int weight,
+        Integer frequencyCap
 ) {
 
 }
\ No newline at end of file
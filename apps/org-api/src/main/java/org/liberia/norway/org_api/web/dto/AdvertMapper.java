@@ -34,7 +34,9 @@ public final class AdvertMapper {
                 a.getStartAt(),
                 a.getEndAt(),
                 a.getCreatedAt(),
-                a.getUpdatedAt()
+                a.getUpdatedAt(),
+                a.getWeight(),
+                a.getFrequencyCap()
         );
     }
 }
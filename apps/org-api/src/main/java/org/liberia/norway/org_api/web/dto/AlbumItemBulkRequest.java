@@ -0,0 +1,22 @@
+package org.liberia.norway.org_api.web.dto;
+
+import java.util.List;
+
+/**
+ * Flere endringer på elementene i ett album i én forespørsel. Utføres i rekkefølgen
+ * slett → flytt til annet album → bildetekst → omsortering, i én transaksjon.
+ */
+public record AlbumItemBulkRequest(
+        List<Long> delete,
+        Move move,
+        List<Caption> captions,
+        List<Reorder> reorder
+) {
+    /** Flytter elementene (i gitt rekkefølge) til slutten av et annet album. */
+    public record Move(Long targetAlbumId, List<Long> itemIds) { }
+
+    public record Caption(Long itemId, String title) { }
+
+    /** Plasser {@code itemId} rett etter {@code afterItemId}; null betyr først i albumet. */
+    public record Reorder(Long itemId, Long afterItemId) { }
+}
@@ -0,0 +1,4 @@
+package org.liberia.norway.org_api.web.dto;
+
+/** Antall rader som faktisk ble endret per operasjon. */
+public record AlbumItemBulkResult(int deleted, int moved, int captioned, int reordered) { }
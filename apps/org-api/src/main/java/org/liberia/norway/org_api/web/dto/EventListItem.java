@@ -0,0 +1,22 @@
+package org.liberia.norway.org_api.web.dto;
+
+import java.time.OffsetDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Smal projeksjon for offentlige lister: hentes direkte med JPQL "select new",
+ * uten entiteter, description eller tidsstempler.
+ */
+public record EventListItem(
+        Long id,
+        String slug,
+        String title,
+        String summary,
+        String location,
+        String coverImageUrl,
+        String rsvpUrl,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ssXXX") OffsetDateTime startAt,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ssXXX") OffsetDateTime endAt,
+        Long galleryAlbumId
+) {}
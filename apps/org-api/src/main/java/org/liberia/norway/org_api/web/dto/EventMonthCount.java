@@ -0,0 +1,4 @@
+package org.liberia.norway.org_api.web.dto;
+
+/** Antall publiserte arrangementer i en måned ("2026-10"), for kalendervisning. */
+public record EventMonthCount(String month, long count) {}
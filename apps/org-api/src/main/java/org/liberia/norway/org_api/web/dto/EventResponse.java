@@ -22,12 +22,21 @@ public record EventResponse(
         boolean isPublished
 ) {
     public static EventResponse from(Event e) {
+        return of(e, e.getDescription());
+    }
+
+    // Listevisning: description er lazy og tas ikke med, så SELECT-en holder seg smal
+    public static EventResponse listItem(Event e) {
+        return of(e, null);
+    }
+
+    private static EventResponse of(Event e, String description) {
         return new EventResponse(
             e.getId(),
             e.getSlug(),
             e.getTitle(),
             e.getSummary(),
-            e.getDescription(),
+            description,
             e.getLocation(),
             e.getCoverImageUrl(),
             e.getRsvpUrl(),
@@ -0,0 +1,6 @@
+package org.liberia.norway.org_api.web.dto;
+
+import java.util.List;
+
+/** Én side av arrangementslisten; {@code nextCursor} er null på siste side. */
+public record EventSlice(List<EventListItem> content, String nextCursor) {}
@@ -0,0 +1,9 @@
+package org.liberia.norway.org_api.web.dto;
+
+import java.util.List;
+
+/** Offentlig albumdetalj: meta + elementer. */
+public record PublicAlbumResponse(AlbumMetaDto album, List<AlbumItemDto> items) {
+
+    public record AlbumMetaDto(Long id, String slug, String title, String eventTitle, String description) { }
+}
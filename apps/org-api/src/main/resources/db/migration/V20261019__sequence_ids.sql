@@ -0,0 +1,31 @@
+-- Bytt fra IDENTITY/bigserial til sekvenser med INCREMENT BY 50.
+-- Hibernate bruker pooled-lo (sekvensverdien er nedre grense for en blokk på 50),
+-- slik at id-er tildeles uten en rundtur per rad og JDBC-batching virker.
+-- Kolonnens DEFAULT peker på samme sekvens, så rå SQL-inserts (seed, COPY)
+-- tar en hel blokk og kolliderer aldri med Hibernate.
+
+DO $$
+DECLARE
+  t text;
+BEGIN
+  FOREACH t IN ARRAY ARRAY[
+    'albums', 'album_items', 'photos', 'events', 'adverts',
+    'pages', 'suggestions', 'members', 'users'
+  ]
+  LOOP
+    EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50 START WITH 1', t || '_seq');
+
+    -- members/album_items ble laget med GENERATED BY DEFAULT AS IDENTITY
+    EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', t);
+
+    EXECUTE format(
+      'SELECT setval(%L, COALESCE((SELECT max(id) FROM %I), 0) + 1, false)',
+      t || '_seq', t
+    );
+    EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L)', t, t || '_seq');
+    EXECUTE format('ALTER SEQUENCE %I OWNED BY %I.id', t || '_seq', t);
+
+    -- bigserial-sekvensen (<tabell>_id_seq) er ikke lenger i bruk
+    EXECUTE format('DROP SEQUENCE IF EXISTS %I', t || '_id_seq');
+  END LOOP;
+END $$;
@@ -0,0 +1,6 @@
+-- Prefiks-indekser for SlugService: "slug LIKE 'base%'" kan bare bruke en btree-indeks
+-- med text_pattern_ops når databasen ikke kjører med C-kollasjon.
+CREATE INDEX IF NOT EXISTS idx_albums_slug_prefix  ON albums  (slug text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_pages_slug_prefix   ON pages   (slug text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_events_slug_prefix  ON events  (slug text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_adverts_slug_prefix ON adverts (slug text_pattern_ops);
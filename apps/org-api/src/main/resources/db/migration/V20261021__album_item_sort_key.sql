@@ -0,0 +1,14 @@
+-- Glisne sorteringsnøkler for albumelementer (steg på 1024), slik at én flytting
+-- bare oppdaterer én rad. Eksisterende elementer får rekkefølgen de ble lastet opp i.
+ALTER TABLE album_items ADD COLUMN IF NOT EXISTS sort_key BIGINT NOT NULL DEFAULT 0;
+
+UPDATE album_items i
+SET sort_key = r.rn * 1024
+FROM (
+  SELECT id, row_number() OVER (PARTITION BY album_id ORDER BY created_at, id) AS rn
+  FROM album_items
+) r
+WHERE i.id = r.id;
+
+CREATE INDEX IF NOT EXISTS ix_album_items_album_sort ON album_items(album_id, sort_key);
+DROP INDEX IF EXISTS ix_album_items_album_id;
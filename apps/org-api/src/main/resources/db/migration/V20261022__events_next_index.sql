@@ -0,0 +1,2 @@
+-- Neste publiserte arrangement: ORDER BY start_at LIMIT 1 leser bare første indeksrad.
+CREATE INDEX IF NOT EXISTS idx_events_published_start ON events (start_at) WHERE is_published;
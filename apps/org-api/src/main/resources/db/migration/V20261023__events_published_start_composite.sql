@@ -0,0 +1,5 @@
+-- Offentlig liste (from/to, upcoming/past, cursor) filtrerer på is_published og sorterer på (start_at, id).
+-- Sammensatt indeks dekker også neste-arrangement-oppslaget, så de eldre indeksene blir overflødige.
+CREATE INDEX IF NOT EXISTS idx_events_published_start_id ON events (is_published, start_at, id);
+DROP INDEX IF EXISTS idx_events_published_start;
+DROP INDEX IF EXISTS idx_events_published;
@@ -0,0 +1,12 @@
+-- Visninger og klikk per annonse per time. Skrives bare av AdvertStats sin periodiske flush
+-- (én upsert per flush), aldri én rad per visning.
+CREATE TABLE IF NOT EXISTS advert_stats (
+  advert_id   BIGINT      NOT NULL REFERENCES adverts(id) ON DELETE CASCADE,
+  hour        TIMESTAMPTZ NOT NULL,
+  impressions BIGINT      NOT NULL DEFAULT 0,
+  clicks      BIGINT      NOT NULL DEFAULT 0,
+  PRIMARY KEY (advert_id, hour)
+);
+
+-- Rapporter over et tidsrom for alle annonser
+CREATE INDEX IF NOT EXISTS ix_advert_stats_hour ON advert_stats(hour);
@@ -0,0 +1,7 @@
+-- Vekt for rotasjon mellom annonser på samme plassering, og valgfritt tak på
+-- visninger per besøkende per dag.
+ALTER TABLE adverts ADD COLUMN IF NOT EXISTS weight INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE adverts ADD COLUMN IF NOT EXISTS frequency_cap INTEGER;
+
+ALTER TABLE adverts ADD CONSTRAINT ck_adverts_weight CHECK (weight BETWEEN 1 AND 1000);
+ALTER TABLE adverts ADD CONSTRAINT ck_adverts_frequency_cap CHECK (frequency_cap IS NULL OR frequency_cap > 0);
@@ -0,0 +1,4 @@
+-- Ferdig rendret (og renset) HTML for sidene, med hash av Markdown-kilden slik at
+-- uendret tekst ikke rendres på nytt. Eksisterende sider fylles ut ved oppstart.
+ALTER TABLE pages ADD COLUMN IF NOT EXISTS body_html TEXT;
+ALTER TABLE pages ADD COLUMN IF NOT EXISTS body_hash VARCHAR(64);
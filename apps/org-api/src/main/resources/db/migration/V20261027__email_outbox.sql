@@ -0,0 +1,29 @@
+-- Utgående e-post. Raden skrives i samme transaksjon som endringen som utløser den
+-- (søknad, godkjenning, avslag); EmailDispatcher sender i bakgrunnen og prøver på nytt ved feil.
+-- status: PENDING (venter), SENDING (hentet av en dispatcher, next_attempt_at = leiefrist),
+--         SENT, FAILED (gitt opp).
+CREATE SEQUENCE IF NOT EXISTS email_outbox_seq;
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+  id              BIGINT       PRIMARY KEY DEFAULT nextval('email_outbox_seq'),
+  to_address      VARCHAR(320) NOT NULL,
+  subject         VARCHAR(300) NOT NULL,
+  body            TEXT         NOT NULL,
+  status          VARCHAR(16)  NOT NULL DEFAULT 'PENDING',
+  attempts        INTEGER      NOT NULL DEFAULT 0,
+  next_attempt_at TIMESTAMPTZ  NOT NULL DEFAULT now(),
+  last_error      VARCHAR(1000),
+  created_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+  sent_at         TIMESTAMPTZ,
+  CONSTRAINT ck_email_outbox_status CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED'))
+);
+
+ALTER SEQUENCE email_outbox_seq OWNED BY email_outbox.id;
+
+-- Køen: bare rader som fortsatt skal sendes, så indeksen holder seg liten
+CREATE INDEX IF NOT EXISTS ix_email_outbox_due
+  ON email_outbox(next_attempt_at, id) WHERE status IN ('PENDING', 'SENDING');
+
+-- Ratebegrensningen teller sendte meldinger siste minutt/døgn
+CREATE INDEX IF NOT EXISTS ix_email_outbox_sent_at
+  ON email_outbox(sent_at) WHERE sent_at IS NOT NULL;
@@ -0,0 +1,36 @@
+-- Nyhetsbrev til alle godkjente medlemmer. Hver mottaker blir én rad i email_outbox
+-- (newsletter_id satt), så status per mottaker er outbox-radens status.
+-- last_member_id er markøren for utlegging i køen: etter en omstart fortsetter vi derfra.
+CREATE SEQUENCE IF NOT EXISTS newsletters_seq INCREMENT BY 50 START WITH 1;
+
+CREATE TABLE IF NOT EXISTS newsletters (
+  id             BIGINT       PRIMARY KEY DEFAULT nextval('newsletters_seq'),
+  subject        VARCHAR(300) NOT NULL,
+  body           TEXT         NOT NULL,
+  status         VARCHAR(16)  NOT NULL DEFAULT 'DRAFT',
+  last_member_id BIGINT       NOT NULL DEFAULT 0,
+  recipients     INTEGER      NOT NULL DEFAULT 0,
+  created_at     TIMESTAMPTZ  NOT NULL DEFAULT now(),
+  updated_at     TIMESTAMPTZ  NOT NULL DEFAULT now(),
+  queued_at      TIMESTAMPTZ,
+  CONSTRAINT ck_newsletters_status CHECK (status IN ('DRAFT', 'QUEUING', 'QUEUED', 'CANCELLED'))
+);
+
+ALTER SEQUENCE newsletters_seq OWNED BY newsletters.id;
+
+ALTER TABLE email_outbox ADD COLUMN IF NOT EXISTS newsletter_id BIGINT REFERENCES newsletters(id) ON DELETE CASCADE;
+ALTER TABLE email_outbox ADD COLUMN IF NOT EXISTS member_id BIGINT;
+-- 0 = enkeltmeldinger (søknad, godkjenning), 1 = nyhetsbrev; lavest sendes først
+ALTER TABLE email_outbox ADD COLUMN IF NOT EXISTS priority SMALLINT NOT NULL DEFAULT 0;
+
+ALTER TABLE email_outbox DROP CONSTRAINT IF EXISTS ck_email_outbox_status;
+ALTER TABLE email_outbox ADD CONSTRAINT ck_email_outbox_status
+  CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED', 'CANCELLED'));
+
+-- Samme adresse får ett eksemplar per nyhetsbrev, også om utleggingen kjøres to ganger
+CREATE UNIQUE INDEX IF NOT EXISTS ux_email_outbox_newsletter_recipient
+  ON email_outbox(newsletter_id, lower(to_address)) WHERE newsletter_id IS NOT NULL;
+
+DROP INDEX IF EXISTS ix_email_outbox_due;
+CREATE INDEX IF NOT EXISTS ix_email_outbox_due
+  ON email_outbox(priority, next_attempt_at, id) WHERE status IN ('PENDING', 'SENDING');
@@ -0,0 +1,21 @@
+-- Mellomlager for masseimport av medlemmer (CSV). Gyldige rader skrives hit i batcher og flettes
+-- inn i members med én INSERT ... SELECT i samme transaksjon; radene slettes før commit.
+-- UNLOGGED: innholdet lever bare i én transaksjon, så WAL trengs ikke.
+CREATE UNLOGGED TABLE IF NOT EXISTS member_import_rows (
+  import_id        UUID         NOT NULL,
+  line_no          INTEGER      NOT NULL,
+  first_name       VARCHAR(120),
+  last_name        VARCHAR(120),
+  date_of_birth    DATE,
+  address          VARCHAR(256),
+  post_code        VARCHAR(32),
+  city             VARCHAR(120),
+  phone            VARCHAR(64),
+  email            VARCHAR(320),
+  email_norm       VARCHAR(320),
+  occupation       VARCHAR(160),
+  vipps_reference  VARCHAR(128),
+  vipps_amount_nok INTEGER,
+  created_at       TIMESTAMPTZ,
+  PRIMARY KEY (import_id, line_no)
+);
@@ -0,0 +1,7 @@
+-- Sletting av utløpte avslag (RejectedMemberPurge) leser bare REJECTED-rader med delete_at.
+-- Den delvise indeksen er liten og treffer akkurat dem; den gamle indeksen på hele delete_at
+-- brukes ikke av noen spørring og fjernes.
+CREATE INDEX IF NOT EXISTS ix_members_rejected_delete_at
+  ON members (delete_at) WHERE status = 'REJECTED';
+
+DROP INDEX IF EXISTS idx_members_delete_at;
@@ -0,0 +1,4 @@
+-- Alle e-postoppslag mot members er uten hensyn til store/små bokstaver (lower(email) = lower(?)).
+-- Den vanlige indeksen på email kan ikke brukes til det, så hvert oppslag ble en sekvensiell
+-- skanning. Funksjonsindeksen gjør dem til ett indeksoppslag.
+CREATE INDEX IF NOT EXISTS ix_members_lower_email ON members (lower(email));
@@ -0,0 +1,49 @@
+-- Avstemming av søknader mot Vipps-oppgjørsrapporten (VippsReconciliation).
+-- vipps_check: MATCHED (referanse og beløp stemmer), MISMATCH (referansen finnes, beløpet er feil),
+--              MISSING (referansen står ikke i rapporten). NULL = ikke avstemt.
+ALTER TABLE members
+  ADD COLUMN IF NOT EXISTS vipps_check        VARCHAR(16),
+  ADD COLUMN IF NOT EXISTS vipps_reported_ore BIGINT,
+  ADD COLUMN IF NOT EXISTS vipps_checked_at   TIMESTAMPTZ;
+
+ALTER TABLE members
+  ADD CONSTRAINT ck_members_vipps_check CHECK (vipps_check IN ('MATCHED', 'MISMATCH', 'MISSING'));
+
+-- Én Vipps-betaling kan bare dekke én søknad. Avslåtte søknader er unntatt, så den som får avslag
+-- kan søke på nytt med samme betaling; tomme referanser (gamle medlemmer) telles ikke. Referansen
+-- sammenlignes uten mellomrom rundt og uten skille på store/små bokstaver, slik avstemmingen gjør.
+--
+-- Tidligere ble ikke referansen sjekket, så det kan finnes duplikater som gjør at indeksen ikke kan
+-- lages. Da stopper migreringen med en liste over dem (og appen starter ikke) i stedet for å velge
+-- hvilken søknad som skal beholde betalingen. Sjekk før utrulling med:
+--
+--   select upper(btrim(vipps_reference)) as ref, array_agg(id || ' ' || status order by id) as members
+--   from members
+--   where status <> 'REJECTED' and btrim(vipps_reference) <> ''
+--   group by 1 having count(*) > 1;
+--
+-- og rydd opp (avslå duplikatsøknaden eller rett referansen) til den ikke gir noen rader.
+DO $$
+DECLARE
+  duplicates TEXT;
+BEGIN
+  SELECT string_agg(ref || ': ' || members, E'\n' ORDER BY ref)
+    INTO duplicates
+    FROM (SELECT upper(btrim(vipps_reference)) AS ref,
+                 string_agg('#' || id || ' (' || status || ')', ', ' ORDER BY id) AS members
+            FROM members
+           WHERE status <> 'REJECTED' AND btrim(vipps_reference) <> ''
+           GROUP BY 1
+          HAVING count(*) > 1) d;
+  IF duplicates IS NOT NULL THEN
+    RAISE EXCEPTION E'Vipps references used by more than one member or application:\n%', duplicates
+      USING HINT = 'Reject the duplicate application or correct the reference, then restart.';
+  END IF;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_members_vipps_reference
+  ON members (upper(btrim(vipps_reference)))
+  WHERE status <> 'REJECTED' AND btrim(vipps_reference) <> '';
+
+-- erstattes av den unike indeksen
+DROP INDEX IF EXISTS idx_members_vipps_reference;
@@ -0,0 +1,45 @@
+-- Ferdig summert medlemsstatistikk per dag, by og fødselsår (se MembershipStats).
+-- Oppdateres i samme transaksjon som endringene i members; en nattlig jobb retter eventuelle avvik.
+--   applications       søknader mottatt (dag = created_at)
+--   members            medlemmer (ACCEPTED) etter dagen de ble tatt opp (dag = handled_at)
+--   rejected           avslag (dag = handled_at)
+--   decided            behandlede søknader, og turnaround_seconds summen av behandlingstiden deres
+-- Medlemmer lagt inn direkte (import/admin) har handled_at = created_at og telles ikke som søknader.
+-- city er lower(trim(city)), '' når ukjent; birth_year er 0 når fødselsdato mangler.
+CREATE TABLE membership_daily_stats (
+  day                DATE         NOT NULL,
+  city               VARCHAR(120) NOT NULL,
+  birth_year         INT          NOT NULL,
+  applications       INT          NOT NULL DEFAULT 0,
+  members            INT          NOT NULL DEFAULT 0,
+  rejected           INT          NOT NULL DEFAULT 0,
+  decided            INT          NOT NULL DEFAULT 0,
+  turnaround_seconds BIGINT       NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, city, birth_year)
+);
+
+-- Startverdier fra dagens members (samme spørring som den nattlige kontrollen)
+INSERT INTO membership_daily_stats (day, city, birth_year, applications, members, rejected, decided, turnaround_seconds)
+WITH m AS (
+  SELECT coalesce(lower(trim(city)), '') AS city,
+         coalesce(extract(year FROM date_of_birth)::int, 0) AS birth_year,
+         status, created_at, handled_at
+  FROM members
+)
+SELECT day, city, birth_year, sum(applications), sum(members), sum(rejected), sum(decided), sum(turnaround_seconds)
+FROM (
+  SELECT (created_at AT TIME ZONE 'Europe/Oslo')::date AS day, city, birth_year,
+         1 AS applications, 0 AS members, 0 AS rejected, 0 AS decided, 0::bigint AS turnaround_seconds
+  FROM m WHERE handled_at IS NULL OR handled_at <> created_at
+  UNION ALL
+  SELECT (coalesce(handled_at, created_at) AT TIME ZONE 'Europe/Oslo')::date, city, birth_year, 0, 1, 0, 0, 0
+  FROM m WHERE status = 'ACCEPTED'
+  UNION ALL
+  SELECT (handled_at AT TIME ZONE 'Europe/Oslo')::date, city, birth_year, 0, 0, 1, 0, 0
+  FROM m WHERE status = 'REJECTED' AND handled_at IS NOT NULL
+  UNION ALL
+  SELECT (handled_at AT TIME ZONE 'Europe/Oslo')::date, city, birth_year, 0, 0, 0, 1,
+         floor(extract(epoch FROM handled_at - created_at))::bigint
+  FROM m WHERE status <> 'PENDING' AND handled_at > created_at
+) x
+GROUP BY day, city, birth_year;
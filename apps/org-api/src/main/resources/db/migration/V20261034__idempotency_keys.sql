@@ -0,0 +1,17 @@
+-- Idempotency-Key for offentlige POST-endepunkter (se IdempotencyStore).
+-- key_hash     sha-256 av metode, sti og nøkkelen klienten sendte
+-- request_hash sha-256 av forespørselens body; samme nøkkel med annen body avvises
+-- status_code  null mens den første forespørselen behandles; locked_until lar en annen
+--              instans ta over hvis den som behandlet døde underveis
+CREATE TABLE idempotency_keys (
+  key_hash      BYTEA        PRIMARY KEY,
+  request_hash  BYTEA        NOT NULL,
+  status_code   INT,
+  content_type  VARCHAR(255),
+  body          BYTEA,
+  locked_until  TIMESTAMPTZ,
+  created_at    TIMESTAMPTZ  NOT NULL DEFAULT now(),
+  expires_at    TIMESTAMPTZ  NOT NULL
+);
+
+CREATE INDEX ix_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,104 @@
+package org.liberia.norway.org_api.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Member.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Sjekker mot ekte PostgreSQL (med Flyway-migreringene) at e-postoppslagene i
+ * {@link MemberRepository} bruker funksjonsindeksen på lower(email) og ikke skanner hele tabellen.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=org.liberia.norway.org_api.repository.EmailLookupPlanTest$SqlCapture"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class EmailLookupPlanTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    @Autowired MemberRepository members;
+    @Autowired JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        // nok rader til at planleggeren foretrekker indeksen framfor en skanning
+        jdbc.update("""
+                insert into members (first_name, email, vipps_reference, vipps_amount_nok, status)
+                select 'M' || i, 'Member' || i || '@Example.no', 'ref' || i, 245,
+                       (array['PENDING', 'ACCEPTED', 'REJECTED'])[1 + i % 3]
+                from generate_series(1, 5000) i
+                """);
+        jdbc.execute("analyze members");
+        SqlCapture.LOG.clear();
+    }
+
+    @Test
+    void precheckIsOneQueryOnTheLowerEmailIndex() {
+        assertThat(members.findStatusesByEmailIgnoreCase("MEMBER42@example.NO")).containsExactly(Status.PENDING);
+
+        assertThat(SqlCapture.LOG).hasSize(1);
+        assertThat(plan(SqlCapture.LOG.getFirst(), "'member42@example.no'")).contains("ix_members_lower_email");
+    }
+
+    @Test
+    void existsChecksUseTheIndex() {
+        assertThat(members.existsByEmailIgnoreCaseAndStatus("member43@example.no", Status.ACCEPTED)).isTrue();
+        assertThat(members.existsByEmailIgnoreCaseAndStatusAndIdNot("member43@example.no", Status.ACCEPTED, 0L)).isTrue();
+        assertThat(members.existsByEmailIgnoreCase("nobody@example.no")).isFalse();
+
+        assertThat(SqlCapture.LOG).hasSize(3).allSatisfy(sql ->
+                assertThat(plan(sql, "'member43@example.no'", "'ACCEPTED'", "0")).contains("ix_members_lower_email"));
+    }
+
+    // Setter inn verdiene for ? i rekkefølge og returnerer planen som tekst
+    private String plan(String sql, String... literals) {
+        var sb = new StringBuilder();
+        int next = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?' && next < literals.length) sb.append(literals[next++]);
+            else sb.append(c);
+        }
+        return String.join("\n", jdbc.queryForList("explain " + sb, String.class));
+    }
+
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> LOG = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.contains("members")) LOG.add(sql);
+            return sql;
+        }
+    }
+}
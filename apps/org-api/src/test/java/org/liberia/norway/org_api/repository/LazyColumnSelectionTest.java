@@ -0,0 +1,113 @@
+package org.liberia.norway.org_api.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Album;
+import org.liberia.norway.org_api.model.Event;
+import org.liberia.norway.org_api.model.Pages;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Sjekker at bytekode-forbedringen virker: lister skal ikke hente de store tekstkolonnene.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=org.liberia.norway.org_api.repository.LazyColumnSelectionTest$SqlCapture"
+})
+class LazyColumnSelectionTest {
+
+    @Autowired TestEntityManager em;
+    @Autowired EventRepository events;
+    @Autowired PageRepository pages;
+    @Autowired AlbumRepository albums;
+
+    @BeforeEach
+    void seed() {
+        var now = OffsetDateTime.now();
+
+        var e = new Event();
+        e.setTitle("Founders Day");
+        e.setSlug("founders-day");
+        e.setDescription("lang tekst");
+        e.setStartAt(now);
+        e.setPublished(true);
+        em.persist(e);
+
+        var p = new Pages();
+        p.setTitle("Om oss");
+        p.setSlug("om-oss");
+        p.setBody("lang tekst");
+        p.setPublished(true);
+        p.setCreatedAt(now);
+        p.setUpdatedAt(now);
+        em.persist(p);
+
+        var a = new Album();
+        a.setTitle("Tur");
+        a.setSlug("tur");
+        a.setDescription("lang tekst");
+        em.persist(a);
+
+        em.flush();
+        em.clear();
+        SqlCapture.LOG.clear();
+    }
+
+    @Test
+    void eventListSkipsDescriptionUntilAccessed() {
+        var list = events.findAll(PageRequest.of(0, 20)).getContent();
+        assertThat(selects()).noneMatch(sql -> sql.contains("description"));
+
+        assertThat(list.getFirst().getDescription()).isEqualTo("lang tekst");
+        assertThat(selects()).last().satisfies(sql -> assertThat(sql).contains("description"));
+    }
+
+    @Test
+    void publicPageListSkipsBody() {
+        pages.findByPublishedTrue(PageRequest.of(0, 20));
+        // body og body_html er lazy; body_hash er en vanlig kolonne
+        assertThat(selects()).isNotEmpty().noneMatch(sql -> sql.matches("(?s).*\\bbody\\b.*") || sql.contains("body_html"));
+    }
+
+    @Test
+    void fetchGraphsLoadTextInSameSelect() {
+        pages.findAllWithBody(PageRequest.of(0, 20)).forEach(Pages::getBody);
+        albums.findAllWithDescription(PageRequest.of(0, 20)).forEach(Album::getDescription);
+
+        assertThat(selects()).filteredOn(sql -> sql.contains(" from pages ") && !sql.contains("count("))
+                .singleElement().satisfies(sql -> assertThat(sql).contains("body"));
+        assertThat(selects()).filteredOn(sql -> sql.contains(" from albums ") && !sql.contains("count("))
+                .singleElement().satisfies(sql -> assertThat(sql).contains("description"));
+    }
+
+    private static List<String> selects() {
+        synchronized (SqlCapture.LOG) {
+            return SqlCapture.LOG.stream().filter(sql -> sql.startsWith("select")).toList();
+        }
+    }
+
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> LOG = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            LOG.add(sql.replaceAll("\\s+", " ").toLowerCase());
+            return sql;
+        }
+    }
+}
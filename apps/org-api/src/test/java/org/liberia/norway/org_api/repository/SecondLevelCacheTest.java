@@ -0,0 +1,111 @@
+package org.liberia.norway.org_api.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Event;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Sjekker mot ekte PostgreSQL med cache-oppsettet fra application.properties at gjentatte
+ * oppslag treffer second-level cachen, og at en admin-endring (egen transaksjon, som i
+ * EventAdminController) gjør at neste lesing får den nye verdien og ikke en utdatert kopi.
+ * Hvert kall går i sin egen transaksjon, siden cachen først oppdateres ved commit.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    @Autowired EventRepository events;
+    @Autowired EntityManagerFactory emf;
+    @Autowired PlatformTransactionManager txManager;
+
+    private TransactionTemplate tx;
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(txManager);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void entityCacheIsUpdatedOnAdminWrite() {
+        long id = insert("cache-entity", "Founders Day");
+        emf.getCache().evictAll();
+        stats.clear();
+
+        assertThat(events.findById(id).orElseThrow().getTitle()).isEqualTo("Founders Day");
+        assertThat(events.findById(id).orElseThrow().getTitle()).isEqualTo("Founders Day");
+        assertThat(stats.getSecondLevelCacheMissCount()).isEqualTo(1);
+        assertThat(stats.getSecondLevelCacheHitCount()).isEqualTo(1);
+
+        tx.executeWithoutResult(s -> events.findById(id).orElseThrow().setTitle("Independence Day"));
+
+        stats.clear();
+        assertThat(events.findById(id).orElseThrow().getTitle()).isEqualTo("Independence Day");
+        // fortsatt fra cachen, men med den nye verdien
+        assertThat(stats.getSecondLevelCacheHitCount()).isEqualTo(1);
+        assertThat(stats.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void queryCacheIsInvalidatedOnAdminWrite() {
+        long id = insert("cache-query", "Flag Day");
+        stats.clear();
+
+        assertThat(events.findBySlug("cache-query")).isPresent();
+        assertThat(events.findBySlug("cache-query")).isPresent();
+        assertThat(stats.getQueryCacheHitCount()).isEqualTo(1);
+
+        tx.executeWithoutResult(s -> events.findById(id).orElseThrow().setSlug("cache-query-renamed"));
+
+        assertThat(events.findBySlug("cache-query")).isEmpty();
+        assertThat(events.findBySlug("cache-query-renamed")).map(Event::getId).contains(id);
+    }
+
+    private long insert(String slug, String title) {
+        return tx.execute(s -> {
+            var e = new Event();
+            e.setSlug(slug);
+            e.setTitle(title);
+            e.setStartAt(OffsetDateTime.now().plusDays(7));
+            e.setPublished(true);
+            return events.save(e).getId();
+        });
+    }
+}
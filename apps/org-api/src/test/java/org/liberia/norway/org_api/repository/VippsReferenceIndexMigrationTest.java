@@ -0,0 +1,59 @@
+package org.liberia.norway.org_api.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Migreringen som lager ux_members_vipps_reference, kjørt mot en database med data fra før:
+ * duplikater (før kunne samme referanse brukes flere ganger) skal stoppe den med en liste,
+ * ikke med en uforståelig indeksfeil.
+ */
+class VippsReferenceIndexMigrationTest {
+
+    private static final String BEFORE_INDEX = "20261031";
+
+    @Test
+    void duplicatesAbortMigrationWithList() throws Exception {
+        try (var pg = EmbeddedPostgres.start()) {
+            var ds = pg.getPostgresDatabase();
+            flyway(ds, BEFORE_INDEX).migrate();
+            var jdbc = new JdbcTemplate(ds);
+            insert(jdbc, "Ola", "ABC1", "PENDING");
+            insert(jdbc, "Kari", " abc1", "ACCEPTED");
+            insert(jdbc, "Per", "abc1", "REJECTED"); // avslåtte telles ikke
+            insert(jdbc, "Åse", "X9", "ACCEPTED");
+
+            assertThatThrownBy(() -> flyway(ds, null).migrate())
+                    .hasMessageContaining("Vipps references used by more than one member or application")
+                    .hasMessageContaining("ABC1: #")
+                    .hasMessageContaining("(PENDING), #")
+                    .hasMessageNotContaining("REJECTED")
+                    .hasMessageNotContaining("X9");
+
+            // ryddet opp: migreringen går igjennom, og indeksen skiller ikke på store/små bokstaver
+            jdbc.update("update members set status = 'REJECTED' where first_name = 'Ola'");
+            flyway(ds, null).repair();
+            flyway(ds, null).migrate();
+            assertThatThrownBy(() -> insert(jdbc, "Dup", "x9 ", "PENDING")).isInstanceOf(DuplicateKeyException.class);
+            assertThat(jdbc.queryForObject("select count(*) from members", Integer.class)).isEqualTo(4);
+        }
+    }
+
+    private static Flyway flyway(javax.sql.DataSource ds, String target) {
+        var config = Flyway.configure().dataSource(ds).locations("classpath:db/migration");
+        if (target != null) config.target(target);
+        return config.load();
+    }
+
+    private static void insert(JdbcTemplate jdbc, String name, String reference, String status) {
+        jdbc.update("insert into members (first_name, email, vipps_reference, vipps_amount_nok, status) values (?, ?, ?, 245, ?)",
+                name, name.toLowerCase() + "@x.no", reference, status);
+    }
+}
@@ -0,0 +1,48 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.repository.AdvertRepository;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+class ActiveAdvertsTest {
+
+    private final AdvertRepository adverts = mock(AdvertRepository.class);
+    private final TaskScheduler scheduler = mock(TaskScheduler.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+
+    // en databasefeil ved grensen skal ikke etterlate bildet uten ny oppvåkning
+    @Test
+    void failedRefreshKeepsSnapshotAndRetries() {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        var active = new ActiveAdverts(adverts, scheduler, txManager);
+
+        when(adverts.findActiveNotExpired(any())).thenReturn(List.of());
+        active.refresh();
+        var snapshot = active.get();
+        verify(scheduler, never()).schedule(any(Runnable.class), any(Instant.class));
+
+        when(adverts.findActiveNotExpired(any())).thenThrow(new DataAccessResourceFailureException("connection refused"));
+        Instant before = Instant.now();
+        active.refresh();
+
+        assertThat(active.get()).isSameAs(snapshot);
+        var at = ArgumentCaptor.forClass(Instant.class);
+        verify(scheduler).schedule(any(Runnable.class), at.capture());
+        assertThat(Duration.between(before, at.getValue())).isBetween(Duration.ofSeconds(1), Duration.ofSeconds(2));
+    }
+}
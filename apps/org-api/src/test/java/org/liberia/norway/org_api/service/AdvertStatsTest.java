@@ -0,0 +1,158 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.AdvertStats.HourlyRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Flushen mot ekte PostgreSQL med styrt klokke: bare differansen siden forrige flush skrives,
+ * en feilet upsert prøves igjen med de samme tallene, og ferdigskrevne gamle timer fjernes.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AdvertStatsTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    private static final Instant TEN = Instant.parse("2024-05-17T10:15:00Z");
+
+    /** Klokke testen kan flytte. */
+    private static final class TestClock extends Clock {
+        Instant now = TEN;
+
+        @Override public Instant instant() { return now; }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+    }
+
+    @Autowired JdbcTemplate jdbc;
+
+    private final TestClock clock = new TestClock();
+    private JdbcTemplate spyJdbc;
+    private AdvertStats stats;
+    private long advert;
+
+    @BeforeEach
+    void setUp() {
+        advert = jdbc.queryForObject(
+                "insert into adverts (slug, title, placement) values ('stats', 'Stats', 'HOME_TOP') returning id", Long.class);
+        spyJdbc = spy(jdbc);
+        stats = new AdvertStats(spyJdbc, clock);
+    }
+
+    @Test
+    void writesOnlyTheDeltaSinceLastFlush() {
+        record(3, 1);
+        stats.flush();
+        record(2, 0);
+        stats.flush();
+        stats.flush(); // ingenting nytt
+
+        clock.now = TEN.plus(Duration.ofHours(1));
+        record(1, 1);
+        stats.recordImpression(advert + 1_000); // slettet annonse: filtreres bort av join
+        stats.flush();
+
+        assertThat(hourly()).containsExactly(
+                new HourlyRow(hour(TEN), 5, 1),
+                new HourlyRow(hour(TEN.plus(Duration.ofHours(1))), 1, 1));
+    }
+
+    @Test
+    void failedUpsertIsRetriedWithTheSameNumbers() {
+        record(4, 2);
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .doCallRealMethod()
+                .when(spyJdbc).execute(any(ConnectionCallback.class));
+
+        stats.flush();
+        assertThat(hourly()).isEmpty();
+
+        record(1, 0);
+        stats.flush();
+        assertThat(hourly()).containsExactly(new HourlyRow(hour(TEN), 5, 2));
+
+        // en feilet flush fjerner ingen timer; den neste som lykkes, fjerner de gamle
+        clock.now = TEN.plus(Duration.ofHours(3));
+        record(1, 0);
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .doCallRealMethod()
+                .when(spyJdbc).execute(any(ConnectionCallback.class));
+        stats.flush();
+        assertThat(stats.pending()).isEqualTo(2);
+        stats.flush();
+        assertThat(stats.pending()).isEqualTo(1);
+        assertThat(hourly()).hasSize(2);
+    }
+
+    @Test
+    void evictsFlushedHoursOlderThanThePreviousHour() {
+        record(1, 0);
+        stats.flush();
+        assertThat(stats.pending()).isEqualTo(1);
+
+        // neste time: forrige time beholdes, en tråd kan fortsatt telle på den
+        clock.now = TEN.plus(Duration.ofHours(1));
+        stats.flush();
+        assertThat(stats.pending()).isEqualTo(1);
+
+        clock.now = TEN.plus(Duration.ofHours(2));
+        record(1, 0);
+        stats.flush();
+        assertThat(stats.pending()).isEqualTo(1);
+        assertThat(hourly()).hasSize(2);
+    }
+
+    private void record(int impressions, int clicks) {
+        for (int i = 0; i < impressions; i++) stats.recordImpression(advert);
+        for (int i = 0; i < clicks; i++) stats.recordClick(advert);
+    }
+
+    private List<HourlyRow> hourly() {
+        return stats.hourly(advert, hour(TEN).minusDays(1), hour(TEN).plusDays(1));
+    }
+
+    private static OffsetDateTime hour(Instant t) {
+        return OffsetDateTime.ofInstant(t, ZoneOffset.UTC).withMinute(0);
+    }
+}
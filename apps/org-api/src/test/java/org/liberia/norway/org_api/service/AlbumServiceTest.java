@@ -0,0 +1,161 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest.Caption;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest.Move;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkRequest.Reorder;
+import org.liberia.norway.org_api.web.dto.AlbumItemBulkResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Omsorteringen med glisne nøkler som rene enhetstester, og {@link AlbumService#applyBulk}
+ * (rekkefølgen slett → flytt → bildetekst → omsortering) mot ekte PostgreSQL.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AlbumService.class)
+class AlbumServiceTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    @Autowired AlbumService albums;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void movesBetweenNeighboursToTheMidpoint() {
+        assertThat(AlbumService.reorder(keys(1, 1024, 2, 2048, 3, 3072), List.of(new Reorder(3L, 1L))))
+                .containsExactly(entry(3L, 1536L));
+    }
+
+    @Test
+    void movesToHeadAndTail() {
+        // først: ett steg foran det som var først, også under null
+        assertThat(AlbumService.reorder(keys(1, 1024, 2, 2048, 3, 3072), List.of(new Reorder(3L, null))))
+                .containsExactly(entry(3L, 0L));
+        assertThat(AlbumService.reorder(keys(1, 0, 2, 2048), List.of(new Reorder(2L, null))))
+                .containsExactly(entry(2L, -1024L));
+        // sist: ett steg etter det som var sist
+        assertThat(AlbumService.reorder(keys(1, 1024, 2, 2048, 3, 3072), List.of(new Reorder(1L, 3L))))
+                .containsExactly(entry(1L, 4096L));
+        // alene i albumet
+        assertThat(AlbumService.reorder(keys(1, 5), List.of(new Reorder(1L, null))))
+                .containsExactly(entry(1L, 1024L));
+    }
+
+    @Test
+    void renumbersWhenTheGapIsUsedUp() {
+        assertThat(AlbumService.reorder(keys(1, 10, 2, 11, 3, 12), List.of(new Reorder(3L, 1L))))
+                .containsExactly(entry(1L, 1024L), entry(3L, 2048L), entry(2L, 3072L));
+
+        // 1 og 2 har allerede steg-nøklene etter omnummereringen, så bare 3 og 4 skrives
+        assertThat(AlbumService.reorder(keys(1, 1024, 2, 2048, 3, 2049, 4, 2050), List.of(new Reorder(4L, 2L))))
+                .containsExactly(entry(4L, 3072L), entry(3L, 4096L));
+    }
+
+    @Test
+    void laterOpsSeeEarlierOnesAndUnchangedKeysAreDropped() {
+        var keys = keys(1, 1024, 2, 2048, 3, 3072);
+        // 2 sist, så tilbake mellom 1 og 3: ender på opprinnelig nøkkel
+        assertThat(AlbumService.reorder(keys, List.of(new Reorder(2L, 3L), new Reorder(2L, 1L)))).isEmpty();
+        // 3 først, så 2 rett etter 3: midtpunktet mellom 3 (0) og 1 (1024)
+        assertThat(AlbumService.reorder(keys, List.of(new Reorder(3L, null), new Reorder(2L, 3L))))
+                .containsExactly(entry(3L, 0L), entry(2L, 512L));
+    }
+
+    @Test
+    void rejectsInvalidOps() {
+        var keys = keys(1, 1024, 2, 2048);
+        for (var op : List.of(new Reorder(9L, null), new Reorder(1L, 9L), new Reorder(1L, 1L), new Reorder(null, 2L))) {
+            assertThatThrownBy(() -> AlbumService.reorder(keys, List.of(op)))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    @Test
+    void applyBulkRunsDeleteMoveCaptionReorderInOrder() {
+        long a = album("bulk-a"), b = album("bulk-b");
+        long i1 = item(a, 1024), i2 = item(a, 2048), i3 = item(a, 3072), i4 = item(a, 4096), i5 = item(a, 5120);
+        long b1 = item(b, 1024);
+
+        AlbumItemBulkResult result = albums.applyBulk(a, new AlbumItemBulkRequest(
+                List.of(i1),
+                new Move(b, List.of(i2)),
+                List.of(new Caption(i3, "Tittel")),
+                List.of(new Reorder(i5, null))));   // først: foran i3, som nå er først
+
+        assertThat(result).isEqualTo(new AlbumItemBulkResult(1, 1, 1, 1));
+        assertThat(order(a)).containsExactly(i5 + "@2048", i3 + "@3072", i4 + "@4096");
+        assertThat(order(b)).containsExactly(b1 + "@1024", i2 + "@2048");   // flyttet legges sist
+        assertThat(jdbc.queryForObject("select title from album_items where id = ?", String.class, i3))
+                .isEqualTo("Tittel");
+
+        // slettede og flyttede elementer finnes ikke lenger i albumet for de senere stegene
+        long i6 = item(a, 6144), i7 = item(a, 7168);
+        for (var req : List.of(
+                new AlbumItemBulkRequest(List.of(i6), null, List.of(new Caption(i6, "x")), null),
+                new AlbumItemBulkRequest(null, new Move(b, List.of(i7)), null, List.of(new Reorder(i7, null))))) {
+            assertThatThrownBy(() -> albums.applyBulk(a, req))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    // id, nøkkel, id, nøkkel, ... i visningsrekkefølge
+    private static Map<Long, Long> keys(long... idsAndKeys) {
+        var keys = new LinkedHashMap<Long, Long>();
+        for (int i = 0; i < idsAndKeys.length; i += 2) keys.put(idsAndKeys[i], idsAndKeys[i + 1]);
+        return keys;
+    }
+
+    private long album(String slug) {
+        return jdbc.queryForObject("insert into albums (slug, title) values (?, ?) returning id", Long.class, slug, slug);
+    }
+
+    private long item(long album, long sortKey) {
+        return jdbc.queryForObject("""
+                insert into album_items (album_id, media_type, sort_key) values (?, 'IMAGE', ?) returning id
+                """, Long.class, album, sortKey);
+    }
+
+    private List<String> order(long album) {
+        return jdbc.queryForList(
+                "select id || '@' || sort_key from album_items where album_id = ? order by sort_key", String.class, album);
+    }
+}
@@ -0,0 +1,176 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.ApplicationDecisions.BulkResult;
+import org.liberia.norway.org_api.service.ApplicationDecisions.Decision;
+import org.liberia.norway.org_api.service.ApplicationDecisions.Filter;
+import org.liberia.norway.org_api.service.ApplicationDecisions.Outcome;
+import org.liberia.norway.org_api.service.ApplicationDecisions.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Massebehandlingen mot ekte PostgreSQL: bare PENDING-rader endres, id-er som ikke ble endret
+ * skilles i NOT_FOUND og NOT_PENDING, e-postene havner i email_outbox i samme transaksjon, og
+ * membership_daily_stats stemmer med members etterpå.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ApplicationDecisions.class, EmailOutbox.class, MembershipStats.class})
+class ApplicationDecisionsTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private static final long UNKNOWN = 999_999_999L;
+
+    @Autowired ApplicationDecisions decisions;
+    @Autowired MembershipStats stats;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void acceptsOnlyPendingAndExplainsTheRest() {
+        long ola = member("Ola", "PENDING", " ola@x.no ", "2024-03-01T10:00:00Z");
+        long kari = member("Kari", "PENDING", " ", "2024-03-01T10:00:00Z");   // ingen e-post å sende til
+        long per = member("Per", "ACCEPTED", "per@x.no", "2024-03-01T10:00:00Z");
+        stats.verify();
+        int members = sum("members"), decided = sum("decided");
+
+        // duplikater telles én gang, og utfallene kommer i rekkefølgen id-ene først ble gitt
+        BulkResult result = decisions.decide(Decision.ACCEPT, List.of(ola, per, UNKNOWN, kari, ola, per), 0, null);
+
+        assertThat(result.changed()).isEqualTo(2);
+        assertThat(result.emailsQueued()).isEqualTo(1);
+        assertThat(result.outcomes()).containsExactly(
+                new Outcome(ola, Result.ACCEPTED, true),
+                new Outcome(per, Result.NOT_PENDING, false),
+                new Outcome(UNKNOWN, Result.NOT_FOUND, false),
+                new Outcome(kari, Result.ACCEPTED, false));
+
+        assertThat(status(ola)).isEqualTo("ACCEPTED handled");
+        assertThat(status(kari)).isEqualTo("ACCEPTED handled");
+        assertThat(jdbc.queryForObject("select count(*) from members where id in (?, ?) and delete_at is not null",
+                Integer.class, ola, kari)).isZero();
+        assertThat(outbox(ola)).containsExactly("ola@x.no 1 Welcome to ULAN - Membership Approved!");
+        assertThat(outbox(kari)).isEmpty();
+        assertThat(outbox(per)).isEmpty();
+
+        assertThat(sum("members")).isEqualTo(members + 2);
+        assertThat(sum("decided")).isEqualTo(decided + 2);
+        assertThat(stats.verify()).isZero();
+
+        // samme liste igjen (to administratorer samtidig): ingenting endres, ingen nye e-poster
+        var again = decisions.decide(Decision.ACCEPT, List.of(ola, kari), 0, null);
+        assertThat(again.changed()).isZero();
+        assertThat(again.emailsQueued()).isZero();
+        assertThat(again.outcomes()).extracting(Outcome::result).containsExactly(Result.NOT_PENDING, Result.NOT_PENDING);
+        assertThat(outbox(ola)).hasSize(1);
+    }
+
+    @Test
+    void rejectionSetsDeleteAtAndQueuesTheReason() {
+        long ola = member("Ola", "PENDING", "ola@x.no", "2024-03-01T10:00:00Z");
+        stats.verify();
+        int rejected = sum("rejected");
+
+        var result = decisions.decide(Decision.REJECT, List.of(ola), 30, "Mangler betaling");
+
+        assertThat(result.outcomes()).containsExactly(new Outcome(ola, Result.REJECTED, true));
+        assertThat(jdbc.queryForObject("select delete_at from members where id = ?", OffsetDateTime.class, ola)
+                .toInstant()).isCloseTo(Instant.now().plus(30, ChronoUnit.DAYS), within(1, ChronoUnit.MINUTES));
+        assertThat(jdbc.queryForObject("select body from email_outbox where member_id = ?", String.class, ola))
+                .contains("Reason: Mangler betaling");
+        assertThat(sum("rejected")).isEqualTo(rejected + 1);
+        assertThat(stats.verify()).isZero();
+    }
+
+    @Test
+    void filterSelectsPendingWithinBounds() {
+        long early = member("Ada", "PENDING", "ada@x.no", "2024-01-15T10:00:00Z");
+        long inside = member("Bo", "PENDING", "bo@x.no", "2024-03-01T00:00:00Z");   // nedre grense er med
+        long upper = member("Cy", "PENDING", "cy@x.no", "2024-04-01T00:00:00Z");    // øvre grense er ikke med
+        long handled = member("Di", "REJECTED", "di@x.no", "2024-03-10T10:00:00Z");
+        stats.verify();
+
+        var bounded = decisions.decide(Decision.ACCEPT,
+                new Filter(Instant.parse("2024-03-01T00:00:00Z"), Instant.parse("2024-04-01T00:00:00Z")), 0, null);
+        assertThat(bounded.outcomes()).containsExactly(new Outcome(inside, Result.ACCEPTED, true));
+        assertThat(bounded.emailsQueued()).isEqualTo(1);
+
+        // tomt filter: alle som fortsatt er PENDING
+        var all = decisions.decide(Decision.REJECT, new Filter(null, null), 14, null);
+        assertThat(all.outcomes()).extracting(Outcome::id).containsExactlyInAnyOrder(early, upper);
+        assertThat(all.changed()).isEqualTo(2);
+        assertThat(all.emailsQueued()).isEqualTo(2);
+
+        assertThat(status(inside)).isEqualTo("ACCEPTED handled");
+        assertThat(status(early)).isEqualTo("REJECTED handled");
+        assertThat(status(handled)).isEqualTo("REJECTED handled");
+        assertThat(outbox(handled)).isEmpty();
+        assertThat(jdbc.queryForObject("select count(*) from members where status = 'PENDING'", Integer.class)).isZero();
+        assertThat(stats.verify()).isZero();
+    }
+
+    private long member(String firstName, String status, String email, String createdAt) {
+        var created = OffsetDateTime.parse(createdAt);
+        return jdbc.queryForObject("""
+                insert into members (first_name, last_name, email, city, status, created_at, handled_at)
+                values (?, 'Test', ?, 'Oslo', ?, ?, ?) returning id
+                """, Long.class, firstName, email, status, created,
+                status.equals("PENDING") ? null : created.plusDays(1));
+    }
+
+    private String status(long id) {
+        return jdbc.queryForObject(
+                "select status || case when handled_at is null then '' else ' handled' end from members where id = ?",
+                String.class, id);
+    }
+
+    private List<String> outbox(long memberId) {
+        return jdbc.queryForList(
+                "select to_address || ' ' || priority || ' ' || subject from email_outbox where member_id = ?",
+                String.class, memberId);
+    }
+
+    private int sum(String column) {
+        return jdbc.queryForObject("select coalesce(sum(" + column + "), 0) from membership_daily_stats", Integer.class);
+    }
+}
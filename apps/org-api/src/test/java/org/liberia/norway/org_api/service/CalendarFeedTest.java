@@ -0,0 +1,87 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.repository.CalendarEntry;
+import org.liberia.norway.org_api.repository.EventRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+/**
+ * Cachingen av feeden uten database: repository er en mock, så vi ser hvor ofte feeden bygges,
+ * også når en endring kommer mens den bygges.
+ */
+class CalendarFeedTest {
+
+    private static final OffsetDateTime UPDATED = OffsetDateTime.parse("2024-05-01T10:00:00Z");
+
+    private final EventRepository events = mock(EventRepository.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+    private CalendarFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        feed = new CalendarFeed(events, txManager);
+        ReflectionTestUtils.setField(feed, "publicSiteUrl", "https://example.org");
+        ReflectionTestUtils.setField(feed, "uidDomain", "test");
+    }
+
+    @Test
+    void buildsOnceUntilEventsChange() {
+        when(events.streamCalendarEntries()).thenAnswer(inv -> Stream.of(entry("Founders Day")));
+
+        var first = feed.feed();
+        assertThat(feed.feed()).isSameAs(first);
+        verify(events, times(1)).streamCalendarEntries();
+        assertThat(new String(first.body(), StandardCharsets.UTF_8))
+                .contains("UID:event-1@test\r\n", "SUMMARY:Founders Day\r\n", "URL:https://example.org/events/e-1\r\n");
+        assertThat(first.lastModified()).isEqualTo(UPDATED.toInstant());
+
+        // sletting: innholdet blir eldre, men Last-Modified skal ikke gå bakover
+        when(events.streamCalendarEntries()).thenAnswer(inv -> Stream.empty());
+        Instant before = Instant.now();
+        feed.onEventsChanged(new EventsChanged(1L));
+        var afterDelete = feed.feed();
+        verify(events, times(2)).streamCalendarEntries();
+        assertThat(afterDelete.etag()).isNotEqualTo(first.etag());
+        assertThat(afterDelete.lastModified()).isAfterOrEqualTo(before);
+    }
+
+    @Test
+    void buildStartedBeforeAChangeIsNotCached() {
+        // endringen committes mens feeden leses: den bygde versjonen kan mangle endringen
+        when(events.streamCalendarEntries())
+                .thenAnswer(inv -> {
+                    feed.onEventsChanged(new EventsChanged(1L));
+                    return Stream.of(entry("Gammel tittel"));
+                })
+                .thenAnswer(inv -> Stream.of(entry("Ny tittel")));
+
+        var stale = feed.feed();
+        assertThat(new String(stale.body(), StandardCharsets.UTF_8)).contains("SUMMARY:Gammel tittel");
+
+        var fresh = feed.feed();
+        assertThat(new String(fresh.body(), StandardCharsets.UTF_8)).contains("SUMMARY:Ny tittel");
+        assertThat(feed.feed()).isSameAs(fresh);
+        verify(events, times(2)).streamCalendarEntries();
+    }
+
+    private static CalendarEntry entry(String title) {
+        return new CalendarEntry(1L, "e-1", title, null, null, "Oslo",
+                UPDATED.plusDays(10), null, UPDATED);
+    }
+}
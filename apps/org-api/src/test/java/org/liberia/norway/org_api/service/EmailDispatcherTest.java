@@ -0,0 +1,213 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.liberia.norway.org_api.service.EmailOutbox.Message;
+import org.liberia.norway.org_api.service.EmailOutbox.Usage;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+/**
+ * Dispatcheren mot en ekte SMTP-server i prosessen (GreenMail); køen i databasen er byttet ut med en mock.
+ */
+class EmailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private EmailOutbox outbox;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(EmailOutbox.class);
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.getSmtp().getPort());
+    }
+
+    private EmailDispatcher dispatcher(JavaMailSender sender, int perMinute, int perDay) {
+        return new EmailDispatcher(outbox, sender, 20, 4, perMinute, perDay, 50, 3);
+    }
+
+    @Test
+    void sendsClaimedMessagesAndMarksThemSent() throws Exception {
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "Første", 1),
+                new Message(2, "b@example.org", "Hei", "Andre", 1)), List.of());
+
+        dispatcher(mailSender, 20, 450).dispatch();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(2);
+        assertThat(smtp.getReceivedMessagesForDomain("a@example.org")[0].getSubject()).isEqualTo("Hei");
+        verify(outbox).markSent(List.of(1L));
+        verify(outbox).markSent(List.of(2L));
+    }
+
+    @Test
+    void sendsAChunkOverOneConnection() throws Exception {
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "1", 1),
+                new Message(2, "b@example.org", "Hei", "2", 1),
+                new Message(3, "c@example.org", "Hei", "3", 1)), List.of());
+
+        // én tråd: alle tre i samme kall til JavaMailSender, altså samme SMTP-tilkobling
+        new EmailDispatcher(outbox, mailSender, 20, 1, 20, 450, 50, 3).dispatch();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(3);
+        verify(outbox).markSent(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void onlySingleMessagesWhenDailyReserveIsReached() {
+        when(outbox.usage()).thenReturn(new Usage(0, 410));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of());
+
+        dispatcher(mailSender, 20, 450).dispatch();
+
+        verify(outbox).claim(eq(20), any(), eq(false));
+    }
+
+    @Test
+    void claimsNoMoreThanTheRemainingQuota() {
+        when(outbox.usage()).thenReturn(new Usage(17, 100));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of());
+
+        dispatcher(mailSender, 20, 450).dispatch();
+
+        verify(outbox).claim(eq(3), any(), eq(true));
+    }
+
+    @Test
+    void doesNotClaimWhenDailyQuotaIsUsed() {
+        when(outbox.usage()).thenReturn(new Usage(0, 450));
+
+        dispatcher(mailSender, 20, 450).dispatch();
+
+        verify(outbox, never()).claim(anyInt(), any(), anyBoolean());
+    }
+
+    @Test
+    void failedSendIsRetriedWithBackoffAndGivenUpAfterMaxAttempts() {
+        JavaMailSender failing = mock(JavaMailSender.class);
+        doThrow(new MailSendException("421 try later"))
+                .when(failing).send(any(SimpleMailMessage[].class));
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "x", 2),
+                new Message(2, "b@example.org", "Hei", "y", 3)), List.of());
+
+        dispatcher(failing, 20, 450).dispatch();
+
+        verify(outbox).markRetry(eq(1L), eq(Duration.ofMinutes(1)), anyString());
+        verify(outbox).markFailed(eq(2L), anyString());
+        verify(outbox, never()).markSent(argThat(ids -> !ids.isEmpty()));
+    }
+
+    @Test
+    void stopsAfterABatchWhereNothingWasSent() {
+        JavaMailSender failing = mock(JavaMailSender.class);
+        doThrow(new MailSendException("connection refused"))
+                .when(failing).send(any(SimpleMailMessage[].class));
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        // køen er aldri tom: uten stopp ville runden fortsette til kvoten var brukt opp
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "x", 1)));
+
+        dispatcher(failing, 20, 450).dispatch();
+
+        verify(outbox, times(1)).claim(anyInt(), any(), anyBoolean());
+        verify(outbox).markRetry(eq(1L), eq(Duration.ofSeconds(30)), anyString());
+    }
+
+    @Test
+    void triggersRunOnTheDispatchThreadAndAreCoalesced() throws Exception {
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        JavaMailSender blocking = mock(JavaMailSender.class);
+        doAnswer(inv -> {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(blocking).send(any(SimpleMailMessage[].class));
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "x", 1)), List.of());
+
+        var dispatcher = dispatcher(blocking, 20, 450);
+        dispatcher.poll(); // returnerer selv om SMTP henger
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // mens sendingen henger: tre kall gir én ny runde
+        dispatcher.poll();
+        dispatcher.onEmailQueued(new EmailQueued());
+        dispatcher.poll();
+        release.countDown();
+
+        // første runde: bunken og en tom claim; den sammenslåtte runden: én tom claim
+        verify(outbox, timeout(5000).times(3)).claim(anyInt(), any(), anyBoolean());
+        verify(outbox, after(200).times(3)).claim(anyInt(), any(), anyBoolean());
+        verify(outbox).markSent(List.of(1L));
+        dispatcher.stop();
+    }
+
+    @Test
+    void onlyTheRejectedMessageInAChunkIsRetried() {
+        JavaMailSender partly = mock(JavaMailSender.class);
+        doAnswer(inv -> {
+            Object[] sent = inv.getArguments(); // varargs er pakket ut
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            failed.put(sent[1], new RuntimeException("550 mailbox unavailable"));
+            throw new MailSendException(failed);
+        }).when(partly).send(any(SimpleMailMessage[].class));
+        when(outbox.usage()).thenReturn(new Usage(0, 0));
+        when(outbox.claim(anyInt(), any(), anyBoolean())).thenReturn(List.of(
+                new Message(1, "a@example.org", "Hei", "x", 1),
+                new Message(2, "b@example.org", "Hei", "y", 1),
+                new Message(3, "c@example.org", "Hei", "z", 1)), List.of());
+
+        new EmailDispatcher(outbox, partly, 20, 1, 20, 450, 50, 3).dispatch();
+
+        verify(outbox).markSent(List.of(1L, 3L));
+        verify(outbox).markRetry(eq(2L), eq(Duration.ofSeconds(30)), anyString());
+    }
+
+    @Test
+    void backoffDoublesUpToTheCap() {
+        assertThat(EmailDispatcher.backoff(1)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(EmailDispatcher.backoff(2)).isEqualTo(Duration.ofMinutes(1));
+        assertThat(EmailDispatcher.backoff(5)).isEqualTo(Duration.ofMinutes(8));
+        assertThat(EmailDispatcher.backoff(30)).isEqualTo(EmailDispatcher.MAX_BACKOFF);
+    }
+}
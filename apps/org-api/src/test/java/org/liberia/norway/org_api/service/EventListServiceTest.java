@@ -0,0 +1,35 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.EventListService.Cursor;
+import org.springframework.web.server.ResponseStatusException;
+
+class EventListServiceTest {
+
+    // timestamptz har mikrosekunder; cursoren må ta vare på dem, ellers kommer raden igjen på neste side
+    @Test
+    void cursorKeepsMicrosecondPrecision() {
+        var start = OffsetDateTime.of(2026, 5, 17, 12, 0, 0, 123_456_000, ZoneOffset.ofHours(2));
+        var decoded = Cursor.decode(new Cursor(start, 42).encode());
+
+        assertThat(decoded.startAt().toInstant()).isEqualTo(start.toInstant());
+        assertThat(decoded.id()).isEqualTo(42);
+    }
+
+    @Test
+    void cursorBeforeEpochRoundTrips() {
+        var start = OffsetDateTime.of(1961, 1, 1, 0, 0, 0, 1_000, ZoneOffset.UTC);
+        assertThat(Cursor.decode(new Cursor(start, 7).encode()).startAt().toInstant()).isEqualTo(start.toInstant());
+    }
+
+    @Test
+    void invalidCursorIsBadRequest() {
+        assertThatThrownBy(() -> Cursor.decode("not-a-cursor")).isInstanceOf(ResponseStatusException.class);
+    }
+}
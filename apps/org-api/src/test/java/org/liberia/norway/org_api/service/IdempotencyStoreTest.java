@@ -0,0 +1,85 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.IdempotencyStore.Kind;
+import org.liberia.norway.org_api.service.IdempotencyStore.Stored;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Sjekker livsløpet til en nøkkel mot ekte PostgreSQL: første forespørsel kjøres, gjentakelsen
+ * får det lagrede svaret (også fra databasen, som en annen instans ville), annen body avvises,
+ * og en sluppet nøkkel kan tas på nytt.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdempotencyStore.class)
+class IdempotencyStoreTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    @Autowired IdempotencyStore store;
+    @Autowired JdbcTemplate jdbc;
+
+    private static final String KEY = "aa".repeat(32);
+    private static final String BODY = "01".repeat(32);
+    private static final String OTHER_BODY = "02".repeat(32);
+
+    @Test
+    void executesOnceThenReplays() {
+        assertThat(store.claim(KEY, BODY).kind()).isEqualTo(Kind.EXECUTE);
+        store.complete(KEY, new Stored(201, "application/json", "{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+
+        var replay = store.claim(KEY, BODY);
+        assertThat(replay.kind()).isEqualTo(Kind.REPLAY);
+        assertThat(replay.response().status()).isEqualTo(201);
+        assertThat(store.claim(KEY, OTHER_BODY).kind()).isEqualTo(Kind.MISMATCH);
+
+        // en annen instans har ikke minnecachen, men finner svaret i tabellen
+        var other = new IdempotencyStore(jdbc, 24, 60, 0, 10, 100);
+        var fromDb = other.claim(KEY, BODY);
+        assertThat(fromDb.kind()).isEqualTo(Kind.REPLAY);
+        assertThat(new String(fromDb.response().body(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+    }
+
+    @Test
+    void releasedKeyCanBeClaimedAgain() {
+        String key = "bb".repeat(32);
+        assertThat(store.claim(key, BODY).kind()).isEqualTo(Kind.EXECUTE);
+
+        // behandles fortsatt i «en annen instans»: ingen venting (wait-ms 0) gir IN_PROGRESS
+        var other = new IdempotencyStore(jdbc, 24, 60, 0, 10, 100);
+        assertThat(other.claim(key, BODY).kind()).isEqualTo(Kind.IN_PROGRESS);
+
+        store.release(key);
+        assertThat(other.claim(key, OTHER_BODY).kind()).isEqualTo(Kind.EXECUTE);
+    }
+}
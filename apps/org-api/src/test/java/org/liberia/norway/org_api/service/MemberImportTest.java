@@ -0,0 +1,214 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.MemberImport.Column;
+import org.liberia.norway.org_api.service.MemberImport.Conflict;
+import org.liberia.norway.org_api.service.MemberImport.ConflictField;
+import org.liberia.norway.org_api.service.MemberImport.RowError;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Parsing av enkeltrader som rene enhetstester, og selve importen (duplikater, prøvekjøring,
+ * fletting) mot ekte PostgreSQL med migreringene.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "app.membership.import-batch-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({MemberImport.class, MembershipStats.class})
+class MemberImportTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired MemberImport memberImport;
+    @Autowired JdbcTemplate jdbc;
+
+    private static final Column[] COLUMNS = {
+            Column.FIRST_NAME, Column.LAST_NAME, Column.DATE_OF_BIRTH, Column.EMAIL,
+            Column.VIPPS_AMOUNT_NOK, Column.CREATED_AT, null
+    };
+
+    @Test
+    void headerAliases() {
+        assertThat(Column.byHeader("First name")).isEqualTo(Column.FIRST_NAME);
+        assertThat(Column.byHeader("first_name")).isEqualTo(Column.FIRST_NAME);
+        assertThat(Column.byHeader("Fornavn")).isEqualTo(Column.FIRST_NAME);
+        assertThat(Column.byHeader(" Fødselsdato ")).isEqualTo(Column.DATE_OF_BIRTH);
+        assertThat(Column.byHeader("E-post")).isEqualTo(Column.EMAIL);
+        assertThat(Column.byHeader("Postnr.")).isEqualTo(Column.POST_CODE);
+        assertThat(Column.byHeader("Notater")).isNull();
+    }
+
+    @Test
+    void parsesNorwegianDatesAmountsAndFormulaGuard() {
+        var row = MemberImport.parse(2,
+                List.of(" '=Åse ", "'Nordmann", "1.3.1990", "Ase@Example.NO", "1 245", "17.05.2024", "ignored"), COLUMNS);
+
+        assertThat(row.firstName()).isEqualTo("=Åse");       // apostrofen fra CsvWriter fjernes
+        assertThat(row.lastName()).isEqualTo("'Nordmann");   // men bare foran formeltegn
+        assertThat(row.dateOfBirth()).isEqualTo(LocalDate.of(1990, 3, 1));
+        assertThat(row.emailNorm()).isEqualTo("ase@example.no");
+        assertThat(row.vippsAmountNok()).isEqualTo(1245);
+        assertThat(row.createdAt()).isEqualTo(Instant.parse("2024-05-16T22:00:00Z")); // midnatt i Oslo
+
+        var iso = MemberImport.parse(3, List.of("A", "", "1990-03-01", "", "", "2024-05-17T10:00:00Z"), COLUMNS);
+        assertThat(iso.dateOfBirth()).isEqualTo(LocalDate.of(1990, 3, 1));
+        assertThat(iso.createdAt()).isEqualTo(Instant.parse("2024-05-17T10:00:00Z"));
+        assertThat(iso.email()).isNull();
+    }
+
+    @Test
+    void rejectsInvalidRows() {
+        assertThatThrownBy(() -> MemberImport.parse(2, List.of("", " "), COLUMNS))
+                .hasMessage("First name or last name is required.");
+        assertThatThrownBy(() -> MemberImport.parse(2, List.of("A", "", "31.2.1990"), COLUMNS))
+                .hasMessage("Invalid date of birth: 31.2.1990");
+        assertThatThrownBy(() -> MemberImport.parse(2, List.of("A", "", "", "not-an-email"), COLUMNS))
+                .hasMessage("Invalid email: not-an-email");
+        assertThatThrownBy(() -> MemberImport.parse(2, List.of("A", "", "", "", "245,50"), COLUMNS))
+                .hasMessage("Invalid Vipps amount: 245,50");
+        assertThatThrownBy(() -> MemberImport.parse(2, List.of("x".repeat(121)), COLUMNS))
+                .hasMessage("First name is longer than 120 characters.");
+    }
+
+    @Test
+    void reportsDuplicatesInFileAndExistingMembers() throws IOException {
+        long existing = member("Kari", "kari@x.no", "ACCEPTED");
+        member("Per", "per@x.no", "PENDING"); // bare godkjente medlemmer regnes som kjente
+
+        var report = memberImport.run(new StringReader("""
+                Fornavn;E-post;Notater
+                Ola;ola@x.no;
+                Kari;KARI@x.no;
+                Ola igjen;Ola@X.no;
+                Per;per@x.no;
+                ;uten@navn.no;
+                Uten e-post;;
+                """), false);
+
+        assertThat(report.rows()).isEqualTo(6);
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.ignoredColumns()).containsExactly("Notater");
+        assertThat(report.conflicts()).containsExactlyInAnyOrder(
+                new Conflict(3, ConflictField.EMAIL, "KARI@x.no", existing, null),
+                new Conflict(4, ConflictField.EMAIL, "Ola@X.no", null, 2));
+        assertThat(report.errors()).containsExactly(new RowError(6, "First name or last name is required."));
+        assertThat(jdbc.queryForList("select first_name from members where status = 'ACCEPTED' order by id", String.class))
+                .containsExactly("Kari", "Ola", "Per", "Uten e-post");
+    }
+
+    // samme regel som ux_members_vipps_reference: ingen rad skal forsvinne i ON CONFLICT uten å stå i rapporten
+    @Test
+    void reportsVippsReferenceClashes() throws IOException {
+        long pending = jdbc.queryForObject("""
+                insert into members (first_name, email, vipps_reference, status, created_at)
+                values ('Søker', 'soker@x.no', 'VR-1', 'PENDING', now()) returning id
+                """, Long.class);
+        jdbc.update("""
+                insert into members (first_name, email, vipps_reference, status, created_at)
+                values ('Avslått', 'avslatt@x.no', 'VR-2', 'REJECTED', now())
+                """);
+
+        String csv = """
+                First name;Email;Vipps reference
+                Ola;ola@x.no;vr-1
+                Kari;kari@x.no;VR-2
+                Per;per@x.no; vr-2
+                Åse;ase@x.no;VR-3
+                """;
+        for (boolean dryRun : new boolean[] {true, false}) {
+            var report = memberImport.run(new StringReader(csv), dryRun);
+            assertThat(report.imported()).isEqualTo(2);
+            assertThat(report.conflicts()).containsExactlyInAnyOrder(
+                    new Conflict(2, ConflictField.VIPPS_REFERENCE, "vr-1", pending, null),
+                    new Conflict(4, ConflictField.VIPPS_REFERENCE, "vr-2", null, 3));
+        }
+        assertThat(jdbc.queryForList("select first_name from members where status = 'ACCEPTED' order by id", String.class))
+                .containsExactly("Kari", "Åse");
+    }
+
+    @Test
+    void dryRunReportsTheSameWithoutWriting() throws IOException {
+        String csv = """
+                First name,Last name,Email,Member since
+                Ola,Nordmann,ola@x.no,1.1.2020
+                Kari,Nordmann,kari@x.no,
+                Ola,Dup,OLA@x.no,
+                """;
+
+        var dry = memberImport.run(new StringReader(csv), true);
+        assertThat(dry.dryRun()).isTrue();
+        assertThat(dry.imported()).isEqualTo(2);
+        assertThat(dry.conflictCount()).isEqualTo(1);
+        assertThat(count("members")).isZero();
+        assertThat(count("member_import_rows")).isZero();
+
+        var real = memberImport.run(new StringReader(csv), false);
+        assertThat(real.imported()).isEqualTo(dry.imported());
+        assertThat(real.conflicts()).isEqualTo(dry.conflicts());
+        assertThat(count("members")).isEqualTo(2);
+        assertThat(count("member_import_rows")).isZero(); // mellomlageret ryddes
+        assertThat(jdbc.queryForObject("select count(*) from members where handled_at = created_at", Integer.class))
+                .isEqualTo(2);
+
+        // samme fil på nytt: alle er nå kjente medlemmer
+        var again = memberImport.run(new StringReader(csv), false);
+        assertThat(again.imported()).isZero();
+        assertThat(again.conflictCount()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsFileWithoutNameColumns() {
+        assertThatThrownBy(() -> memberImport.run(new StringReader("Email\nola@x.no\n"), true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private long member(String firstName, String email, String status) {
+        return jdbc.queryForObject("""
+                insert into members (first_name, email, status, created_at) values (?, ?, ?, now()) returning id
+                """, Long.class, firstName, email, status);
+    }
+
+    private int count(String table) {
+        return jdbc.queryForObject("select count(*) from " + table, Integer.class);
+    }
+}
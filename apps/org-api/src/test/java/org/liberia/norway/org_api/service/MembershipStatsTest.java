@@ -0,0 +1,108 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Member.Status;
+import org.liberia.norway.org_api.service.MembershipStats.Snapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Sjekker mot ekte PostgreSQL at differansene fra {@link MembershipStats#changed} gir det samme
+ * som full opptelling fra members (verify finner ingen avvik), og at verify retter avvik.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MembershipStats.class)
+class MembershipStatsTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired MembershipStats stats;
+    @Autowired JdbcTemplate jdbc;
+
+    private static final Instant APPLIED = Instant.parse("2026-03-31T22:30:00Z"); // 1. april kl. 00:30 i Oslo
+
+    @Test
+    void incrementalChangesMatchFullRecount() {
+        var pending = new Snapshot(Status.PENDING, " Oslo ", LocalDate.of(1990, 5, 1), APPLIED, null);
+        long id = insert(pending);
+        stats.changed(null, pending);
+
+        Instant handled = APPLIED.plus(3, ChronoUnit.DAYS).plusSeconds(17);
+        var accepted = new Snapshot(Status.ACCEPTED, " Oslo ", LocalDate.of(1990, 5, 1), APPLIED, handled);
+        jdbc.update("update members set status = 'ACCEPTED', handled_at = ? where id = ?", Timestamp.from(handled), id);
+        stats.changed(pending, accepted);
+
+        // lagt inn direkte: handled_at = created_at, ikke en søknad
+        Instant now = Instant.now();
+        var direct = new Snapshot(Status.ACCEPTED, null, null, now, now);
+        insert(direct);
+        stats.changed(null, direct);
+
+        assertThat(stats.verify()).isZero();
+        assertThat(jdbc.queryForObject(
+                "select applications from membership_daily_stats where day = '2026-04-01' and city = 'oslo'",
+                Integer.class)).isEqualTo(1);
+
+        var s = stats.statistics(12);
+        assertThat(s.members()).isEqualTo(2);
+        assertThat(s.decided()).isEqualTo(1);
+        assertThat(s.averageTurnaroundHours()).isEqualTo(72.0);
+    }
+
+    @Test
+    void verifyCorrectsDrift() {
+        var accepted = new Snapshot(Status.ACCEPTED, "Bergen", null, APPLIED, APPLIED.plusSeconds(3600));
+        insert(accepted);
+        // ikke meldt til stats, som en endring gjort direkte i databasen
+        assertThat(stats.verify()).isEqualTo(1); // søknad og opptak samme dag: én rad
+        assertThat(stats.verify()).isZero();
+        assertThat(stats.statistics(1).members()).isEqualTo(1);
+    }
+
+    private long insert(Snapshot s) {
+        return jdbc.queryForObject("""
+                insert into members (first_name, email, status, city, date_of_birth, created_at, handled_at)
+                values ('M', 'm' || nextval('members_seq') || '@x.no', ?, ?, ?, ?, ?) returning id
+                """, Long.class, s.status().name(), s.city(),
+                s.dateOfBirth(), Timestamp.from(s.createdAt()), s.handledAt() != null ? Timestamp.from(s.handledAt()) : null);
+    }
+}
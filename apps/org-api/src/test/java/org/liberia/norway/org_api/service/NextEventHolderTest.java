@@ -0,0 +1,62 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Event;
+import org.liberia.norway.org_api.repository.EventRepository;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+/**
+ * Grenseoppdateringen uten database: repository og scheduler er mocker, så vi ser hva som
+ * holdes og når neste oppvåkning er planlagt, også når oppslaget feiler.
+ */
+class NextEventHolderTest {
+
+    private final EventRepository events = mock(EventRepository.class);
+    private final TaskScheduler scheduler = mock(TaskScheduler.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+
+    @Test
+    void failedRefreshKeepsEventAndRetriesWithBackoff() {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        var holder = new NextEventHolder(events, scheduler, txManager);
+
+        var start = OffsetDateTime.now().plusHours(1);
+        var e = new Event();
+        e.setSlug("founders-day");
+        e.setTitle("Founders Day");
+        e.setStartAt(start);
+        when(events.findFirstByIsPublishedTrueAndStartAtGreaterThanOrderByStartAtAsc(any())).thenReturn(Optional.of(e));
+        holder.refresh();
+        verify(scheduler).schedule(any(Runnable.class), any(Instant.class));
+        assertThat(holder.get().slug()).isEqualTo("founders-day");
+
+        when(events.findFirstByIsPublishedTrueAndStartAtGreaterThanOrderByStartAtAsc(any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        Instant before = Instant.now();
+        holder.refresh();
+        holder.refresh();
+
+        assertThat(holder.get().slug()).isEqualTo("founders-day");
+        var at = ArgumentCaptor.forClass(Instant.class);
+        verify(scheduler, times(3)).schedule(any(Runnable.class), at.capture());
+        assertThat(at.getAllValues().get(0)).isEqualTo(start.toInstant());
+        assertThat(Duration.between(before, at.getAllValues().get(1))).isBetween(Duration.ofSeconds(1), Duration.ofSeconds(2));
+        assertThat(Duration.between(before, at.getAllValues().get(2))).isBetween(Duration.ofSeconds(2), Duration.ofSeconds(3));
+    }
+}
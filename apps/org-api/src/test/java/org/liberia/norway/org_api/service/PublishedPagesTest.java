@@ -0,0 +1,77 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.model.Pages;
+import org.liberia.norway.org_api.repository.PageRepository;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+class PublishedPagesTest {
+
+    private final PageRepository pages = mock(PageRepository.class);
+    private final TaskScheduler scheduler = mock(TaskScheduler.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+
+    // en databasefeil etter en admin-endring skal ikke la sidene stå utdaterte til neste endring
+    @Test
+    void failedRefreshKeepsPagesAndRetriesWithBackoff() {
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        when(scheduler.schedule(any(Runnable.class), any(Instant.class))).thenAnswer(inv -> future);
+        var published = new PublishedPages(pages, scheduler, txManager);
+
+        when(pages.findPublishedWithHtml()).thenReturn(List.of(page("Om oss")));
+        published.refresh();
+        verify(scheduler, never()).schedule(any(Runnable.class), any(Instant.class));
+
+        when(pages.findPublishedWithHtml())
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn(List.of(page("Om foreningen")));
+        Instant before = Instant.now();
+        published.onPagesChanged(new PagesChanged(1L));
+        published.refresh();
+
+        assertThat(published.get("om-oss").title()).isEqualTo("Om oss");
+        var at = ArgumentCaptor.forClass(Instant.class);
+        var task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(2)).schedule(task.capture(), at.capture());
+        assertThat(Duration.between(before, at.getAllValues().get(0))).isBetween(Duration.ofSeconds(1), Duration.ofSeconds(2));
+        assertThat(Duration.between(before, at.getAllValues().get(1))).isBetween(Duration.ofSeconds(2), Duration.ofSeconds(3));
+        verify(future).cancel(false); // bare én ventende retry om gangen
+
+        // retry-oppgaven henter de nye sidene og planlegger ingenting mer
+        task.getValue().run();
+        assertThat(published.get("om-oss").title()).isEqualTo("Om foreningen");
+        verify(scheduler, times(2)).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    private static Pages page(String title) {
+        var p = new Pages();
+        p.setId(1L);
+        p.setSlug("om-oss");
+        p.setTitle(title);
+        p.setBody("Tekst");
+        p.setBodyHtml("<p>Tekst</p>");
+        p.setPublished(true);
+        p.setUpdatedAt(OffsetDateTime.parse("2024-05-01T10:00:00Z"));
+        return p;
+    }
+}
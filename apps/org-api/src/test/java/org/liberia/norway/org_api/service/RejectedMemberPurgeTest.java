@@ -0,0 +1,130 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Slettejobben mot ekte PostgreSQL: bare avslag med utløpt delete_at forsvinner, eldste først,
+ * i biter på batch-size og høyst max-batches per kjøring, og membership_daily_stats trekkes ned
+ * slik at den fortsatt stemmer med members.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MembershipStats.class)
+class RejectedMemberPurgeTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired MembershipStats stats;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired PlatformTransactionManager txManager;
+    @Autowired MeterRegistry meters;
+
+    private List<Long> expired;
+    private List<Long> kept;
+
+    @BeforeEach
+    void setUp() {
+        // utløpt for 5, 4, ... 1 dager siden
+        expired = List.of(member("REJECTED", "5 days"), member("REJECTED", "4 days"), member("REJECTED", "3 days"),
+                member("REJECTED", "2 days"), member("REJECTED", "1 day"));
+        kept = List.of(
+                member("REJECTED", "-1 day"),  // ikke utløpt ennå
+                member("REJECTED", null),      // ingen frist
+                member("ACCEPTED", "5 days"),  // bare avslag slettes
+                member("PENDING", "5 days"));
+        stats.verify(); // statistikken stemmer med members før jobben kjører
+    }
+
+    @Test
+    void deletesOnlyExpiredRejectionsOldestFirstInBatches() {
+        var purge = purge(2, 2);
+        double counted = meters.counter("membership.purge.deleted").count();
+
+        assertThat(purge.purge()).isEqualTo(4);   // to fulle biter, så stopper max-batches
+        var left = new ArrayList<>(kept);
+        left.add(expired.get(4));                  // den nyeste utløpte venter til neste kjøring
+        assertThat(remaining()).containsExactlyInAnyOrderElementsOf(left);
+
+        assertThat(purge.purge()).isEqualTo(1);   // halv bit: ingen flere å hente
+        assertThat(remaining()).containsExactlyInAnyOrderElementsOf(kept);
+
+        assertThat(purge.purge()).isZero();
+        assertThat(meters.counter("membership.purge.deleted").count()).isEqualTo(counted + 5);
+    }
+
+    @Test
+    void decrementsDailyStats() {
+        int rejected = sum("rejected"), applications = sum("applications"), decided = sum("decided");
+
+        assertThat(purge(500, 200).purge()).isEqualTo(5);
+
+        assertThat(sum("rejected")).isEqualTo(rejected - 5);
+        assertThat(sum("applications")).isEqualTo(applications - 5);
+        assertThat(sum("decided")).isEqualTo(decided - 5);
+        assertThat(stats.verify()).isZero(); // differansene ga det samme som full opptelling
+    }
+
+    private RejectedMemberPurge purge(int batchSize, int maxBatches) {
+        return new RejectedMemberPurge(jdbc, stats, txManager, meters, batchSize, maxBatches);
+    }
+
+    // deleteAgo: hvor lenge siden delete_at var (negativ: i fremtiden, null: ingen frist); behandlet dagen etter søknaden
+    private long member(String status, String deleteAgo) {
+        return jdbc.queryForObject("""
+                insert into members (first_name, email, status, city, date_of_birth, created_at, handled_at, delete_at)
+                values ('Purge', 'p' || nextval('members_seq') || '@x.no', ?, 'Oslo', ?,
+                        now() - interval '40 days', case when ? = 'PENDING' then null else now() - interval '39 days' end,
+                        now() - ?::interval)
+                returning id
+                """, Long.class, status, LocalDate.of(1990, 5, 1), status, deleteAgo);
+    }
+
+    private List<Long> remaining() {
+        return jdbc.queryForList("select id from members where first_name = 'Purge'", Long.class);
+    }
+
+    private int sum(String column) {
+        return jdbc.queryForObject("select coalesce(sum(" + column + "), 0) from membership_daily_stats", Integer.class);
+    }
+}
@@ -0,0 +1,203 @@
+package org.liberia.norway.org_api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.VippsReconciliation.Item;
+import org.liberia.norway.org_api.service.VippsReconciliation.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Beløp og formatgjenkjenning som rene enhetstester, og selve avstemmingen mot ekte PostgreSQL
+ * med migreringene. Rapporten dekker mars 2024; søknadene er lagt inn på forhånd.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(VippsReconciliation.class)
+class VippsReconciliationTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    private static final String BOM = "\uFEFF";
+
+    // Portal-eksport: norsk Excel med BOM og semikolon; A er betalt i to deler, og én linje har referansen med små bokstaver
+    private static final String CSV = BOM + """
+            Dato;Transaksjons-ID;Referanse;Beløp
+            05.03.2024;1001;VR-A;200,00
+            06.03.2024;1002; vr-a ;"45,00"
+            07.03.2024;1003;VR-B;"1 200,50"
+            08.03.2024;1004;ANNEN;245,00
+            09.03.2024;1005;VR-C;
+            31.03.2024;1006;;245,00
+            ;;;12,00
+            """;
+
+    @Autowired VippsReconciliation reconciliation;
+    @Autowired JdbcTemplate jdbc;
+
+    private long a, b, c, d, e;
+
+    @BeforeEach
+    void setUp() {
+        a = application("Ola", "VR-A", "2024-03-01T10:00:00Z");
+        b = application("Kari", "VR-B", "2024-03-01T10:00:00Z");
+        c = application("Per", "vr-c", "2024-03-06T10:00:00Z");   // står i rapporten, men uten beløp
+        d = application("Åse", "VR-D", "2024-04-02T10:00:00Z");   // søkte etter rapportens siste dato
+        e = application("Eva", "VR-E", "2024-02-28T23:30:00Z");   // 29.02 i Oslo, før rapportens første dato
+    }
+
+    @Test
+    void kronerToOre() {
+        assertThat(VippsReconciliation.kronerToOre("245")).isEqualTo(24500);
+        assertThat(VippsReconciliation.kronerToOre("245,00")).isEqualTo(24500);
+        assertThat(VippsReconciliation.kronerToOre("245.5")).isEqualTo(24550);
+        assertThat(VippsReconciliation.kronerToOre("1 245,50")).isEqualTo(124550);
+        assertThat(VippsReconciliation.kronerToOre("1\u00A0245,50")).isEqualTo(124550);
+        assertThat(VippsReconciliation.kronerToOre("1\u202F245,50")).isEqualTo(124550);
+        assertThat(VippsReconciliation.kronerToOre("1.245,50")).isEqualTo(124550);
+        assertThat(VippsReconciliation.kronerToOre("1,245.50")).isEqualTo(124550);
+        assertThat(VippsReconciliation.kronerToOre("kr 245,00")).isEqualTo(24500);
+        assertThat(VippsReconciliation.kronerToOre("-55,00")).isEqualTo(-5500);
+        assertThat(VippsReconciliation.kronerToOre("")).isNull();
+        assertThat(VippsReconciliation.kronerToOre("gratis")).isNull();
+        assertThat(VippsReconciliation.kronerToOre("245,001")).isNull();
+    }
+
+    @Test
+    void detectsFormatPastBomAndWhitespace() throws IOException {
+        assertThat(isJson("[{\"reference\":\"x\"}]")).isTrue();
+        assertThat(isJson(BOM + "\n  {\"items\":[]}")).isTrue();
+        assertThat(isJson(BOM + "Dato;Referanse;Beløp\n")).isFalse();
+        assertThat(isJson("")).isFalse();
+
+        // strømmen spoles tilbake, så leseren får med starten
+        var in = new BufferedInputStream(utf8(BOM + "[1]"));
+        VippsReconciliation.isJson(in);
+        assertThat(in.readAllBytes()).isEqualTo((BOM + "[1]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void reconcilesCsvAndMarksApplications() throws IOException {
+        var report = reconciliation.reconcile(utf8(CSV), false);
+
+        assertThat(report.entries()).isEqualTo(7);
+        assertThat(report.unknownEntries()).isEqualTo(2);   // ANNEN og 1006 (bare transaksjons-ID)
+        assertThat(report.invalidEntries()).isEqualTo(2);   // VR-C uten beløp, linje uten referanse
+        assertThat(report.reportFrom()).isEqualTo(LocalDate.of(2024, 3, 5));
+        assertThat(report.reportUntil()).isEqualTo(LocalDate.of(2024, 3, 31));
+        assertThat(report.items())
+                .extracting(Item::memberId, Item::result, Item::reportedNok)
+                .containsExactly(
+                        tuple(d, Result.NOT_COVERED, null),
+                        tuple(e, Result.NOT_COVERED, null),
+                        tuple(c, Result.MISSING, null),
+                        tuple(b, Result.MISMATCH, new BigDecimal("1200.50")),
+                        tuple(a, Result.MATCHED, new BigDecimal("245.00")));
+        assertThat(new int[] {report.matched(), report.mismatched(), report.missing(), report.notCovered()})
+                .containsExactly(1, 1, 1, 2);
+
+        assertThat(check(a)).isEqualTo("MATCHED 24500");
+        assertThat(check(b)).isEqualTo("MISMATCH 120050");
+        assertThat(check(c)).isEqualTo("MISSING null");
+        assertThat(check(d)).isEqualTo("null null");   // NOT_COVERED lagres ikke
+        assertThat(check(e)).isEqualTo("null null");
+
+        // en senere rapport uten A lar A stå som MATCHED
+        var next = reconciliation.reconcile(utf8(BOM + "Dato;Referanse;Beløp\n01.04.2024;VR-D;245\n"), false);
+        assertThat(next.items()).extracting(Item::memberId).doesNotContain(a);
+        assertThat(check(a)).isEqualTo("MATCHED 24500");
+        assertThat(check(d)).isEqualTo("MATCHED 24500");
+    }
+
+    @Test
+    void dryRunDoesNotWrite() throws IOException {
+        var report = reconciliation.reconcile(utf8(CSV), true);
+
+        assertThat(report.dryRun()).isTrue();
+        assertThat(report.matched()).isEqualTo(1);
+        assertThat(jdbc.queryForObject("select count(*) from members where vipps_check is not null", Integer.class))
+                .isZero();
+    }
+
+    @Test
+    void reconcilesJsonInOre() throws IOException {
+        var report = reconciliation.reconcile(utf8(BOM + """
+                {"items": [
+                  {"reference": "vr-a", "amount": {"value": 24500, "currency": "NOK"}, "date": "2024-03-05T12:00:00Z"},
+                  {"orderId": "VR-B", "amount": 10000, "date": "2024-03-06"},
+                  {"orderId": "VR-B", "amount": -5000, "date": "2024-03-07"},
+                  {"reference": "VR-C", "amount": "245,00"}
+                ]}
+                """), false);
+
+        assertThat(report.entries()).isEqualTo(4);
+        assertThat(report.invalidEntries()).isEqualTo(1);   // beløp som tekst godtas ikke i JSON
+        assertThat(report.items())
+                .extracting(Item::memberId, Item::result)
+                .containsExactly(
+                        tuple(d, Result.NOT_COVERED),
+                        tuple(e, Result.NOT_COVERED),
+                        tuple(c, Result.MISSING),
+                        tuple(b, Result.MISMATCH),
+                        tuple(a, Result.MATCHED));
+        assertThat(check(b)).isEqualTo("MISMATCH 5000");
+    }
+
+    private long application(String firstName, String reference, String createdAt) {
+        return jdbc.queryForObject("""
+                insert into members (first_name, email, vipps_reference, vipps_amount_nok, status, created_at)
+                values (?, ?, ?, 245, 'PENDING', ?) returning id
+                """, Long.class, firstName, firstName.toLowerCase() + "@x.no", reference,
+                OffsetDateTime.parse(createdAt));
+    }
+
+    private String check(long id) {
+        return jdbc.queryForObject("""
+                select coalesce(vipps_check, 'null') || ' ' || coalesce(vipps_reported_ore::text, 'null')
+                from members where id = ?
+                """, String.class, id);
+    }
+
+    private static boolean isJson(String s) throws IOException {
+        return VippsReconciliation.isJson(new BufferedInputStream(utf8(s)));
+    }
+
+    private static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fast frø gjør trekningene reproduserbare, så fordelingen kan sjekkes uten ustabile tester.
+ */
+class AliasSamplerTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void picksInProportionToWeights() {
+        var sampler = new AliasSampler(new int[] {1, 2, 7});
+        var random = new SplittableRandom(SEED);
+
+        int draws = 200_000;
+        int[] hits = new int[3];
+        for (int i = 0; i < draws; i++) hits[sampler.next(random)]++;
+
+        assertThat(hits[0] / (double) draws).isCloseTo(0.1, within(0.01));
+        assertThat(hits[1] / (double) draws).isCloseTo(0.2, within(0.01));
+        assertThat(hits[2] / (double) draws).isCloseTo(0.7, within(0.01));
+    }
+
+    @Test
+    void sameSeedGivesSameSequence() {
+        var sampler = new AliasSampler(new int[] {5, 1, 1, 3});
+        var a = new SplittableRandom(SEED);
+        var b = new SplittableRandom(SEED);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(sampler.next(a)).isEqualTo(sampler.next(b));
+        }
+    }
+
+    @Test
+    void singleAndEqualWeights() {
+        var random = new SplittableRandom(SEED);
+        var single = new AliasSampler(new int[] {3});
+        for (int i = 0; i < 100; i++) assertThat(single.next(random)).isZero();
+
+        var equal = new AliasSampler(new int[] {1, 1, 1, 1});
+        int[] hits = new int[4];
+        for (int i = 0; i < 40_000; i++) hits[equal.next(random)]++;
+        for (int h : hits) assertThat(h).isBetween(9_500, 10_500);
+    }
+
+    @Test
+    void rejectsInvalidWeights() {
+        assertThatThrownBy(() -> new AliasSampler(new int[0])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AliasSampler(new int[] {1, 0})).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Erstatning for en egen JMH-modul: selve trekningen skal ikke allokere
+    @Test
+    void nextDoesNotAllocate() {
+        var sampler = new AliasSampler(new int[] {1, 2, 3, 4, 5, 6, 7, 8});
+        var random = new SplittableRandom(SEED);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+
+        int sink = 0;
+        for (int i = 0; i < 100_000; i++) sink += sampler.next(random); // oppvarming (JIT)
+
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 1_000_000; i++) sink += sampler.next(random);
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+
+        assertThat(sink).isPositive();
+        // litt slakk for målingen selv
+        assertThat(allocated).isLessThan(1_024);
+    }
+}
@@ -0,0 +1,65 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    private static List<List<String>> readAll(CsvReader r) throws IOException {
+        var rows = new ArrayList<List<String>>();
+        List<String> row;
+        while ((row = r.next()) != null) rows.add(row);
+        return rows;
+    }
+
+    @Test
+    void readsQuotedFieldsAndTracksStartLine() throws IOException {
+        var r = new CsvReader(new StringReader("\uFEFFa,b,c\r\n\"x, y\",\"sa \"\"hei\"\"\",\r\n\r\n\"to\nlinjer\",2,3\nsist,,"));
+        assertThat(r.delimiter()).isEqualTo(',');
+        assertThat(r.next()).containsExactly("a", "b", "c");
+        assertThat(r.next()).containsExactly("x, y", "sa \"hei\"", "");
+        assertThat(r.next()).containsExactly("to\nlinjer", "2", "3");
+        assertThat(r.line()).isEqualTo(4);
+        assertThat(r.next()).containsExactly("sist", "", "");
+        assertThat(r.line()).isEqualTo(6);
+        assertThat(r.next()).isNull();
+    }
+
+    @Test
+    void detectsSemicolonFromHeader() throws IOException {
+        var r = new CsvReader(new StringReader("Fornavn;Etternavn;\"Adresse, by\"\nÅse;Øvre;\"Gate 1, Oslo\"\n"));
+        assertThat(r.delimiter()).isEqualTo(';');
+        assertThat(readAll(r)).containsExactly(
+                List.of("Fornavn", "Etternavn", "Adresse, by"),
+                List.of("Åse", "Øvre", "Gate 1, Oslo"));
+    }
+
+    @Test
+    void readsWhatCsvWriterWrites() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var w = new CsvWriter(bytes)) {
+            w.writeRow("navn", "beløp");
+            w.writeRow("\"sitat\"\nny linje", 245);
+        }
+        var r = new CsvReader(new StringReader(bytes.toString(StandardCharsets.UTF_8)));
+        assertThat(readAll(r)).containsExactly(List.of("navn", "beløp"), List.of("\"sitat\"\nny linje", "245"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() throws IOException {
+        var r = new CsvReader(new StringReader("a,b\n\"åpen,2\n"));
+        r.next();
+        assertThatThrownBy(r::next)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("line 2");
+    }
+}
@@ -0,0 +1,47 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class CsvWriterTest {
+
+    @Test
+    void startsWithBomAndEndsRowsWithCrlf() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var w = new CsvWriter(bytes)) {
+            w.writeHeader("Navn", "Beløp");
+            w.writeRow("Åse", 245, null);
+        }
+
+        byte[] b = bytes.toByteArray();
+        assertThat(new byte[] {b[0], b[1], b[2]}).containsExactly(0xEF, 0xBB, 0xBF);
+        assertThat(new String(b, 3, b.length - 3, StandardCharsets.UTF_8)).isEqualTo("Navn,Beløp\r\nÅse,245,\r\n");
+    }
+
+    @Test
+    void quotesOnlyWhenNeeded() throws Exception {
+        assertThat(csv("plain", "a,b", "say \"hi\"", "two\nlines", "cr\rx"))
+                .isEqualTo("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"cr\rx\"\r\n");
+    }
+
+    @Test
+    void guardsAgainstFormulas() throws Exception {
+        assertThat(csv("=SUM(A1)", "+47 123", "-x", "@cmd", "a=b", -5))
+                .isEqualTo("'=SUM(A1),'+47 123,'-x,'@cmd,a=b,-5\r\n");
+        // apostrofen kommer før eventuell quoting
+        assertThat(csv("=HYPERLINK(\"x\",\"y\")")).isEqualTo("\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\"\r\n");
+    }
+
+    private static String csv(Object... cells) throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var w = new CsvWriter(bytes)) {
+            w.writeRow(cells);
+        }
+        String s = bytes.toString(StandardCharsets.UTF_8);
+        return s.substring(1); // uten BOM
+    }
+}
@@ -0,0 +1,83 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+class IcsWriterTest {
+
+    @Test
+    void writesCrlfLinesAndUtcTimes() {
+        assertThat(ics(w -> w.beginEvent("e-1@x", OffsetDateTime.parse("2024-05-17T12:00:00+02:00"))
+                .time("DTSTART", OffsetDateTime.parse("2024-05-17T23:30:00+02:00"))
+                .time("DTEND", null)
+                .text("LOCATION", " ")
+                .endEvent()))
+                .isEqualTo("BEGIN:VEVENT\r\nUID:e-1@x\r\nDTSTAMP:20240517T100000Z\r\n"
+                        + "DTSTART:20240517T213000Z\r\nEND:VEVENT\r\n");
+    }
+
+    @Test
+    void escapesText() {
+        assertThat(IcsWriter.text("a;b,c\\d\r\ne\nf\rg")).isEqualTo("a\\;b\\,c\\\\d\\ne\\nf\\ng");
+        assertThat(ics(w -> w.text("SUMMARY", "Møte; mat, drikke").raw("URL", "https://x.no/a,b;c")))
+                .isEqualTo("SUMMARY:Møte\\; mat\\, drikke\r\nURL:https://x.no/a,b;c\r\n");
+    }
+
+    @Test
+    void foldsAt75OctetsWithoutSplittingCharacters() throws CharacterCodingException {
+        // nøyaktig 75 oktetter foldes ikke, 76 gjør
+        assertThat(ics(w -> w.raw("X", "a".repeat(73)))).isEqualTo("X:" + "a".repeat(73) + "\r\n");
+        assertThat(ics(w -> w.raw("X", "a".repeat(74)))).isEqualTo("X:" + "a".repeat(73) + "\r\n a\r\n");
+
+        // "SUMMARY:" er 8 oktetter; ø er 2, € 3 og 🇱🇷 2 × 4, så grensene faller midt i tegn
+        String value = "ø".repeat(40) + "€".repeat(30) + "🇱🇷".repeat(10) + "slutt";
+        String out = ics(w -> w.text("SUMMARY", value));
+
+        List<String> lines = physicalLines(out.getBytes(StandardCharsets.UTF_8));
+        assertThat(lines).hasSizeGreaterThan(3);
+        for (int i = 0; i < lines.size(); i++) {
+            int octets = lines.get(i).getBytes(StandardCharsets.UTF_8).length;
+            assertThat(octets).isLessThanOrEqualTo(75);
+            if (i > 0) assertThat(lines.get(i)).startsWith(" ");
+            // fylt så langt det går: neste tegn ville ikke fått plass
+            if (i < lines.size() - 1) assertThat(octets).isGreaterThan(75 - 4);
+        }
+        assertThat(out.replace("\r\n ", "")).isEqualTo("SUMMARY:" + value + "\r\n");
+    }
+
+    // Deler på CRLF i bytene og dekoder hver linje strengt, så et delt UTF-8-tegn gir feil
+    private static List<String> physicalLines(byte[] bytes) throws CharacterCodingException {
+        var decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        var lines = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i + 1 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                lines.add(decoder.decode(ByteBuffer.wrap(bytes, start, i - start)).toString());
+                start = i + 2;
+            }
+        }
+        assertThat(start).isEqualTo(bytes.length);
+        return lines;
+    }
+
+    private static String ics(Consumer<IcsWriter> body) {
+        var out = new StringWriter();
+        var w = new IcsWriter(out);
+        body.accept(w);
+        w.flush();
+        return out.toString();
+    }
+}
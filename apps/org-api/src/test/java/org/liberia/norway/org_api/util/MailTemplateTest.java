@@ -0,0 +1,33 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class MailTemplateTest {
+
+    private static final Set<String> VARS = Set.of("firstName", "lastName");
+
+    @Test
+    void fillsPlaceholders() {
+        var t = MailTemplate.compile("Hei {{firstName}} {{ lastName }}!\n{{firstName}}", VARS);
+        assertThat(t.render(Map.of("firstName", "Ada", "lastName", "Lovelace"))).isEqualTo("Hei Ada Lovelace!\nAda");
+    }
+
+    @Test
+    void missingValueBecomesEmptyAndPlainTextIsUnchanged() {
+        assertThat(MailTemplate.compile("Hei {{firstName}}", VARS).render(Map.of())).isEqualTo("Hei ");
+        assertThat(MailTemplate.compile("Ingen {variabler} her", VARS).render(Map.of())).isEqualTo("Ingen {variabler} her");
+    }
+
+    @Test
+    void rejectsUnknownPlaceholder() {
+        assertThatThrownBy(() -> MailTemplate.compile("{{password}}", VARS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("password");
+    }
+}
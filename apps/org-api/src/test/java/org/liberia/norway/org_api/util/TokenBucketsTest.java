@@ -0,0 +1,113 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Styrt klokke gjør påfyllingen deterministisk; samtidighetstesten sjekker at CAS-løkka aldri
+ * slipper gjennom mer enn bøtta rommer.
+ */
+class TokenBucketsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void burstThenRefill() {
+        var buckets = new TokenBuckets(3, Duration.ofMinutes(3), 1_000, now::get);
+
+        for (int i = 2; i >= 0; i--) {
+            var d = buckets.tryAcquire("1.2.3.4");
+            assertThat(d.allowed()).isTrue();
+            assertThat(d.remaining()).isEqualTo(i);
+        }
+        var denied = buckets.tryAcquire("1.2.3.4");
+        assertThat(denied.allowed()).isFalse();
+        assertThat(denied.retryAfterNanos()).isEqualTo(TimeUnit.MINUTES.toNanos(1));
+        assertThat(denied.resetNanos()).isEqualTo(TimeUnit.MINUTES.toNanos(3));
+
+        // andre klienter har sin egen bøtte
+        assertThat(buckets.tryAcquire("5.6.7.8").allowed()).isTrue();
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(buckets.tryAcquire("1.2.3.4").allowed()).isTrue();
+        assertThat(buckets.tryAcquire("1.2.3.4").allowed()).isFalse();
+    }
+
+    @Test
+    void fullBucketsAreEvicted() {
+        var buckets = new TokenBuckets(2, Duration.ofSeconds(10), 16, now::get); // én bøtte per stripe
+        for (int i = 0; i < 100; i++) buckets.tryAcquire("10.0.0." + i);
+        assertThat(buckets.size()).isEqualTo(100); // ingen er fulle igjen ennå
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5)); // alle er fulle igjen
+        for (int i = 0; i < 100; i++) buckets.tryAcquire("10.0.1." + i);
+        assertThat(buckets.size()).isLessThanOrEqualTo(100);
+        // de gamle er ryddet bort uten å påvirke grensene
+        assertThat(buckets.tryAcquire("10.0.0.1").remaining()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedCapacity() throws Exception {
+        var buckets = new TokenBuckets(1_000, Duration.ofDays(1), 1_000);
+        int threads = 8;
+        var pool = Executors.newFixedThreadPool(threads);
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                int allowed = 0;
+                for (int i = 0; i < 500; i++) if (buckets.tryAcquire("same").allowed()) allowed++;
+                return allowed;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (var f : results) total += f.get();
+        pool.shutdown();
+        assertThat(total).isEqualTo(1_000);
+    }
+
+    // Erstatning for en egen JMH-modul. Målt mot et rent oppslag + inkrement i en ConcurrentHashMap
+    // på samme maskin, så testen ikke avhenger av hvor rask byggeserveren er: et uttak gjør i tillegg
+    // bare nanoTime, én CAS og én liten allokering. Målt til rundt 12 ganger på én vCPU; en lås
+    // eller en opprydning per kall gir fort flere hundre.
+    @Test
+    void allowedAcquireIsCheap() {
+        var buckets = new TokenBuckets(Integer.MAX_VALUE, Duration.ofSeconds(1), 100_000);
+        var baseline = new ConcurrentHashMap<String, AtomicLong>();
+        String[] ips = new String[1_000];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = "192.168." + (i >> 8) + "." + (i & 255);
+            baseline.put(ips[i], new AtomicLong());
+        }
+
+        // beste av flere runder, etter oppvarming (JIT), jevner ut GC og støy fra andre prosesser
+        long bucketNanos = Long.MAX_VALUE, baselineNanos = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < 8; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < 500_000; i++) sink += buckets.tryAcquire(ips[i % ips.length]).remaining() & 1;
+            long t1 = System.nanoTime();
+            for (int i = 0; i < 500_000; i++) sink += baseline.get(ips[i % ips.length]).incrementAndGet() & 1;
+            long t2 = System.nanoTime();
+            if (round >= 2) {
+                bucketNanos = Math.min(bucketNanos, t1 - t0);
+                baselineNanos = Math.min(baselineNanos, t2 - t1);
+            }
+        }
+
+        assertThat(sink).isNotNegative();
+        assertThat(bucketNanos).isLessThan(50 * Math.max(baselineNanos, 1));
+    }
+}
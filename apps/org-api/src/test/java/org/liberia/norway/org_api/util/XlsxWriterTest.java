@@ -0,0 +1,74 @@
+package org.liberia.norway.org_api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Åpner den skrevne pakken igjen og sjekker delene og innholdet i arket; XML-en parses også,
+ * så ugyldige tegn eller feil escaping ville feilet her og ikke først i Excel.
+ */
+class XlsxWriterTest {
+
+    @Test
+    void writesPackageWithSheetRows() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var w = new XlsxWriter(bytes, "Medlemmer & co")) {
+            w.writeHeader("Navn", "Beløp");
+            w.writeRow("Åse <Øvre> \"A&B\"", 245);
+            w.writeRow(null, "=SUM(A1)");
+        }
+
+        Map<String, String> parts = unzip(bytes.toByteArray());
+        assertThat(parts.keySet()).containsExactly(
+                "[Content_Types].xml", "_rels/.rels", "xl/_rels/workbook.xml.rels",
+                "xl/styles.xml", "xl/workbook.xml", "xl/worksheets/sheet1.xml");
+        assertThat(parts.get("xl/workbook.xml")).contains("name=\"Medlemmer &amp; co\"");
+
+        String sheet = parts.get("xl/worksheets/sheet1.xml");
+        assertThat(sheet).contains(
+                "<row><c s=\"1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">Navn</t></is></c>",
+                "<t xml:space=\"preserve\">Åse &lt;Øvre&gt; &quot;A&amp;B&quot;</t>",
+                "<c><v>245</v></c>",
+                // tekst blir aldri formel
+                "<row><c/><c t=\"inlineStr\"><is><t xml:space=\"preserve\">=SUM(A1)</t></is></c></row>");
+        assertThat(sheet).endsWith("</sheetData></worksheet>");
+        for (String xml : parts.values()) parse(xml);
+    }
+
+    @Test
+    void dropsControlCharactersNotAllowedInXml() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var w = new XlsxWriter(bytes, "Ark")) {
+            w.writeRow("a\u0000b\u0007c\td\ne");
+        }
+
+        String sheet = unzip(bytes.toByteArray()).get("xl/worksheets/sheet1.xml");
+        assertThat(sheet).contains("<t xml:space=\"preserve\">abc\td\ne</t>");
+        parse(sheet);
+    }
+
+    private static Map<String, String> unzip(byte[] bytes) throws Exception {
+        var parts = new LinkedHashMap<String, String>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+            for (var e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                parts.put(e.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return parts;
+    }
+
+    private static void parse(String xml) throws Exception {
+        DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
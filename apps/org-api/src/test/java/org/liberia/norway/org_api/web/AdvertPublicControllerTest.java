@@ -0,0 +1,22 @@
+package org.liberia.norway.org_api.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+class AdvertPublicControllerTest {
+
+    @Test
+    void clickTargetIsTrimmedHttpUrl() {
+        assertThat(AdvertPublicController.httpUri("  https://example.org/tilbud?a=1 \n"))
+                .isEqualTo(URI.create("https://example.org/tilbud?a=1"));
+        assertThat(AdvertPublicController.httpUri("HTTP://example.org")).isEqualTo(URI.create("HTTP://example.org"));
+        assertThat(AdvertPublicController.httpUri("javascript:alert(1)")).isNull();
+        assertThat(AdvertPublicController.httpUri("/relative")).isNull();
+        assertThat(AdvertPublicController.httpUri("https://example.org/a b")).isNull();
+        assertThat(AdvertPublicController.httpUri(" ")).isNull();
+        assertThat(AdvertPublicController.httpUri(null)).isNull();
+    }
+}
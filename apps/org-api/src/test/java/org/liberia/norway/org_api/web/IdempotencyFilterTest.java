@@ -0,0 +1,177 @@
+package org.liberia.norway.org_api.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.service.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Filteret foran en enkel handler med MockMvc, og {@link IdempotencyStore} mot ekte PostgreSQL:
+ * gjentakelsen får det lagrede svaret uten at handleren kjøres, annen body gir 422, et feilsvar
+ * slipper nøkkelen, og handleren leser body som vanlig (også med ReadListener).
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdempotencyStore.class)
+class IdempotencyFilterTest {
+
+    @TestConfiguration
+    static class Postgres {
+        @Bean(destroyMethod = "close")
+        EmbeddedPostgres embeddedPostgres() throws IOException {
+            return EmbeddedPostgres.start();
+        }
+
+        @Bean
+        DataSource dataSource(EmbeddedPostgres pg) {
+            return pg.getPostgresDatabase();
+        }
+    }
+
+    @RestController
+    static class Handler {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @PostMapping("/apply")
+        ResponseEntity<String> apply(@RequestBody String body, @RequestParam(defaultValue = "false") boolean fail) {
+            int n = calls.incrementAndGet();
+            if (fail) return ResponseEntity.badRequest().body("invalid");
+            return ResponseEntity.status(HttpStatus.CREATED).body("#" + n + " " + body);
+        }
+
+        @PostMapping("/listen")
+        String listen(HttpServletRequest request) throws IOException {
+            calls.incrementAndGet();
+            ServletInputStream in = request.getInputStream();
+            var read = new ByteArrayOutputStream();
+            var done = new StringBuilder();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buf = new byte[4];
+                    while (in.isReady() && !in.isFinished()) read.write(buf, 0, in.read(buf));
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    done.append("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    done.append("error");
+                }
+            });
+            return done + " " + read.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Autowired IdempotencyStore store;
+
+    private Handler handler;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        handler = new Handler();
+        mvc = MockMvcBuilders.standaloneSetup(handler)
+                .addFilters(new IdempotencyFilter(store, List.of("/apply", "/listen"), 1024))
+                .build();
+    }
+
+    @Test
+    void repeatIsReplayedWithoutRunningTheHandler() throws Exception {
+        mvc.perform(apply("key-replay", "{\"name\":\"Ola\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andExpect(content().string("#1 {\"name\":\"Ola\"}"));
+
+        mvc.perform(apply("key-replay", "{\"name\":\"Ola\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("#1 {\"name\":\"Ola\"}"));
+        assertThat(handler.calls).hasValue(1);
+
+        // uten header går alt som før
+        mvc.perform(post("/apply").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("#2 {}"));
+    }
+
+    @Test
+    void sameKeyWithAnotherBodyIsRejected() throws Exception {
+        mvc.perform(apply("key-mismatch", "{\"name\":\"Ola\"}")).andExpect(status().isCreated());
+
+        mvc.perform(apply("key-mismatch", "{\"name\":\"Kari\"}"))
+                .andExpect(status().isUnprocessableEntity());
+        assertThat(handler.calls).hasValue(1);
+    }
+
+    @Test
+    void errorResponseReleasesTheKey() throws Exception {
+        mvc.perform(apply("key-release", "{\"name\":\"\"}").param("fail", "true"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("invalid"));
+
+        // klienten retter opp og prøver igjen med samme nøkkel: kjøres på nytt, ikke avspilt
+        mvc.perform(apply("key-release", "{\"name\":\"\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andExpect(content().string("#2 {\"name\":\"\"}"));
+    }
+
+    @Test
+    void handlerReadsTheBodyWithAReadListener() throws Exception {
+        mvc.perform(post("/listen").header(IdempotencyFilter.HEADER, "key-listen").content("Åse sin søknad"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("done Åse sin søknad"));
+    }
+
+    @Test
+    void rejectsInvalidKeysAndLargeBodies() throws Exception {
+        mvc.perform(apply("ugyldig nøkkel", "{}")).andExpect(status().isBadRequest());
+        mvc.perform(apply("key-large", "x".repeat(1025))).andExpect(status().isPayloadTooLarge());
+        assertThat(handler.calls).hasValue(0);
+    }
+
+    private static MockHttpServletRequestBuilder apply(String key, String body) {
+        return post("/apply").header(IdempotencyFilter.HEADER, key).contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+}
@@ -0,0 +1,102 @@
+package org.liberia.norway.org_api.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liberia.norway.org_api.repository.MemberRepository;
+import org.liberia.norway.org_api.service.ApplicationDecisions;
+import org.liberia.norway.org_api.service.EmailOutbox;
+import org.liberia.norway.org_api.service.MemberExport;
+import org.liberia.norway.org_api.service.MemberImport;
+import org.liberia.norway.org_api.service.MembershipStats;
+import org.liberia.norway.org_api.service.VippsReconciliation;
+import org.liberia.norway.org_api.util.RowWriter;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Eksporten avsluttes bare når alle radene er skrevet: feiler den underveis, skal klienten ikke
+ * få en gyldig fil som mangler medlemmer.
+ */
+class MembershipAdminControllerTest {
+
+    // Slutten av zip-katalogen; uten den kan ingen åpne XLSX-filen
+    private static final byte[] END_OF_CENTRAL_DIRECTORY = {'P', 'K', 5, 6};
+
+    private final MemberExport export = mock(MemberExport.class);
+    private MembershipAdminController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new MembershipAdminController(mock(MemberRepository.class), mock(EmailOutbox.class), export,
+                mock(MemberImport.class), mock(ApplicationDecisions.class), mock(VippsReconciliation.class),
+                mock(MembershipStats.class));
+    }
+
+    @Test
+    void completeExportIsFinished() throws Exception {
+        doAnswer(inv -> {
+            RowWriter out = inv.getArgument(1);
+            out.writeHeader("ID", "Navn");
+            out.writeRow(1, "Åse");
+            return 1L;
+        }).when(export).write(isNull(), any());
+
+        var response = new MockHttpServletResponse();
+        controller.exportMembers("xlsx", null, response);
+
+        byte[] body = response.getContentAsByteArray();
+        assertThat(indexOf(body, END_OF_CENTRAL_DIRECTORY)).isPositive();
+        assertThat(sheet(body)).endsWith("</sheetData></worksheet>");
+    }
+
+    @Test
+    void failedExportIsNotFinished() throws Exception {
+        doAnswer(inv -> {
+            RowWriter out = inv.getArgument(1);
+            out.writeHeader("ID", "Navn");
+            out.writeRow(1, "Åse");
+            throw new DataAccessResourceFailureException("connection reset");
+        }).when(export).write(isNull(), any());
+
+        var response = new MockHttpServletResponse();
+        assertThatThrownBy(() -> controller.exportMembers("xlsx", null, response))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        byte[] body = response.getContentAsByteArray();
+        assertThat(indexOf(body, END_OF_CENTRAL_DIRECTORY)).isNegative();
+        assertThat(new String(body, StandardCharsets.ISO_8859_1)).doesNotContain("</sheetData>");
+    }
+
+    private static String sheet(byte[] bytes) throws Exception {
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+            for (var e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                if (e.getName().equals("xl/worksheets/sheet1.xml")) {
+                    return new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
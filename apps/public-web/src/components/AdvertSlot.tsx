@@ -0,0 +1,55 @@
+// src/components/AdvertSlot.tsx
+import { useEffect } from "react";
+import { useQuery } from "@tanstack/react-query";
+import { advertClickUrl, serveAdvert, trackImpression, type Placement } from "../lib/adverts";
+import { toPublicUrl } from "../lib/media";
+import "./AdvertSlot.css";
+
+/** Én roterende annonse på en plassering; viser ingenting når ingen annonse kan vises. */
+export default function AdvertSlot({ placement }: { placement: Placement }) {
+  // ett trekk per sidevisning, ellers teller vi visninger brukeren aldri så
+  const q = useQuery({
+    queryKey: ["adverts", "serve", placement],
+    queryFn: () => serveAdvert(placement),
+    staleTime: Infinity,
+    gcTime: 0,
+    refetchOnWindowFocus: false,
+    retry: false,
+  });
+  const ad = q.data ?? null;
+
+  useEffect(() => {
+    if (ad) trackImpression(ad);
+  }, [ad]);
+
+  if (!ad || !ad.mediaUrl) return null;
+
+  const href = advertClickUrl(ad);
+  const src = toPublicUrl(ad.mediaUrl);
+  const media =
+    ad.mediaKind === "VIDEO" ? (
+      <video className="advert-slot__media" src={src} autoPlay muted loop playsInline />
+    ) : (
+      <img className="advert-slot__media" src={src} alt={ad.title} loading="lazy" />
+    );
+
+  const body = (
+    <>
+      <span className="advert-slot__label">Ad</span>
+      {media}
+      <p className="advert-slot__title">{ad.title}</p>
+    </>
+  );
+
+  return (
+    <aside className="advert-slot" aria-label="Advertisement">
+      {href ? (
+        <a className="advert-slot__link" href={href} target="_blank" rel="noopener noreferrer sponsored">
+          {body}
+        </a>
+      ) : (
+        <div className="advert-slot__link">{body}</div>
+      )}
+    </aside>
+  );
+}
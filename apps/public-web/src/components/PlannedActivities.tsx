@@ -1,12 +1,17 @@
 import { useEffect, useMemo, useState, type JSX } from "react";
 import { Link } from "react-router-dom";
-import { getEvents, type EventDto } from "../lib/events";
+import { getEventPage, type EventDto } from "../lib/events";
 import { toPublicUrl } from "../lib/media";
 
+const PAST_PAGE_SIZE = 12;
+
 export default function PlannedActivities() {
   const [loading, setLoading] = useState(true);
   const [err, setErr] = useState<string | null>(null);
-  const [events, setEvents] = useState<EventDto[]>([]);
+  const [future, setFuture] = useState<EventDto[]>([]);
+  const [past, setPast] = useState<EventDto[]>([]);
+  const [pastCursor, setPastCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   useEffect(() => {
     let alive = true;
@@ -15,11 +20,16 @@ export default function PlannedActivities() {
         setLoading(true);
         setErr(null);
 
-        const data = await getEvents();
+        // serveren filtrerer og sorterer; tidligere arrangementer kommer nyeste først
+        const [upcomingPage, pastPage] = await Promise.all([
+          getEventPage({ upcoming: true, limit: 50 }),
+          getEventPage({ past: true, limit: PAST_PAGE_SIZE }),
+        ]);
         if (!alive) return;
 
-        data.sort((a, b) => +new Date(a.startAt!) - +new Date(b.startAt!));
-        setEvents(data);
+        setFuture(upcomingPage.items);
+        setPast(pastPage.items);
+        setPastCursor(pastPage.nextCursor);
       } catch (e: any) {
         if (alive) setErr(e.message ?? "Failed to fetch");
       } finally {
@@ -32,20 +42,22 @@ export default function PlannedActivities() {
     };
   }, []);
 
-  const now = new Date();
-
-  const { next, upcoming, past } = useMemo(() => {
-    const future = events.filter((e) => new Date(e.startAt!) >= now);
-    const past = events
-      .filter((e) => new Date(e.startAt!) < now)
-      .sort((a, b) => +new Date(b.startAt!) - +new Date(a.startAt!));
-
-    const sortedFuture = [...future].sort((a, b) => +new Date(a.startAt!) - +new Date(b.startAt!));
-    const next = sortedFuture[0] ?? null;
-    const upcoming = sortedFuture.slice(1);
-
-    return { next, upcoming, past };
-  }, [events, now]);
+  const loadMorePast = async () => {
+    if (!pastCursor) return;
+    setLoadingMore(true);
+    try {
+      const page = await getEventPage({ past: true, limit: PAST_PAGE_SIZE, cursor: pastCursor });
+      setPast((prev) => [...prev, ...page.items]);
+      setPastCursor(page.nextCursor);
+    } catch (e: any) {
+      setErr(e.message ?? "Failed to fetch");
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  const next = future[0] ?? null;
+  const upcoming = useMemo(() => future.slice(1), [future]);
 
   if (loading) return <div className="py-10 text-center">Loading…</div>;
   if (err) return <div className="py-10 text-center text-red-600">{err}</div>;
@@ -89,6 +101,19 @@ export default function PlannedActivities() {
         ) : (
           <div className="text-gray-600">No previous events.</div>
         )}
+
+        {pastCursor && (
+          <div className="mt-6 flex justify-center">
+            <button
+              type="button"
+              onClick={loadMorePast}
+              disabled={loadingMore}
+              className="rounded-full border px-5 py-2 text-sm hover:bg-gray-50 disabled:opacity-60"
+            >
+              {loadingMore ? "Loading…" : "Show older events"}
+            </button>
+          </div>
+        )}
       </div>
 
       <div className="mt-12 flex justify-center">
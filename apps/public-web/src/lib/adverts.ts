@@ -1,5 +1,5 @@
 // public-web/src/lib/adverts.ts
-import { apiGet } from "./events";
+import { API_BASE, apiGet } from "./events";
 import { stripStoredFileToString } from "./media";
 
 export type MediaKind = "IMAGE" | "VIDEO";
@@ -93,3 +93,79 @@ export async function fetchAdverts(page = 0, size = 50): Promise<Advert[]> {
   const rows: any[] = Array.isArray(data) ? data : Array.isArray(data?.content) ? data.content : [];
   return rows.map(normalizeAdvert);
 }
+
+/* ------------------------------- Statistikk ------------------------------- */
+// Klikk går via API-et (telles, så 302 videre); uten slug brukes lenken direkte
+export function advertClickUrl(a: Advert): string | null {
+  if (!a.targetUrl) return null;
+  return a.slug ? `${API_BASE}/api/adverts/${encodeURIComponent(a.slug)}/click` : a.targetUrl;
+}
+
+const seenImpressions = new Set<string>();
+
+// Én visning per annonse per sidevisning; sendBeacon blokkerer ikke og overlever navigering
+export function trackImpression(a: Advert): void {
+  if (!a.slug || seenImpressions.has(a.slug)) return;
+  seenImpressions.add(a.slug);
+  const url = `${API_BASE}/api/adverts/${encodeURIComponent(a.slug)}/impression`;
+  if (typeof navigator !== "undefined" && navigator.sendBeacon?.(url)) return;
+  fetch(url, { method: "POST", keepalive: true, credentials: "omit" }).catch(() => {});
+}
+
+/* ------------------------------- Rotasjon ------------------------------- */
+export type Placement = "HOME_TOP" | "SIDEBAR" | "FOOTER" | "INLINE";
+
+// Hvor mange ganger hver annonse er vist i dag; API-et bruker ikke cookies, så tellingen bor her
+const SEEN_KEY = "advertSeen";
+const SEEN_MAX = 50; // serveren leser ikke flere
+
+type SeenToday = { day: string; counts: Record<string, number> };
+
+function today(): string {
+  const d = new Date();
+  return `${d.getFullYear()}-${d.getMonth() + 1}-${d.getDate()}`;
+}
+
+function readSeen(): SeenToday {
+  try {
+    const s = JSON.parse(localStorage.getItem(SEEN_KEY) ?? "null") as SeenToday | null;
+    if (s && s.day === today() && s.counts) return s;
+  } catch {
+    // ødelagt eller utilgjengelig lagring: start på nytt
+  }
+  return { day: today(), counts: {} };
+}
+
+function markSeen(id: Advert["id"]): void {
+  const s = readSeen();
+  s.counts[String(id)] = (s.counts[String(id)] ?? 0) + 1;
+  try {
+    localStorage.setItem(SEEN_KEY, JSON.stringify(s));
+  } catch {
+    // privat modus o.l.: frekvenstaket gjelder da bare denne sidevisningen
+  }
+}
+
+// Format serveren forventer: "12-3.15-1" (id-antall), de mest viste først
+function seenParam(): string {
+  return Object.entries(readSeen().counts)
+    .sort((a, b) => b[1] - a[1])
+    .slice(0, SEEN_MAX)
+    .map(([id, n]) => `${id}-${n}`)
+    .join(".");
+}
+
+/** Én annonse for plasseringen, valgt etter vekt og frekvenstak; null hvis ingen kan vises. */
+export async function serveAdvert(placement: Placement): Promise<Advert | null> {
+  const params = new URLSearchParams({ placement });
+  const seen = seenParam();
+  if (seen) params.set("seen", seen);
+
+  const res = await fetch(`${API_BASE}/api/adverts/serve?${params}`, { headers: { Accept: "application/json" } });
+  if (res.status === 204) return null;
+  if (!res.ok) throw new Error(`Could not load advert (${res.status})`);
+
+  const a = normalizeAdvert(await res.json());
+  markSeen(a.id);
+  return a;
+}
@@ -73,10 +73,60 @@ export function normalizeEvent(e: any): EventDto {
 }
 
 /* --------------------------------- Public -------------------------------- */
-export async function getEvents(): Promise<EventDto[]> {
-  const rows = await apiGet<any>("/api/events");
+/** Filtre for /api/events. from/to er ISO-tidspunkt, intervallet er [from, to). */
+export type EventQuery = {
+  upcoming?: boolean;
+  past?: boolean;
+  from?: string;
+  to?: string;
+  q?: string;
+  cursor?: string;
+  limit?: number;
+};
+
+export type EventPage = { items: EventDto[]; nextCursor: string | null };
+
+function eventQueryString(query: EventQuery): string {
+  const params = new URLSearchParams();
+  for (const [k, v] of Object.entries(query)) {
+    if (v !== undefined && v !== null && v !== "" && v !== false) params.set(k, String(v));
+  }
+  const qs = params.toString();
+  return qs ? `?${qs}` : "";
+}
+
+/** Én side fra serveren; neste side hentes med nextCursor. */
+export async function getEventPage(query: EventQuery = {}): Promise<EventPage> {
+  const rows = await apiGet<any>(`/api/events${eventQueryString(query)}`);
   const list: any[] = Array.isArray(rows) ? rows : Array.isArray(rows?.content) ? rows.content : [];
-  return list.map(normalizeEvent);
+  return { items: list.map(normalizeEvent), nextCursor: rows?.nextCursor ?? null };
+}
+
+export async function getEvents(query: EventQuery = {}): Promise<EventDto[]> {
+  return (await getEventPage(query)).items;
+}
+
+/** Alle sider for et avgrenset utsnitt (f.eks. én kalendermåned). */
+export async function getAllEvents(query: EventQuery): Promise<EventDto[]> {
+  const out: EventDto[] = [];
+  let cursor: string | undefined;
+  do {
+    const page = await getEventPage({ ...query, cursor, limit: 100 });
+    out.push(...page.items);
+    cursor = page.nextCursor ?? undefined;
+  } while (cursor);
+  return out;
+}
+
+export type EventMonthCount = { month: string; count: number }; // month = "YYYY-MM"
+
+export function getEventMonths(from?: string, to?: string): Promise<EventMonthCount[]> {
+  return apiGet<EventMonthCount[]>(`/api/events/months${eventQueryString({ from, to })}`);
+}
+
+export async function getNextEvent(): Promise<EventDto | null> {
+  const res = await apiGet<any>("/api/events/next");
+  return res?.event ? normalizeEvent(res.event) : null;
 }
 
 export async function getEventBySlug(slug: string): Promise<EventDto> {
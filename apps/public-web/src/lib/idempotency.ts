@@ -0,0 +1,40 @@
+/**
+ * POST med Idempotency-Key. Samme body får samme nøkkel helt til serveren har svart, så et
+ * dobbeltklikk eller et nytt forsøk etter brutt forbindelse ikke sender søknaden/forslaget to ganger:
+ * serveren spiller da av det første svaret i stedet for å behandle forespørselen på nytt.
+ */
+const keys = new Map<string, string>();
+
+const RETRIES = 2;
+
+function newKey(): string {
+  if (typeof crypto !== "undefined" && "randomUUID" in crypto) return crypto.randomUUID();
+  return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+}
+
+export async function postIdempotent(url: string, payload: unknown): Promise<Response> {
+  const body = JSON.stringify(payload);
+  const mapKey = `${url}\n${body}`;
+  let key = keys.get(mapKey);
+  if (!key) {
+    key = newKey();
+    keys.set(mapKey, key);
+  }
+
+  for (let attempt = 0; ; attempt++) {
+    try {
+      const res = await fetch(url, {
+        method: "POST",
+        headers: { "Content-Type": "application/json", "Idempotency-Key": key },
+        body,
+      });
+      // 409 med Retry-After: den første forespørselen behandles fortsatt; behold nøkkelen
+      if (!(res.status === 409 && res.headers.has("Retry-After"))) keys.delete(mapKey);
+      return res;
+    } catch (e) {
+      // nettverksfeil: vi vet ikke om serveren fikk den, så prøv igjen med samme nøkkel
+      if (attempt >= RETRIES) throw e;
+      await new Promise((r) => setTimeout(r, 500 * (attempt + 1)));
+    }
+  }
+}
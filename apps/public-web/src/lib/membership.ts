@@ -1,3 +1,5 @@
+import { postIdempotent } from "./idempotency";
+
 const LOCAL_API = "http://localhost:8080";
 const PROD_API = "https://liberia-org.onrender.com";
 const API_BASE = window.location.hostname === "localhost" ? LOCAL_API : PROD_API;
@@ -36,11 +38,7 @@ export async function checkAlreadyMember(args: {
 }
 
 export async function submitMembership(payload: MembershipForm): Promise<void> {
-  const res = await fetch(`${API_BASE}/api/membership/apply`, {
-    method: "POST",
-    headers: { "Content-Type": "application/json" },
-    body: JSON.stringify(payload),
-  });
+  const res = await postIdempotent(`${API_BASE}/api/membership/apply`, payload);
 
   if (res.ok) return;
 
@@ -1,4 +1,5 @@
 import { API_BASE } from "./events";
+import { postIdempotent } from "./idempotency";
 
 export type SuggestionCreate = {
   name?: string;
@@ -8,11 +9,7 @@ export type SuggestionCreate = {
 
 /** Submit suggestion (public) */
 export async function submitSuggestion(body: SuggestionCreate): Promise<void> {
-  const res = await fetch(`${API_BASE}/api/suggestions`, {
-    method: "POST",
-    headers: { "Content-Type": "application/json" },
-    body: JSON.stringify(body),
-  });
+  const res = await postIdempotent(`${API_BASE}/api/suggestions`, body);
   if (!res.ok) {
     const t = await res.text().catch(() => "");
     throw new Error(t || "Kunne ikke sende forslaget");
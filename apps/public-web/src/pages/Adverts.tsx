@@ -3,7 +3,7 @@ import { useEffect, useMemo, useRef, useState } from "react";
 import { useQuery } from "@tanstack/react-query";
 import Navbar from "../components/Navbar";
 import Footer from "../components/Footer";
-import { fetchAdverts as loadAdverts, type Advert } from "../lib/adverts";
+import { advertClickUrl, fetchAdverts as loadAdverts, trackImpression, type Advert } from "../lib/adverts";
 import { toPublicUrl } from "../lib/media";
 import DonationPopup from "../components/Donationpopup";
 
@@ -311,6 +311,7 @@ function HeroSlide({
   onVideoEnded?: () => void;
   isTransitioning: boolean;
 }) {
+  useEffect(() => trackImpression(item), [item]);
   const isVideo = item.mediaKind === "VIDEO";
   const src = item.mediaUrl ? toPublicUrl(item.mediaUrl) : "";
   const published = fmtDate(item.createdAt || item.updatedAt);
@@ -353,6 +354,8 @@ function Card({ item, index, onOpenLightbox }: { item: Advert; index: number; on
   const published = fmtDate(item.createdAt || item.updatedAt);
   const [isHovered, setIsHovered] = useState(false);
 
+  useEffect(() => trackImpression(item), [item]);
+
   return (
     <article
       className="card"
@@ -444,7 +447,7 @@ function Lightbox({ item, onClose }: { item: Advert; onClose: () => void }) {
               </div>
             )}
             {item.targetUrl && (
-              <a className="linkBtn" href={item.targetUrl} target="_blank" rel="noreferrer">
+              <a className="linkBtn" href={advertClickUrl(item) ?? item.targetUrl} target="_blank" rel="noreferrer">
                 <span className="link-icon">🔗</span>
                 Open link
               </a>
@@ -1,7 +1,7 @@
 import { useEffect, useMemo, useState, type JSX } from "react";
 import { useQuery } from "@tanstack/react-query";
 import { Link } from "react-router-dom";
-import { apiGet } from "../lib/events";
+import { getNextEvent } from "../lib/events";
 import Navbar from "../components/Navbar";
 import Footer from "../components/Footer";
 import PlannedActivities from "../components/PlannedActivities";
@@ -23,9 +23,10 @@ export type EventDto = {
 };
 
 export default function Events() {
+  // bare neste arrangement trengs her; listene hentes side for side i PlannedActivities
   const q = useQuery({
-    queryKey: ["events"],
-    queryFn: () => apiGet<EventDto[]>("/api/events"),
+    queryKey: ["events", "next"],
+    queryFn: async () => (await getNextEvent()) as EventDto | null,
   });
 
   if (q.isLoading) return <div className="max-w-6xl mx-auto px-4 py-16">Loading…</div>;
@@ -38,11 +39,7 @@ export default function Events() {
     );
   }
 
-  const events = (q.data ?? []).slice().sort((a, b) => +new Date(a.startAt) - +new Date(b.startAt));
-  const now = new Date();
-  const upcoming = events.filter(e => new Date(e.startAt) >= now);
-  const past = events.filter(e => new Date(e.startAt) < now).reverse();
-  const next = upcoming[0];
+  const next = q.data ?? null;
 
   return (
     <div className="photos">
@@ -1,8 +1,7 @@
 import { useEffect, useMemo, useState } from "react";
 import { Link } from "react-router-dom";
-import { API_BASE } from "../lib/events";
+import { getAllEvents, getEventMonths, getEvents } from "../lib/events";
 import Navbar from "../components/Navbar";
-import axios from "axios";
 import Footer from "../components/Footer";
 
 type EventDto = {
@@ -27,6 +26,28 @@ export default function EventsCalendar() {
   const [view, setView] = useState<ViewMode>("month");
   const [query, setQuery] = useState("");
   const [selectedDay, setSelectedDay] = useState<Date | null>(null);
+  const [monthCounts, setMonthCounts] = useState<Map<string, number>>(new Map());
+
+  const eventsByDay = useMemo(() => {
+    const map = new Map<string, EventDto[]>();
+    for (const e of events) {
+      const k = dayKey(new Date(e.startAt));
+      if (!map.has(k)) map.set(k, []);
+      map.get(k)!.push(e);
+    }
+    return map;
+  }, [events]);
+
+  const days = useMemo(() => {
+    const start = startOfWeek(startOfMonth(current));
+    const out: Date[] = [];
+    for (let i = 0; i < 42; i++) out.push(addDays(start, i));
+    return out;
+  }, [current]);
+
+  // Henter bare de 6 ukene som vises, ikke hele arkivet
+  const rangeFrom = days[0].toISOString();
+  const rangeTo = addDays(days[days.length - 1], 1).toISOString();
 
   useEffect(() => {
     let alive = true;
@@ -34,9 +55,8 @@ export default function EventsCalendar() {
       try {
         setLoading(true);
         setErr(null);
-        const res = await axios.get(`${API_BASE}/api/events`, { withCredentials: false });
-        const data: EventDto[] = res.data;
-        if (alive) setEvents(data.sort((a, b) => +new Date(a.startAt) - +new Date(b.startAt)));
+        const data = (await getAllEvents({ from: rangeFrom, to: rangeTo })) as EventDto[];
+        if (alive) setEvents(data);
       } catch (e: any) {
         if (alive) setErr(e.message ?? "Failed to load");
       } finally {
@@ -46,33 +66,33 @@ export default function EventsCalendar() {
     return () => {
       alive = false;
     };
-  }, []);
+  }, [rangeFrom, rangeTo]);
 
-  const eventsByDay = useMemo(() => {
-    const map = new Map<string, EventDto[]>();
-    for (const e of events) {
-      const k = dayKey(new Date(e.startAt));
-      if (!map.has(k)) map.set(k, []);
-      map.get(k)!.push(e);
-    }
-    return map;
-  }, [events]);
+  // Antall per måned (liten, hentes én gang) til månedsvelgeren
+  useEffect(() => {
+    let alive = true;
+    getEventMonths()
+      .then((rows) => {
+        if (alive) setMonthCounts(new Map(rows.map((r) => [r.month, r.count])));
+      })
+      .catch(() => {});
+    return () => {
+      alive = false;
+    };
+  }, []);
 
-  const days = useMemo(() => {
-    const start = startOfWeek(startOfMonth(current));
-    const out: Date[] = [];
-    for (let i = 0; i < 42; i++) out.push(addDays(start, i));
-    return out;
-  }, [current]);
+  const currentMonthCount = monthCounts.get(isoMonth(current)) ?? 0;
 
   const currentMonthKey = monthKey(current);
 
-  const onSearch = (e?: React.FormEvent) => {
+  const onSearch = async (e?: React.FormEvent) => {
     e?.preventDefault();
-    const q = query.trim().toLowerCase();
+    const q = query.trim();
     if (!q) return;
-    const hit = events.find((ev) => ev.title.toLowerCase().includes(q));
-    if (!hit) return;
+    // nærmeste kommende treff først, ellers det siste tidligere
+    const [hit] = (await getEvents({ q, upcoming: true, limit: 1 }).catch(() => []))
+      .concat(await getEvents({ q, past: true, limit: 1 }).catch(() => []));
+    if (!hit?.startAt) return;
     const d = new Date(hit.startAt);
     setCurrent(startOfMonth(d));
     setSelectedDay(truncateDay(d));
@@ -125,6 +145,7 @@ export default function EventsCalendar() {
             </button>
             <div className="px-3 py-1.5 text-sm rounded border bg-white whitespace-nowrap">
               {current.toLocaleString(undefined, { month: "long", year: "numeric" })}
+              {currentMonthCount > 0 && <span className="ml-1 opacity-60">({currentMonthCount})</span>}
             </div>
             <button
               type="button"
@@ -180,6 +201,7 @@ export default function EventsCalendar() {
               </button>
               <div className="px-3 py-1.5 text-sm rounded border bg-white whitespace-nowrap">
                 {current.toLocaleString(undefined, { month: "short", year: "numeric" })}
+                {currentMonthCount > 0 && <span className="ml-1 opacity-60">({currentMonthCount})</span>}
               </div>
               <button
                 type="button"
@@ -478,6 +500,11 @@ function monthKey(d: Date) {
   return `${d.getFullYear()}-${d.getMonth() + 1}`;
 }
 
+// Samme format som /api/events/months: "YYYY-MM"
+function isoMonth(d: Date) {
+  return `${d.getFullYear()}-${String(d.getMonth() + 1).padStart(2, "0")}`;
+}
+
 function timeOf(iso: string) {
   return new Date(iso).toLocaleTimeString(undefined, { hour: "2-digit", minute: "2-digit" });
 }
\ No newline at end of file
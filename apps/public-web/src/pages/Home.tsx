@@ -5,7 +5,8 @@ import Navbar from "../components/Navbar";
 import Footer from "../components/Footer";
 import "./home.css";
 import DonationPopup from "../components/Donationpopup";
-import { getEvents, type EventDto } from "../lib/events";
+import AdvertSlot from "../components/AdvertSlot";
+import { getNextEvent } from "../lib/events";
 import UlanLogo from "../assets/Ulan_logo-removebg-preview.jpeg";
 
 export default function Home() {
@@ -13,20 +14,13 @@ export default function Home() {
   const [visibleSections, setVisibleSections] = useState<Set<string>>(new Set());
   const sectionRefs = useRef<{ [key: string]: HTMLElement | null }>({});
 
-  // Fetch events
-  const eventsQuery = useQuery({
-    queryKey: ["events"],
-    queryFn: getEvents,
+  // Fetch next event
+  const nextEventQuery = useQuery({
+    queryKey: ["events", "next"],
+    queryFn: getNextEvent,
   });
 
-  const nextEvent = (() => {
-    if (!eventsQuery.data) return null;
-    const now = new Date();
-    const upcoming = eventsQuery.data
-      .filter(e => e.startAt && new Date(e.startAt) >= now)
-      .sort((a, b) => new Date(a.startAt!).getTime() - new Date(b.startAt!).getTime());
-    return upcoming[0] || null;
-  })();
+  const nextEvent = nextEventQuery.data ?? null;
 
   useEffect(() => {
     const timer = setTimeout(() => setIsLoaded(true), 100);
@@ -112,6 +106,8 @@ export default function Home() {
         </div>
       </main>
 
+      <AdvertSlot placement="HOME_TOP" />
+
       {/* Quick Navigation Cards */}
       <section 
         id="quick-nav" 